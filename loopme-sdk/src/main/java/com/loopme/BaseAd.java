@@ -290,7 +290,7 @@ public abstract class BaseAd implements AdTargeting {
                 fetchAd();
             }
         });
-        mFuture = ExecutorHelper.getExecutor().submit(advTask);
+        mFuture = ExecutorHelper.getScheduler().submit(TaskScheduler.Priority.AD_FETCH, advTask);
     }
 
     protected void releaseViewController(boolean interruptFile) {
@@ -364,7 +364,7 @@ public abstract class BaseAd implements AdTargeting {
 
         mAdFetcherListener = initAdFetcherListener();
         AdFetcher fetcher = new AdFetcher(mRequestUrl, mAdFetcherListener, getAdFormat());
-        mFuture = ExecutorHelper.getExecutor().submit(fetcher);
+        mFuture = ExecutorHelper.getScheduler().submit(TaskScheduler.Priority.AD_FETCH, fetcher);
     }
 
     /**
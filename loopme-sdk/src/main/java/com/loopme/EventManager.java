@@ -8,8 +8,6 @@ import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.Arrays;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 public class EventManager {
 
@@ -45,9 +43,8 @@ public class EventManager {
     }
 
     public void trackSdkEvent(String token) {
-        ExecutorService executor = Executors.newCachedThreadPool();
         final String eventUrl = build(token);
-        executor.submit(new Runnable() {
+        ExecutorHelper.getScheduler().submit(TaskScheduler.Priority.TRACKING, new Runnable() {
 
             @Override
             public void run() {
@@ -5,15 +5,18 @@ import java.util.concurrent.Executors;
 
 public class ExecutorHelper {
 
-    private static final ExecutorService sExecutor = Executors.newCachedThreadPool();
+    private static final TaskScheduler sScheduler = new TaskScheduler();
     private static final ExecutorService sSingleExecutor =
             Executors.newSingleThreadExecutor();
 
     private ExecutorHelper() {
     }
 
-    public static ExecutorService getExecutor() {
-        return sExecutor;
+    /**
+     * Shared bounded scheduler for ad fetches, tracking and video downloads
+     */
+    public static TaskScheduler getScheduler() {
+        return sScheduler;
     }
 
     public static ExecutorService getSingleExecutor() {
@@ -21,6 +24,6 @@ public class ExecutorHelper {
     }
 
     public static void shutdown() {
-        sExecutor.shutdown();
+        sScheduler.shutdown();
     }
 }
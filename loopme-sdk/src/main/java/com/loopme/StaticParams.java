@@ -22,6 +22,8 @@ public class StaticParams {
 
     public static long CACHED_VIDEO_LIFE_TIME = 1000 * 60 * 60 * 32;//32 hours
 
+    public static long CACHED_VIDEO_MAX_SIZE = 50 * 1024 * 1024;//50 MB
+
     static final long FETCH_TIMEOUT = 1000 * 60 * 3;//3 minutes
 
     static final int SHRINK_MODE_KEEP_AFTER_FINISH_TIME = 1000;
@@ -0,0 +1,267 @@
+package com.loopme;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs SDK background work on a small bounded pool. Tasks are queued per priority class and a
+ * free thread always takes the highest priority task whose class is under its concurrency limit.
+ * The last thread is kept for ad fetches, so long media downloads and tracking bursts never
+ * delay an ad request.
+ */
+public class TaskScheduler {
+
+    private static final String LOG_TAG = TaskScheduler.class.getSimpleName();
+
+    public enum Priority {
+        /**
+         * Ad requests and other work on the ad load path
+         */
+        AD_FETCH(4),
+        /**
+         * Tracking and event pings
+         */
+        TRACKING(2),
+        /**
+         * Video downloads
+         */
+        MEDIA_PREFETCH(2);
+
+        private final int mMaxConcurrent;
+
+        Priority(int maxConcurrent) {
+            mMaxConcurrent = maxConcurrent;
+        }
+    }
+
+    /**
+     * Implemented by tasks that hold a resource, such as an HTTP connection, that should be
+     * released when the task's future is cancelled.
+     */
+    public interface Cancellable {
+        void cancel();
+    }
+
+    /**
+     * Counters for one priority class
+     */
+    public static class Stats {
+        private final int mQueueDepth;
+        private final int mRunning;
+        private final long mStarted;
+        private final long mTotalWaitMillis;
+        private final long mMaxWaitMillis;
+
+        Stats(int queueDepth, int running, long started, long totalWaitMillis,
+              long maxWaitMillis) {
+            mQueueDepth = queueDepth;
+            mRunning = running;
+            mStarted = started;
+            mTotalWaitMillis = totalWaitMillis;
+            mMaxWaitMillis = maxWaitMillis;
+        }
+
+        public int getQueueDepth() {
+            return mQueueDepth;
+        }
+
+        public int getRunning() {
+            return mRunning;
+        }
+
+        public long getStarted() {
+            return mStarted;
+        }
+
+        public long getAverageWaitMillis() {
+            return mStarted == 0 ? 0 : mTotalWaitMillis / mStarted;
+        }
+
+        public long getMaxWaitMillis() {
+            return mMaxWaitMillis;
+        }
+    }
+
+    static final int MAX_THREADS = 4;
+
+    private static final int KEEP_ALIVE_SECONDS = 30;
+
+    private final int mMaxThreads;
+    private final ExecutorService mExecutor;
+    private final Object mLock = new Object();
+
+    private final ArrayDeque<Task<?>>[] mQueues;
+    private final int[] mRunning;
+    private final long[] mStarted;
+    private final long[] mTotalWait;
+    private final long[] mMaxWait;
+    private int mRunningTotal;
+
+    public TaskScheduler() {
+        this(MAX_THREADS);
+    }
+
+    @SuppressWarnings("unchecked")
+    TaskScheduler(int maxThreads) {
+        mMaxThreads = maxThreads;
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(maxThreads, maxThreads,
+                KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+                    private final AtomicInteger mCount = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        return new Thread(runnable, "LoopMe-" + mCount.incrementAndGet());
+                    }
+                });
+        executor.allowCoreThreadTimeOut(true);
+        mExecutor = executor;
+
+        int classes = Priority.values().length;
+        mQueues = new ArrayDeque[classes];
+        for (int i = 0; i < classes; i++) {
+            mQueues[i] = new ArrayDeque<Task<?>>();
+        }
+        mRunning = new int[classes];
+        mStarted = new long[classes];
+        mTotalWait = new long[classes];
+        mMaxWait = new long[classes];
+    }
+
+    public Future<?> submit(Priority priority, Runnable runnable) {
+        return submit(priority, runnable, null);
+    }
+
+    public <T> Future<T> submit(Priority priority, Callable<T> callable) {
+        Task<T> task = new Task<T>(priority, callable, callable);
+        enqueue(task);
+        return task;
+    }
+
+    private <T> Future<T> submit(Priority priority, Runnable runnable, T result) {
+        Task<T> task = new Task<T>(priority, runnable, result);
+        enqueue(task);
+        return task;
+    }
+
+    public Stats getStats(Priority priority) {
+        int index = priority.ordinal();
+        synchronized (mLock) {
+            return new Stats(mQueues[index].size(), mRunning[index], mStarted[index],
+                    mTotalWait[index], mMaxWait[index]);
+        }
+    }
+
+    public void shutdown() {
+        ArrayDeque<Task<?>> pending = new ArrayDeque<Task<?>>();
+        synchronized (mLock) {
+            for (ArrayDeque<Task<?>> queue : mQueues) {
+                pending.addAll(queue);
+                queue.clear();
+            }
+        }
+        for (Task<?> task : pending) {
+            task.cancel(false);
+        }
+        mExecutor.shutdown();
+    }
+
+    private void enqueue(Task<?> task) {
+        synchronized (mLock) {
+            mQueues[task.mPriority.ordinal()].add(task);
+            dispatchLocked();
+        }
+    }
+
+    private void dispatchLocked() {
+        while (mRunningTotal < mMaxThreads) {
+            Task<?> next = null;
+            for (Priority priority : Priority.values()) {
+                int index = priority.ordinal();
+                boolean reserved = priority != Priority.AD_FETCH && mMaxThreads > 1
+                        && mRunningTotal >= mMaxThreads - 1;
+                if (mQueues[index].isEmpty() || mRunning[index] >= priority.mMaxConcurrent
+                        || reserved) {
+                    continue;
+                }
+                next = mQueues[index].poll();
+                break;
+            }
+            if (next == null) {
+                return;
+            }
+
+            int index = next.mPriority.ordinal();
+            long wait = System.currentTimeMillis() - next.mEnqueuedAt;
+            mRunning[index]++;
+            mRunningTotal++;
+            mStarted[index]++;
+            mTotalWait[index] += wait;
+            mMaxWait[index] = Math.max(mMaxWait[index], wait);
+            mExecutor.execute(next);
+        }
+    }
+
+    private void onFinished(Task<?> task) {
+        synchronized (mLock) {
+            mRunning[task.mPriority.ordinal()]--;
+            mRunningTotal--;
+            dispatchLocked();
+        }
+    }
+
+    private void onCancelledWhileQueued(Task<?> task) {
+        synchronized (mLock) {
+            mQueues[task.mPriority.ordinal()].remove(task);
+        }
+    }
+
+    private class Task<T> extends FutureTask<T> {
+        private final Priority mPriority;
+        private final Object mWork;
+        private final long mEnqueuedAt = System.currentTimeMillis();
+
+        Task(Priority priority, Runnable runnable, T result) {
+            super(runnable, result);
+            mPriority = priority;
+            mWork = runnable;
+        }
+
+        Task(Priority priority, Callable<T> callable, Object work) {
+            super(callable);
+            mPriority = priority;
+            mWork = work;
+        }
+
+        @Override
+        public void run() {
+            try {
+                super.run();
+            } finally {
+                onFinished(this);
+            }
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            if (cancelled) {
+                onCancelledWhileQueued(this);
+                if (mWork instanceof Cancellable) {
+                    // Interrupts do not unblock socket reads, so close the connection directly
+                    Logging.out(LOG_TAG, "Cancel " + mPriority + " task", Logging.LogLevel.DEBUG);
+                    ((Cancellable) mWork).cancel();
+                }
+            }
+            return cancelled;
+        }
+    }
+}
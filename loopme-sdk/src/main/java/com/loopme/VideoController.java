@@ -446,7 +446,8 @@ class VideoController implements OnPreparedListener, OnErrorListener, OnCompleti
     }
 
     void setSurface(final TextureView textureView) {
-        ExecutorHelper.getExecutor().submit(new Runnable() {
+        // Attaching the surface gates playback, so it runs with the latency-critical class
+        ExecutorHelper.getScheduler().submit(TaskScheduler.Priority.AD_FETCH, new Runnable() {
 
             @Override
             public void run() {
@@ -7,6 +7,7 @@ import com.loopme.Logging.LogLevel;
 import com.loopme.LoopMeError;
 import com.loopme.ResponseParser;
 import com.loopme.StaticParams;
+import com.loopme.TaskScheduler;
 import com.loopme.Utils;
 
 import java.io.BufferedInputStream;
@@ -17,7 +18,7 @@ import java.net.MalformedURLException;
 import java.net.SocketTimeoutException;
 import java.net.URL;
 
-public class AdFetcher implements Runnable {
+public class AdFetcher implements Runnable, TaskScheduler.Cancellable {
 
     private static final String LOG_TAG = AdFetcher.class.getSimpleName();
 
@@ -39,6 +40,9 @@ public class AdFetcher implements Runnable {
 
     private LoopMeError mLoopMeError;
 
+    private volatile boolean mCancelled;
+    private volatile HttpURLConnection mConnection;
+
     public interface Listener {
         void onComplete(AdParams params, LoopMeError error);
     }
@@ -70,7 +74,23 @@ public class AdFetcher implements Runnable {
         }
     }
 
+    /**
+     * Aborts the request by closing its connection. The listener is not called afterwards.
+     */
+    @Override
+    public void cancel() {
+        mCancelled = true;
+        HttpURLConnection connection = mConnection;
+        if (connection != null) {
+            connection.disconnect();
+        }
+    }
+
     private void complete(final AdParams params, final LoopMeError error) {
+        if (mCancelled) {
+            Logging.out(LOG_TAG, "Ad request cancelled", LogLevel.DEBUG);
+            return;
+        }
         if (mListener != null) {
             mListener.onComplete(params, error);
         }
@@ -82,6 +102,7 @@ public class AdFetcher implements Runnable {
         try {
             URL request = new URL(url);
             urlConnection = (HttpURLConnection) request.openConnection();
+            mConnection = urlConnection;
             urlConnection.setRequestProperty(USER_AGENT, System.getProperty(AGENT_PROPERTY));
             urlConnection.setReadTimeout(TIMEOUT);
             urlConnection.setConnectTimeout(TIMEOUT);
@@ -90,6 +111,13 @@ public class AdFetcher implements Runnable {
                     : StaticParams.BANNER_TAG;
             Logging.out(LOG_TAG, type + " loads ad with URL: " + url, LogLevel.DEBUG);
 
+            // disconnect() does nothing before the socket is open, so a cancel that raced the
+            // connect is caught here instead
+            urlConnection.connect();
+            if (mCancelled) {
+                return null;
+            }
+
             int status = urlConnection.getResponseCode();
             Logging.out(LOG_TAG, "status code: " + status, LogLevel.DEBUG);
             handleStatusCode(status);
@@ -130,6 +158,7 @@ public class AdFetcher implements Runnable {
             mLoopMeError = new LoopMeError("Error during establish connection");
 
         } finally {
+            mConnection = null;
             if (urlConnection != null) {
                 urlConnection.disconnect();
             }
@@ -0,0 +1,396 @@
+package com.loopme.tasks;
+
+import com.loopme.Logging;
+import com.loopme.Logging.LogLevel;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Downloads a file over HTTP so that an interrupted transfer can be continued instead of
+ * restarted. Data is written into a preallocated "<target>.part" file through a FileChannel and
+ * progress is recorded in a "<target>.meta" sidecar. On the next attempt the download resumes with
+ * an HTTP Range request, and the response is checked against the stored ETag and length. The
+ * part file is renamed to the target once it is complete.
+ */
+public class ResumableDownloader {
+
+    private static final String LOG_TAG = ResumableDownloader.class.getSimpleName();
+
+    static final String PART_SUFFIX = ".part";
+    static final String META_SUFFIX = ".meta";
+
+    private static final String META_URL = "url";
+    private static final String META_ETAG = "etag";
+    private static final String META_LENGTH = "length";
+    private static final String META_DOWNLOADED = "downloaded";
+
+    /**
+     * Connect timeout (15 seconds)
+     */
+    private static final int CONNECT_TIMEOUT = 15 * 1000;
+
+    /**
+     * Read timeout (30 seconds). A stalled transfer is cheaper to resume than to wait for.
+     */
+    private static final int READ_TIMEOUT = 30 * 1000;
+
+    /**
+     * Number of connections made by one download() call before giving up
+     */
+    static final int MAX_ATTEMPTS = 3;
+
+    private static final int BUFFER_SIZE = 32 * 1024;
+
+    /**
+     * How often progress is flushed to disk and recorded in the sidecar
+     */
+    static final int PROGRESS_SYNC_BYTES = 256 * 1024;
+
+    /**
+     * Targets currently being downloaded, so two downloaders never write the same part file
+     */
+    private static final Set<String> sActiveTargets = new HashSet<String>();
+
+    private final File mTargetFile;
+    private final File mPartFile;
+    private final File mMetaFile;
+
+    private final Object mLock = new Object();
+    private long mDownloadedBytes;
+    private long mTotalBytes = -1;
+
+    private volatile boolean mCancelled;
+    private volatile HttpURLConnection mConnection;
+
+    public ResumableDownloader(File targetFile) {
+        mTargetFile = targetFile;
+        mPartFile = new File(targetFile.getPath() + PART_SUFFIX);
+        mMetaFile = new File(targetFile.getPath() + META_SUFFIX);
+    }
+
+    public File getTargetFile() {
+        return mTargetFile;
+    }
+
+    File getPartFile() {
+        return mPartFile;
+    }
+
+    File getMetaFile() {
+        return mMetaFile;
+    }
+
+    /**
+     * Returns the number of bytes at the start of the file that are already on disk.
+     */
+    public long getDownloadedBytes() {
+        synchronized (mLock) {
+            return mDownloadedBytes;
+        }
+    }
+
+    /**
+     * Returns the full length of the file, or -1 if the server did not report it.
+     */
+    public long getTotalBytes() {
+        synchronized (mLock) {
+            return mTotalBytes;
+        }
+    }
+
+    /**
+     * Downloads the file, resuming from a previous partial download of the same url if one is
+     * found. Blocks until the file is complete, the attempts are exhausted or cancel() is called.
+     *
+     * @return true if the target file is complete
+     */
+    public boolean download(String url) {
+        mCancelled = false;
+        if (mTargetFile.exists()) {
+            setProgress(mTargetFile.length(), mTargetFile.length());
+            return true;
+        }
+        synchronized (sActiveTargets) {
+            if (!sActiveTargets.add(mTargetFile.getPath())) {
+                Logging.out(LOG_TAG, "Already downloading " + mTargetFile, LogLevel.DEBUG);
+                return false;
+            }
+        }
+
+        try {
+            for (int attempt = 0; attempt < MAX_ATTEMPTS && !mCancelled; attempt++) {
+                try {
+                    if (downloadOnce(url)) {
+                        Logging.out(LOG_TAG, "Video file cached", LogLevel.DEBUG);
+                        return true;
+                    }
+                } catch (IOException e) {
+                    Logging.out(LOG_TAG, "Download interrupted at " + getDownloadedBytes()
+                            + " bytes: " + e.getMessage(), LogLevel.DEBUG);
+                }
+            }
+
+            return false;
+        } finally {
+            synchronized (sActiveTargets) {
+                sActiveTargets.remove(mTargetFile.getPath());
+            }
+        }
+    }
+
+    /**
+     * Stops a running download. The downloaded prefix is kept so a later download() can resume.
+     */
+    public void cancel() {
+        mCancelled = true;
+        HttpURLConnection connection = mConnection;
+        if (connection != null) {
+            connection.disconnect();
+        }
+    }
+
+    /**
+     * Deletes the target file together with any partial download.
+     */
+    public void delete() {
+        mTargetFile.delete();
+        mPartFile.delete();
+        mMetaFile.delete();
+    }
+
+    private boolean downloadOnce(String url) throws IOException {
+        Properties meta = readMeta(url);
+        long offset = Long.parseLong(meta.getProperty(META_DOWNLOADED, "0"));
+        long storedLength = Long.parseLong(meta.getProperty(META_LENGTH, "-1"));
+        String storedETag = meta.getProperty(META_ETAG);
+        if (offset > 0 && (storedLength <= 0 || !mPartFile.exists())) {
+            // Without a known length a prefix cannot be validated, so start again
+            offset = 0;
+        }
+        setProgress(offset, storedLength);
+
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        mConnection = connection;
+        try {
+            connection.setConnectTimeout(CONNECT_TIMEOUT);
+            connection.setReadTimeout(READ_TIMEOUT);
+            if (offset > 0) {
+                connection.setRequestProperty("Range", "bytes=" + offset + "-");
+                if (storedETag != null) {
+                    connection.setRequestProperty("If-Range", storedETag);
+                }
+            }
+            // cancel() cannot close a socket that is not open yet, so check again once it is
+            connection.connect();
+            if (mCancelled) {
+                return false;
+            }
+
+            int code = connection.getResponseCode();
+            String eTag = connection.getHeaderField("ETag");
+            long length;
+
+            if (offset > 0 && code == HttpURLConnection.HTTP_PARTIAL) {
+                long[] range = parseContentRange(connection.getHeaderField("Content-Range"));
+                boolean sameEntity = storedETag == null || eTag == null || storedETag.equals(eTag);
+                if (range == null || range[0] != offset || range[1] != storedLength
+                        || !sameEntity) {
+                    Logging.out(LOG_TAG, "Partial response does not match, restarting",
+                            LogLevel.DEBUG);
+                    discardPartial();
+                    return false;
+                }
+                length = storedLength;
+                Logging.out(LOG_TAG, "Resuming download at " + offset, LogLevel.DEBUG);
+
+            } else if (code == HttpURLConnection.HTTP_OK) {
+                // Either a fresh download or the server ignored the range / the entity changed
+                offset = 0;
+                length = connection.getContentLength();
+
+            } else if (code == 416 && offset == storedLength) {
+                // Requested range starts at the end: everything is already here
+                return finish();
+
+            } else {
+                Logging.out(LOG_TAG, "Unexpected response code " + code, LogLevel.ERROR);
+                if (code == 416) {
+                    discardPartial();
+                }
+                return false;
+            }
+
+            if (offset == 0) {
+                meta = new Properties();
+                meta.setProperty(META_URL, url);
+                if (eTag != null) {
+                    meta.setProperty(META_ETAG, eTag);
+                }
+                meta.setProperty(META_LENGTH, String.valueOf(length));
+                preallocate(length);
+            }
+            setProgress(offset, length);
+            writeMeta(meta, offset);
+
+            return transfer(connection.getInputStream(), meta, offset, length);
+        } finally {
+            mConnection = null;
+            connection.disconnect();
+        }
+    }
+
+    private boolean transfer(InputStream in, Properties meta, long offset, long length)
+            throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(mPartFile, "rw");
+        FileChannel channel = raf.getChannel();
+        long position = offset;
+        long lastSync = offset;
+        try {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while (!mCancelled && (read = in.read(buffer)) != -1) {
+                if (length > 0 && position + read > length) {
+                    throw new IOException("Server sent more than " + length + " bytes");
+                }
+                ByteBuffer byteBuffer = ByteBuffer.wrap(buffer, 0, read);
+                while (byteBuffer.hasRemaining()) {
+                    position += channel.write(byteBuffer, position);
+                }
+                setProgress(position, length);
+
+                if (position - lastSync >= PROGRESS_SYNC_BYTES) {
+                    channel.force(false);
+                    writeMeta(meta, position);
+                    lastSync = position;
+                }
+            }
+        } finally {
+            // Data must reach the disk before the sidecar claims it
+            try {
+                channel.force(false);
+                writeMeta(meta, position);
+            } finally {
+                raf.close();
+                in.close();
+            }
+        }
+
+        if (mCancelled) {
+            return false;
+        }
+        if (length > 0 && position < length) {
+            throw new IOException("Connection closed at " + position + " of " + length);
+        }
+        if (length <= 0) {
+            setProgress(position, position);
+        }
+        return finish();
+    }
+
+    private boolean finish() {
+        if (!mPartFile.renameTo(mTargetFile)) {
+            Logging.out(LOG_TAG, "Unable to rename " + mPartFile, LogLevel.ERROR);
+            return false;
+        }
+        mMetaFile.delete();
+        return true;
+    }
+
+    private void preallocate(long length) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(mPartFile, "rw");
+        try {
+            // Reserve the space up front; an unknown length just truncates any stale data
+            raf.setLength(length > 0 ? length : 0);
+        } finally {
+            raf.close();
+        }
+    }
+
+    private void discardPartial() {
+        mPartFile.delete();
+        mMetaFile.delete();
+        setProgress(0, -1);
+    }
+
+    private Properties readMeta(String url) {
+        Properties meta = new Properties();
+        if (!mMetaFile.exists()) {
+            return meta;
+        }
+
+        try {
+            FileInputStream in = new FileInputStream(mMetaFile);
+            try {
+                meta.load(in);
+            } finally {
+                in.close();
+            }
+            Long.parseLong(meta.getProperty(META_DOWNLOADED, "0"));
+            Long.parseLong(meta.getProperty(META_LENGTH, "-1"));
+        } catch (IOException e) {
+            meta.clear();
+        } catch (NumberFormatException e) {
+            meta.clear();
+        }
+
+        if (!url.equals(meta.getProperty(META_URL))) {
+            meta.clear();
+        }
+        return meta;
+    }
+
+    private void writeMeta(Properties meta, long downloaded) throws IOException {
+        meta.setProperty(META_DOWNLOADED, String.valueOf(downloaded));
+        File tmp = new File(mMetaFile.getPath() + ".tmp");
+        FileOutputStream out = new FileOutputStream(tmp);
+        try {
+            meta.store(out, null);
+            out.getFD().sync();
+        } finally {
+            out.close();
+        }
+        if (!tmp.renameTo(mMetaFile)) {
+            throw new IOException("Unable to write " + mMetaFile);
+        }
+    }
+
+    /**
+     * Parses "bytes start-end/total" into {start, total}, or returns null.
+     */
+    static long[] parseContentRange(String contentRange) {
+        if (contentRange == null || !contentRange.startsWith("bytes ")) {
+            return null;
+        }
+        int dash = contentRange.indexOf('-');
+        int slash = contentRange.indexOf('/');
+        if (dash < 0 || slash < dash) {
+            return null;
+        }
+        try {
+            long start = Long.parseLong(contentRange.substring(6, dash).trim());
+            long total = Long.parseLong(contentRange.substring(slash + 1).trim());
+            return new long[]{start, total};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private void setProgress(long downloaded, long total) {
+        synchronized (mLock) {
+            mDownloadedBytes = downloaded;
+            mTotalBytes = total;
+        }
+    }
+}
@@ -0,0 +1,429 @@
+package com.loopme.tasks;
+
+import android.content.Context;
+
+import com.loopme.Logging;
+import com.loopme.Logging.LogLevel;
+import com.loopme.StaticParams;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Size-bounded LRU cache of downloaded videos. Files are named after a hash of the full video url
+ * and tracked in an index file, so lookups never list the directory. The directory is scanned once
+ * when the cache is opened to recover from a missing or stale index.
+ */
+public class VideoCache {
+
+    private static final String LOG_TAG = VideoCache.class.getSimpleName();
+
+    private static final String VIDEO_FOLDER = "LoopMeAds";
+    private static final String MP4_FORMAT = ".mp4";
+
+    static final String INDEX_FILE = "video_cache.index";
+    private static final String INDEX_FILE_TMP = INDEX_FILE + ".tmp";
+
+    private static final int INDEX_MAGIC = 0x4c4d5643;
+    private static final int INDEX_VERSION = 1;
+
+    private static VideoCache sInstance;
+
+    private final File mDirectory;
+    private final File mIndexFile;
+    private final EvictionPolicy mPolicy;
+
+    /**
+     * Entries keyed by url hash, in least recently used first order
+     */
+    private final LinkedHashMap<String, Entry> mEntries =
+            new LinkedHashMap<String, Entry>(16, 0.75f, true);
+    private long mSize;
+    private boolean mIndexDirty;
+
+    /**
+     * Decides how large the cache may grow and when a video becomes stale. Videos over the size
+     * budget are evicted in least recently used order.
+     */
+    interface EvictionPolicy {
+
+        /**
+         * Total number of bytes the cache may hold
+         */
+        long getMaxSizeBytes();
+
+        /**
+         * Returns true if a video created at {@code createdAt} and last used at
+         * {@code lastAccess} should no longer be served at {@code now}.
+         */
+        boolean isExpired(long createdAt, long lastAccess, long now);
+    }
+
+    static class Entry {
+        final String mKey;
+        final long mSize;
+        final long mCreatedAt;
+        long mLastAccess;
+
+        Entry(String key, long size, long createdAt, long lastAccess) {
+            mKey = key;
+            mSize = size;
+            mCreatedAt = createdAt;
+            mLastAccess = lastAccess;
+        }
+    }
+
+    private static final EvictionPolicy DEFAULT_POLICY = new EvictionPolicy() {
+        @Override
+        public long getMaxSizeBytes() {
+            return StaticParams.CACHED_VIDEO_MAX_SIZE;
+        }
+
+        @Override
+        public boolean isExpired(long createdAt, long lastAccess, long now) {
+            return createdAt + StaticParams.CACHED_VIDEO_LIFE_TIME < now;
+        }
+    };
+
+    public static synchronized VideoCache getInstance(Context context) {
+        if (sInstance == null) {
+            File dir = context.getDir(VIDEO_FOLDER, Context.MODE_WORLD_READABLE);
+            sInstance = new VideoCache(dir, DEFAULT_POLICY);
+        }
+        return sInstance;
+    }
+
+    VideoCache(File directory, EvictionPolicy policy) {
+        mDirectory = directory;
+        mIndexFile = new File(directory, INDEX_FILE);
+        mPolicy = policy;
+
+        readIndex();
+        recover();
+        trim();
+        writeIndexIfDirty();
+    }
+
+    /**
+     * Returns the file the video for {@code url} is stored in, whether or not it is cached yet.
+     */
+    public File getFile(String url) {
+        return new File(mDirectory, keyFor(url) + MP4_FORMAT);
+    }
+
+    /**
+     * Returns the cached video for {@code url} and marks it as recently used, or null if it is not
+     * cached or has expired.
+     */
+    public synchronized File get(String url) {
+        String key = keyFor(url);
+        Entry entry = mEntries.get(key);
+        if (entry == null) {
+            return null;
+        }
+
+        File file = fileFor(key);
+        long now = System.currentTimeMillis();
+        if (mPolicy.isExpired(entry.mCreatedAt, entry.mLastAccess, now) || !file.exists()) {
+            remove(entry);
+            writeIndexIfDirty();
+            return null;
+        }
+
+        // Access order is only persisted with the next write; losing it on a crash is harmless
+        entry.mLastAccess = now;
+        mIndexDirty = true;
+        return file;
+    }
+
+    /**
+     * Adds the completed file for {@code url} to the cache and evicts least recently used videos
+     * until the cache fits its budget again.
+     *
+     * @return false if the file does not exist
+     */
+    public synchronized boolean put(String url) {
+        String key = keyFor(url);
+        File file = fileFor(key);
+        if (!file.exists()) {
+            return false;
+        }
+
+        Entry old = mEntries.remove(key);
+        if (old != null) {
+            mSize -= old.mSize;
+            mIndexDirty = true;
+        }
+        if (file.length() > mPolicy.getMaxSizeBytes()) {
+            // Caching it would flush every other video and still not fit
+            Logging.out(LOG_TAG, "Video is larger than the cache: " + key, LogLevel.DEBUG);
+            file.delete();
+            writeIndexIfDirty();
+            return false;
+        }
+        long now = System.currentTimeMillis();
+        Entry entry = new Entry(key, file.length(), now, now);
+        mEntries.put(key, entry);
+        mSize += entry.mSize;
+        mIndexDirty = true;
+
+        trim();
+        writeIndexIfDirty();
+        return mEntries.containsKey(key);
+    }
+
+    public synchronized void remove(String url) {
+        Entry entry = mEntries.get(keyFor(url));
+        if (entry != null) {
+            remove(entry);
+            writeIndexIfDirty();
+        }
+    }
+
+    public synchronized long getSize() {
+        return mSize;
+    }
+
+    /**
+     * Writes pending access order changes to the index.
+     */
+    public synchronized void flush() {
+        writeIndexIfDirty();
+    }
+
+    synchronized List<String> getKeysInLruOrder() {
+        return new ArrayList<String>(mEntries.keySet());
+    }
+
+    static String keyFor(String url) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("MD5");
+            byte[] hash = digest.digest(url.getBytes("UTF-8"));
+            return String.format("%032x", new BigInteger(1, hash));
+        } catch (NoSuchAlgorithmException e) {
+            return String.valueOf(url.hashCode());
+        } catch (IOException e) {
+            return String.valueOf(url.hashCode());
+        }
+    }
+
+    private File fileFor(String key) {
+        return new File(mDirectory, key + MP4_FORMAT);
+    }
+
+    private void remove(Entry entry) {
+        mEntries.remove(entry.mKey);
+        mSize -= entry.mSize;
+        mIndexDirty = true;
+        if (!fileFor(entry.mKey).delete()) {
+            Logging.out(LOG_TAG, "Unable to delete " + entry.mKey, LogLevel.DEBUG);
+        }
+    }
+
+    private void trim() {
+        long now = System.currentTimeMillis();
+        Iterator<Entry> iterator = mEntries.values().iterator();
+        List<Entry> evicted = new ArrayList<Entry>();
+        long size = mSize;
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (size > mPolicy.getMaxSizeBytes()
+                    || mPolicy.isExpired(entry.mCreatedAt, entry.mLastAccess, now)) {
+                evicted.add(entry);
+                size -= entry.mSize;
+            }
+        }
+        for (Entry entry : evicted) {
+            Logging.out(LOG_TAG, "Evict cached video " + entry.mKey, LogLevel.DEBUG);
+            remove(entry);
+        }
+    }
+
+    /**
+     * Reconciles the index with the directory: drops entries whose file is gone or changed,
+     * adopts completed videos written after the last index update and deletes stale partial
+     * downloads. Only files named after a cache key are touched, apart from expired videos left
+     * by the older temp file layout.
+     */
+    private void recover() {
+        File[] files = mDirectory.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        Map<String, File> videos = new LinkedHashMap<String, File>();
+        for (File file : files) {
+            String name = file.getName();
+            if (file.isDirectory() || name.startsWith(INDEX_FILE)) {
+                continue;
+            }
+            boolean expired = mPolicy.isExpired(file.lastModified(), file.lastModified(), now);
+            if (isPartialDownload(name)) {
+                if (expired) {
+                    file.delete();
+                }
+            } else if (name.endsWith(MP4_FORMAT)) {
+                String key = name.substring(0, name.length() - MP4_FORMAT.length());
+                if (isKey(key)) {
+                    videos.put(key, file);
+                } else if (expired) {
+                    // Left by the old temp file layout, which expired videos the same way
+                    Logging.out(LOG_TAG, "Delete expired legacy video " + name, LogLevel.DEBUG);
+                    file.delete();
+                }
+            }
+            // Anything else, such as a sidecar being rewritten right now, is not ours to delete
+        }
+
+        Iterator<Entry> iterator = mEntries.values().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            File file = videos.remove(entry.mKey);
+            if (file == null || file.length() != entry.mSize) {
+                if (file != null) {
+                    file.delete();
+                }
+                iterator.remove();
+                mSize -= entry.mSize;
+                mIndexDirty = true;
+            }
+        }
+
+        // Unindexed videos were completed after the last index write; the most recently
+        // modified ones are treated as the most recently used
+        List<File> adopted = new ArrayList<File>(videos.values());
+        Collections.sort(adopted, new Comparator<File>() {
+            @Override
+            public int compare(File lhs, File rhs) {
+                long l = lhs.lastModified();
+                long r = rhs.lastModified();
+                return l < r ? -1 : (l == r ? 0 : 1);
+            }
+        });
+        for (File file : adopted) {
+            String name = file.getName();
+            String key = name.substring(0, name.length() - MP4_FORMAT.length());
+            long modified = file.lastModified();
+            mEntries.put(key, new Entry(key, file.length(), modified, modified));
+            mSize += file.length();
+            mIndexDirty = true;
+        }
+    }
+
+    /**
+     * Returns true for the part file and sidecar of a download into this cache. Temporary
+     * sidecars are not included: a running download may be about to rename them.
+     */
+    private static boolean isPartialDownload(String name) {
+        String video;
+        if (name.endsWith(ResumableDownloader.PART_SUFFIX)) {
+            video = name.substring(0, name.length() - ResumableDownloader.PART_SUFFIX.length());
+        } else if (name.endsWith(ResumableDownloader.META_SUFFIX)) {
+            video = name.substring(0, name.length() - ResumableDownloader.META_SUFFIX.length());
+        } else {
+            return false;
+        }
+        return video.endsWith(MP4_FORMAT)
+                && isKey(video.substring(0, video.length() - MP4_FORMAT.length()));
+    }
+
+    private static boolean isKey(String name) {
+        if (name.length() != 32) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if ((c < '0' || c > '9') && (c < 'a' || c > 'f')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void readIndex() {
+        if (!mIndexFile.exists()) {
+            return;
+        }
+
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(mIndexFile)));
+            if (in.readInt() != INDEX_MAGIC || in.readInt() != INDEX_VERSION) {
+                throw new IOException("Unknown index format");
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String key = in.readUTF();
+                long size = in.readLong();
+                long createdAt = in.readLong();
+                long lastAccess = in.readLong();
+                mEntries.put(key, new Entry(key, size, createdAt, lastAccess));
+                mSize += size;
+            }
+        } catch (IOException e) {
+            // A torn index is rebuilt from the directory by recover()
+            Logging.out(LOG_TAG, "Unable to read index: " + e.getMessage(), LogLevel.DEBUG);
+            mEntries.clear();
+            mSize = 0;
+            mIndexDirty = true;
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException ignore) {
+                    // ignore
+                }
+            }
+        }
+    }
+
+    private void writeIndexIfDirty() {
+        if (!mIndexDirty) {
+            return;
+        }
+
+        File tmp = new File(mDirectory, INDEX_FILE_TMP);
+        try {
+            FileOutputStream fileOut = new FileOutputStream(tmp);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut));
+            try {
+                out.writeInt(INDEX_MAGIC);
+                out.writeInt(INDEX_VERSION);
+                out.writeInt(mEntries.size());
+                for (Entry entry : mEntries.values()) {
+                    out.writeUTF(entry.mKey);
+                    out.writeLong(entry.mSize);
+                    out.writeLong(entry.mCreatedAt);
+                    out.writeLong(entry.mLastAccess);
+                }
+                out.flush();
+                fileOut.getFD().sync();
+            } finally {
+                out.close();
+            }
+            if (!tmp.renameTo(mIndexFile)) {
+                throw new IOException("Unable to rename index");
+            }
+            mIndexDirty = false;
+        } catch (IOException e) {
+            Logging.out(LOG_TAG, "Unable to write index: " + e.getMessage(), LogLevel.ERROR);
+        }
+    }
+}
@@ -2,12 +2,6 @@ package com.loopme.tasks;
 
 import com.loopme.Logging;
 
-import java.io.BufferedInputStream;
-import java.io.File;
-import java.io.FileOutputStream;
-import java.io.IOException;
-import java.io.InputStream;
-import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
 
@@ -22,11 +16,6 @@ public class VideoHelper {
 
     private static final String MP4_FORMAT = ".mp4";
 
-    /**
-     * Timeout for downloading video (3 minutes)
-     */
-    private static final int TIMEOUT = 3 * 60 * 1000;
-
     String detectFileName(String videoUrl) {
         String fileName = null;
         try {
@@ -54,49 +43,4 @@ public class VideoHelper {
         }
         return fileName;
     }
-
-    InputStream getVideoInputStream(String videoUrl) {
-        Logging.out(LOG_TAG, "Download video", Logging.LogLevel.DEBUG);
-
-        InputStream inputStream = null;
-        try {
-            URL url = new URL(videoUrl);
-            HttpURLConnection urlConnection = (HttpURLConnection) url.openConnection();
-            urlConnection.setReadTimeout(TIMEOUT);
-            urlConnection.setConnectTimeout(TIMEOUT);
-
-            inputStream = new BufferedInputStream(urlConnection.getInputStream());
-
-        } catch (MalformedURLException e) {
-            Logging.out(LOG_TAG, "Error: " + e.getMessage(), Logging.LogLevel.ERROR);
-
-        } catch (IOException e) {
-            Logging.out(LOG_TAG, "Error: " + e.getMessage(), Logging.LogLevel.ERROR);
-        }
-        return inputStream;
-    }
-
-    String writeStreamToFile(InputStream stream, File file) {
-        Logging.out(LOG_TAG, "Write to file", Logging.LogLevel.DEBUG);
-
-        String filePath = null;
-        try {
-            FileOutputStream out = new FileOutputStream(file);
-            byte buffer[] = new byte[32 * 1024];
-            int length = 0;
-            while ((length = stream.read(buffer)) != -1) {
-                out.write(buffer, 0, length);
-            }
-            out.close();
-            filePath = file.getAbsolutePath();
-
-            Logging.out(LOG_TAG, "Video file cached", Logging.LogLevel.DEBUG);
-
-        } catch (IOException e) {
-            Logging.out(LOG_TAG, e.getMessage(), Logging.LogLevel.ERROR);
-            e.printStackTrace();
-            file.delete();
-        }
-        return filePath;
-    }
 }
@@ -10,20 +10,15 @@ import com.loopme.ExecutorHelper;
 import com.loopme.Logging;
 import com.loopme.Logging.LogLevel;
 import com.loopme.StaticParams;
+import com.loopme.TaskScheduler;
 
 import java.io.File;
-import java.io.IOException;
-import java.io.InputStream;
-import java.util.ArrayList;
 import java.util.concurrent.Future;
 
 public class VideoTask {
 
     private static final String LOG_TAG = VideoTask.class.getSimpleName();
 
-    private static final String MP4_FORMAT = ".mp4";
-    private static final String VIDEO_FOLDER = "LoopMeAds";
-
     private String mVideoUrl;
     private File mVideoFile;
     private String mVideoFileName;
@@ -32,8 +27,11 @@ public class VideoTask {
 
     private Listener mListener;
     private VideoHelper mHelper;
+    private VideoCache mCache;
+    private volatile ResumableDownloader mDownloader;
 
     private Future mFuture;
+    private Future mDownloadFuture;
     private Runnable mRunnable;
 
     public interface Listener {
@@ -57,14 +55,12 @@ public class VideoTask {
         mRunnable = new Runnable() {
             @Override
             public void run() {
-                deleteInvalidVideoFiles();
-
                 mVideoFileName = mHelper.detectFileName(mVideoUrl);
                 if (TextUtils.isEmpty(mVideoFileName)) {
                     complete(null, false);
                     return;
                 }
-                File f = checkFileNotExists(mVideoFileName);
+                File f = getCache().get(mVideoUrl);
                 if (f != null) {
                     Logging.out(LOG_TAG, "Video file already exists", LogLevel.DEBUG);
                     complete(f.getAbsolutePath(), true);
@@ -75,7 +71,7 @@ public class VideoTask {
                         downloadVideo(new DownloadFileListener() {
                             @Override
                             public void onDownloaded() {
-                                if (mVideoFile.exists()) {
+                                if (mVideoFile != null && mVideoFile.exists()) {
                                     complete(mVideoFile.getAbsolutePath(), true);
                                 } else {
                                     complete(null, false);
@@ -91,109 +87,90 @@ public class VideoTask {
     }
 
     public void start() {
-        mFuture = ExecutorHelper.getExecutor().submit(mRunnable);
+        // The cache lookup is on the ad load path; only the download itself is prefetch work
+        mFuture = ExecutorHelper.getScheduler().submit(TaskScheduler.Priority.AD_FETCH, mRunnable);
     }
 
     public void stop(boolean interruptFile) {
         if (mFuture != null) {
             boolean b = mFuture.cancel(true);
             if (b || interruptFile) {
-                deleteCorruptedVideoFile();
+                cancelDownload();
             }
             mFuture = null;
         }
     }
 
-    private void deleteCorruptedVideoFile() {
-        if (mVideoFileName != null && mVideoFile != null) {
-            Logging.out(LOG_TAG, "Delete corrupted video file", LogLevel.DEBUG);
-            mVideoFile.delete();
+    private void cancelDownload() {
+        if (mDownloadFuture != null) {
+            mDownloadFuture.cancel(true);
+            mDownloadFuture = null;
         }
+        cancelDownloader();
     }
 
-    private void deleteInvalidVideoFiles() {
-        File parentDir = getParentDir();
-
-        ArrayList<File> inFiles = new ArrayList<File>();
-        File[] files = parentDir.listFiles();
-        for (File file : files) {
-            if (!file.isDirectory()) {
-                if (file.getName().endsWith(MP4_FORMAT)) {
-                    inFiles.add(file);
-
-                    File f = new File(file.getAbsolutePath());
-                    long creationTime = f.lastModified();
-                    long currentTime = System.currentTimeMillis();
-
-                    if ((creationTime + StaticParams.CACHED_VIDEO_LIFE_TIME < currentTime) ||
-                            (f.length() == 0)) {
-                        f.delete();
-                        Logging.out(LOG_TAG, "Deleted cached file: " + file.getAbsolutePath(), LogLevel.DEBUG);
-                    }
-                }
-            }
+    private void cancelDownloader() {
+        ResumableDownloader downloader = mDownloader;
+        if (downloader != null) {
+            // The partial file is kept so the next request for this video can resume it
+            Logging.out(LOG_TAG, "Cancel video download", LogLevel.DEBUG);
+            downloader.cancel();
         }
     }
 
-    private File getParentDir() {
-        return mContext.getDir(VIDEO_FOLDER, Context.MODE_WORLD_READABLE);
+    public void downloadVideo(final DownloadFileListener listener) {
+        mDownloadFuture = ExecutorHelper.getScheduler().submit(TaskScheduler.Priority.MEDIA_PREFETCH,
+                new DownloadRunnable(listener));
     }
 
-    private File checkFileNotExists(String filename) {
-        File parentDir = getParentDir();
-        Logging.out(LOG_TAG, "Cache dir: " + parentDir.getAbsolutePath(), LogLevel.DEBUG);
+    private class DownloadRunnable implements Runnable, TaskScheduler.Cancellable {
 
-        File[] files = parentDir.listFiles();
-        for (File file : files) {
-            if (!file.isDirectory() && file.getName().startsWith(filename)) {
-                return file;
-            }
+        private final DownloadFileListener mDownloadListener;
+
+        DownloadRunnable(DownloadFileListener listener) {
+            mDownloadListener = listener;
         }
-        return null;
-    }
 
-    public void downloadVideo(final DownloadFileListener listener) {
-        ExecutorHelper.getExecutor().submit(new Runnable() {
-            @Override
-            public void run() {
-                int connectiontype = AdRequestParametersProvider.getInstance().getConnectionType(mContext);
-                if (connectiontype == ConnectionType.WIFI) {
+        @Override
+        public void run() {
+            int connectiontype = AdRequestParametersProvider.getInstance().getConnectionType(mContext);
+            if (connectiontype == ConnectionType.WIFI) {
+                downloadVideoToNewFile();
+            } else {
+                if (StaticParams.USE_MOBILE_NETWORK_FOR_CACHING) {
                     downloadVideoToNewFile();
                 } else {
-                    if (StaticParams.USE_MOBILE_NETWORK_FOR_CACHING) {
-                        downloadVideoToNewFile();
-                    } else {
-                        Logging.out(LOG_TAG, "Mobile network. Video will not be cached", LogLevel.DEBUG);
-                    }
-                }
-                if (listener != null) {
-                    listener.onDownloaded();
+                    Logging.out(LOG_TAG, "Mobile network. Video will not be cached", LogLevel.DEBUG);
                 }
             }
-        });
+            if (mDownloadListener != null) {
+                mDownloadListener.onDownloaded();
+            }
+        }
+
+        @Override
+        public void cancel() {
+            cancelDownloader();
+        }
     }
 
     private void downloadVideoToNewFile() {
-        createNewFile(mVideoFileName);
-
-        if (mVideoFile != null) {
-            InputStream stream = mHelper.getVideoInputStream(mVideoUrl);
-            if (stream != null && mVideoFile.exists()) {
-                mHelper.writeStreamToFile(stream, mVideoFile);//fixme can be timeout 3 minutes
-            } else {
-                mVideoFile.delete();
-            }
+        VideoCache cache = getCache();
+        mVideoFile = cache.getFile(mVideoUrl);
+        mDownloader = new ResumableDownloader(mVideoFile);
+        if (mDownloader.download(mVideoUrl)) {
+            cache.put(mVideoUrl);
+        } else {
+            Logging.out(LOG_TAG, "Video was not downloaded, kept " + mDownloader.getDownloadedBytes()
+                    + " bytes for resume", LogLevel.DEBUG);
         }
     }
 
-    private void createNewFile(String fileName) {
-        try {
-            File dir = getParentDir();
-            mVideoFile = File.createTempFile(fileName, MP4_FORMAT, dir);
-
-        } catch (IOException e) {
-            Logging.out(LOG_TAG, e.getMessage(), LogLevel.DEBUG);
+    private VideoCache getCache() {
+        if (mCache == null) {
+            mCache = VideoCache.getInstance(mContext);
         }
+        return mCache;
     }
 
     private void complete(String filePath, boolean isCached) {
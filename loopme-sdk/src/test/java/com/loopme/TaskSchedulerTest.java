@@ -0,0 +1,193 @@
+package com.loopme;
+
+import com.loopme.TaskScheduler.Priority;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+@RunWith(PowerMockRunner.class)
+@PrepareForTest({Logging.class})
+public class TaskSchedulerTest {
+
+    private TaskScheduler mScheduler;
+    private List<String> mOrder;
+
+    @Before
+    public void setUp() {
+        PowerMockito.mockStatic(Logging.class);
+        mOrder = Collections.synchronizedList(new ArrayList<String>());
+    }
+
+    @After
+    public void tearDown() {
+        if (mScheduler != null) {
+            mScheduler.shutdown();
+        }
+    }
+
+    @Test(timeout = 5000)
+    public void submit_shouldRunHigherPriorityClassFirst() throws Exception {
+        mScheduler = new TaskScheduler(2);
+        CountDownLatch first = new CountDownLatch(1);
+        CountDownLatch second = new CountDownLatch(1);
+        mScheduler.submit(Priority.AD_FETCH, blocker(first));
+        Future<?> blocked = mScheduler.submit(Priority.AD_FETCH, blocker(second));
+        mScheduler.submit(Priority.MEDIA_PREFETCH, recorder("media"));
+        mScheduler.submit(Priority.TRACKING, recorder("tracking"));
+        Future<?> last = mScheduler.submit(Priority.AD_FETCH, recorder("fetch"));
+
+        first.countDown();
+        last.get();
+        second.countDown();
+        blocked.get();
+        waitForIdle();
+
+        assertEquals(Arrays.asList("fetch", "tracking", "media"), mOrder);
+    }
+
+    @Test(timeout = 5000)
+    public void submit_shouldRespectPerClassConcurrencyLimit() throws Exception {
+        mScheduler = new TaskScheduler(4);
+        CountDownLatch latch = new CountDownLatch(1);
+        for (int i = 0; i < 3; i++) {
+            mScheduler.submit(Priority.MEDIA_PREFETCH, blocker(latch));
+        }
+
+        TaskScheduler.Stats stats = mScheduler.getStats(Priority.MEDIA_PREFETCH);
+        assertEquals(2, stats.getRunning());
+        assertEquals(1, stats.getQueueDepth());
+
+        latch.countDown();
+        waitForIdle();
+        assertEquals(3, mScheduler.getStats(Priority.MEDIA_PREFETCH).getStarted());
+    }
+
+    @Test(timeout = 5000)
+    public void submit_shouldKeepLastThreadForAdFetch() throws Exception {
+        mScheduler = new TaskScheduler(4);
+        CountDownLatch latch = new CountDownLatch(1);
+        mScheduler.submit(Priority.TRACKING, blocker(latch));
+        mScheduler.submit(Priority.TRACKING, blocker(latch));
+        mScheduler.submit(Priority.MEDIA_PREFETCH, blocker(latch));
+        mScheduler.submit(Priority.MEDIA_PREFETCH, blocker(latch));
+
+        assertEquals(1, mScheduler.getStats(Priority.MEDIA_PREFETCH).getQueueDepth());
+
+        mScheduler.submit(Priority.AD_FETCH, recorder("fetch")).get();
+        assertEquals(Collections.singletonList("fetch"), mOrder);
+        latch.countDown();
+    }
+
+    @Test(timeout = 5000)
+    public void cancel_whileQueued_shouldRemoveFromQueueAndNotRun() throws Exception {
+        mScheduler = new TaskScheduler(1);
+        CountDownLatch latch = new CountDownLatch(1);
+        mScheduler.submit(Priority.AD_FETCH, blocker(latch));
+        Future<?> queued = mScheduler.submit(Priority.TRACKING, recorder("tracking"));
+        assertEquals(1, mScheduler.getStats(Priority.TRACKING).getQueueDepth());
+
+        assertTrue(queued.cancel(true));
+
+        assertEquals(0, mScheduler.getStats(Priority.TRACKING).getQueueDepth());
+        latch.countDown();
+        waitForIdle();
+        assertTrue(mOrder.isEmpty());
+    }
+
+    @Test(timeout = 5000)
+    public void cancel_whileRunning_shouldPropagateToCancellableTask() throws Exception {
+        mScheduler = new TaskScheduler(2);
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch released = new CountDownLatch(1);
+        final AtomicBoolean cancelled = new AtomicBoolean();
+        class CancellableTask implements Runnable, TaskScheduler.Cancellable {
+            @Override
+            public void run() {
+                started.countDown();
+                try {
+                    // stands in for a blocking socket read that ignores interrupts
+                    while (!released.await(10, TimeUnit.MILLISECONDS)) {
+                        Thread.interrupted();
+                    }
+                } catch (InterruptedException ignore) {
+                }
+            }
+
+            @Override
+            public void cancel() {
+                cancelled.set(true);
+                released.countDown();
+            }
+        }
+        Future<?> future = mScheduler.submit(Priority.AD_FETCH, new CancellableTask());
+        started.await();
+
+        future.cancel(true);
+
+        assertTrue(cancelled.get());
+        waitForIdle();
+    }
+
+    @Test(timeout = 5000)
+    public void getStats_shouldReportWaitTime() throws Exception {
+        mScheduler = new TaskScheduler(1);
+        CountDownLatch latch = new CountDownLatch(1);
+        mScheduler.submit(Priority.AD_FETCH, blocker(latch));
+        Future<?> waiting = mScheduler.submit(Priority.AD_FETCH, recorder("fetch"));
+
+        Thread.sleep(50);
+        latch.countDown();
+        waiting.get();
+
+        TaskScheduler.Stats stats = mScheduler.getStats(Priority.AD_FETCH);
+        assertEquals(2, stats.getStarted());
+        assertTrue(stats.getMaxWaitMillis() >= 50);
+        assertTrue(stats.getAverageWaitMillis() >= 25);
+    }
+
+    private Runnable blocker(final CountDownLatch latch) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    latch.await();
+                } catch (InterruptedException ignore) {
+                }
+            }
+        };
+    }
+
+    private Runnable recorder(final String name) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                mOrder.add(name);
+            }
+        };
+    }
+
+    private void waitForIdle() throws InterruptedException {
+        for (Priority priority : Priority.values()) {
+            while (mScheduler.getStats(priority).getRunning() > 0
+                    || mScheduler.getStats(priority).getQueueDepth() > 0) {
+                Thread.sleep(5);
+            }
+        }
+    }
+}
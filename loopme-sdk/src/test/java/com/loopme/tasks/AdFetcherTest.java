@@ -5,6 +5,7 @@ import com.loopme.AdParams;
 import com.loopme.Logging;
 import com.loopme.LoopMeError;
 import com.loopme.StaticParams;
+import com.loopme.TaskScheduler;
 
 import junit.framework.Assert;
 
@@ -15,6 +16,10 @@ import org.powermock.api.mockito.PowerMockito;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.Future;
+
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
 
@@ -170,4 +175,31 @@ public class AdFetcherTest {
         AdFetcher fetcher = new AdFetcher(null, listener, adFormat);
         fetcher.run();
     }
-}
\ No newline at end of file
+
+    @Test(timeout = 10000)
+    public void cancel_whileWaitingForResponse_shouldCloseConnectionAndSkipListener() throws Exception {
+        PowerMockito.mockStatic(Logging.class);
+
+        // accepts the connection but never answers
+        final ServerSocket server = new ServerSocket(0);
+        String requestUrl = "http://127.0.0.1:" + server.getLocalPort() + "/api/loopme/ads/v3";
+        AdFetcher.Listener listener = mock(AdFetcher.Listener.class);
+        AdFetcher fetcher = new AdFetcher(requestUrl, listener, AdFormat.BANNER);
+        TaskScheduler scheduler = new TaskScheduler();
+        try {
+            Future<?> future = scheduler.submit(TaskScheduler.Priority.AD_FETCH, fetcher);
+            Socket socket = server.accept();
+
+            future.cancel(true);
+            while (scheduler.getStats(TaskScheduler.Priority.AD_FETCH).getRunning() > 0) {
+                Thread.sleep(5);
+            }
+
+            verify(listener, never()).onComplete(any(AdParams.class), any(LoopMeError.class));
+            socket.close();
+        } finally {
+            scheduler.shutdown();
+            server.close();
+        }
+    }
+}
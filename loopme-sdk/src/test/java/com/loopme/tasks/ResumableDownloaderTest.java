@@ -0,0 +1,367 @@
+package com.loopme.tasks;
+
+import com.loopme.Logging;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.*;
+
+@RunWith(PowerMockRunner.class)
+@PrepareForTest({Logging.class})
+public class ResumableDownloaderTest {
+
+    private static final int LENGTH = 1024 * 1024;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private FlakyServer mServer;
+    private byte[] mBody;
+    private File mTarget;
+
+    @Before
+    public void setUp() throws Exception {
+        PowerMockito.mockStatic(Logging.class);
+
+        mBody = randomBytes(LENGTH, 1);
+        mServer = new FlakyServer(mBody, "\"v1\"");
+        mServer.start();
+        mTarget = new File(mFolder.getRoot(), "video.mp4");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mServer.stop();
+    }
+
+    @Test
+    public void download_withoutInterruptions_shouldWriteFileAndRemovePartials() throws Exception {
+        ResumableDownloader downloader = new ResumableDownloader(mTarget);
+
+        assertTrue(downloader.download(mServer.getUrl()));
+
+        assertArrayEquals(mBody, readFile(mTarget));
+        assertFalse(downloader.getPartFile().exists());
+        assertFalse(downloader.getMetaFile().exists());
+        assertEquals(LENGTH, downloader.getDownloadedBytes());
+        assertEquals(Collections.singletonList((String) null), mServer.getRanges());
+    }
+
+    @Test
+    public void download_withDroppedConnections_shouldResumeWithRangeRequests() throws Exception {
+        mServer.dropAfter(300 * 1024, 300 * 1024);
+        ResumableDownloader downloader = new ResumableDownloader(mTarget);
+
+        assertTrue(downloader.download(mServer.getUrl()));
+
+        assertArrayEquals(mBody, readFile(mTarget));
+        List<String> ranges = mServer.getRanges();
+        assertEquals(3, ranges.size());
+        assertNull(ranges.get(0));
+        assertEquals("bytes=307200-", ranges.get(1));
+        assertEquals("bytes=614400-", ranges.get(2));
+        assertEquals(Collections.<String>nCopies(2, "\"v1\""),
+                mServer.getIfRanges().subList(1, 3));
+    }
+
+    @Test
+    public void download_withDroppedConnection_shouldKeepPreallocatedPartAndSidecar() throws Exception {
+        mServer.dropAfter(100 * 1024, 0, 0);
+        ResumableDownloader downloader = new ResumableDownloader(mTarget);
+
+        assertFalse(downloader.download(mServer.getUrl()));
+
+        assertFalse(mTarget.exists());
+        assertEquals(LENGTH, downloader.getPartFile().length());
+        Properties meta = readMeta(downloader.getMetaFile());
+        assertEquals(String.valueOf(100 * 1024), meta.getProperty("downloaded"));
+        assertEquals(String.valueOf(LENGTH), meta.getProperty("length"));
+        assertEquals("\"v1\"", meta.getProperty("etag"));
+    }
+
+    @Test
+    public void download_afterFailedRun_shouldResumeInNewDownloader() throws Exception {
+        mServer.dropAfter(100 * 1024, 0, 0);
+        assertFalse(new ResumableDownloader(mTarget).download(mServer.getUrl()));
+        mServer.clearRequests();
+
+        assertTrue(new ResumableDownloader(mTarget).download(mServer.getUrl()));
+
+        assertArrayEquals(mBody, readFile(mTarget));
+        assertEquals(Collections.singletonList("bytes=102400-"), mServer.getRanges());
+    }
+
+    @Test
+    public void download_whenETagChanged_shouldRestartFromZero() throws Exception {
+        mServer.dropAfter(100 * 1024, 0, 0);
+        assertFalse(new ResumableDownloader(mTarget).download(mServer.getUrl()));
+
+        byte[] newBody = randomBytes(LENGTH / 2, 2);
+        mServer.setBody(newBody, "\"v2\"");
+
+        assertTrue(new ResumableDownloader(mTarget).download(mServer.getUrl()));
+        assertArrayEquals(newBody, readFile(mTarget));
+    }
+
+    @Test
+    public void download_whenServerIgnoresRange_shouldRestartFromZero() throws Exception {
+        mServer.dropAfter(100 * 1024, 0, 0);
+        assertFalse(new ResumableDownloader(mTarget).download(mServer.getUrl()));
+        mServer.setIgnoreRange(true);
+
+        assertTrue(new ResumableDownloader(mTarget).download(mServer.getUrl()));
+        assertArrayEquals(mBody, readFile(mTarget));
+    }
+
+    @Test
+    public void download_withSidecarForOtherUrl_shouldNotResume() throws Exception {
+        mServer.dropAfter(100 * 1024, 0, 0);
+        assertFalse(new ResumableDownloader(mTarget).download(mServer.getUrl()));
+        mServer.clearRequests();
+
+        assertTrue(new ResumableDownloader(mTarget).download(mServer.getUrl() + "?other"));
+
+        assertEquals(Collections.singletonList((String) null), mServer.getRanges());
+        assertArrayEquals(mBody, readFile(mTarget));
+    }
+
+    @Test
+    public void download_whenTargetExists_shouldNotConnect() throws Exception {
+        ResumableDownloader downloader = new ResumableDownloader(mTarget);
+        assertTrue(downloader.download(mServer.getUrl()));
+        mServer.clearRequests();
+
+        assertTrue(new ResumableDownloader(mTarget).download(mServer.getUrl()));
+
+        assertTrue(mServer.getRanges().isEmpty());
+    }
+
+    @Test
+    public void parseContentRange_shouldReturnStartAndTotal() {
+        assertArrayEquals(new long[]{100, 1000},
+                ResumableDownloader.parseContentRange("bytes 100-999/1000"));
+        assertNull(ResumableDownloader.parseContentRange("bytes 100-999/*"));
+        assertNull(ResumableDownloader.parseContentRange("items 1-2/3"));
+        assertNull(ResumableDownloader.parseContentRange(null));
+    }
+
+    private static byte[] randomBytes(int length, long seed) {
+        byte[] bytes = new byte[length];
+        new Random(seed).nextBytes(bytes);
+        return bytes;
+    }
+
+    private static byte[] readFile(File file) throws IOException {
+        byte[] bytes = new byte[(int) file.length()];
+        FileInputStream in = new FileInputStream(file);
+        try {
+            readFully(in, bytes);
+        } finally {
+            in.close();
+        }
+        return bytes;
+    }
+
+    private static void readFully(InputStream in, byte[] bytes) throws IOException {
+        int offset = 0;
+        while (offset < bytes.length) {
+            int read = in.read(bytes, offset, bytes.length - offset);
+            if (read == -1) {
+                throw new IOException("Unexpected end of stream");
+            }
+            offset += read;
+        }
+    }
+
+    private static Properties readMeta(File file) throws IOException {
+        Properties properties = new Properties();
+        FileInputStream in = new FileInputStream(file);
+        try {
+            properties.load(in);
+        } finally {
+            in.close();
+        }
+        return properties;
+    }
+
+    /**
+     * Minimal HTTP server that supports Range / If-Range and can drop each connection after a
+     * given number of body bytes.
+     */
+    private static class FlakyServer implements Runnable {
+
+        private final ServerSocket mServerSocket;
+        private final LinkedList<Integer> mDropAfter = new LinkedList<Integer>();
+        private final List<String> mRanges = new ArrayList<String>();
+        private final List<String> mIfRanges = new ArrayList<String>();
+        private volatile byte[] mBody;
+        private volatile String mETag;
+        private volatile boolean mIgnoreRange;
+        private volatile int mPauseAfter = -1;
+        private volatile CountDownLatch mGate;
+        private Thread mThread;
+
+        FlakyServer(byte[] body, String eTag) throws IOException {
+            mServerSocket = new ServerSocket(0);
+            setBody(body, eTag);
+        }
+
+        String getUrl() {
+            return "http://127.0.0.1:" + mServerSocket.getLocalPort() + "/video.mp4";
+        }
+
+        void start() {
+            mThread = new Thread(this);
+            mThread.start();
+        }
+
+        void stop() throws Exception {
+            mServerSocket.close();
+            mThread.join();
+        }
+
+        synchronized void setBody(byte[] body, String eTag) {
+            mBody = body;
+            mETag = eTag;
+        }
+
+        void setIgnoreRange(boolean ignoreRange) {
+            mIgnoreRange = ignoreRange;
+        }
+
+        synchronized void dropAfter(Integer... bytes) {
+            Collections.addAll(mDropAfter, bytes);
+        }
+
+        CountDownLatch pauseAfter(int bytes) {
+            mGate = new CountDownLatch(1);
+            mPauseAfter = bytes;
+            return mGate;
+        }
+
+        synchronized List<String> getRanges() {
+            return new ArrayList<String>(mRanges);
+        }
+
+        synchronized List<String> getIfRanges() {
+            return new ArrayList<String>(mIfRanges);
+        }
+
+        synchronized void clearRequests() {
+            mRanges.clear();
+            mIfRanges.clear();
+        }
+
+        @Override
+        public void run() {
+            while (!mServerSocket.isClosed()) {
+                try {
+                    Socket socket = mServerSocket.accept();
+                    try {
+                        handle(socket);
+                    } catch (IOException ignore) {
+                        // client went away
+                    } finally {
+                        socket.close();
+                    }
+                } catch (IOException e) {
+                    return;
+                }
+            }
+        }
+
+        private void handle(Socket socket) throws IOException {
+            BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(socket.getInputStream(), "US-ASCII"));
+            String range = null;
+            String ifRange = null;
+            String line = reader.readLine();
+            while (line != null && !line.isEmpty()) {
+                String lower = line.toLowerCase();
+                if (lower.startsWith("range:")) {
+                    range = line.substring(6).trim();
+                } else if (lower.startsWith("if-range:")) {
+                    ifRange = line.substring(9).trim();
+                }
+                line = reader.readLine();
+            }
+
+            byte[] body;
+            String eTag;
+            Integer dropAfter;
+            synchronized (this) {
+                mRanges.add(range);
+                mIfRanges.add(ifRange);
+                body = mBody;
+                eTag = mETag;
+                dropAfter = mDropAfter.poll();
+            }
+
+            int start = 0;
+            boolean partial = range != null && !mIgnoreRange
+                    && (ifRange == null || ifRange.equals(eTag));
+            if (partial) {
+                start = Integer.parseInt(range.substring(6, range.indexOf('-')));
+            }
+
+            StringBuilder headers = new StringBuilder();
+            if (partial) {
+                headers.append("HTTP/1.1 206 Partial Content\r\n");
+                headers.append("Content-Range: bytes ").append(start).append('-')
+                        .append(body.length - 1).append('/').append(body.length).append("\r\n");
+            } else {
+                headers.append("HTTP/1.1 200 OK\r\n");
+            }
+            headers.append("ETag: ").append(eTag).append("\r\n");
+            headers.append("Content-Length: ").append(body.length - start).append("\r\n");
+            headers.append("Connection: close\r\n\r\n");
+
+            OutputStream out = socket.getOutputStream();
+            out.write(headers.toString().getBytes("US-ASCII"));
+
+            int end = body.length;
+            if (dropAfter != null) {
+                end = Math.min(end, start + dropAfter);
+            }
+            int position = start;
+            int pauseAfter = mPauseAfter;
+            if (pauseAfter > position && pauseAfter < end) {
+                out.write(body, position, pauseAfter - position);
+                out.flush();
+                position = pauseAfter;
+                try {
+                    mGate.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+            out.write(body, position, end - position);
+            out.flush();
+        }
+    }
+}
@@ -0,0 +1,277 @@
+package com.loopme.tasks;
+
+import com.loopme.Logging;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+@RunWith(PowerMockRunner.class)
+@PrepareForTest({Logging.class})
+public class VideoCacheTest {
+
+    private static final String URL_A = "http://i.loopme.me/a/video.mp4";
+    private static final String URL_B = "http://i.loopme.me/b/video.mp4";
+    private static final String URL_C = "http://i.loopme.me/c/video.mp4";
+    private static final String URL_D = "http://i.loopme.me/d/video.mp4";
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private File mDir;
+    private TestPolicy mPolicy;
+
+    @Before
+    public void setUp() throws Exception {
+        PowerMockito.mockStatic(Logging.class);
+        mDir = mFolder.newFolder("LoopMeAds");
+        mPolicy = new TestPolicy(300);
+    }
+
+    @Test
+    public void getFile_withSameFileNameFromDifferentCampaigns_shouldNotCollide() {
+        VideoCache cache = new VideoCache(mDir, mPolicy);
+
+        assertNotEquals(cache.getFile(URL_A), cache.getFile(URL_B));
+        assertEquals(cache.getFile(URL_A), cache.getFile(URL_A));
+    }
+
+    @Test
+    public void put_overBudget_shouldEvictLeastRecentlyUsed() throws Exception {
+        VideoCache cache = new VideoCache(mDir, mPolicy);
+        putVideo(cache, URL_A, 100);
+        putVideo(cache, URL_B, 100);
+        putVideo(cache, URL_C, 100);
+        assertNotNull(cache.get(URL_A));
+
+        putVideo(cache, URL_D, 100);
+
+        assertNull(cache.get(URL_B));
+        assertFalse(cache.getFile(URL_B).exists());
+        assertEquals(300, cache.getSize());
+        assertEquals(keys(URL_C, URL_A, URL_D), cache.getKeysInLruOrder());
+    }
+
+    @Test
+    public void put_withFileLargerThanBudget_shouldNotCache() throws Exception {
+        VideoCache cache = new VideoCache(mDir, mPolicy);
+        putVideo(cache, URL_A, 100);
+
+        writeFile(cache.getFile(URL_B), 400);
+
+        assertFalse(cache.put(URL_B));
+        assertFalse(cache.getFile(URL_B).exists());
+        assertNotNull(cache.get(URL_A));
+    }
+
+    @Test
+    public void put_withMissingFile_shouldReturnFalse() {
+        VideoCache cache = new VideoCache(mDir, mPolicy);
+
+        assertFalse(cache.put(URL_A));
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void get_whenExpired_shouldReturnNullAndDeleteFile() throws Exception {
+        VideoCache cache = new VideoCache(mDir, mPolicy);
+        putVideo(cache, URL_A, 100);
+
+        mPolicy.mExpired = true;
+
+        assertNull(cache.get(URL_A));
+        assertFalse(cache.getFile(URL_A).exists());
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void get_whenFileDeletedExternally_shouldReturnNull() throws Exception {
+        VideoCache cache = new VideoCache(mDir, mPolicy);
+        putVideo(cache, URL_A, 100);
+
+        assertTrue(cache.getFile(URL_A).delete());
+
+        assertNull(cache.get(URL_A));
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void reopen_shouldRestoreEntriesAndLruOrderFromIndex() throws Exception {
+        VideoCache cache = new VideoCache(mDir, mPolicy);
+        putVideo(cache, URL_A, 100);
+        putVideo(cache, URL_B, 50);
+        putVideo(cache, URL_C, 100);
+        cache.get(URL_A);
+        cache.flush();
+
+        VideoCache reopened = new VideoCache(mDir, mPolicy);
+
+        assertEquals(keys(URL_B, URL_C, URL_A), reopened.getKeysInLruOrder());
+        assertEquals(250, reopened.getSize());
+    }
+
+    @Test
+    public void reopen_withCorruptIndex_shouldRebuildFromDirectoryByModifiedTime() throws Exception {
+        VideoCache cache = new VideoCache(mDir, mPolicy);
+        putVideo(cache, URL_A, 100);
+        putVideo(cache, URL_B, 100);
+        cache.getFile(URL_A).setLastModified(20000);
+        cache.getFile(URL_B).setLastModified(10000);
+        FileOutputStream out = new FileOutputStream(new File(mDir, VideoCache.INDEX_FILE));
+        out.write(new byte[]{0x4c, 0x4d, 0x56, 0x43, 0, 0, 0, 1, 0, 0});
+        out.close();
+
+        VideoCache reopened = new VideoCache(mDir, mPolicy);
+
+        assertEquals(keys(URL_B, URL_A), reopened.getKeysInLruOrder());
+        assertEquals(200, reopened.getSize());
+    }
+
+    @Test
+    public void reopen_afterCrashBeforeIndexWrite_shouldAdoptCompletedVideo() throws Exception {
+        VideoCache cache = new VideoCache(mDir, mPolicy);
+        putVideo(cache, URL_A, 100);
+        // download finished but the process died before put()
+        writeFile(cache.getFile(URL_B), 100);
+
+        VideoCache reopened = new VideoCache(mDir, mPolicy);
+
+        assertNotNull(reopened.get(URL_B));
+        assertEquals(200, reopened.getSize());
+    }
+
+    @Test
+    public void reopen_withIndexedFileMissingOrResized_shouldDropEntry() throws Exception {
+        VideoCache cache = new VideoCache(mDir, mPolicy);
+        putVideo(cache, URL_A, 100);
+        putVideo(cache, URL_B, 100);
+        assertTrue(cache.getFile(URL_A).delete());
+        writeFile(cache.getFile(URL_B), 10);
+
+        VideoCache reopened = new VideoCache(mDir, mPolicy);
+
+        assertNull(reopened.get(URL_A));
+        assertNull(reopened.get(URL_B));
+        assertEquals(0, reopened.getSize());
+        assertFalse(cache.getFile(URL_B).exists());
+    }
+
+    @Test
+    public void reopen_overBudget_shouldEvict() throws Exception {
+        VideoCache cache = new VideoCache(mDir, mPolicy);
+        putVideo(cache, URL_A, 100);
+        putVideo(cache, URL_B, 100);
+        mPolicy.mMaxSize = 150;
+
+        VideoCache reopened = new VideoCache(mDir, mPolicy);
+
+        assertEquals(keys(URL_B), reopened.getKeysInLruOrder());
+        assertFalse(cache.getFile(URL_A).exists());
+    }
+
+    @Test
+    public void reopen_shouldDeleteStalePartials() throws Exception {
+        VideoCache cache = new VideoCache(mDir, mPolicy);
+        File part = new File(cache.getFile(URL_A).getPath() + ResumableDownloader.PART_SUFFIX);
+        File stalePart = new File(cache.getFile(URL_B).getPath() + ResumableDownloader.PART_SUFFIX);
+        File staleMeta = new File(cache.getFile(URL_B).getPath() + ResumableDownloader.META_SUFFIX);
+        writeFile(part, 10);
+        writeFile(stalePart, 10);
+        writeFile(staleMeta, 10);
+        stalePart.setLastModified(1000);
+        staleMeta.setLastModified(1000);
+        mPolicy.mExpiredBefore = 5000;
+
+        new VideoCache(mDir, mPolicy);
+
+        assertTrue(part.exists());
+        assertFalse(stalePart.exists());
+        assertFalse(staleMeta.exists());
+    }
+
+    @Test
+    public void reopen_shouldOnlyDeleteExpiredLegacyVideos() throws Exception {
+        File legacy = new File(mDir, "video2fff7714fe30079d123.mp4");
+        File staleLegacy = new File(mDir, "video5e0c44b9585042bc.mp4");
+        writeFile(legacy, 10);
+        writeFile(staleLegacy, 10);
+        staleLegacy.setLastModified(1000);
+        mPolicy.mExpiredBefore = 5000;
+
+        VideoCache cache = new VideoCache(mDir, mPolicy);
+
+        assertTrue(legacy.exists());
+        assertFalse(staleLegacy.exists());
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void reopen_shouldNotDeleteFilesItDidNotCreate() throws Exception {
+        VideoCache cache = new VideoCache(mDir, mPolicy);
+        File metaTmp = new File(cache.getFile(URL_A).getPath()
+                + ResumableDownloader.META_SUFFIX + ".tmp");
+        File unknown = new File(mDir, "readme.txt");
+        writeFile(metaTmp, 10);
+        writeFile(unknown, 10);
+        metaTmp.setLastModified(1000);
+        unknown.setLastModified(1000);
+        mPolicy.mExpiredBefore = 5000;
+
+        new VideoCache(mDir, mPolicy);
+
+        assertTrue(metaTmp.exists());
+        assertTrue(unknown.exists());
+    }
+
+    private static void putVideo(VideoCache cache, String url, int size) throws IOException {
+        writeFile(cache.getFile(url), size);
+        assertTrue(cache.put(url));
+    }
+
+    private static void writeFile(File file, int size) throws IOException {
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(new byte[size]);
+        out.close();
+    }
+
+    private static List<String> keys(String... urls) {
+        String[] keys = new String[urls.length];
+        for (int i = 0; i < urls.length; i++) {
+            keys[i] = VideoCache.keyFor(urls[i]);
+        }
+        return Arrays.asList(keys);
+    }
+
+    private static class TestPolicy implements VideoCache.EvictionPolicy {
+        long mMaxSize;
+        boolean mExpired;
+        long mExpiredBefore;
+
+        TestPolicy(long maxSize) {
+            mMaxSize = maxSize;
+        }
+
+        @Override
+        public long getMaxSizeBytes() {
+            return mMaxSize;
+        }
+
+        @Override
+        public boolean isExpired(long createdAt, long lastAccess, long now) {
+            return mExpired || createdAt < mExpiredBefore;
+        }
+    }
+}
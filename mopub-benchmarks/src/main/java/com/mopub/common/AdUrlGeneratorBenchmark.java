@@ -0,0 +1,152 @@
+package com.mopub.common;
+
+import android.graphics.Point;
+
+import com.mopub.mobileads.WebViewAdUrlGenerator;
+
+import org.objenesis.ObjenesisStd;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures building a banner ad request url through {@link WebViewAdUrlGenerator}. The
+ * {@link ClientMetadata} singleton is replaced by one that returns fixed, typical values, and
+ * location awareness is disabled since the location service needs a real context. One benchmark
+ * reuses the cached encoded parameters, the other rotates the device before every request so that
+ * they are rebuilt each time.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AdUrlGeneratorBenchmark {
+
+    /**
+     * Created without running the ClientMetadata constructor, which reads from a context, so
+     * its fields are assigned in {@link #setUp()} instead of initialized.
+     */
+    static class FixedClientMetadata extends ClientMetadata {
+        String mOrientation;
+        Point mDeviceDimensions;
+
+        FixedClientMetadata() {
+            super(null);
+        }
+
+        @Override
+        public String getOrientationString() {
+            return mOrientation;
+        }
+
+        @Override
+        public float getDensity() {
+            return 3.0f;
+        }
+
+        @Override
+        public Point getDeviceDimensions() {
+            return mDeviceDimensions;
+        }
+
+        @Override
+        public String getSdkVersion() {
+            return MoPub.SDK_VERSION;
+        }
+
+        @Override
+        public String getDeviceManufacturer() {
+            return "LGE";
+        }
+
+        @Override
+        public String getDeviceModel() {
+            return "Nexus 5";
+        }
+
+        @Override
+        public String getDeviceProduct() {
+            return "hammerhead";
+        }
+
+        @Override
+        public String getAppPackageName() {
+            return "com.mopub.simpleadsdemo";
+        }
+
+        @Override
+        public String getAppVersion() {
+            return "1.0";
+        }
+
+        @Override
+        public String getNetworkOperatorForUrl() {
+            return "310260";
+        }
+
+        @Override
+        public String getIsoCountryCode() {
+            return "us";
+        }
+
+        @Override
+        public String getNetworkOperatorName() {
+            return "T-Mobile";
+        }
+
+        @Override
+        public MoPubNetworkType getActiveNetworkType() {
+            return MoPubNetworkType.WIFI;
+        }
+    }
+
+    private FixedClientMetadata mClientMetadata;
+    private AdUrlGenerator mAdUrlGenerator;
+    private MoPub.LocationAwareness mLocationAwareness;
+
+    @Setup
+    public void setUp() {
+        mClientMetadata = new ObjenesisStd().newInstance(FixedClientMetadata.class);
+        mClientMetadata.mOrientation = "p";
+        mClientMetadata.mDeviceDimensions = new Point(1080, 1776);
+        ClientMetadata.setInstance(mClientMetadata);
+        AdUrlGenerator.clearEncodedParamsForTesting();
+
+        mLocationAwareness = MoPub.getLocationAwareness();
+        MoPub.setLocationAwareness(MoPub.LocationAwareness.DISABLED);
+
+        mAdUrlGenerator = new WebViewAdUrlGenerator(null, false)
+                .withAdUnitId("b195f8dd8ded45fe847ad89ed1d016da")
+                .withKeywords("m_age:24,m_gender:m,m_marital:single,interests:sports&music");
+    }
+
+    @TearDown
+    public void tearDown() {
+        MoPub.setLocationAwareness(mLocationAwareness);
+        AdUrlGenerator.clearEncodedParamsForTesting();
+        ClientMetadata.clearForTesting();
+    }
+
+    @Benchmark
+    public String generateUrlString() {
+        return mAdUrlGenerator.generateUrlString(Constants.HOST);
+    }
+
+    @Benchmark
+    public String generateUrlStringAfterRotation() {
+        mClientMetadata.mOrientation = "p".equals(mClientMetadata.mOrientation) ? "l" : "p";
+        return mAdUrlGenerator.generateUrlString(Constants.HOST);
+    }
+}
@@ -0,0 +1,117 @@
+package com.mopub.common;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures reads and writes of cached ad assets through {@link DiskLruCache}, the way
+ * {@link CacheService} uses it. The cache lives in a temporary directory.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DiskLruCacheBenchmark {
+
+    private static final int KEY_COUNT = 64;
+    private static final long MAX_SIZE_BYTES = 100 * 1024 * 1024;
+
+    @Param({"1024", "65536"})
+    public int valueSizeBytes;
+
+    private File mDirectory;
+    private DiskLruCache mDiskLruCache;
+    private byte[] mValue;
+    private byte[] mReadBuffer;
+    private String[] mKeys;
+    private int mCursor;
+
+    @Setup
+    public void setUp() throws IOException {
+        mDirectory = File.createTempFile("mopub-disk-lru-cache", "");
+        mDirectory.delete();
+        mDiskLruCache = DiskLruCache.open(mDirectory, 1, 1, MAX_SIZE_BYTES);
+
+        mValue = new byte[valueSizeBytes];
+        new Random(0).nextBytes(mValue);
+        mReadBuffer = new byte[8 * 1024];
+
+        mKeys = new String[KEY_COUNT];
+        for (int i = 0; i < KEY_COUNT; i++) {
+            // CacheService keys are hashes of urls
+            mKeys[i] = Integer.toHexString(("http://cdn.mopub.com/asset/" + i).hashCode());
+            write(mKeys[i]);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        mDiskLruCache.delete();
+    }
+
+    private String nextKey() {
+        mCursor = (mCursor + 1) % KEY_COUNT;
+        return mKeys[mCursor];
+    }
+
+    private void write(final String key) throws IOException {
+        final DiskLruCache.Editor editor = mDiskLruCache.edit(key);
+        final OutputStream outputStream = editor.newOutputStream(0);
+        try {
+            outputStream.write(mValue);
+        } finally {
+            outputStream.close();
+        }
+        editor.commit();
+    }
+
+    @Benchmark
+    public void put() throws IOException {
+        write(nextKey());
+    }
+
+    @Benchmark
+    public int get() throws IOException {
+        final DiskLruCache.Snapshot snapshot = mDiskLruCache.get(nextKey());
+        int total = 0;
+        try {
+            final InputStream inputStream = snapshot.getInputStream(0);
+            int read;
+            while ((read = inputStream.read(mReadBuffer)) != -1) {
+                total += read;
+            }
+        } finally {
+            snapshot.close();
+        }
+        return total;
+    }
+
+    @Benchmark
+    public boolean containsKey() throws IOException {
+        final DiskLruCache.Snapshot snapshot = mDiskLruCache.get(nextKey());
+        if (snapshot == null) {
+            return false;
+        }
+        snapshot.close();
+        return true;
+    }
+}
@@ -0,0 +1,71 @@
+package com.mopub.common.event;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures serializing a batch of events the way {@link ScribeEventRecorder} sends them.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EventSerializerBenchmark {
+
+    @Param({"1", "100"})
+    public int eventCount;
+
+    private final EventSerializer mEventSerializer = new EventSerializer();
+    private final CompactEventSerializer mCompactEventSerializer = new CompactEventSerializer();
+    private List<BaseEvent> mEvents;
+
+    @Setup
+    public void setUp() {
+        mEvents = new ArrayList<BaseEvent>(eventCount);
+        for (int i = 0; i < eventCount; i++) {
+            mEvents.add(new Event.Builder(BaseEvent.Name.AD_REQUEST, BaseEvent.Category.REQUESTS,
+                    BaseEvent.SamplingRate.AD_REQUEST.getSamplingRate())
+                    .withSdkProduct(BaseEvent.SdkProduct.NATIVE)
+                    .withAdUnitId("8cf00598d3664adaaeccd800e46afaca")
+                    .withAdCreativeId("3c2b887e2c2a4cd0ae6a925440a62f0d")
+                    .withAdType("html")
+                    .withAdNetworkType("admob")
+                    .withAdWidthPx(320.0)
+                    .withAdHeightPx(50.0)
+                    .withGeoLat(37.7833)
+                    .withGeoLon(-122.4183333)
+                    .withGeoAccuracy(10.0)
+                    .withPerformanceDurationMs(100.0 + i)
+                    .withRequestId("b550796074da4559a27c5072dcba2b27")
+                    .withRequestStatusCode(200)
+                    .withRequestUri("http://ads.mopub.com/m/ad?id=8cf00598d3664adaaeccd800e46afaca")
+                    .withRequestRetries(0)
+                    .build());
+        }
+    }
+
+    @Benchmark
+    public String serializeAsJson() {
+        return mEventSerializer.serializeAsJson(mEvents).toString();
+    }
+
+    @Benchmark
+    public byte[] serializeCompact() {
+        return mCompactEventSerializer.serialize(mEvents);
+    }
+}
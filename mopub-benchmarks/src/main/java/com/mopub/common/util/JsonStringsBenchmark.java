@@ -0,0 +1,81 @@
+package com.mopub.common.util;
+
+import org.json.JSONException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the {@link Json} and {@link Strings} helpers used while handling ad responses and
+ * VAST progress trackers.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class JsonStringsBenchmark {
+
+    // Custom event data as sent in the X-Custom-Event-Class-Data header
+    private static final String CUSTOM_EVENT_DATA = "{\"adUnitID\":\"ca-app-pub-1234567890\"," +
+            "\"location\":\"banner_top\",\"width\":\"320\",\"height\":\"50\"," +
+            "\"impressionMinVisiblePercent\":\"50\",\"impressionMinVisibleMs\":\"1000\"}";
+    private static final String IMPRESSION_TRACKERS = "[\"http://ads.mopub.com/m/imp?id=1\"," +
+            "\"http://ads.mopub.com/m/imp?id=2\",\"http://thirdparty.com/imp?id=3\"]";
+
+    private Map<String, String> mCustomEventData;
+    private byte[] mResponseBody;
+
+    @Setup
+    public void setUp() throws JSONException {
+        mCustomEventData = Json.jsonStringToMap(CUSTOM_EVENT_DATA);
+        final StringBuilder responseBody = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            responseBody.append(CUSTOM_EVENT_DATA).append('\n');
+        }
+        mResponseBody = responseBody.toString().getBytes();
+    }
+
+    @Benchmark
+    public Map<String, String> jsonStringToMap() throws JSONException {
+        return Json.jsonStringToMap(CUSTOM_EVENT_DATA);
+    }
+
+    @Benchmark
+    public String mapToJsonString() {
+        return Json.mapToJsonString(mCustomEventData);
+    }
+
+    @Benchmark
+    public String[] jsonArrayToStringArray() {
+        return Json.jsonArrayToStringArray(IMPRESSION_TRACKERS);
+    }
+
+    @Benchmark
+    public String fromStream() throws IOException {
+        return Strings.fromStream(new ByteArrayInputStream(mResponseBody));
+    }
+
+    @Benchmark
+    public Integer parseAbsoluteOffset() {
+        return Strings.parseAbsoluteOffset("00:01:30.500");
+    }
+
+    @Benchmark
+    public boolean isPercentageTracker() {
+        return Strings.isPercentageTracker("25%");
+    }
+}
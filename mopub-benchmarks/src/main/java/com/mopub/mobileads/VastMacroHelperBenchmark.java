@@ -0,0 +1,97 @@
+package com.mopub.mobileads;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares expanding the trackers fired by one video progress tick with per-macro
+ * {@link String#replaceAll(String, String)} against the precompiled templates cached on each
+ * {@link VastTracker}. The last benchmark adds the cost of formatting the macro values, as
+ * {@link VastVideoViewProgressRunnable} pays it on every tick.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class VastMacroHelperBenchmark {
+
+    private static final String[] TRACKING_URLS = {
+            "http://mopub.com/start",
+            "http://mopub.com/first_quartile?cb=[CACHEBUSTING]",
+            "http://ads.example.com/track?event=midpoint&asset=[ASSETURI]&playhead=[CONTENTPLAYHEAD]&cb=[CACHEBUSTING]",
+            "http://rtb-test.dev.tapad.com:8080/creative/imp.png?ts=1374099035457&svid=1&creative_id=30731&ctx_type=InApp&asset=[ASSETURI]&err=[ERRORCODE]",
+    };
+
+    private static final String ASSET_URI = "https://s3.amazonaws.com/mopub-vast/tapad-video.mp4";
+
+    private List<VastTracker> mTrackers;
+    private List<String> mUrls;
+    private Map<VastMacro, String> mMacroDataMap;
+    private String[] mValues;
+
+    @Setup
+    public void setUp() {
+        mTrackers = new ArrayList<VastTracker>();
+        mUrls = new ArrayList<String>();
+        for (final String url : TRACKING_URLS) {
+            mTrackers.add(new VastTracker(url));
+            mUrls.add(url);
+        }
+
+        mMacroDataMap = new HashMap<VastMacro, String>();
+        mMacroDataMap.put(VastMacro.CACHEBUSTING, "04830290");
+        mMacroDataMap.put(VastMacro.CONTENTPLAYHEAD, "00:00:14.500");
+        mMacroDataMap.put(VastMacro.ASSETURI,
+                "https%3A%2F%2Fs3.amazonaws.com%2Fmopub-vast%2Ftapad-video.mp4");
+        mValues = new String[VastMacro.values().length];
+        for (final Map.Entry<VastMacro, String> entry : mMacroDataMap.entrySet()) {
+            mValues[entry.getKey().ordinal()] = entry.getValue();
+        }
+    }
+
+    @Benchmark
+    public List<String> replaceAll() {
+        final List<String> uris = new ArrayList<String>(mUrls.size());
+        for (final String url : mUrls) {
+            uris.add(VastMacroHelper.replaceMacros(url, mMacroDataMap));
+        }
+        return uris;
+    }
+
+    @Benchmark
+    public List<String> expandTemplates() {
+        final List<String> uris = new ArrayList<String>(mTrackers.size());
+        final StringBuilder builder = new StringBuilder();
+        for (final VastTracker tracker : mTrackers) {
+            final VastMacroTemplate template = tracker.getMacroTemplate();
+            builder.setLength(0);
+            template.expandInto(builder, mValues);
+            uris.add(builder.toString());
+        }
+        return uris;
+    }
+
+    @Benchmark
+    public List<String> getUrisFromTrackers() {
+        return VastMacroHelper.fromVastTrackers(mTrackers)
+                .withAssetUri(ASSET_URI)
+                .withContentPlayHead(14500)
+                .getUris();
+    }
+}
@@ -0,0 +1,100 @@
+package com.mopub.mobileads;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures turning a typical inline VAST response into a {@link VastXmlManager}, with both
+ * parsers.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class VastXmlManagerBenchmark {
+
+    private static final String VAST_XML = "<?xml version='1.0' encoding='UTF-8' standalone='yes'?>" +
+            "<VAST version='3.0'>" +
+            "<Ad id='62833'>" +
+            "<InLine>" +
+            "<AdSystem>Tapad</AdSystem>" +
+            "<AdTitle>PKW6T_LIV_DSN_Audience_TAPAD_3rd Party Audience Targeting_Action Movi</AdTitle>" +
+            "<Description/>" +
+            "<Error><![CDATA[http://mopub.com/error?errorcode=[ERRORCODE]]]></Error>" +
+            "<Impression><![CDATA[http://rtb-test.dev.tapad.com:8080/creative/imp.png?ts=1374099035457&svid=1&creative_id=30731&ctx_type=InApp&ta_pinfo=JnRhX2JpZD1iNDczNTQwMS01ZjJkLTExZTMtOTZkNS0wMDI0ZDc3NjRiZDAmaXA9OTguMTE2LjEyLjIzNCZzc3BfaWQ9MSZ0YV9iaWRkZXJfaWQ9NTEzJTNBMzA1NSZjdHg9MTMzMSZ0YV9jYW1wYWlnbl9pZD01MTMmZGM9MTAwMjAwMzAyOSZ1YT1Nb3ppbGxhJTJGNS4wKyUyOE1hY2ludG9zaCUzQitJbnRlbCtNYWMrT1MrWCsxMF84XzMlMjkrQXBwbGVXZWJLaXQlMkY1MzcuMzYrJTI4S0hUTUwlMkMrbGlrZStHZWNrbyUyOStDaHJvbWUlMkYzMS4wLjE2NTAuNjMrU2FmYXJpJTJGNTM3LjM2JmNwdT0wLjAmZGV2aWNlPURlc2t0b3AmYWRfaWQ9NjI4MzMmYWRfZ3JvdXBfaWQ9NjI4MzQmYXBwX3NpdGVfaWQ9MTAyMjAxMA]]></Impression>" +
+            "<Impression><![CDATA[http://mopub.com/impression]]></Impression>" +
+            "<Creatives>" +
+            "<Creative AdID='62833' sequence='1'>" +
+            "<Linear>" +
+            "<Duration>00:00:58</Duration>" +
+            "<TrackingEvents>" +
+            "<Tracking event='start'><![CDATA[http://mopub.com/start]]></Tracking>" +
+            "<Tracking event='firstQuartile'><![CDATA[http://mopub.com/first_quartile]]></Tracking>" +
+            "<Tracking event='midpoint'><![CDATA[http://mopub.com/midpoint]]></Tracking>" +
+            "<Tracking event='thirdQuartile'><![CDATA[http://mopub.com/third_quartile]]></Tracking>" +
+            "<Tracking event='complete'><![CDATA[http://mopub.com/complete]]></Tracking>" +
+            "<Tracking event='progress' offset='00:00:05.000'><![CDATA[http://mopub.com/progress]]></Tracking>" +
+            "<Tracking event='progress' offset='13%'><![CDATA[http://mopub.com/progress_percent]]></Tracking>" +
+            "</TrackingEvents>" +
+            "<VideoClicks>" +
+            "<ClickThrough><![CDATA[http://www.mopub.com/]]></ClickThrough>" +
+            "<ClickTracking><![CDATA[http://mopub.com/click]]></ClickTracking>" +
+            "</VideoClicks>" +
+            "<MediaFiles>" +
+            "<MediaFile delivery='progressive' bitrate='416' width='300' height='250' type='video/mp4'><![CDATA[https://s3.amazonaws.com/mopub-vast/tapad-video.mp4]]></MediaFile>" +
+            "<MediaFile delivery='progressive' bitrate='800' width='640' height='480' type='video/mp4'><![CDATA[https://s3.amazonaws.com/mopub-vast/tapad-video-640.mp4]]></MediaFile>" +
+            "</MediaFiles>" +
+            "</Linear>" +
+            "</Creative>" +
+            "<Creative AdID='601364-Companion' sequence='1'>" +
+            "<CompanionAds>" +
+            "<Companion id='valid' height='250' width='300'>" +
+            "<StaticResource creativeType='image/jpeg'>http://demo.tremormedia.com/proddev/vast/Blistex1.jpg</StaticResource>" +
+            "<TrackingEvents>" +
+            "<Tracking event='creativeView'>http://mopub.com/companion_view</Tracking>" +
+            "</TrackingEvents>" +
+            "<CompanionClickThrough>http://www.mopub.com/</CompanionClickThrough>" +
+            "</Companion>" +
+            "</CompanionAds>" +
+            "</Creative>" +
+            "</Creatives>" +
+            "<Extensions>" +
+            "<Extension type='MoPub'>" +
+            "<MoPubCtaText>Learn More</MoPubCtaText>" +
+            "<MoPubSkipText>Skip</MoPubSkipText>" +
+            "</Extension>" +
+            "</Extensions>" +
+            "</InLine>" +
+            "</Ad>" +
+            "</VAST>" +
+            "<MP_TRACKING_URL>http://mopub.com/mp_tracking</MP_TRACKING_URL>";
+
+    @Param({"PULL", "DOM"})
+    public String parser;
+
+    @Benchmark
+    public VastXmlManager parseVastXml() throws Exception {
+        final VastXmlManager vastXmlManager =
+                new VastXmlManager(VastXmlManager.Parser.valueOf(parser));
+        vastXmlManager.parseVastXml(VAST_XML);
+        return vastXmlManager;
+    }
+
+    @Benchmark
+    public Object parseVastXmlAndReadAds() throws Exception {
+        final VastXmlManager vastXmlManager = parseVastXml();
+        return vastXmlManager.getAdXmlManagers();
+    }
+}
@@ -0,0 +1,131 @@
+package com.mopub.nativeads;
+
+import com.mopub.nativeads.MoPubNativeAdPositioning.MoPubClientPositioning;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the position bookkeeping {@link MoPubStreamAdPlacer} does for every adapter call.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PlacementDataBenchmark {
+
+    private static final int REPEATING_INTERVAL = 5;
+    // Items a RecyclerView binds in one layout pass of a phone sized list
+    private static final int VISIBLE_ITEM_COUNT = 12;
+
+    // Never rendered, so the renderer and response are not needed
+    private static final NativeAdData AD_DATA = new NativeAdData("ad_unit_id", null, null);
+
+    // 2000 ads is a feed of 10000 items
+    @Param({"10", "100", "200", "2000"})
+    public int placedAdCount;
+
+    private PlacementData mPlacementData;
+    private int mItemCount;
+    private int mCursor;
+
+    @Setup
+    public void setUp() {
+        mPlacementData = PlacementData.fromAdPositioning(
+                new MoPubClientPositioning().enableRepeatingPositions(REPEATING_INTERVAL));
+
+        int position = -1;
+        for (int i = 0; i < placedAdCount; i++) {
+            position = mPlacementData.nextInsertionPosition(position);
+            mPlacementData.placeAd(position, AD_DATA);
+        }
+        // One content item after the last ad
+        mItemCount = mPlacementData.getOriginalCount(position + 2);
+    }
+
+    /**
+     * Walks through the list like a scrolling adapter would.
+     */
+    private int nextPosition() {
+        mCursor = (mCursor + 7) % mItemCount;
+        return mCursor;
+    }
+
+    @Benchmark
+    public int getAdjustedPosition() {
+        return mPlacementData.getAdjustedPosition(nextPosition());
+    }
+
+    @Benchmark
+    public int getOriginalPosition() {
+        return mPlacementData.getOriginalPosition(nextPosition());
+    }
+
+    @Benchmark
+    public boolean isPlacedAd() {
+        return mPlacementData.isPlacedAd(nextPosition());
+    }
+
+    @Benchmark
+    public int getAdjustedCount() {
+        return mPlacementData.getAdjustedCount(mItemCount);
+    }
+
+    /**
+     * The lookups MoPubRecyclerAdapter makes for each item it lays out: the view type, the item id
+     * and then binding, each of which asks whether the position is an ad and translates it.
+     */
+    @Benchmark
+    public int layoutPass() {
+        final int first = nextPosition();
+        int sum = 0;
+        for (int position = first; position < first + VISIBLE_ITEM_COUNT; position++) {
+            for (int lookup = 0; lookup < 3; lookup++) {
+                if (mPlacementData.getPlacedAd(position) == null) {
+                    sum += mPlacementData.getOriginalPosition(position);
+                }
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Walks the ads after a content change, like MoPubRecyclerAdapter does to describe how ads
+     * kept in place move relative to inserted content.
+     */
+    @Benchmark
+    public int walkPlacedAdsAfterChange() {
+        final int adjustedCount = mPlacementData.getAdjustedCount(mItemCount);
+        int position = mPlacementData.nextPlacedAdPosition(
+                mPlacementData.getAdjustedCount(nextPosition()) - 1);
+        int moved = 0;
+        while (position != PlacementData.NOT_FOUND && position < adjustedCount) {
+            moved++;
+            position = mPlacementData.nextPlacedAdPosition(position);
+        }
+        return moved;
+    }
+
+    /**
+     * Inserts and then removes an item so the placement stays the same size across invocations.
+     */
+    @Benchmark
+    public void insertThenRemoveItem() {
+        final int position = nextPosition();
+        mPlacementData.insertItem(position);
+        mPlacementData.removeItem(position);
+    }
+}
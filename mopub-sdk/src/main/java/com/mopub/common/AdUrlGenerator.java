@@ -2,11 +2,15 @@ package com.mopub.common;
 
 import android.content.Context;
 import android.location.Location;
+import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.text.TextUtils;
 
 import com.mopub.common.util.DateAndTime;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 import static com.mopub.common.ClientMetadata.MoPubNetworkType;
 
 public abstract class AdUrlGenerator extends BaseUrlGenerator {
@@ -101,11 +105,24 @@ public abstract class AdUrlGenerator extends BaseUrlGenerator {
      */
     private static final String BUNDLE_ID_KEY = "bundle";
 
+    /**
+     * Parameters that only change with the ClientMetadata instance or the display configuration,
+     * already url encoded. Keyed by generator class since subclasses may rename parameters.
+     */
+    private static final Map<Class<? extends AdUrlGenerator>, EncodedParams> sEncodedParams =
+            new ConcurrentHashMap<Class<? extends AdUrlGenerator>, EncodedParams>();
+
     protected Context mContext;
     protected String mAdUnitId;
     protected String mKeywords;
     protected Location mLocation;
 
+    // Encoded lat/long and accuracy for the last location this generator sent.
+    @Nullable private String mEncodedLatLong;
+    private double mEncodedLatitude;
+    private double mEncodedLongitude;
+    private int mEncodedAccuracy;
+
     public AdUrlGenerator(Context context) {
         mContext = context;
     }
@@ -149,8 +166,7 @@ public abstract class AdUrlGenerator extends BaseUrlGenerator {
         }
 
         if (bestLocation != null) {
-            addParam(LAT_LONG_KEY, bestLocation.getLatitude() + "," + bestLocation.getLongitude());
-            addParam(LAT_LONG_ACCURACY_KEY, String.valueOf((int) bestLocation.getAccuracy()));
+            addEncodedParams(getEncodedLatLong(bestLocation));
             addParam(LAT_LONG_FRESHNESS_KEY,
                     String.valueOf(calculateLocationStalenessInMilliseconds(bestLocation)));
 
@@ -207,13 +223,11 @@ public abstract class AdUrlGenerator extends BaseUrlGenerator {
     }
 
     protected void addBaseParams(final ClientMetadata clientMetadata) {
+        final EncodedParams encodedParams = getEncodedParams(clientMetadata);
+
         setAdUnitId(mAdUnitId);
 
-        setSdkVersion(clientMetadata.getSdkVersion());
-        setDeviceInfo(clientMetadata.getDeviceManufacturer(),
-                clientMetadata.getDeviceModel(),
-                clientMetadata.getDeviceProduct());
-        setBundleId(clientMetadata.getAppPackageName());
+        addEncodedParams(encodedParams.mDeviceParams);
 
         setKeywords(mKeywords);
 
@@ -221,9 +235,39 @@ public abstract class AdUrlGenerator extends BaseUrlGenerator {
 
         setTimezone(DateAndTime.getTimeZoneOffsetString());
 
-        setOrientation(clientMetadata.getOrientationString());
+        addEncodedParams(encodedParams.mDisplayAndCarrierParams);
+
+        setNetworkType(clientMetadata.getActiveNetworkType());
+
+        addEncodedParams(encodedParams.mAppParams);
+    }
+
+    /**
+     * Returns the cached encoded parameters for this generator class, rebuilding them when the
+     * ClientMetadata instance, orientation or density changed since they were built.
+     */
+    @NonNull
+    private EncodedParams getEncodedParams(@NonNull final ClientMetadata clientMetadata) {
+        final String orientation = clientMetadata.getOrientationString();
+        final float density = clientMetadata.getDensity();
+
+        final EncodedParams cached = sEncodedParams.get(getClass());
+        if (cached != null && cached.matches(clientMetadata, orientation, density)) {
+            return cached;
+        }
+
+        startEncodedParams();
+        setSdkVersion(clientMetadata.getSdkVersion());
+        setDeviceInfo(clientMetadata.getDeviceManufacturer(),
+                clientMetadata.getDeviceModel(),
+                clientMetadata.getDeviceProduct());
+        setBundleId(clientMetadata.getAppPackageName());
+        final String deviceParams = finishEncodedParams();
+
+        startEncodedParams();
+        setOrientation(orientation);
         setDeviceDimensions(clientMetadata.getDeviceDimensions());
-        setDensity(clientMetadata.getDensity());
+        setDensity(density);
 
         final String networkOperator = clientMetadata.getNetworkOperatorForUrl();
         setMccCode(networkOperator);
@@ -231,12 +275,37 @@ public abstract class AdUrlGenerator extends BaseUrlGenerator {
 
         setIsoCountryCode(clientMetadata.getIsoCountryCode());
         setCarrierName(clientMetadata.getNetworkOperatorName());
+        final String displayAndCarrierParams = finishEncodedParams();
 
-        setNetworkType(clientMetadata.getActiveNetworkType());
-
+        startEncodedParams();
         setAppVersion(clientMetadata.getAppVersion());
 
         appendAdvertisingInfoTemplates();
+        final String appParams = finishEncodedParams();
+
+        final EncodedParams encodedParams = new EncodedParams(clientMetadata, orientation, density,
+                deviceParams, displayAndCarrierParams, appParams);
+        sEncodedParams.put(getClass(), encodedParams);
+        return encodedParams;
+    }
+
+    @NonNull
+    private String getEncodedLatLong(@NonNull final Location location) {
+        final double latitude = location.getLatitude();
+        final double longitude = location.getLongitude();
+        final int accuracy = (int) location.getAccuracy();
+
+        if (mEncodedLatLong == null || latitude != mEncodedLatitude
+                || longitude != mEncodedLongitude || accuracy != mEncodedAccuracy) {
+            startEncodedParams();
+            addParam(LAT_LONG_KEY, latitude + "," + longitude);
+            addParam(LAT_LONG_ACCURACY_KEY, String.valueOf(accuracy));
+            mEncodedLatLong = finishEncodedParams();
+            mEncodedLatitude = latitude;
+            mEncodedLongitude = longitude;
+            mEncodedAccuracy = accuracy;
+        }
+        return mEncodedLatLong;
     }
 
     private void addParam(String key, MoPubNetworkType value) {
@@ -254,6 +323,46 @@ public abstract class AdUrlGenerator extends BaseUrlGenerator {
         return (int) (nowInMillis - locationLastUpdatedInMillis);
     }
 
+    @VisibleForTesting
+    static void clearEncodedParamsForTesting() {
+        sEncodedParams.clear();
+    }
+
+    private static class EncodedParams {
+        @NonNull final ClientMetadata mClientMetadata;
+        @NonNull final String mOrientation;
+        final float mDensity;
+
+        // sdk version, device info and bundle id
+        @NonNull final String mDeviceParams;
+        // orientation, dimensions, density and carrier info
+        @NonNull final String mDisplayAndCarrierParams;
+        // app version and advertising info templates
+        @NonNull final String mAppParams;
+
+        EncodedParams(@NonNull final ClientMetadata clientMetadata,
+                @NonNull final String orientation,
+                final float density,
+                @NonNull final String deviceParams,
+                @NonNull final String displayAndCarrierParams,
+                @NonNull final String appParams) {
+            mClientMetadata = clientMetadata;
+            mOrientation = orientation;
+            mDensity = density;
+            mDeviceParams = deviceParams;
+            mDisplayAndCarrierParams = displayAndCarrierParams;
+            mAppParams = appParams;
+        }
+
+        boolean matches(@NonNull final ClientMetadata clientMetadata,
+                @NonNull final String orientation,
+                final float density) {
+            return mClientMetadata == clientMetadata
+                    && mOrientation.equals(orientation)
+                    && mDensity == density;
+        }
+    }
+
     /**
      * @deprecated As of release 2.4
      */
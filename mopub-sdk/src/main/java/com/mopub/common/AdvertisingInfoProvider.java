@@ -0,0 +1,134 @@
+package com.mopub.common;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.mopub.common.logging.MoPubLog;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Resolves the advertising identity used to fill in URL templates and keeps it in memory.
+ *
+ * Looking up the Google Play Services advertising info goes through reflection, so the resolved
+ * value is cached for {@link #TTL_MILLIS} and refreshed on a background thread once it expires.
+ * Reads never block: callers get the last resolved snapshot while a refresh is in flight.
+ */
+public class AdvertisingInfoProvider {
+    @VisibleForTesting
+    static final long TTL_MILLIS = 15 * 60 * 1000;
+
+    /**
+     * Immutable result of a single resolution.
+     */
+    public static class Snapshot {
+        @NonNull public final GpsHelper.AdvertisingInfo advertisingInfo;
+        public final boolean isPlayServicesId;
+        final long resolvedAtMillis;
+
+        Snapshot(@NonNull final GpsHelper.AdvertisingInfo advertisingInfo,
+                final boolean isPlayServicesId,
+                final long resolvedAtMillis) {
+            this.advertisingInfo = advertisingInfo;
+            this.isPlayServicesId = isPlayServicesId;
+            this.resolvedAtMillis = resolvedAtMillis;
+        }
+    }
+
+    @NonNull private final Context mContext;
+    @Nullable private final String mDeviceId;
+    @NonNull private final Executor mExecutor;
+    @NonNull private final AtomicBoolean mIsRefreshing;
+    @NonNull private final Runnable mRefreshRunnable;
+
+    @Nullable private volatile Snapshot mSnapshot;
+
+    public AdvertisingInfoProvider(@Nullable final String deviceId, @NonNull final Context context) {
+        // A single worker is plenty; it only ever runs one refresh at a time.
+        this(deviceId, context, new ThreadPoolExecutor(0, 1, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>()));
+    }
+
+    @VisibleForTesting
+    AdvertisingInfoProvider(@Nullable final String deviceId,
+            @NonNull final Context context,
+            @NonNull final Executor executor) {
+        Preconditions.checkNotNull(context);
+        Preconditions.checkNotNull(executor);
+
+        mDeviceId = deviceId;
+        mContext = context.getApplicationContext();
+        mExecutor = executor;
+        mIsRefreshing = new AtomicBoolean(false);
+        mRefreshRunnable = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    mSnapshot = resolve();
+                } catch (Exception e) {
+                    MoPubLog.d("Unable to refresh advertising info.", e);
+                } finally {
+                    mIsRefreshing.set(false);
+                }
+            }
+        };
+    }
+
+    /**
+     * Returns the current advertising identity. The first call resolves it on the calling thread,
+     * so it must not be made from the main thread. Later calls return the cached snapshot and
+     * schedule a background refresh once it is older than {@link #TTL_MILLIS}.
+     */
+    @NonNull
+    public Snapshot get() {
+        final Snapshot snapshot = mSnapshot;
+        if (snapshot == null) {
+            // Concurrent first calls may each resolve; they produce equivalent snapshots.
+            final Snapshot resolved = resolve();
+            mSnapshot = resolved;
+            return resolved;
+        }
+
+        if (SystemClock.uptimeMillis() - snapshot.resolvedAtMillis >= TTL_MILLIS) {
+            refreshAsync();
+        }
+        return snapshot;
+    }
+
+    /**
+     * Schedules a background resolution unless one is already running. Safe to call from the
+     * main thread to warm the cache before the first request goes out.
+     */
+    public void refreshAsync() {
+        if (!mIsRefreshing.compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            mExecutor.execute(mRefreshRunnable);
+        } catch (Exception e) {
+            MoPubLog.d("Unable to schedule advertising info refresh.", e);
+            mIsRefreshing.set(false);
+        }
+    }
+
+    @NonNull
+    @VisibleForTesting
+    Snapshot resolve() {
+        final long now = SystemClock.uptimeMillis();
+        if (GpsHelper.isPlayServicesAvailable(mContext)) {
+            final GpsHelper.AdvertisingInfo playServicesAdInfo =
+                    GpsHelper.fetchAdvertisingInfoSync(mContext);
+            if (playServicesAdInfo != null) {
+                return new Snapshot(playServicesAdInfo, true, now);
+            }
+        }
+        return new Snapshot(new GpsHelper.AdvertisingInfo(mDeviceId, false), false, now);
+    }
+}
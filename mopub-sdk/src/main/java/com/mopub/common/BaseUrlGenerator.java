@@ -16,6 +16,10 @@ public abstract class BaseUrlGenerator {
     private StringBuilder mStringBuilder;
     private boolean mFirstParam;
 
+    // Holds the url being built while a run of parameters is captured by startEncodedParams.
+    private StringBuilder mCapturedStringBuilder;
+    private boolean mCapturedFirstParam;
+
     public abstract String generateUrlString(String serverHostname);
 
     protected void initUrlString(String serverHostname, String handlerType) {
@@ -39,6 +43,43 @@ public abstract class BaseUrlGenerator {
         mStringBuilder.append(Uri.encode(value));
     }
 
+    /**
+     * Redirects the following addParam calls into a scratch buffer so that a run of parameters
+     * can be encoded once and replayed later with {@link #addEncodedParams(String)}. Must be
+     * paired with {@link #finishEncodedParams()}.
+     */
+    protected void startEncodedParams() {
+        mCapturedStringBuilder = mStringBuilder;
+        mCapturedFirstParam = mFirstParam;
+        mStringBuilder = new StringBuilder();
+        mFirstParam = false;
+    }
+
+    /**
+     * @return the parameters added since {@link #startEncodedParams()}, each prefixed with "&".
+     */
+    @NonNull
+    protected String finishEncodedParams() {
+        final String encodedParams = mStringBuilder.toString();
+        mStringBuilder = mCapturedStringBuilder;
+        mFirstParam = mCapturedFirstParam;
+        mCapturedStringBuilder = null;
+        return encodedParams;
+    }
+
+    /**
+     * Appends parameters previously captured by {@link #finishEncodedParams()}.
+     */
+    protected void addEncodedParams(@NonNull final String encodedParams) {
+        if (encodedParams.isEmpty()) {
+            return;
+        }
+
+        // Captured params always start with "&", which must become "?" for the first one.
+        mStringBuilder.append(getParamDelimiter());
+        mStringBuilder.append(encodedParams, 1, encodedParams.length());
+    }
+
     private String getParamDelimiter() {
         if (mFirstParam) {
             mFirstParam = false;
@@ -10,28 +10,70 @@ import com.mopub.common.util.DeviceUtils;
 import com.mopub.common.util.Streams;
 import com.mopub.common.util.Utils;
 
-import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
-import static com.mopub.common.DiskLruCache.open;
+import static com.mopub.common.MappedDiskLruCache.open;
 
 public class CacheService {
     public static interface DiskLruCacheGetListener {
         void onComplete(final String key, final byte[] content);
     }
 
+    /**
+     * Point-in-time snapshot of the cache counters.
+     */
+    public static class Stats {
+        private final long mDiskHits;
+        private final long mMisses;
+        private final long mEvictions;
+
+        Stats(final long diskHits, final long misses, final long evictions) {
+            mDiskHits = diskHits;
+            mMisses = misses;
+            mEvictions = evictions;
+        }
+
+        public long getDiskHits() {
+            return mDiskHits;
+        }
+
+        public long getMisses() {
+            return mMisses;
+        }
+
+        /**
+         * Entries the disk cache removed to stay within its size budget.
+         */
+        public long getEvictions() {
+            return mEvictions;
+        }
+    }
+
     static final String UNIQUE_CACHE_NAME = "mopub-cache";
     private static final int APP_VERSION = 1;
     // The number of values per cache entry. Must be positive.
     private static final int VALUE_COUNT = 1;
     private static final int DISK_CACHE_INDEX = 0;
 
-    private static DiskLruCache sDiskLruCache;
+    private static MappedDiskLruCache sDiskLruCache;
+    // Listeners waiting on an in-flight async get, keyed by disk cache key. Main thread only.
+    @NonNull private static final Map<String, List<DiskLruCacheGetListener>> sPendingGets =
+            new HashMap<String, List<DiskLruCacheGetListener>>();
+
+    @NonNull private static final AtomicLong sDiskHits = new AtomicLong();
+    @NonNull private static final AtomicLong sMisses = new AtomicLong();
 
     public static boolean initializeDiskCache(final Context context) {
         if (context == null) {
@@ -84,11 +126,16 @@ public class CacheService {
             return false;
         }
 
+        MappedDiskLruCache.Snapshot snapshot = null;
         try {
-            final DiskLruCache.Snapshot snapshot = sDiskLruCache.get(createValidDiskCacheKey(key));
+            snapshot = sDiskLruCache.get(createValidDiskCacheKey(key));
             return snapshot != null;
         } catch (Exception e) {
             return false;
+        } finally {
+            if (snapshot != null) {
+                snapshot.close();
+            }
         }
     }
 
@@ -98,8 +145,8 @@ public class CacheService {
         }
 
         // This violates encapsulation but there is no convenience method to get a filename from
-        // DiskLruCache. Filename was derived from private class method Entry#getCleanFile
-        // in DiskLruCache.java
+        // MappedDiskLruCache. Filename was derived from private class method Entry#getCleanFile
+        // in MappedDiskLruCache.java
         return sDiskLruCache.getDirectory()
                 + File.separator
                 + createValidDiskCacheKey(key)
@@ -112,26 +159,27 @@ public class CacheService {
             return null;
         }
 
+        final String diskKey = createValidDiskCacheKey(key);
         byte[] bytes = null;
-        DiskLruCache.Snapshot snapshot = null;
+        MappedDiskLruCache.Snapshot snapshot = null;
         try {
-            snapshot = sDiskLruCache.get(createValidDiskCacheKey(key));
+            snapshot = sDiskLruCache.get(diskKey);
             if (snapshot == null) {
+                sMisses.incrementAndGet();
                 return null;
             }
 
             final InputStream in = snapshot.getInputStream(DISK_CACHE_INDEX);
             if (in != null) {
-                bytes = new byte[(int) snapshot.getLength(0)];
-                final BufferedInputStream buffIn = new BufferedInputStream(in);
-                try {
-                    Streams.readStream(buffIn, bytes);
-                } finally {
-                    Streams.closeStream(buffIn);
-                }
+                // The length is known up front, so read straight into the result without an
+                // intermediate buffer.
+                bytes = new byte[(int) snapshot.getLength(DISK_CACHE_INDEX)];
+                Streams.readStream(in, bytes);
+                sDiskHits.incrementAndGet();
             }
         } catch (Exception e) {
             MoPubLog.d("Unable to get from DiskLruCache", e);
+            bytes = null;
         } finally {
             if (snapshot != null) {
                 snapshot.close();
@@ -141,8 +189,56 @@ public class CacheService {
         return bytes;
     }
 
+    /**
+     * Returns a stream over the cached value without copying it into a new array, or null if the
+     * key is not cached. The caller must close the stream.
+     */
+    @Nullable
+    public static InputStream getInputStreamFromDiskCache(final String key) {
+        if (sDiskLruCache == null) {
+            return null;
+        }
+
+        return getDiskInputStream(createValidDiskCacheKey(key));
+    }
+
+    /**
+     * Returns a read-only channel over the cached file, suitable for mapping or transferring
+     * without copying through the Java heap, or null if the key is not cached. The caller must
+     * close the channel.
+     */
+    @Nullable
+    public static FileChannel getFileChannelFromDiskCache(final String key) {
+        if (sDiskLruCache == null) {
+            return null;
+        }
+
+        final InputStream in = getDiskInputStream(createValidDiskCacheKey(key));
+        if (in instanceof FileInputStream) {
+            return ((FileInputStream) in).getChannel();
+        }
+        Streams.closeStream(in);
+        return null;
+    }
+
+    /**
+     * Gets the value on a background thread and reports it to the listener on the main thread.
+     * Concurrent gets for the same key share a single disk read. Must be called from the main
+     * thread.
+     */
     public static void getFromDiskCacheAsync(final String key, final DiskLruCacheGetListener diskLruCacheGetListener) {
-        new DiskLruCacheGetTask(key, diskLruCacheGetListener).execute();
+        final String diskKey = createValidDiskCacheKey(key);
+
+        List<DiskLruCacheGetListener> listeners = sPendingGets.get(diskKey);
+        if (listeners != null) {
+            listeners.add(diskLruCacheGetListener);
+            return;
+        }
+
+        listeners = new ArrayList<DiskLruCacheGetListener>();
+        listeners.add(diskLruCacheGetListener);
+        sPendingGets.put(diskKey, listeners);
+        new DiskLruCacheGetTask(key, diskKey).execute();
     }
 
     public static boolean putToDiskCache(final String key, final byte[] content) {
@@ -154,9 +250,10 @@ public class CacheService {
             return false;
         }
 
-        DiskLruCache.Editor editor = null;
+        final String diskKey = createValidDiskCacheKey(key);
+        MappedDiskLruCache.Editor editor = null;
         try {
-            editor = sDiskLruCache.edit(createValidDiskCacheKey(key));
+            editor = sDiskLruCache.edit(diskKey);
 
             if (editor == null) {
                 // another edit is in progress
@@ -169,7 +266,7 @@ public class CacheService {
             outputStream.flush();
             outputStream.close();
 
-            sDiskLruCache.flush();
+            // The journal is written in groups by the cache's background thread
             editor.commit();
         } catch (Exception e) {
             MoPubLog.d("Unable to put to DiskLruCache", e);
@@ -189,13 +286,52 @@ public class CacheService {
         new DiskLruCachePutTask(key, content).execute();
     }
 
+    @NonNull
+    public static Stats getStats() {
+        final MappedDiskLruCache diskLruCache = sDiskLruCache;
+        return new Stats(sDiskHits.get(), sMisses.get(),
+                diskLruCache == null ? 0 : diskLruCache.getEvictionCount());
+    }
+
+    @Nullable
+    private static InputStream getDiskInputStream(@NonNull final String diskKey) {
+        try {
+            final MappedDiskLruCache.Snapshot snapshot = sDiskLruCache.get(diskKey);
+            if (snapshot == null) {
+                sMisses.incrementAndGet();
+                return null;
+            }
+
+            // Closing the stream releases the snapshot's only file handle
+            sDiskHits.incrementAndGet();
+            return snapshot.getInputStream(DISK_CACHE_INDEX);
+        } catch (Exception e) {
+            MoPubLog.d("Unable to get from DiskLruCache", e);
+            return null;
+        }
+    }
+
+    private static void notifyPendingGets(@NonNull final String key, @NonNull final String diskKey,
+            @Nullable final byte[] bytes) {
+        final List<DiskLruCacheGetListener> listeners = sPendingGets.remove(diskKey);
+        if (listeners == null) {
+            return;
+        }
+
+        for (final DiskLruCacheGetListener listener : listeners) {
+            if (listener != null) {
+                listener.onComplete(key, bytes);
+            }
+        }
+    }
+
     private static class DiskLruCacheGetTask extends AsyncTask<Void, Void, byte[]> {
-        private final DiskLruCacheGetListener mDiskLruCacheGetListener;
         private final String mKey;
+        private final String mDiskKey;
 
-        DiskLruCacheGetTask(final String key, final DiskLruCacheGetListener diskLruCacheGetListener) {
-            mDiskLruCacheGetListener = diskLruCacheGetListener;
+        DiskLruCacheGetTask(final String key, final String diskKey) {
             mKey = key;
+            mDiskKey = diskKey;
         }
 
         @Override
@@ -210,16 +346,12 @@ public class CacheService {
                 return;
             }
 
-            if (mDiskLruCacheGetListener != null) {
-                mDiskLruCacheGetListener.onComplete(mKey, bytes);
-            }
+            notifyPendingGets(mKey, mDiskKey, bytes);
         }
 
         @Override
         protected void onCancelled() {
-            if (mDiskLruCacheGetListener != null) {
-                mDiskLruCacheGetListener.onComplete(mKey, null);
-            }
+            notifyPendingGets(mKey, mDiskKey, null);
         }
     }
 
@@ -251,12 +383,15 @@ public class CacheService {
                 sDiskLruCache = null;
             }
         }
+        sPendingGets.clear();
+        sDiskHits.set(0);
+        sMisses.set(0);
     }
 
     // Testing
     @Deprecated
     @VisibleForTesting
-    public static DiskLruCache getDiskLruCache() {
+    public static MappedDiskLruCache getDiskLruCache() {
         return sDiskLruCache;
     }
 }
@@ -17,6 +17,7 @@ import com.mopub.common.util.DeviceUtils;
 import com.mopub.common.util.Dips;
 import com.mopub.common.util.Utils;
 
+import java.io.File;
 import java.util.Locale;
 
 import static android.Manifest.permission.ACCESS_NETWORK_STATE;
@@ -236,6 +237,18 @@ public class ClientMetadata {
     }
 
 
+    /**
+     * @return false only when the device is known to have no connected network. Without the
+     * ACCESS_NETWORK_STATE permission connectivity can't be checked, so this returns true.
+     */
+    public boolean isNetworkAvailable() {
+        if (mContext.checkCallingOrSelfPermission(ACCESS_NETWORK_STATE) != PERMISSION_GRANTED) {
+            return true;
+        }
+        final NetworkInfo activeNetworkInfo = mConnectivityManager.getActiveNetworkInfo();
+        return activeNetworkInfo != null && activeNetworkInfo.isConnected();
+    }
+
     /**
      * Get the logical density of the display as in {@link android.util.DisplayMetrics#density}
      */
@@ -405,6 +418,13 @@ public class ClientMetadata {
         return mAppName;
     }
 
+    /**
+     * @return the cache directory of the application the SDK is included in.
+     */
+    public File getAppCacheDirectory() {
+        return mContext.getCacheDir();
+    }
+
     @Deprecated
     @VisibleForTesting
     public static void setInstance(ClientMetadata clientMetadata) {
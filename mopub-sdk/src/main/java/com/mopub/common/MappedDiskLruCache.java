@@ -0,0 +1,1337 @@
+package com.mopub.common;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.mopub.common.logging.MoPubLog;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * A variant of {@link DiskLruCache} for caches with many entries that are used from several
+ * threads. Keys, values, snapshots, editors, eviction and the value files on disk behave exactly
+ * as they do in {@link DiskLruCache}. The bookkeeping is different:
+ *
+ * <ul>
+ * <li>The journal is binary. Every record is an op code, the key, the value lengths for CLEAN
+ * records, and a CRC32 of the record. It is memory-mapped and replayed without any line or number
+ * parsing when the cache is opened.
+ * <li>The in-memory index is split into {@link #STRIPE_COUNT} stripes by key, each with its own
+ * lock, so reads and edits of different keys don't wait on each other. LRU order across stripes
+ * is kept with a global access counter.
+ * <li>Journal records are buffered and flushed in groups by the background thread instead of on
+ * every edit. {@link #flush()} writes pending records out immediately.
+ * </ul>
+ *
+ * <p>Buffered records can be lost if the process dies, so opening the cache recovers from that.
+ * The journal is replayed up to its last intact record, entries that were being edited are
+ * dropped, and files in the directory that don't belong to any entry are deleted in the
+ * background.
+ * The only edit that has to reach the journal before its files are touched is an update of an
+ * existing entry, and {@link #edit} flushes the journal in that case.
+ *
+ * <p>A directory that holds a text journal written by {@link DiskLruCache} is migrated when it is
+ * opened. Its entries and value files are kept and the text journal is replaced by a binary one.
+ */
+public final class MappedDiskLruCache implements Closeable {
+    static final String JOURNAL_FILE = "journal.bin";
+    static final String JOURNAL_FILE_TEMP = "journal.bin.tmp";
+    static final String JOURNAL_FILE_BACKUP = "journal.bin.bkp";
+    static final int MAGIC = 0x4d504a4c;
+    static final int VERSION = 1;
+    @VisibleForTesting static final int STRIPE_COUNT = 16;
+    private static final long ANY_SEQUENCE_NUMBER = -1;
+    private static final int MAX_KEY_LENGTH = 64;
+    private static final int REDUNDANT_OP_COMPACT_THRESHOLD = 2000;
+    private static final int JOURNAL_BUFFER_SIZE = 8 * 1024;
+
+    /*
+     * The journal starts with a header of four big-endian ints: MAGIC, VERSION, the application's
+     * version and the value count. Each record after it is laid out as
+     *
+     *     op        1 byte, one of CLEAN, DIRTY, REMOVE or READ
+     *     length    1 byte, length of the key. If the high bit is set the key is lowercase hex
+     *               and packed two characters per byte, like the SHA-1 keys of CacheService.
+     *     key       the packed key or its ASCII bytes
+     *     lengths   value count unsigned varints, CLEAN records only
+     *     checksum  big-endian int, CRC32 of all the bytes above
+     *
+     * The records have the same meaning as the lines of the DiskLruCache journal.
+     */
+    private static final byte CLEAN = 1;
+    private static final byte DIRTY = 2;
+    private static final byte REMOVE = 3;
+    private static final byte READ = 4;
+    private static final int HEADER_SIZE = 16;
+    private static final int CHECKSUM_SIZE = 4;
+    private static final int MAX_VARINT_SIZE = 10;
+    private static final int PACKED_KEY_FLAG = 0x80;
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    @NonNull private final File mDirectory;
+    @NonNull private final File mJournalFile;
+    @NonNull private final File mJournalFileTmp;
+    @NonNull private final File mJournalFileBackup;
+    private final int mAppVersion;
+    private final int mValueCount;
+    private volatile long mMaxSize;
+    @NonNull private final AtomicLong mSize = new AtomicLong();
+    @NonNull private final AtomicInteger mEntryCount = new AtomicInteger();
+    @NonNull private final AtomicLong mNextSequenceNumber = new AtomicLong();
+    @NonNull private final AtomicLong mAccessCounter = new AtomicLong();
+    @NonNull private final AtomicLong mEvictionCount = new AtomicLong();
+    @NonNull private final Stripe[] mStripes;
+    private volatile boolean mIsClosed;
+    @NonNull private final Object mTrimLock = new Object();
+
+    // Guarded by mJournalLock. Stripe locks are always taken before it.
+    @NonNull private final Object mJournalLock = new Object();
+    @Nullable private OutputStream mJournalWriter;
+    @NonNull private final byte[] mRecordBuffer;
+    @NonNull private final CRC32 mChecksum = new CRC32();
+    private int mRedundantOpCount;
+    private boolean mIsJournalFlushScheduled;
+    private int mJournalFlushCount;
+
+    /** This cache uses a single background thread to write the journal and evict entries. */
+    final ThreadPoolExecutor executorService =
+            new ThreadPoolExecutor(0, 1, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+    @NonNull private final AtomicBoolean mIsCleanupScheduled = new AtomicBoolean();
+    private final Callable<Void> mFlushJournalCallable = new Callable<Void>() {
+        public Void call() throws Exception {
+            synchronized (mJournalLock) {
+                mIsJournalFlushScheduled = false;
+                flushJournalLocked();
+            }
+            return null;
+        }
+    };
+    private final Callable<Void> mDeleteStrayFilesCallable = new Callable<Void>() {
+        public Void call() throws Exception {
+            if (!mIsClosed) {
+                deleteStrayFiles();
+            }
+            return null;
+        }
+    };
+    private final Callable<Void> mCleanupCallable = new Callable<Void>() {
+        public Void call() throws Exception {
+            mIsCleanupScheduled.set(false);
+            if (mIsClosed) {
+                return null;
+            }
+            trimToSize();
+            if (journalRebuildRequired()) {
+                rebuildJournal();
+            }
+            return null;
+        }
+    };
+
+    private MappedDiskLruCache(@NonNull final File directory, final int appVersion,
+            final int valueCount, final long maxSize) {
+        mDirectory = directory;
+        mAppVersion = appVersion;
+        mJournalFile = new File(directory, JOURNAL_FILE);
+        mJournalFileTmp = new File(directory, JOURNAL_FILE_TEMP);
+        mJournalFileBackup = new File(directory, JOURNAL_FILE_BACKUP);
+        mValueCount = valueCount;
+        mMaxSize = maxSize;
+        mRecordBuffer = new byte[2 + MAX_KEY_LENGTH + MAX_VARINT_SIZE * valueCount + CHECKSUM_SIZE];
+        mStripes = new Stripe[STRIPE_COUNT];
+        for (int i = 0; i < STRIPE_COUNT; i++) {
+            mStripes[i] = new Stripe();
+        }
+    }
+
+    /**
+     * Opens the cache in {@code directory}, creating a cache if none exists there. A cache
+     * written by {@link DiskLruCache} is migrated.
+     *
+     * @param directory a writable directory
+     * @param valueCount the number of values per cache entry. Must be positive.
+     * @param maxSize the maximum number of bytes this cache should use to store
+     * @throws IOException if reading or writing the cache directory fails
+     */
+    @NonNull
+    public static MappedDiskLruCache open(@NonNull final File directory, final int appVersion,
+            final int valueCount, final long maxSize) throws IOException {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize <= 0");
+        }
+        if (valueCount <= 0) {
+            throw new IllegalArgumentException("valueCount <= 0");
+        }
+
+        // If a bkp file exists, use it instead.
+        final File backupFile = new File(directory, JOURNAL_FILE_BACKUP);
+        if (backupFile.exists()) {
+            final File journalFile = new File(directory, JOURNAL_FILE);
+            // If journal file also exists just delete backup file.
+            if (journalFile.exists()) {
+                backupFile.delete();
+            } else {
+                renameTo(backupFile, journalFile, false);
+            }
+        }
+
+        directory.mkdirs();
+        MappedDiskLruCache cache =
+                new MappedDiskLruCache(directory, appVersion, valueCount, maxSize);
+        try {
+            cache.readJournalAndRecover();
+            return cache;
+        } catch (IOException journalIsCorrupt) {
+            MoPubLog.d("MappedDiskLruCache " + directory + " is corrupt: "
+                    + journalIsCorrupt.getMessage() + ", removing");
+            DiskLruCacheUtil.deleteContents(directory);
+        }
+
+        // Create a new empty cache.
+        directory.mkdirs();
+        cache = new MappedDiskLruCache(directory, appVersion, valueCount, maxSize);
+        cache.rebuildJournal();
+        return cache;
+    }
+
+    private void readJournalAndRecover() throws IOException {
+        final boolean isJournalIntact;
+        if (mJournalFile.exists()) {
+            isJournalIntact = readJournal();
+            if (!isJournalIntact) {
+                MoPubLog.d("MappedDiskLruCache " + mDirectory
+                        + " journal is truncated, recovering up to the last intact record");
+            }
+        } else {
+            final File legacyJournalFile = getLegacyJournalFile();
+            if (legacyJournalFile != null) {
+                readLegacyJournal(legacyJournalFile);
+            }
+            isJournalIntact = false;
+        }
+
+        processJournal();
+
+        if (isJournalIntact) {
+            synchronized (mJournalLock) {
+                mJournalWriter = new BufferedOutputStream(
+                        new FileOutputStream(mJournalFile, true), JOURNAL_BUFFER_SIZE);
+            }
+        } else {
+            rebuildJournal();
+        }
+
+        // Listing the directory is the slowest part of opening a large cache, and stray files
+        // are never read, so they are deleted in the background. This also deletes the journal
+        // files of a migrated DiskLruCache.
+        executorService.submit(mDeleteStrayFilesCallable);
+    }
+
+    /**
+     * Replays the binary journal.
+     *
+     * @return {@code false} if the journal ends with a torn or corrupt record.
+     */
+    private boolean readJournal() throws IOException {
+        final FileInputStream in = new FileInputStream(mJournalFile);
+        try {
+            final FileChannel channel = in.getChannel();
+            final MappedByteBuffer buffer =
+                    channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < HEADER_SIZE) {
+                throw new IOException("unexpected journal header: too short");
+            }
+            final int magic = buffer.getInt();
+            final int version = buffer.getInt();
+            final int appVersion = buffer.getInt();
+            final int valueCount = buffer.getInt();
+            if (magic != MAGIC || version != VERSION || appVersion != mAppVersion
+                    || valueCount != mValueCount) {
+                throw new IOException("unexpected journal header: [" + magic + ", " + version
+                        + ", " + appVersion + ", " + valueCount + "]");
+            }
+
+            final byte[] record = new byte[mRecordBuffer.length];
+            final char[] keyChars = new char[MAX_KEY_LENGTH];
+            final long[] lengths = new long[mValueCount];
+            int recordCount = 0;
+            while (true) {
+                final int start = buffer.position();
+                final int recordLength = readRecord(buffer, record, keyChars, lengths);
+                if (recordLength < 0) {
+                    buffer.position(start);
+                    break;
+                }
+
+                mChecksum.reset();
+                mChecksum.update(record, 0, recordLength);
+                if (buffer.remaining() < CHECKSUM_SIZE
+                        || buffer.getInt() != (int) mChecksum.getValue()) {
+                    buffer.position(start);
+                    break;
+                }
+
+                applyRecord(record[0], decodeKey(record, keyChars), lengths);
+                recordCount++;
+            }
+            mRedundantOpCount = recordCount - mEntryCount.get();
+            return !buffer.hasRemaining();
+        } finally {
+            DiskLruCacheUtil.closeQuietly(in);
+        }
+    }
+
+    /**
+     * Copies the bytes of the next record, without its checksum, into the given array and
+     * decodes its value lengths.
+     *
+     * @return The length of the record, or -1 if the journal ends or the record is malformed.
+     */
+    private int readRecord(@NonNull final MappedByteBuffer buffer, @NonNull final byte[] record,
+            @NonNull final char[] keyChars, @NonNull final long[] lengths) {
+        if (buffer.remaining() < 2) {
+            return -1;
+        }
+        final byte op = buffer.get();
+        final int lengthByte = buffer.get() & 0xff;
+        final int keyByteCount = (lengthByte & PACKED_KEY_FLAG) != 0
+                ? lengthByte & ~PACKED_KEY_FLAG
+                : lengthByte;
+        if (op < CLEAN || op > READ || keyByteCount < 1 || keyByteCount > MAX_KEY_LENGTH
+                || buffer.remaining() < keyByteCount) {
+            return -1;
+        }
+        record[0] = op;
+        record[1] = (byte) lengthByte;
+        buffer.get(record, 2, keyByteCount);
+        int length = 2 + keyByteCount;
+
+        if (op == CLEAN) {
+            for (int i = 0; i < mValueCount; i++) {
+                long value = 0;
+                int shift = 0;
+                while (true) {
+                    if (!buffer.hasRemaining() || shift >= 64) {
+                        return -1;
+                    }
+                    final byte b = buffer.get();
+                    record[length++] = b;
+                    value |= (long) (b & 0x7f) << shift;
+                    shift += 7;
+                    if ((b & 0x80) == 0) {
+                        break;
+                    }
+                }
+                lengths[i] = value;
+            }
+        }
+        return length;
+    }
+
+    @NonNull
+    private static String decodeKey(@NonNull final byte[] record, @NonNull final char[] keyChars) {
+        final int lengthByte = record[1] & 0xff;
+        if ((lengthByte & PACKED_KEY_FLAG) == 0) {
+            return new String(record, 2, lengthByte, DiskLruCacheUtil.US_ASCII);
+        }
+
+        final int byteCount = lengthByte & ~PACKED_KEY_FLAG;
+        for (int i = 0; i < byteCount; i++) {
+            keyChars[2 * i] = HEX_DIGITS[(record[2 + i] >> 4) & 0xf];
+            keyChars[2 * i + 1] = HEX_DIGITS[record[2 + i] & 0xf];
+        }
+        return new String(keyChars, 0, 2 * byteCount);
+    }
+
+    @Nullable
+    private File getLegacyJournalFile() {
+        final File journalFile = new File(mDirectory, DiskLruCache.JOURNAL_FILE);
+        if (journalFile.exists()) {
+            return journalFile;
+        }
+        final File backupFile = new File(mDirectory, DiskLruCache.JOURNAL_FILE_BACKUP);
+        if (backupFile.exists()) {
+            return backupFile;
+        }
+        return null;
+    }
+
+    /**
+     * Replays the text journal of a {@link DiskLruCache}.
+     */
+    private void readLegacyJournal(@NonNull final File journalFile) throws IOException {
+        final DiskLruCacheStrictLineReader reader = new DiskLruCacheStrictLineReader(
+                new FileInputStream(journalFile), DiskLruCacheUtil.US_ASCII);
+        try {
+            final String magic = reader.readLine();
+            final String version = reader.readLine();
+            final String appVersionString = reader.readLine();
+            final String valueCountString = reader.readLine();
+            final String blank = reader.readLine();
+            if (!DiskLruCache.MAGIC.equals(magic)
+                    || !DiskLruCache.VERSION_1.equals(version)
+                    || !Integer.toString(mAppVersion).equals(appVersionString)
+                    || !Integer.toString(mValueCount).equals(valueCountString)
+                    || !"".equals(blank)) {
+                throw new IOException("unexpected journal header: [" + magic + ", " + version
+                        + ", " + valueCountString + ", " + blank + "]");
+            }
+
+            final long[] lengths = new long[mValueCount];
+            while (true) {
+                final String line;
+                try {
+                    line = reader.readLine();
+                } catch (EOFException endOfJournal) {
+                    break;
+                }
+                readLegacyJournalLine(line, lengths);
+            }
+        } finally {
+            DiskLruCacheUtil.closeQuietly(reader);
+        }
+    }
+
+    private void readLegacyJournalLine(@NonNull final String line, @NonNull final long[] lengths)
+            throws IOException {
+        final String[] parts = line.split(" ");
+        if (parts.length < 2) {
+            throw new IOException("unexpected journal line: " + line);
+        }
+
+        final byte op;
+        if ("CLEAN".equals(parts[0]) && parts.length == 2 + mValueCount) {
+            op = CLEAN;
+            try {
+                for (int i = 0; i < mValueCount; i++) {
+                    lengths[i] = Long.parseLong(parts[2 + i]);
+                }
+            } catch (NumberFormatException e) {
+                throw new IOException("unexpected journal line: " + line);
+            }
+        } else if ("DIRTY".equals(parts[0]) && parts.length == 2) {
+            op = DIRTY;
+        } else if ("REMOVE".equals(parts[0]) && parts.length == 2) {
+            op = REMOVE;
+        } else if ("READ".equals(parts[0]) && parts.length == 2) {
+            op = READ;
+        } else {
+            throw new IOException("unexpected journal line: " + line);
+        }
+        applyRecord(op, parts[1], lengths);
+    }
+
+    /**
+     * Applies a journal record to the index while the cache is being opened.
+     */
+    private void applyRecord(final byte op, @NonNull final String key,
+            @NonNull final long[] lengths) {
+        final Stripe stripe = getStripe(key);
+        if (op == REMOVE) {
+            if (stripe.mEntries.remove(key) != null) {
+                mEntryCount.decrementAndGet();
+            }
+            return;
+        }
+
+        final Entry entry = getOrCreateEntry(stripe, key);
+        if (op == CLEAN) {
+            entry.mReadable = true;
+            entry.mCurrentEditor = null;
+            System.arraycopy(lengths, 0, entry.mLengths, 0, mValueCount);
+        } else if (op == DIRTY) {
+            entry.mCurrentEditor = new Editor(entry);
+        }
+        // READ records only move the entry up in the LRU order, which getting it already did.
+    }
+
+    /**
+     * Computes the initial size and collects garbage as a part of opening the
+     * cache. Dirty entries are assumed to be inconsistent and will be deleted.
+     */
+    private void processJournal() throws IOException {
+        for (final Stripe stripe : mStripes) {
+            final List<Entry> entries = new ArrayList<Entry>(stripe.mEntries.values());
+            for (final Entry entry : entries) {
+                if (entry.mCurrentEditor == null) {
+                    for (int t = 0; t < mValueCount; t++) {
+                        mSize.addAndGet(entry.mLengths[t]);
+                    }
+                } else {
+                    entry.mCurrentEditor = null;
+                    for (int t = 0; t < mValueCount; t++) {
+                        deleteIfExists(entry.getCleanFile(t));
+                        deleteIfExists(entry.getDirtyFile(t));
+                    }
+                    stripe.mEntries.remove(entry.mKey);
+                    mEntryCount.decrementAndGet();
+                }
+            }
+        }
+    }
+
+    /**
+     * Deletes every file in the cache directory that isn't the journal or a value of an entry.
+     * These are left behind when journal records are lost, like the files of an edit whose
+     * records were still buffered when the process died.
+     */
+    private void deleteStrayFiles() {
+        final String[] names = mDirectory.list();
+        if (names == null) {
+            return;
+        }
+
+        for (final String name : names) {
+            if (JOURNAL_FILE.equals(name)) {
+                continue;
+            }
+
+            // Value files are named key.index or key.index.tmp
+            final int dot = name.indexOf('.');
+            final String key = dot < 0 ? name : name.substring(0, dot);
+            final Stripe stripe = getStripe(key);
+
+            // Files are only created under the stripe lock, so an edit can't start in between.
+            // Getting the entry would change the LRU order, so any file of a key is kept.
+            synchronized (stripe) {
+                if (stripe.mEntries.containsKey(key)) {
+                    continue;
+                }
+                final File file = new File(mDirectory, name);
+                if (file.isFile() && !file.delete()) {
+                    MoPubLog.d("MappedDiskLruCache failed to delete stray file " + file);
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates a new journal that omits redundant information. This replaces the
+     * current journal if it exists.
+     */
+    private void rebuildJournal() throws IOException {
+        lockStripesAndRebuildJournal(0);
+    }
+
+    private void lockStripesAndRebuildJournal(final int stripeIndex) throws IOException {
+        if (stripeIndex < STRIPE_COUNT) {
+            synchronized (mStripes[stripeIndex]) {
+                lockStripesAndRebuildJournal(stripeIndex + 1);
+            }
+            return;
+        }
+
+        synchronized (mJournalLock) {
+            if (mIsClosed) {
+                return;
+            }
+            if (mJournalWriter != null) {
+                mJournalWriter.close();
+            }
+
+            // Write the entries in LRU order so replaying the journal restores it.
+            final List<Entry> entries = new ArrayList<Entry>(mEntryCount.get());
+            for (final Stripe stripe : mStripes) {
+                entries.addAll(stripe.mEntries.values());
+            }
+            Collections.sort(entries, new Comparator<Entry>() {
+                @Override
+                public int compare(final Entry lhs, final Entry rhs) {
+                    return lhs.mLastAccess < rhs.mLastAccess
+                            ? -1 : (lhs.mLastAccess == rhs.mLastAccess ? 0 : 1);
+                }
+            });
+
+            final OutputStream writer = new BufferedOutputStream(
+                    new FileOutputStream(mJournalFileTmp), JOURNAL_BUFFER_SIZE);
+            try {
+                writeInt(mRecordBuffer, 0, MAGIC);
+                writeInt(mRecordBuffer, 4, VERSION);
+                writeInt(mRecordBuffer, 8, mAppVersion);
+                writeInt(mRecordBuffer, 12, mValueCount);
+                writer.write(mRecordBuffer, 0, HEADER_SIZE);
+
+                for (final Entry entry : entries) {
+                    if (entry.mCurrentEditor != null) {
+                        writer.write(mRecordBuffer, 0, encodeRecord(DIRTY, entry));
+                    } else if (entry.mReadable) {
+                        writer.write(mRecordBuffer, 0, encodeRecord(CLEAN, entry));
+                    }
+                }
+            } finally {
+                writer.close();
+            }
+
+            if (mJournalFile.exists()) {
+                renameTo(mJournalFile, mJournalFileBackup, true);
+            }
+            renameTo(mJournalFileTmp, mJournalFile, false);
+            mJournalFileBackup.delete();
+
+            mJournalWriter = new BufferedOutputStream(
+                    new FileOutputStream(mJournalFile, true), JOURNAL_BUFFER_SIZE);
+            mRedundantOpCount = 0;
+        }
+    }
+
+    /**
+     * Buffers a journal record. The buffer is flushed by the background thread, so records
+     * appended by concurrent edits are written together.
+     */
+    private void appendRecord(final byte op, @NonNull final Entry entry) throws IOException {
+        final boolean rebuildRequired;
+        synchronized (mJournalLock) {
+            if (mJournalWriter == null) {
+                return; // Closed.
+            }
+            mJournalWriter.write(mRecordBuffer, 0, encodeRecord(op, entry));
+
+            if (op != DIRTY) {
+                mRedundantOpCount++;
+            }
+            if (!mIsJournalFlushScheduled) {
+                mIsJournalFlushScheduled = true;
+                executorService.submit(mFlushJournalCallable);
+            }
+            rebuildRequired = journalRebuildRequired();
+        }
+
+        if (rebuildRequired) {
+            scheduleCleanup();
+        }
+    }
+
+    /**
+     * Encodes a record into mRecordBuffer. Must hold mJournalLock.
+     *
+     * @return The length of the record.
+     */
+    private int encodeRecord(final byte op, @NonNull final Entry entry) {
+        final String key = entry.mKey;
+        int length = 0;
+        mRecordBuffer[length++] = op;
+        if (isPackableKey(key)) {
+            mRecordBuffer[length++] = (byte) (PACKED_KEY_FLAG | key.length() / 2);
+            for (int i = 0; i < key.length(); i += 2) {
+                mRecordBuffer[length++] = (byte) ((Character.digit(key.charAt(i), 16) << 4)
+                        | Character.digit(key.charAt(i + 1), 16));
+            }
+        } else {
+            mRecordBuffer[length++] = (byte) key.length();
+            // Keys are validated to be ASCII
+            for (int i = 0; i < key.length(); i++) {
+                mRecordBuffer[length++] = (byte) key.charAt(i);
+            }
+        }
+        if (op == CLEAN) {
+            for (int i = 0; i < mValueCount; i++) {
+                long value = entry.mLengths[i];
+                while ((value & ~0x7fL) != 0) {
+                    mRecordBuffer[length++] = (byte) ((value & 0x7f) | 0x80);
+                    value >>>= 7;
+                }
+                mRecordBuffer[length++] = (byte) value;
+            }
+        }
+        mChecksum.reset();
+        mChecksum.update(mRecordBuffer, 0, length);
+        writeInt(mRecordBuffer, length, (int) mChecksum.getValue());
+        return length + CHECKSUM_SIZE;
+    }
+
+    private static boolean isPackableKey(@NonNull final String key) {
+        if (key.length() % 2 != 0) {
+            return false;
+        }
+        for (int i = 0; i < key.length(); i++) {
+            final char c = key.charAt(i);
+            if ((c < '0' || c > '9') && (c < 'a' || c > 'f')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void flushJournalLocked() throws IOException {
+        if (mJournalWriter != null) {
+            mJournalWriter.flush();
+            mJournalFlushCount++;
+        }
+    }
+
+    private void scheduleCleanup() {
+        if (mIsCleanupScheduled.compareAndSet(false, true)) {
+            executorService.submit(mCleanupCallable);
+        }
+    }
+
+    private static void deleteIfExists(@NonNull final File file) throws IOException {
+        if (file.exists() && !file.delete()) {
+            throw new IOException();
+        }
+    }
+
+    private static void renameTo(@NonNull final File from, @NonNull final File to,
+            final boolean deleteDestination) throws IOException {
+        if (deleteDestination) {
+            deleteIfExists(to);
+        }
+        if (!from.renameTo(to)) {
+            throw new IOException();
+        }
+    }
+
+    @NonNull
+    private Stripe getStripe(@NonNull final String key) {
+        return mStripes[(key.hashCode() & Integer.MAX_VALUE) % STRIPE_COUNT];
+    }
+
+    /**
+     * Gets or creates the entry and moves it to the head of the LRU queue. Must hold the lock of
+     * the stripe.
+     */
+    @NonNull
+    private Entry getOrCreateEntry(@NonNull final Stripe stripe, @NonNull final String key) {
+        Entry entry = stripe.mEntries.get(key);
+        if (entry == null) {
+            entry = new Entry(key);
+            stripe.mEntries.put(key, entry);
+            mEntryCount.incrementAndGet();
+        }
+        entry.mLastAccess = mAccessCounter.incrementAndGet();
+        return entry;
+    }
+
+    /**
+     * Returns a snapshot of the entry named {@code key}, or null if it doesn't
+     * exist is not currently readable. If a value is returned, it is moved to
+     * the head of the LRU queue.
+     */
+    @Nullable
+    public Snapshot get(@NonNull final String key) throws IOException {
+        checkNotClosed();
+        validateKey(key);
+        final Stripe stripe = getStripe(key);
+        synchronized (stripe) {
+            final Entry entry = stripe.mEntries.get(key);
+            if (entry == null || !entry.mReadable) {
+                return null;
+            }
+
+            // Open all streams eagerly to guarantee that we see a single published
+            // snapshot. If we opened streams lazily then the streams could come
+            // from different edits.
+            final InputStream[] ins = new InputStream[mValueCount];
+            try {
+                for (int i = 0; i < mValueCount; i++) {
+                    ins[i] = new FileInputStream(entry.getCleanFile(i));
+                }
+            } catch (FileNotFoundException e) {
+                // A file must have been deleted manually!
+                for (int i = 0; i < mValueCount; i++) {
+                    if (ins[i] != null) {
+                        DiskLruCacheUtil.closeQuietly(ins[i]);
+                    } else {
+                        break;
+                    }
+                }
+                return null;
+            }
+
+            entry.mLastAccess = mAccessCounter.incrementAndGet();
+            appendRecord(READ, entry);
+            return new Snapshot(key, entry.mSequenceNumber, ins, entry.mLengths.clone());
+        }
+    }
+
+    /**
+     * Returns an editor for the entry named {@code key}, or null if another
+     * edit is in progress.
+     */
+    @Nullable
+    public Editor edit(@NonNull final String key) throws IOException {
+        return edit(key, ANY_SEQUENCE_NUMBER);
+    }
+
+    @Nullable
+    private Editor edit(@NonNull final String key, final long expectedSequenceNumber)
+            throws IOException {
+        checkNotClosed();
+        validateKey(key);
+        final Stripe stripe = getStripe(key);
+        synchronized (stripe) {
+            final Entry existing = stripe.mEntries.get(key);
+            if (expectedSequenceNumber != ANY_SEQUENCE_NUMBER && (existing == null
+                    || existing.mSequenceNumber != expectedSequenceNumber)) {
+                return null; // Snapshot is stale.
+            }
+            if (existing != null && existing.mCurrentEditor != null) {
+                return null; // Another edit is in progress.
+            }
+
+            final Entry entry = getOrCreateEntry(stripe, key);
+            final Editor editor = new Editor(entry);
+            entry.mCurrentEditor = editor;
+            appendRecord(DIRTY, entry);
+
+            // Committing replaces the files of a readable entry, so if the process dies before
+            // the journal has the DIRTY record, the old lengths would be replayed for the new
+            // files. New entries don't need this since their files are deleted as strays.
+            if (entry.mReadable) {
+                synchronized (mJournalLock) {
+                    flushJournalLocked();
+                }
+            }
+            return editor;
+        }
+    }
+
+    /** Returns the directory where this cache stores its data. */
+    @NonNull
+    public File getDirectory() {
+        return mDirectory;
+    }
+
+    /**
+     * Returns the maximum number of bytes that this cache should use to store
+     * its data.
+     */
+    public long getMaxSize() {
+        return mMaxSize;
+    }
+
+    /**
+     * Changes the maximum number of bytes the cache can store and queues a job
+     * to trim the existing store, if necessary.
+     */
+    public void setMaxSize(final long maxSize) {
+        mMaxSize = maxSize;
+        scheduleCleanup();
+    }
+
+    /**
+     * Returns the number of bytes currently being used to store the values in
+     * this cache. This may be greater than the max size if a background
+     * deletion is pending.
+     */
+    public long size() {
+        return mSize.get();
+    }
+
+    /**
+     * Returns the number of entries removed to keep the cache within its max size.
+     */
+    public long getEvictionCount() {
+        return mEvictionCount.get();
+    }
+
+    private void completeEdit(@NonNull final Editor editor, final boolean success)
+            throws IOException {
+        final Entry entry = editor.mEntry;
+        synchronized (entry.mStripe) {
+            if (entry.mCurrentEditor != editor) {
+                throw new IllegalStateException();
+            }
+
+            // If this edit is creating the entry for the first time, every index must have a value.
+            if (success && !entry.mReadable) {
+                for (int i = 0; i < mValueCount; i++) {
+                    if (!editor.mWritten[i]) {
+                        editor.abort();
+                        throw new IllegalStateException(
+                                "Newly created entry didn't create value for index " + i);
+                    }
+                    if (!entry.getDirtyFile(i).exists()) {
+                        editor.abort();
+                        return;
+                    }
+                }
+            }
+
+            for (int i = 0; i < mValueCount; i++) {
+                final File dirty = entry.getDirtyFile(i);
+                if (success) {
+                    if (dirty.exists()) {
+                        final File clean = entry.getCleanFile(i);
+                        dirty.renameTo(clean);
+                        final long oldLength = entry.mLengths[i];
+                        final long newLength = clean.length();
+                        entry.mLengths[i] = newLength;
+                        mSize.addAndGet(newLength - oldLength);
+                    }
+                } else {
+                    deleteIfExists(dirty);
+                }
+            }
+
+            entry.mCurrentEditor = null;
+            if (entry.mReadable | success) {
+                entry.mReadable = true;
+                appendRecord(CLEAN, entry);
+                if (success) {
+                    entry.mSequenceNumber = mNextSequenceNumber.getAndIncrement();
+                }
+            } else {
+                entry.mStripe.mEntries.remove(entry.mKey);
+                mEntryCount.decrementAndGet();
+                appendRecord(REMOVE, entry);
+            }
+        }
+
+        if (mSize.get() > mMaxSize) {
+            scheduleCleanup();
+        }
+    }
+
+    /**
+     * We only rebuild the journal when it will halve the size of the journal
+     * and eliminate at least 2000 ops.
+     */
+    private boolean journalRebuildRequired() {
+        synchronized (mJournalLock) {
+            return mRedundantOpCount >= REDUNDANT_OP_COMPACT_THRESHOLD
+                    && mRedundantOpCount >= mEntryCount.get();
+        }
+    }
+
+    /**
+     * Drops the entry for {@code key} if it exists and can be removed. Entries
+     * actively being edited cannot be removed.
+     *
+     * @return true if an entry was removed.
+     */
+    public boolean remove(@NonNull final String key) throws IOException {
+        checkNotClosed();
+        validateKey(key);
+        final Stripe stripe = getStripe(key);
+        synchronized (stripe) {
+            final Entry entry = stripe.mEntries.get(key);
+            if (entry == null || entry.mCurrentEditor != null) {
+                return false;
+            }
+
+            for (int i = 0; i < mValueCount; i++) {
+                final File file = entry.getCleanFile(i);
+                if (file.exists() && !file.delete()) {
+                    throw new IOException("failed to delete " + file);
+                }
+                mSize.addAndGet(-entry.mLengths[i]);
+                entry.mLengths[i] = 0;
+            }
+
+            stripe.mEntries.remove(key);
+            mEntryCount.decrementAndGet();
+            appendRecord(REMOVE, entry);
+            return true;
+        }
+    }
+
+    /** Returns true if this cache has been closed. */
+    public boolean isClosed() {
+        return mIsClosed;
+    }
+
+    private void checkNotClosed() {
+        if (mIsClosed) {
+            throw new IllegalStateException("cache is closed");
+        }
+    }
+
+    /** Force buffered operations to the filesystem. */
+    public void flush() throws IOException {
+        checkNotClosed();
+        trimToSize();
+        synchronized (mJournalLock) {
+            flushJournalLocked();
+        }
+    }
+
+    /** Closes this cache. Stored values will remain on the filesystem. */
+    public synchronized void close() throws IOException {
+        if (mIsClosed) {
+            return; // Already closed.
+        }
+
+        final List<Editor> editors = new ArrayList<Editor>();
+        for (final Stripe stripe : mStripes) {
+            synchronized (stripe) {
+                for (final Entry entry : stripe.mEntries.values()) {
+                    if (entry.mCurrentEditor != null) {
+                        editors.add(entry.mCurrentEditor);
+                    }
+                }
+            }
+        }
+        for (final Editor editor : editors) {
+            editor.abortUnlessCommitted();
+        }
+        trimToSize();
+
+        mIsClosed = true;
+        synchronized (mJournalLock) {
+            if (mJournalWriter != null) {
+                mJournalWriter.close();
+                mJournalWriter = null;
+            }
+        }
+    }
+
+    private void trimToSize() throws IOException {
+        // Concurrent trims would both evict for the same excess
+        synchronized (mTrimLock) {
+            while (mSize.get() > mMaxSize) {
+                final Entry eldest = findEldestEntry();
+                if (eldest == null) {
+                    return; // Everything left is being edited.
+                }
+                if (remove(eldest.mKey)) {
+                    mEvictionCount.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the least recently used entry that is not being edited.
+     */
+    @Nullable
+    private Entry findEldestEntry() {
+        Entry eldest = null;
+        for (final Stripe stripe : mStripes) {
+            synchronized (stripe) {
+                for (final Entry entry : stripe.mEntries.values()) {
+                    if (entry.mCurrentEditor == null) {
+                        if (eldest == null || entry.mLastAccess < eldest.mLastAccess) {
+                            eldest = entry;
+                        }
+                        break;
+                    }
+                }
+            }
+        }
+        return eldest;
+    }
+
+    /**
+     * Closes the cache and deletes all of its stored values. This will delete
+     * all files in the cache directory including files that weren't created by
+     * the cache.
+     */
+    public void delete() throws IOException {
+        close();
+        DiskLruCacheUtil.deleteContents(mDirectory);
+    }
+
+    @VisibleForTesting
+    int getJournalFlushCount() {
+        synchronized (mJournalLock) {
+            return mJournalFlushCount;
+        }
+    }
+
+    private void validateKey(@NonNull final String key) {
+        if (!DiskLruCache.LEGAL_KEY_PATTERN.matcher(key).matches()) {
+            throw new IllegalArgumentException(
+                    "keys must match regex [a-z0-9_-]{1,64}: \"" + key + "\"");
+        }
+    }
+
+    private static String inputStreamToString(@NonNull final InputStream in) throws IOException {
+        return DiskLruCacheUtil.readFully(new InputStreamReader(in, DiskLruCacheUtil.UTF_8));
+    }
+
+    private static void writeInt(@NonNull final byte[] buffer, final int offset, final int value) {
+        buffer[offset] = (byte) (value >>> 24);
+        buffer[offset + 1] = (byte) (value >>> 16);
+        buffer[offset + 2] = (byte) (value >>> 8);
+        buffer[offset + 3] = (byte) value;
+    }
+
+    /** A snapshot of the values for an entry. */
+    public final class Snapshot implements Closeable {
+        @NonNull private final String mKey;
+        private final long mSequenceNumber;
+        @NonNull private final InputStream[] mIns;
+        @NonNull private final long[] mLengths;
+
+        private Snapshot(@NonNull final String key, final long sequenceNumber,
+                @NonNull final InputStream[] ins, @NonNull final long[] lengths) {
+            mKey = key;
+            mSequenceNumber = sequenceNumber;
+            mIns = ins;
+            mLengths = lengths;
+        }
+
+        /**
+         * Returns an editor for this snapshot's entry, or null if either the
+         * entry has changed since this snapshot was created or if another edit
+         * is in progress.
+         */
+        @Nullable
+        public Editor edit() throws IOException {
+            return MappedDiskLruCache.this.edit(mKey, mSequenceNumber);
+        }
+
+        /** Returns the unbuffered stream with the value for {@code index}. */
+        public InputStream getInputStream(final int index) {
+            return mIns[index];
+        }
+
+        /** Returns the string value for {@code index}. */
+        public String getString(final int index) throws IOException {
+            return inputStreamToString(getInputStream(index));
+        }
+
+        /** Returns the byte length of the value for {@code index}. */
+        public long getLength(final int index) {
+            return mLengths[index];
+        }
+
+        public void close() {
+            for (final InputStream in : mIns) {
+                DiskLruCacheUtil.closeQuietly(in);
+            }
+        }
+    }
+
+    private static final OutputStream NULL_OUTPUT_STREAM = new OutputStream() {
+        @Override
+        public void write(int b) throws IOException {
+            // Eat all writes silently.
+        }
+    };
+
+    /** Edits the values for an entry. */
+    public final class Editor {
+        @NonNull private final Entry mEntry;
+        private final boolean[] mWritten;
+        private boolean mHasErrors;
+        private boolean mCommitted;
+
+        private Editor(@NonNull final Entry entry) {
+            mEntry = entry;
+            mWritten = (entry.mReadable) ? null : new boolean[mValueCount];
+        }
+
+        /**
+         * Returns an unbuffered input stream to read the last committed value,
+         * or null if no value has been committed.
+         */
+        @Nullable
+        public InputStream newInputStream(final int index) throws IOException {
+            synchronized (mEntry.mStripe) {
+                if (mEntry.mCurrentEditor != this) {
+                    throw new IllegalStateException();
+                }
+                if (!mEntry.mReadable) {
+                    return null;
+                }
+                try {
+                    return new FileInputStream(mEntry.getCleanFile(index));
+                } catch (FileNotFoundException e) {
+                    return null;
+                }
+            }
+        }
+
+        /**
+         * Returns the last committed value as a string, or null if no value
+         * has been committed.
+         */
+        @Nullable
+        public String getString(final int index) throws IOException {
+            final InputStream in = newInputStream(index);
+            return in != null ? inputStreamToString(in) : null;
+        }
+
+        /**
+         * Returns a new unbuffered output stream to write the value at
+         * {@code index}. If the underlying output stream encounters errors
+         * when writing to the filesystem, this edit will be aborted when
+         * {@link #commit} is called. The returned output stream does not throw
+         * IOExceptions.
+         */
+        @NonNull
+        public OutputStream newOutputStream(final int index) throws IOException {
+            synchronized (mEntry.mStripe) {
+                if (mEntry.mCurrentEditor != this) {
+                    throw new IllegalStateException();
+                }
+                if (!mEntry.mReadable) {
+                    mWritten[index] = true;
+                }
+                final File dirtyFile = mEntry.getDirtyFile(index);
+                FileOutputStream outputStream;
+                try {
+                    outputStream = new FileOutputStream(dirtyFile);
+                } catch (FileNotFoundException e) {
+                    // Attempt to recreate the cache directory.
+                    mDirectory.mkdirs();
+                    try {
+                        outputStream = new FileOutputStream(dirtyFile);
+                    } catch (FileNotFoundException e2) {
+                        // We are unable to recover. Silently eat the writes.
+                        return NULL_OUTPUT_STREAM;
+                    }
+                }
+                return new FaultHidingOutputStream(outputStream);
+            }
+        }
+
+        /** Sets the value at {@code index} to {@code value}. */
+        public void set(final int index, @NonNull final String value) throws IOException {
+            Writer writer = null;
+            try {
+                writer = new OutputStreamWriter(newOutputStream(index), DiskLruCacheUtil.UTF_8);
+                writer.write(value);
+            } finally {
+                DiskLruCacheUtil.closeQuietly(writer);
+            }
+        }
+
+        /**
+         * Commits this edit so it is visible to readers.  This releases the
+         * edit lock so another edit may be started on the same key.
+         */
+        public void commit() throws IOException {
+            if (mHasErrors) {
+                completeEdit(this, false);
+                remove(mEntry.mKey); // The previous entry is stale.
+            } else {
+                completeEdit(this, true);
+            }
+            mCommitted = true;
+        }
+
+        /**
+         * Aborts this edit. This releases the edit lock so another edit may be
+         * started on the same key.
+         */
+        public void abort() throws IOException {
+            completeEdit(this, false);
+        }
+
+        public void abortUnlessCommitted() {
+            if (!mCommitted) {
+                try {
+                    abort();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+
+        private class FaultHidingOutputStream extends FilterOutputStream {
+            private FaultHidingOutputStream(@NonNull final OutputStream out) {
+                super(out);
+            }
+
+            @Override
+            public void write(final int oneByte) {
+                try {
+                    out.write(oneByte);
+                } catch (IOException e) {
+                    mHasErrors = true;
+                }
+            }
+
+            @Override
+            public void write(@NonNull final byte[] buffer, final int offset, final int length) {
+                try {
+                    out.write(buffer, offset, length);
+                } catch (IOException e) {
+                    mHasErrors = true;
+                }
+            }
+
+            @Override
+            public void close() {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    mHasErrors = true;
+                }
+            }
+
+            @Override
+            public void flush() {
+                try {
+                    out.flush();
+                } catch (IOException e) {
+                    mHasErrors = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * A lock stripe of the index. Entries are kept in access order.
+     */
+    private final class Stripe {
+        @NonNull final LinkedHashMap<String, Entry> mEntries =
+                new LinkedHashMap<String, Entry>(0, 0.75f, true);
+    }
+
+    private final class Entry {
+        @NonNull private final String mKey;
+        @NonNull private final Stripe mStripe;
+
+        /** Lengths of this entry's files. */
+        @NonNull private final long[] mLengths;
+
+        /** True if this entry has ever been published. */
+        private boolean mReadable;
+
+        /** The ongoing edit or null if this entry is not being edited. */
+        @Nullable private Editor mCurrentEditor;
+
+        /** The sequence number of the most recently committed edit to this entry. */
+        private long mSequenceNumber;
+
+        /** Orders entries of different stripes for LRU eviction. */
+        private volatile long mLastAccess;
+
+        private Entry(@NonNull final String key) {
+            mKey = key;
+            mStripe = getStripe(key);
+            mLengths = new long[mValueCount];
+        }
+
+        @NonNull
+        File getCleanFile(final int i) {
+            return new File(mDirectory, mKey + "." + i);
+        }
+
+        @NonNull
+        File getDirtyFile(final int i) {
+            return new File(mDirectory, mKey + "." + i + ".tmp");
+        }
+    }
+}
@@ -63,7 +63,8 @@ public abstract class BaseEvent {
     public enum Name {
         AD_REQUEST("ad_request"),
         IMPRESSION_REQUEST("impression_request"),
-        CLICK_REQUEST("click_request");
+        CLICK_REQUEST("click_request"),
+        VAST_WRAPPER_REQUEST("vast_wrapper_request");
 
         @NonNull private final String mName;
         private Name(@NonNull String name) {
@@ -91,7 +92,8 @@ public abstract class BaseEvent {
     }
 
     public enum SamplingRate {
-        AD_REQUEST(0.1);
+        AD_REQUEST(0.1),
+        VAST_WRAPPER_REQUEST(0.1);
 
         private final double mSamplingRate;
         private SamplingRate(double samplingRate) {
@@ -138,6 +140,11 @@ public abstract class BaseEvent {
      */
     private final double mSamplingRate;
 
+    /**
+     * The inverse of the probability this event was sampled with, set once it passes sampling.
+     */
+    @Nullable private volatile Double mSamplingWeight;
+
     public BaseEvent(@NonNull final Builder builder) {
         Preconditions.checkNotNull(builder);
 
@@ -389,6 +396,15 @@ public abstract class BaseEvent {
         return mSamplingRate;
     }
 
+    @Nullable
+    public Double getSamplingWeight() {
+        return mSamplingWeight;
+    }
+
+    void setSamplingWeight(double samplingWeight) {
+        mSamplingWeight = samplingWeight;
+    }
+
     @NonNull
     public Long getTimestampUtcMs() {
         return mTimestampUtcMs;
@@ -434,6 +450,7 @@ public abstract class BaseEvent {
                 "RequestUri: " + getRequestUri() + "\n" +
                 "RequestRetries: " + getRequestRetries() + "\n" +
                 "SamplingRate: " + getSamplingRate() + "\n" +
+                "SamplingWeight: " + getSamplingWeight() + "\n" +
                 "TimestampUtcMs: " + new SimpleDateFormat().format(new Date(getTimestampUtcMs())) + "\n";
     }
 
@@ -0,0 +1,466 @@
+package com.mopub.common.event;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.mopub.common.ClientMetadata;
+import com.mopub.common.Preconditions;
+import com.mopub.common.VisibleForTesting;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Serializes batches of events into a compact, gzipped binary format. This is an alternative to
+ * the JSON produced by {@link EventSerializer} and carries exactly the same key value pairs.
+ *
+ * Events are written straight to the output stream without building intermediate objects.
+ * Fields that are constant for a session, such as app and device details, are written once in
+ * the batch header. An event only repeats such a field if its value differs from the header.
+ *
+ * Layout, before compression:
+ * <pre>
+ * batch  := MAGIC(int) VERSION(byte) eventCount(varint) header event*
+ * header := presentMask(varint) value*
+ * event  := presentMask(varint) nullMask(varint) value*
+ * </pre>
+ * Bit {@code i} of a mask refers to the {@link Field} with ordinal {@code i}. Values follow in
+ * field order. In an event, a set bit in nullMask means a session field is null even though
+ * the header has a value for it.
+ */
+public class CompactEventSerializer {
+
+    @VisibleForTesting static final int MAGIC = 0x4d504556; // "MPEV"
+    @VisibleForTesting static final int VERSION = 1;
+    public static final String CONTENT_TYPE = "application/octet-stream";
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int BUFFER_SIZE_BYTES = 8 * 1024;
+
+    private enum Type {
+        STRING,
+        INT,
+        LONG,
+        DOUBLE,
+        BOOLEAN
+    }
+
+    /**
+     * The fields of an event in the order they are written. Never reorder or remove fields
+     * without bumping {@link #VERSION}.
+     */
+    @VisibleForTesting
+    enum Field {
+        SCRIBE_CATEGORY(Type.STRING, false, "_category_"),
+        TIMESTAMP(Type.LONG, false, "ts", "timestamp_client"),
+        NAME(Type.STRING, false, "name"),
+        NAME_CATEGORY(Type.STRING, false, "name_category"),
+        SDK_PRODUCT(Type.INT, false, "sdk_product"),
+        SDK_VERSION(Type.STRING, true, "sdk_version"),
+        AD_UNIT_ID(Type.STRING, false, "ad_unit_id"),
+        AD_CREATIVE_ID(Type.STRING, false, "ad_creative_id"),
+        AD_TYPE(Type.STRING, false, "ad_type"),
+        AD_NETWORK_TYPE(Type.STRING, false, "ad_network_type"),
+        AD_WIDTH_PX(Type.DOUBLE, false, "ad_width_px"),
+        AD_HEIGHT_PX(Type.DOUBLE, false, "ad_height_px"),
+        APP_PLATFORM(Type.INT, true, "app_platform"),
+        APP_NAME(Type.STRING, true, "app_name"),
+        APP_PACKAGE_NAME(Type.STRING, true, "app_package_name"),
+        APP_VERSION(Type.STRING, true, "app_version"),
+        CLIENT_ADVERTISING_ID(Type.STRING, true, "client_advertising_id"),
+        CLIENT_DO_NOT_TRACK(Type.BOOLEAN, true, "client_do_not_track"),
+        DEVICE_MANUFACTURER(Type.STRING, true, "device_manufacturer"),
+        DEVICE_MODEL(Type.STRING, true, "device_model"),
+        DEVICE_PRODUCT(Type.STRING, true, "device_product"),
+        DEVICE_OS_VERSION(Type.STRING, true, "device_os_version"),
+        DEVICE_SCREEN_WIDTH(Type.INT, true, "device_screen_width_px"),
+        DEVICE_SCREEN_HEIGHT(Type.INT, true, "device_screen_height_px"),
+        GEO_LAT(Type.DOUBLE, false, "geo_lat"),
+        GEO_LON(Type.DOUBLE, false, "geo_lon"),
+        GEO_ACCURACY(Type.DOUBLE, false, "geo_accuracy_radius_meters"),
+        PERFORMANCE_DURATION_MS(Type.DOUBLE, false, "perf_duration_ms"),
+        NETWORK_TYPE(Type.INT, false, "network_type"),
+        NETWORK_OPERATOR_CODE(Type.STRING, false, "network_operator_code"),
+        NETWORK_OPERATOR_NAME(Type.STRING, false, "network_operator_name"),
+        NETWORK_ISO_COUNTRY_CODE(Type.STRING, false, "network_iso_country_code"),
+        NETWORK_SIM_CODE(Type.STRING, true, "network_sim_code"),
+        NETWORK_SIM_OPERATOR_NAME(Type.STRING, true, "network_sim_operator_name"),
+        NETWORK_SIM_ISO_COUNTRY_CODE(Type.STRING, true, "network_sim_iso_country_code"),
+        REQUEST_ID(Type.STRING, false, "req_id"),
+        REQUEST_STATUS_CODE(Type.INT, false, "req_status_code"),
+        REQUEST_URI(Type.STRING, false, "req_uri"),
+        REQUEST_RETRIES(Type.INT, false, "req_retries"),
+        ERROR_EXCEPTION_CLASS_NAME(Type.STRING, false, "error_exception_class_name"),
+        ERROR_MESSAGE(Type.STRING, false, "error_message"),
+        ERROR_STACK_TRACE(Type.STRING, false, "error_stack_trace"),
+        ERROR_FILE_NAME(Type.STRING, false, "error_file_name"),
+        ERROR_CLASS_NAME(Type.STRING, false, "error_class_name"),
+        ERROR_METHOD_NAME(Type.STRING, false, "error_method_name"),
+        ERROR_LINE_NUMBER(Type.INT, false, "error_line_number"),
+        SAMPLING_WEIGHT(Type.DOUBLE, false, "sampling_weight");
+
+        @NonNull private final Type mType;
+        private final boolean mIsSessionField;
+        @NonNull private final String[] mKeys;
+
+        private Field(@NonNull final Type type, final boolean isSessionField,
+                @NonNull final String... keys) {
+            mType = type;
+            mIsSessionField = isSessionField;
+            mKeys = keys;
+        }
+    }
+
+    private static final Field[] FIELDS = Field.values();
+
+    /**
+     * Serializes a batch of events.
+     *
+     * @return The gzipped batch.
+     */
+    @NonNull
+    public byte[] serialize(@NonNull final List<BaseEvent> events) {
+        Preconditions.checkNotNull(events);
+
+        final ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        try {
+            serialize(events, byteArrayOutputStream);
+        } catch (IOException e) {
+            // ByteArrayOutputStream does not throw
+            throw new IllegalStateException(e);
+        }
+        return byteArrayOutputStream.toByteArray();
+    }
+
+    /**
+     * Serializes a batch of events to a stream. The stream is not closed.
+     */
+    public void serialize(@NonNull final List<BaseEvent> events,
+            @NonNull final OutputStream outputStream) throws IOException {
+        Preconditions.checkNotNull(events);
+        Preconditions.checkNotNull(outputStream);
+
+        final GZIPOutputStream gzipOutputStream = new GZIPOutputStream(outputStream);
+        final DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(gzipOutputStream, BUFFER_SIZE_BYTES));
+
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        writeVarLong(out, events.size());
+
+        // Header values come from the first event
+        final Object[] headerValues = new Object[FIELDS.length];
+        if (!events.isEmpty()) {
+            final BaseEvent firstEvent = events.get(0);
+            for (final Field field : FIELDS) {
+                if (field.mIsSessionField) {
+                    headerValues[field.ordinal()] = getValue(firstEvent, field);
+                }
+            }
+        }
+        final long headerPresentMask = getPresentMask(headerValues);
+        writeVarLong(out, headerPresentMask);
+        writeValues(out, headerValues, headerPresentMask);
+
+        final Object[] values = new Object[FIELDS.length];
+        for (final BaseEvent event : events) {
+            long presentMask = 0;
+            long nullMask = 0;
+            for (final Field field : FIELDS) {
+                final int i = field.ordinal();
+                Object value = getValue(event, field);
+                if (field.mIsSessionField) {
+                    if (value == null) {
+                        if (headerValues[i] != null) {
+                            nullMask |= 1L << i;
+                        }
+                    } else if (value.equals(headerValues[i])) {
+                        value = null;
+                    }
+                }
+                values[i] = value;
+                if (value != null) {
+                    presentMask |= 1L << i;
+                }
+            }
+            writeVarLong(out, presentMask);
+            writeVarLong(out, nullMask);
+            writeValues(out, values, presentMask);
+        }
+
+        out.flush();
+        gzipOutputStream.finish();
+    }
+
+    /**
+     * Decodes a batch into the same JSON objects that {@link EventSerializer#serializeAsJson}
+     * produces for each event.
+     */
+    @VisibleForTesting
+    @NonNull
+    static List<JSONObject> decode(@NonNull final InputStream inputStream)
+            throws IOException, JSONException {
+        Preconditions.checkNotNull(inputStream);
+
+        final DataInputStream in = new DataInputStream(new GZIPInputStream(inputStream));
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not an event batch");
+        }
+        final int version = in.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported event batch version " + version);
+        }
+        final long eventCount = readVarLong(in);
+
+        final Object[] headerValues = new Object[FIELDS.length];
+        readValues(in, headerValues, readVarLong(in));
+
+        final List<JSONObject> jsonObjects = new ArrayList<JSONObject>();
+        final Object[] values = new Object[FIELDS.length];
+        for (long n = 0; n < eventCount; n++) {
+            final long presentMask = readVarLong(in);
+            final long nullMask = readVarLong(in);
+            readValues(in, values, presentMask);
+
+            final JSONObject jsonObject = new JSONObject();
+            for (final Field field : FIELDS) {
+                final int i = field.ordinal();
+                Object value = values[i];
+                if (value == null && field.mIsSessionField && (nullMask & (1L << i)) == 0) {
+                    value = headerValues[i];
+                }
+                for (final String key : field.mKeys) {
+                    jsonObject.put(key, value);
+                }
+            }
+            jsonObjects.add(jsonObject);
+        }
+        return jsonObjects;
+    }
+
+    @Nullable
+    private static Object getValue(@NonNull final BaseEvent event, @NonNull final Field field) {
+        switch (field) {
+            case SCRIBE_CATEGORY:
+                return event.getScribeCategory().getCategory();
+            case TIMESTAMP:
+                return event.getTimestampUtcMs();
+            case NAME:
+                return event.getName().getName();
+            case NAME_CATEGORY:
+                return event.getCategory().getCategory();
+            case SDK_PRODUCT:
+                final BaseEvent.SdkProduct sdkProduct = event.getSdkProduct();
+                return sdkProduct == null ? null : sdkProduct.getType();
+            case SDK_VERSION:
+                return event.getSdkVersion();
+            case AD_UNIT_ID:
+                return event.getAdUnitId();
+            case AD_CREATIVE_ID:
+                return event.getAdCreativeId();
+            case AD_TYPE:
+                return event.getAdType();
+            case AD_NETWORK_TYPE:
+                return event.getAdNetworkType();
+            case AD_WIDTH_PX:
+                return event.getAdWidthPx();
+            case AD_HEIGHT_PX:
+                return event.getAdHeightPx();
+            case APP_PLATFORM:
+                final BaseEvent.AppPlatform appPlatform = event.getAppPlatform();
+                return appPlatform == null ? null : appPlatform.getType();
+            case APP_NAME:
+                return event.getAppName();
+            case APP_PACKAGE_NAME:
+                return event.getAppPackageName();
+            case APP_VERSION:
+                return event.getAppVersion();
+            case CLIENT_ADVERTISING_ID:
+                return event.getObfuscatedClientAdvertisingId();
+            case CLIENT_DO_NOT_TRACK:
+                return event.getClientDoNotTrack();
+            case DEVICE_MANUFACTURER:
+                return event.getDeviceManufacturer();
+            case DEVICE_MODEL:
+                return event.getDeviceModel();
+            case DEVICE_PRODUCT:
+                return event.getDeviceProduct();
+            case DEVICE_OS_VERSION:
+                return event.getDeviceOsVersion();
+            case DEVICE_SCREEN_WIDTH:
+                return event.getDeviceScreenWidthDip();
+            case DEVICE_SCREEN_HEIGHT:
+                return event.getDeviceScreenHeightDip();
+            case GEO_LAT:
+                return event.getGeoLat();
+            case GEO_LON:
+                return event.getGeoLon();
+            case GEO_ACCURACY:
+                return event.getGeoAccuracy();
+            case PERFORMANCE_DURATION_MS:
+                return event.getPerformanceDurationMs();
+            case NETWORK_TYPE:
+                final ClientMetadata.MoPubNetworkType networkType = event.getNetworkType();
+                return networkType == null ? null : networkType.getId();
+            case NETWORK_OPERATOR_CODE:
+                return event.getNetworkOperatorCode();
+            case NETWORK_OPERATOR_NAME:
+                return event.getNetworkOperatorName();
+            case NETWORK_ISO_COUNTRY_CODE:
+                return event.getNetworkIsoCountryCode();
+            case NETWORK_SIM_CODE:
+                return event.getNetworkSimCode();
+            case NETWORK_SIM_OPERATOR_NAME:
+                return event.getNetworkSimOperatorName();
+            case NETWORK_SIM_ISO_COUNTRY_CODE:
+                return event.getNetworkSimIsoCountryCode();
+            case REQUEST_ID:
+                return event.getRequestId();
+            case REQUEST_STATUS_CODE:
+                return event.getRequestStatusCode();
+            case REQUEST_URI:
+                return event.getRequestUri();
+            case REQUEST_RETRIES:
+                return event.getRequestRetries();
+            case SAMPLING_WEIGHT:
+                return event.getSamplingWeight();
+            default:
+                break;
+        }
+
+        if (!(event instanceof ErrorEvent)) {
+            return null;
+        }
+        final ErrorEvent errorEvent = (ErrorEvent) event;
+        switch (field) {
+            case ERROR_EXCEPTION_CLASS_NAME:
+                return errorEvent.getErrorExceptionClassName();
+            case ERROR_MESSAGE:
+                return errorEvent.getErrorMessage();
+            case ERROR_STACK_TRACE:
+                return errorEvent.getErrorStackTrace();
+            case ERROR_FILE_NAME:
+                return errorEvent.getErrorFileName();
+            case ERROR_CLASS_NAME:
+                return errorEvent.getErrorClassName();
+            case ERROR_METHOD_NAME:
+                return errorEvent.getErrorMethodName();
+            case ERROR_LINE_NUMBER:
+                return errorEvent.getErrorLineNumber();
+            default:
+                return null;
+        }
+    }
+
+    private static long getPresentMask(@NonNull final Object[] values) {
+        long mask = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null) {
+                mask |= 1L << i;
+            }
+        }
+        return mask;
+    }
+
+    private static void writeValues(@NonNull final DataOutputStream out,
+            @NonNull final Object[] values, final long presentMask) throws IOException {
+        for (final Field field : FIELDS) {
+            final int i = field.ordinal();
+            if ((presentMask & (1L << i)) == 0) {
+                continue;
+            }
+            final Object value = values[i];
+            switch (field.mType) {
+                case STRING:
+                    final byte[] bytes = ((String) value).getBytes(UTF_8);
+                    writeVarLong(out, bytes.length);
+                    out.write(bytes);
+                    break;
+                case INT:
+                    writeVarLong(out, zigZag((Integer) value));
+                    break;
+                case LONG:
+                    writeVarLong(out, zigZag((Long) value));
+                    break;
+                case DOUBLE:
+                    out.writeDouble((Double) value);
+                    break;
+                case BOOLEAN:
+                    out.writeBoolean((Boolean) value);
+                    break;
+            }
+        }
+    }
+
+    private static void readValues(@NonNull final DataInputStream in,
+            @NonNull final Object[] values, final long presentMask) throws IOException {
+        for (final Field field : FIELDS) {
+            final int i = field.ordinal();
+            if ((presentMask & (1L << i)) == 0) {
+                values[i] = null;
+                continue;
+            }
+            switch (field.mType) {
+                case STRING:
+                    final byte[] bytes = new byte[(int) readVarLong(in)];
+                    in.readFully(bytes);
+                    values[i] = new String(bytes, UTF_8);
+                    break;
+                case INT:
+                    values[i] = (int) unZigZag(readVarLong(in));
+                    break;
+                case LONG:
+                    values[i] = unZigZag(readVarLong(in));
+                    break;
+                case DOUBLE:
+                    values[i] = in.readDouble();
+                    break;
+                case BOOLEAN:
+                    values[i] = in.readBoolean();
+                    break;
+            }
+        }
+    }
+
+    private static long zigZag(final long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(final long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeVarLong(@NonNull final DataOutputStream out, long value)
+            throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(@NonNull final DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            final int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+}
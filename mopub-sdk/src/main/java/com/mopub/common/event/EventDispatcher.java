@@ -3,27 +3,80 @@ package com.mopub.common.event;
 import android.os.Handler;
 import android.os.Looper;
 import android.os.Message;
+import android.support.annotation.NonNull;
 
+import com.mopub.common.Preconditions;
 import com.mopub.common.VisibleForTesting;
 import com.mopub.common.logging.MoPubLog;
 
+/**
+ * Hands logged events over to the {@link EventRecorder}s on the dispatcher's looper thread.
+ *
+ * Events are put in a fixed size ring buffer and drained in batches of up to
+ * {@link #MAX_BATCH_SIZE}, so logging an event from a hot path only takes a short lock and
+ * allocates nothing. At most one drain message is pending at a time. When the buffer is full the
+ * {@link BackpressurePolicy} decides which event is dropped.
+ */
 public class EventDispatcher {
+
+    public enum BackpressurePolicy {
+        /**
+         * Drops the oldest queued event.
+         */
+        DROP_OLDEST,
+
+        /**
+         * Drops the oldest queued event that is not an {@link ErrorEvent}. If only error events
+         * are queued, a new non-error event is dropped instead, otherwise the oldest error event.
+         */
+        DROP_BY_PRIORITY
+    }
+
+    @VisibleForTesting static final int DEFAULT_QUEUE_CAPACITY = 256;
+    @VisibleForTesting static final int MAX_BATCH_SIZE = 32;
+    private static final int MSG_DRAIN_EVENTS = 1;
+
     private final Iterable<EventRecorder> mEventRecorders;
     private final Looper mLooper;
     private final Handler mMessageHandler;
     private final Handler.Callback mHandlerCallback;
+    @NonNull private final BackpressurePolicy mBackpressurePolicy;
+
+    // Ring buffer of pending events, guarded by mQueue
+    @NonNull private final BaseEvent[] mQueue;
+    private int mQueueHead;
+    private int mQueueSize;
+    private boolean mIsDrainScheduled;
+    private long mQueuedEventCount;
+    private long mDroppedEventCount;
+
+    // Only touched on the looper thread
+    @NonNull private final BaseEvent[] mBatch;
+    private volatile long mDispatchedEventCount;
 
     @VisibleForTesting
     EventDispatcher(Iterable<EventRecorder> recorders, Looper looper) {
+        this(recorders, looper, DEFAULT_QUEUE_CAPACITY, BackpressurePolicy.DROP_BY_PRIORITY);
+    }
+
+    @VisibleForTesting
+    EventDispatcher(Iterable<EventRecorder> recorders, Looper looper, int queueCapacity,
+            @NonNull BackpressurePolicy backpressurePolicy) {
+        Preconditions.checkArgument(queueCapacity > 0);
+        Preconditions.checkNotNull(backpressurePolicy);
+
         mEventRecorders = recorders;
         mLooper = looper;
+        mBackpressurePolicy = backpressurePolicy;
+        mQueue = new BaseEvent[queueCapacity];
+        mBatch = new BaseEvent[Math.min(queueCapacity, MAX_BATCH_SIZE)];
         mHandlerCallback = new Handler.Callback() {
             @Override
             public boolean handleMessage(final Message msg) {
-                if (msg.obj instanceof BaseEvent) {
-                    for (final EventRecorder recorder : mEventRecorders) {
-                        recorder.record((BaseEvent) msg.obj);
-                    }
+                if (msg.what == MSG_DRAIN_EVENTS) {
+                    drainEvents();
+                } else if (msg.obj instanceof BaseEvent) {
+                    record((BaseEvent) msg.obj);
                 } else {
                     MoPubLog.d("EventDispatcher received non-BaseEvent message type.");
                 }
@@ -34,7 +87,129 @@ public class EventDispatcher {
     }
 
     public void dispatch(BaseEvent event) {
-        Message.obtain(mMessageHandler, 0, event).sendToTarget();
+        if (event == null) {
+            return;
+        }
+
+        final boolean shouldScheduleDrain;
+        synchronized (mQueue) {
+            mQueuedEventCount++;
+            if (mQueueSize == mQueue.length && !makeRoomFor(event)) {
+                mDroppedEventCount++;
+                return;
+            }
+            mQueue[(mQueueHead + mQueueSize) % mQueue.length] = event;
+            mQueueSize++;
+
+            shouldScheduleDrain = !mIsDrainScheduled;
+            mIsDrainScheduled = true;
+        }
+
+        if (shouldScheduleDrain) {
+            mMessageHandler.sendEmptyMessage(MSG_DRAIN_EVENTS);
+        }
+    }
+
+    /**
+     * Drops one queued event to make room for the given event.
+     *
+     * @return {@code false} if the given event should be dropped instead.
+     */
+    private boolean makeRoomFor(@NonNull BaseEvent event) {
+        int dropIndex = 0;
+        if (mBackpressurePolicy == BackpressurePolicy.DROP_BY_PRIORITY) {
+            dropIndex = indexOfOldestNonErrorEvent();
+            if (dropIndex < 0) {
+                if (!(event instanceof ErrorEvent)) {
+                    return false;
+                }
+                dropIndex = 0;
+            }
+        }
+
+        // Close the gap by shifting the older events up by one
+        for (int i = dropIndex; i > 0; i--) {
+            mQueue[(mQueueHead + i) % mQueue.length] = mQueue[(mQueueHead + i - 1) % mQueue.length];
+        }
+        mQueue[mQueueHead] = null;
+        mQueueHead = (mQueueHead + 1) % mQueue.length;
+        mQueueSize--;
+        mDroppedEventCount++;
+        return true;
+    }
+
+    private int indexOfOldestNonErrorEvent() {
+        for (int i = 0; i < mQueueSize; i++) {
+            if (!(mQueue[(mQueueHead + i) % mQueue.length] instanceof ErrorEvent)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void drainEvents() {
+        final int batchSize;
+        final boolean hasMoreEvents;
+        synchronized (mQueue) {
+            batchSize = Math.min(mQueueSize, mBatch.length);
+            for (int i = 0; i < batchSize; i++) {
+                mBatch[i] = mQueue[mQueueHead];
+                mQueue[mQueueHead] = null;
+                mQueueHead = (mQueueHead + 1) % mQueue.length;
+            }
+            mQueueSize -= batchSize;
+            hasMoreEvents = mQueueSize > 0;
+            mIsDrainScheduled = hasMoreEvents;
+        }
+
+        for (int i = 0; i < batchSize; i++) {
+            record(mBatch[i]);
+            mBatch[i] = null;
+        }
+
+        // Yield the looper between batches so other work on this thread isn't starved
+        if (hasMoreEvents) {
+            mMessageHandler.sendEmptyMessage(MSG_DRAIN_EVENTS);
+        }
+    }
+
+    private void record(@NonNull BaseEvent event) {
+        for (final EventRecorder recorder : mEventRecorders) {
+            recorder.record(event);
+        }
+        mDispatchedEventCount++;
+    }
+
+    /**
+     * @return The number of events passed to {@link #dispatch}, including dropped ones.
+     */
+    public long getQueuedEventCount() {
+        synchronized (mQueue) {
+            return mQueuedEventCount;
+        }
+    }
+
+    /**
+     * @return The number of events dropped because the queue was full.
+     */
+    public long getDroppedEventCount() {
+        synchronized (mQueue) {
+            return mDroppedEventCount;
+        }
+    }
+
+    /**
+     * @return The number of events handed to the recorders.
+     */
+    public long getDispatchedEventCount() {
+        return mDispatchedEventCount;
+    }
+
+    @VisibleForTesting
+    int getPendingEventCount() {
+        synchronized (mQueue) {
+            return mQueueSize;
+        }
     }
 
     @VisibleForTesting
@@ -1,18 +1,50 @@
 package com.mopub.common.event;
 
+import android.os.SystemClock;
 import android.support.annotation.NonNull;
 
 import com.mopub.common.Preconditions;
 import com.mopub.common.VisibleForTesting;
 
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Random;
 
 /**
  * Samples events based on rules defined in the sample method.
+ *
+ * Each kind of event (its scribe category, name and category) gets a budget of
+ * {@link #MAX_SAMPLED_EVENTS_PER_WINDOW} sampled events per {@link #WINDOW_MS}. Kinds that stay
+ * under budget are sampled at their fixed {@link BaseEvent#getSamplingRate()}. Chatty kinds have
+ * their sampling rate lowered in proportion to the rate they are observed at, so they stay around
+ * their budget while rare kinds keep being logged. Error events get a larger budget so they are
+ * the last to be cut.
+ *
+ * Every sampled event is tagged with the inverse of the probability it was sampled with so
+ * the backend can re-weight it.
  */
 public class EventSampler {
 
-    @NonNull private Random mRandom;
+    @VisibleForTesting static final long WINDOW_MS = 60 * 1000;
+    @VisibleForTesting static final int MAX_SAMPLED_EVENTS_PER_WINDOW = 30;
+    @VisibleForTesting static final int ERROR_BUDGET_MULTIPLIER = 4;
+
+    /**
+     * How much the arrival rate of past windows counts towards the estimate for the next one.
+     */
+    private static final double RATE_SMOOTHING_FACTOR = 0.5;
+
+    /**
+     * Tracks how often one kind of event is observed.
+     */
+    private static class RateEstimate {
+        long mWindowStartMs;
+        int mArrivalsInWindow;
+        double mEstimatedArrivalsPerWindow;
+    }
+
+    @NonNull private final Random mRandom;
+    @NonNull private final Map<String, RateEstimate> mRateEstimates;
 
     public EventSampler() {
         this(new Random());
@@ -21,19 +53,71 @@ public class EventSampler {
     @VisibleForTesting
     public EventSampler(@NonNull Random random) {
         mRandom = random;
+        mRateEstimates = new HashMap<String, RateEstimate>();
     }
 
     /**
-     * Samples events based on custom rules.
+     * Samples events based on custom rules. Events that pass sampling have their sampling weight
+     * set.
      *
      * @param baseEvent The event to be sampled.
      *
      * @return Will return {@code true} if the event passed sampling and {@code false}
      * if it is to be discarded.
      */
-    boolean sample(@NonNull BaseEvent baseEvent) {
+    synchronized boolean sample(@NonNull BaseEvent baseEvent) {
         Preconditions.checkNotNull(baseEvent);
 
-        return mRandom.nextDouble() < baseEvent.getSamplingRate();
+        final double samplingRate = getEffectiveSamplingRate(baseEvent);
+        if (samplingRate <= 0 || mRandom.nextDouble() >= samplingRate) {
+            return false;
+        }
+
+        baseEvent.setSamplingWeight(1 / samplingRate);
+        return true;
+    }
+
+    /**
+     * Records the arrival of the event and returns the probability it should be sampled with.
+     */
+    @VisibleForTesting
+    double getEffectiveSamplingRate(@NonNull BaseEvent baseEvent) {
+        final RateEstimate rateEstimate = getRateEstimate(baseEvent);
+        final long now = SystemClock.uptimeMillis();
+
+        final long elapsedWindows = (now - rateEstimate.mWindowStartMs) / WINDOW_MS;
+        if (elapsedWindows > 0) {
+            // Fold the finished window into the estimate. Windows without any events decay it.
+            rateEstimate.mEstimatedArrivalsPerWindow =
+                    RATE_SMOOTHING_FACTOR * rateEstimate.mEstimatedArrivalsPerWindow
+                            + (1 - RATE_SMOOTHING_FACTOR) * rateEstimate.mArrivalsInWindow;
+            rateEstimate.mEstimatedArrivalsPerWindow *=
+                    Math.pow(RATE_SMOOTHING_FACTOR, Math.min(elapsedWindows - 1, 64));
+            rateEstimate.mWindowStartMs += elapsedWindows * WINDOW_MS;
+            rateEstimate.mArrivalsInWindow = 0;
+        }
+        rateEstimate.mArrivalsInWindow++;
+
+        // React to bursts within the current window instead of waiting for it to finish
+        final double expectedArrivals = Math.max(rateEstimate.mEstimatedArrivalsPerWindow,
+                rateEstimate.mArrivalsInWindow);
+        final int budget = baseEvent instanceof ErrorEvent
+                ? MAX_SAMPLED_EVENTS_PER_WINDOW * ERROR_BUDGET_MULTIPLIER
+                : MAX_SAMPLED_EVENTS_PER_WINDOW;
+
+        return Math.min(baseEvent.getSamplingRate(), budget / expectedArrivals);
+    }
+
+    @NonNull
+    private RateEstimate getRateEstimate(@NonNull BaseEvent baseEvent) {
+        final String key = baseEvent.getScribeCategory() + ":" + baseEvent.getName() + ":"
+                + baseEvent.getCategory();
+        RateEstimate rateEstimate = mRateEstimates.get(key);
+        if (rateEstimate == null) {
+            rateEstimate = new RateEstimate();
+            rateEstimate.mWindowStartMs = SystemClock.uptimeMillis();
+            mRateEstimates.put(key, rateEstimate);
+        }
+        return rateEstimate;
     }
 }
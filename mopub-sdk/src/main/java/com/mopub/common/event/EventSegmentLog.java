@@ -0,0 +1,366 @@
+package com.mopub.common.event;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.mopub.common.Preconditions;
+import com.mopub.common.VisibleForTesting;
+import com.mopub.common.logging.MoPubLog;
+import com.mopub.common.util.Streams;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Disk-backed, append-only log of serialized events used by {@link ScribeEventRecorder}.
+ *
+ * Records are appended to an active segment file. Once a segment holds its maximum number of
+ * records or bytes, it is sealed and the next append starts a new segment. Sealed segments are
+ * read back whole, one segment per Scribe batch, and are only deleted once the caller confirms
+ * the batch was sent. When the number of segments exceeds its limit, the oldest is dropped.
+ *
+ * Each record is written in a single write as its length, a CRC32 of its bytes and the bytes
+ * themselves. When the log is opened, segments left over from a previous process are scanned and
+ * truncated at their first incomplete or corrupt record, so a crash in the middle of a write
+ * loses at most that record.
+ *
+ * This class is not thread safe. All calls must be made from the event logging thread.
+ */
+class EventSegmentLog {
+
+    private static final String SEGMENT_FILE_SUFFIX = ".seg";
+    private static final int RECORD_HEADER_SIZE_BYTES = 8;
+
+    static class Segment {
+        @NonNull final File mFile;
+        final long mSequenceNumber;
+        int mRecordCount;
+        long mSizeBytes;
+
+        Segment(@NonNull final File file, final long sequenceNumber) {
+            mFile = file;
+            mSequenceNumber = sequenceNumber;
+        }
+    }
+
+    @NonNull private final File mDirectory;
+    private final int mMaxRecordsPerSegment;
+    private final int mMaxSegmentSizeBytes;
+    private final int mMaxSegmentCount;
+
+    // Oldest first
+    @NonNull private final LinkedList<Segment> mSealedSegments = new LinkedList<Segment>();
+    @Nullable private Segment mActiveSegment;
+    @Nullable private FileOutputStream mActiveOutputStream;
+    private long mNextSequenceNumber;
+
+    private EventSegmentLog(@NonNull final File directory, final int maxRecordsPerSegment,
+            final int maxSegmentSizeBytes, final int maxSegmentCount) {
+        mDirectory = directory;
+        mMaxRecordsPerSegment = maxRecordsPerSegment;
+        mMaxSegmentSizeBytes = maxSegmentSizeBytes;
+        mMaxSegmentCount = maxSegmentCount;
+    }
+
+    /**
+     * Opens the log in the given directory, creating it if necessary and recovering any
+     * segments written by a previous process. Recovered segments are sealed.
+     *
+     * @param directory Directory that only this log writes to.
+     * @param maxRecordsPerSegment A segment is sealed once it holds this many records.
+     * @param maxSegmentSizeBytes A segment is sealed before it would grow past this size.
+     * @param maxSegmentCount The oldest segment is dropped when there are more than this many.
+     * @throws IOException if the directory can't be created.
+     */
+    @NonNull
+    static EventSegmentLog open(@NonNull final File directory, final int maxRecordsPerSegment,
+            final int maxSegmentSizeBytes, final int maxSegmentCount) throws IOException {
+        Preconditions.checkNotNull(directory);
+        Preconditions.checkArgument(maxRecordsPerSegment > 0);
+        Preconditions.checkArgument(maxSegmentSizeBytes > RECORD_HEADER_SIZE_BYTES);
+        Preconditions.checkArgument(maxSegmentCount > 0);
+
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create event log directory " + directory);
+        }
+
+        final EventSegmentLog eventSegmentLog = new EventSegmentLog(directory,
+                maxRecordsPerSegment, maxSegmentSizeBytes, maxSegmentCount);
+        eventSegmentLog.recover();
+        return eventSegmentLog;
+    }
+
+    /**
+     * Appends a record to the active segment, starting a new segment first if the record does
+     * not fit.
+     *
+     * @return {@code false} if the record is too large to ever fit in a segment and was dropped.
+     * @throws IOException if the record could not be written.
+     */
+    boolean append(@NonNull final byte[] record) throws IOException {
+        Preconditions.checkNotNull(record);
+
+        final int recordSizeBytes = RECORD_HEADER_SIZE_BYTES + record.length;
+        if (recordSizeBytes > mMaxSegmentSizeBytes) {
+            MoPubLog.d("Event of " + record.length + " bytes is too large for the event log.");
+            return false;
+        }
+
+        if (mActiveSegment != null
+                && mActiveSegment.mSizeBytes + recordSizeBytes > mMaxSegmentSizeBytes) {
+            sealActiveSegment();
+        }
+        if (mActiveSegment == null) {
+            startActiveSegment();
+        }
+
+        final CRC32 crc32 = new CRC32();
+        crc32.update(record);
+        final ByteBuffer buffer = ByteBuffer.allocate(recordSizeBytes);
+        buffer.putInt(record.length);
+        buffer.putInt((int) crc32.getValue());
+        buffer.put(record);
+
+        try {
+            mActiveOutputStream.write(buffer.array());
+            mActiveOutputStream.flush();
+        } catch (IOException e) {
+            // The segment may now end with a partial record. Seal it so that nothing is appended
+            // after the partial record; reading stops there.
+            sealActiveSegment();
+            throw e;
+        }
+
+        mActiveSegment.mRecordCount++;
+        mActiveSegment.mSizeBytes += recordSizeBytes;
+        if (mActiveSegment.mRecordCount >= mMaxRecordsPerSegment) {
+            sealActiveSegment();
+        }
+        return true;
+    }
+
+    /**
+     * @return {@code true} if at least one segment is sealed and ready to be sent.
+     */
+    boolean hasSealedSegment() {
+        return !mSealedSegments.isEmpty();
+    }
+
+    boolean isEmpty() {
+        return mSealedSegments.isEmpty()
+                && (mActiveSegment == null || mActiveSegment.mRecordCount == 0);
+    }
+
+    /**
+     * Gets the oldest segment. If there are no sealed segments, the active segment is sealed
+     * and returned so that partial batches can be sent when polling.
+     *
+     * @return The oldest segment or {@code null} if the log is empty.
+     */
+    @Nullable
+    Segment getOldestSegment() {
+        if (mSealedSegments.isEmpty() && mActiveSegment != null
+                && mActiveSegment.mRecordCount > 0) {
+            sealActiveSegment();
+        }
+        return mSealedSegments.peekFirst();
+    }
+
+    /**
+     * Reads all intact records of a segment in the order they were appended.
+     */
+    @NonNull
+    List<byte[]> read(@NonNull final Segment segment) throws IOException {
+        Preconditions.checkNotNull(segment);
+
+        final List<byte[]> records = new ArrayList<byte[]>(segment.mRecordCount);
+        readRecords(segment.mFile, records);
+        return records;
+    }
+
+    /**
+     * Deletes a segment. This is a no-op if the segment was already deleted.
+     */
+    void delete(@NonNull final Segment segment) {
+        Preconditions.checkNotNull(segment);
+
+        if (segment == mActiveSegment) {
+            closeActiveSegment();
+        }
+        mSealedSegments.remove(segment);
+        if (segment.mFile.exists() && !segment.mFile.delete()) {
+            MoPubLog.d("Unable to delete event log segment " + segment.mFile);
+        }
+    }
+
+    @VisibleForTesting
+    int getSegmentCount() {
+        return mSealedSegments.size() + (mActiveSegment == null ? 0 : 1);
+    }
+
+    private void startActiveSegment() throws IOException {
+        final Segment segment = new Segment(
+                new File(mDirectory, mNextSequenceNumber + SEGMENT_FILE_SUFFIX),
+                mNextSequenceNumber);
+        mActiveOutputStream = new FileOutputStream(segment.mFile, true);
+        mActiveSegment = segment;
+        mNextSequenceNumber++;
+    }
+
+    private void sealActiveSegment() {
+        if (mActiveSegment == null) {
+            return;
+        }
+
+        final Segment segment = mActiveSegment;
+        try {
+            mActiveOutputStream.getFD().sync();
+        } catch (IOException e) {
+            MoPubLog.d("Unable to sync event log segment " + segment.mFile, e);
+        }
+        closeActiveSegment();
+
+        if (segment.mRecordCount == 0) {
+            delete(segment);
+            return;
+        }
+        mSealedSegments.addLast(segment);
+        trimToMaxSegmentCount();
+    }
+
+    private void closeActiveSegment() {
+        Streams.closeStream(mActiveOutputStream);
+        mActiveOutputStream = null;
+        mActiveSegment = null;
+    }
+
+    private void trimToMaxSegmentCount() {
+        while (getSegmentCount() > mMaxSegmentCount && !mSealedSegments.isEmpty()) {
+            final Segment oldestSegment = mSealedSegments.peekFirst();
+            MoPubLog.d("Event log is at max capacity. " + oldestSegment.mRecordCount
+                    + " events are being dropped.");
+            delete(oldestSegment);
+        }
+    }
+
+    private void recover() {
+        final File[] files = mDirectory.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        final List<Segment> segments = new ArrayList<Segment>();
+        for (final File file : files) {
+            final String fileName = file.getName();
+            if (!fileName.endsWith(SEGMENT_FILE_SUFFIX)) {
+                continue;
+            }
+            try {
+                final long sequenceNumber = Long.parseLong(fileName.substring(0,
+                        fileName.length() - SEGMENT_FILE_SUFFIX.length()));
+                segments.add(new Segment(file, sequenceNumber));
+            } catch (NumberFormatException e) {
+                MoPubLog.d("Ignoring unexpected file in event log: " + fileName);
+            }
+        }
+
+        final Segment[] sortedSegments = segments.toArray(new Segment[segments.size()]);
+        Arrays.sort(sortedSegments, new Comparator<Segment>() {
+            @Override
+            public int compare(final Segment lhs, final Segment rhs) {
+                return lhs.mSequenceNumber < rhs.mSequenceNumber ? -1
+                        : (lhs.mSequenceNumber == rhs.mSequenceNumber ? 0 : 1);
+            }
+        });
+
+        for (final Segment segment : sortedSegments) {
+            mNextSequenceNumber = Math.max(mNextSequenceNumber, segment.mSequenceNumber + 1);
+            try {
+                final List<byte[]> records = new ArrayList<byte[]>();
+                final long validSizeBytes = readRecords(segment.mFile, records);
+                if (validSizeBytes < segment.mFile.length()) {
+                    MoPubLog.d("Truncating corrupt event log segment " + segment.mFile);
+                    truncate(segment.mFile, validSizeBytes);
+                }
+                segment.mRecordCount = records.size();
+                segment.mSizeBytes = validSizeBytes;
+            } catch (IOException e) {
+                MoPubLog.d("Unable to recover event log segment " + segment.mFile, e);
+                segment.mRecordCount = 0;
+            }
+
+            if (segment.mRecordCount == 0) {
+                delete(segment);
+            } else {
+                mSealedSegments.addLast(segment);
+            }
+        }
+        trimToMaxSegmentCount();
+    }
+
+    /**
+     * Reads records from the start of a segment file until the end of the file or the first
+     * incomplete or corrupt record.
+     *
+     * @return The number of bytes taken up by the intact records.
+     */
+    private static long readRecords(@NonNull final File file,
+            @NonNull final List<byte[]> records) throws IOException {
+        final long fileLength = file.length();
+        long validSizeBytes = 0;
+        DataInputStream inputStream = null;
+        try {
+            inputStream = new DataInputStream(
+                    new BufferedInputStream(new FileInputStream(file)));
+            final CRC32 crc32 = new CRC32();
+            while (validSizeBytes + RECORD_HEADER_SIZE_BYTES <= fileLength) {
+                final int length = inputStream.readInt();
+                final int checksum = inputStream.readInt();
+                if (length < 0
+                        || validSizeBytes + RECORD_HEADER_SIZE_BYTES + length > fileLength) {
+                    break;
+                }
+
+                final byte[] record = new byte[length];
+                inputStream.readFully(record);
+                crc32.reset();
+                crc32.update(record);
+                if ((int) crc32.getValue() != checksum) {
+                    break;
+                }
+
+                records.add(record);
+                validSizeBytes += RECORD_HEADER_SIZE_BYTES + length;
+            }
+        } catch (EOFException e) {
+            // The file shrank while reading. Keep the records read so far.
+        } finally {
+            Streams.closeStream(inputStream);
+        }
+        return validSizeBytes;
+    }
+
+    private static void truncate(@NonNull final File file, final long sizeBytes)
+            throws IOException {
+        RandomAccessFile randomAccessFile = null;
+        try {
+            randomAccessFile = new RandomAccessFile(file, "rw");
+            randomAccessFile.setLength(sizeBytes);
+        } finally {
+            Streams.closeStream(randomAccessFile);
+        }
+    }
+}
@@ -125,6 +125,9 @@ public class EventSerializer {
         // Timestamp Details
         jsonObject.put("timestamp_client", event.getTimestampUtcMs());
 
+        // Sampling Details
+        jsonObject.put("sampling_weight", event.getSamplingWeight());
+
         if (event instanceof ErrorEvent) {
             ErrorEvent errorEvent = (ErrorEvent) event;
             // Error Details
@@ -3,13 +3,21 @@ package com.mopub.common.event;
 import android.os.Handler;
 import android.os.Looper;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 
+import com.mopub.common.ClientMetadata;
 import com.mopub.common.VisibleForTesting;
 import com.mopub.common.logging.MoPubLog;
 import com.mopub.network.ScribeBackoffPolicy;
 import com.mopub.network.ScribeRequest;
 import com.mopub.network.ScribeRequestManager;
+import com.mopub.volley.VolleyError;
 
+import org.json.JSONException;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
@@ -19,6 +27,11 @@ import java.util.Queue;
  * The ScribeEventRecorder manages events being sent to the Scribe service. It is responsible for
  * sampling, batching and kicking off network requests. It is also responsible for ensuring batched
  * events don't grow unbounded.
+ *
+ * Once {@link ClientMetadata} is available, events are serialized and appended to an
+ * {@link EventSegmentLog} in the app's cache directory so they survive process death. Each
+ * segment is sent as one batch and only deleted once the Scribe request succeeds. Until then, or
+ * if the log can't be written, events are kept in a bounded in-memory queue.
  */
 public class ScribeEventRecorder implements EventRecorder {
     private static final String SCRIBE_URL = "https://analytics.mopub.com/i/jot/exchange_client_event";
@@ -35,6 +48,24 @@ public class ScribeEventRecorder implements EventRecorder {
      */
     private static final int POLLING_PERIOD_MS = 2 * 60 * 1000;
 
+    private static final String EVENT_LOG_DIRECTORY = "mopub-events";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * Keeps each batch read from the event log under the 1 MiB request limit
+     */
+    private static final int MAX_SEGMENT_SIZE_BYTES = 512 * 1024;
+
+    /**
+     * Up to 2000 events are kept on disk before the oldest are dropped
+     */
+    private static final int MAX_SEGMENT_COUNT = 20;
+
+    /**
+     * A segment that fails to send this many times in a row is dropped
+     */
+    @VisibleForTesting static final int MAX_SEGMENT_SEND_ATTEMPTS = 3;
+
     @NonNull private final EventSampler mEventSampler;
     @NonNull private final Queue<BaseEvent> mEventQueue;
     @NonNull private final EventSerializer mEventSerializer;
@@ -43,6 +74,11 @@ public class ScribeEventRecorder implements EventRecorder {
     @NonNull private final Handler mPollHandler;
     @NonNull private final PollingRunnable mPollingRunnable;
 
+    @Nullable private EventSegmentLog mEventLog;
+    private boolean mIsEventLogUnavailable;
+    @Nullable private EventSegmentLog.Segment mInFlightSegment;
+    private int mInFlightSegmentSendAttempts;
+
     ScribeEventRecorder(@NonNull Looper looper) {
         this(new EventSampler(),
                 new LinkedList<BaseEvent>(),
@@ -71,6 +107,15 @@ public class ScribeEventRecorder implements EventRecorder {
             return;
         }
 
+        final EventSegmentLog eventLog = getEventLog();
+        if (eventLog != null && appendToEventLog(eventLog, baseEvent)) {
+            if (eventLog.hasSealedSegment()) {
+                sendEvents();
+            }
+            scheduleNextPoll();
+            return;
+        }
+
         if (mEventQueue.size() >= QUEUE_MAX_SIZE) {
             MoPubLog.d("EventQueue is at max capacity. " +
                     "Event \"" + baseEvent.getName() + "\" is being dropped.");
@@ -91,6 +136,12 @@ public class ScribeEventRecorder implements EventRecorder {
             return;
         }
 
+        final EventSegmentLog eventLog = getEventLog();
+        if (eventLog != null && !eventLog.isEmpty()) {
+            sendEventLogSegment(eventLog);
+            return;
+        }
+
         final List<BaseEvent> events = dequeueEvents();
         if (events.isEmpty()) {
             return;
@@ -125,13 +176,186 @@ public class ScribeEventRecorder implements EventRecorder {
         // Only schedule if there are no messages already scheduled.
         // The user defined message code, the 'what' param in Handler#hasMessages, defaults to
         // 0 for posting a delayed runnable
-        if (mPollHandler.hasMessages(0) || mEventQueue.isEmpty()) {
+        if (mPollHandler.hasMessages(0)
+                || (mEventQueue.isEmpty() && (mEventLog == null || mEventLog.isEmpty()))) {
             return;
         }
 
         mPollHandler.postDelayed(mPollingRunnable, POLLING_PERIOD_MS);
     }
 
+    /**
+     * Sends the oldest segment of the event log. The segment is deleted once the request
+     * succeeds. If the previous request for the same segment never succeeded, this counts as
+     * another attempt, and the segment is dropped after {@link #MAX_SEGMENT_SEND_ATTEMPTS}.
+     */
+    private void sendEventLogSegment(@NonNull final EventSegmentLog eventLog) {
+        final EventSegmentLog.Segment segment = eventLog.getOldestSegment();
+        if (segment == null) {
+            return;
+        }
+
+        if (segment == mInFlightSegment) {
+            mInFlightSegmentSendAttempts++;
+            if (mInFlightSegmentSendAttempts >= MAX_SEGMENT_SEND_ATTEMPTS) {
+                MoPubLog.d("Failed to Scribe " + segment.mRecordCount + " events after "
+                        + mInFlightSegmentSendAttempts + " attempts. Dropping them.");
+                eventLog.delete(segment);
+                mInFlightSegment = null;
+                return;
+            }
+        } else {
+            mInFlightSegment = segment;
+            mInFlightSegmentSendAttempts = 0;
+        }
+
+        final List<String> serializedEvents = new ArrayList<String>(segment.mRecordCount);
+        try {
+            for (final byte[] record : eventLog.read(segment)) {
+                serializedEvents.add(new String(record, UTF_8));
+            }
+        } catch (IOException e) {
+            MoPubLog.d("Unable to read events from the event log.", e);
+            eventLog.delete(segment);
+            mInFlightSegment = null;
+            return;
+        }
+
+        mScribeRequestManager.makeRequest(
+                new ScribeRequest.ScribeRequestFactory() {
+                    @Override
+                    public ScribeRequest createRequest(final ScribeRequest.Listener listener) {
+                        return new ScribeRequest(SCRIBE_URL, serializedEvents,
+                                new SegmentRequestListener(segment, listener));
+                    }
+                },
+                new ScribeBackoffPolicy()
+        );
+    }
+
+    @VisibleForTesting
+    void onSegmentSent(@NonNull final EventSegmentLog.Segment segment) {
+        if (mEventLog != null) {
+            mEventLog.delete(segment);
+        }
+        if (segment == mInFlightSegment) {
+            mInFlightSegment = null;
+        }
+
+        // Catch up on any full batches that built up while this one was in flight
+        if (mEventLog != null && mEventLog.hasSealedSegment()) {
+            sendEvents();
+        }
+        scheduleNextPoll();
+    }
+
+    /**
+     * @return {@code true} if the event was handled by the log, even if it had to be dropped
+     * because it could not be serialized.
+     */
+    private boolean appendToEventLog(@NonNull final EventSegmentLog eventLog,
+            @NonNull final BaseEvent baseEvent) {
+        final byte[] record;
+        try {
+            record = mEventSerializer.serializeAsJson(baseEvent).toString().getBytes(UTF_8);
+        } catch (JSONException e) {
+            MoPubLog.d("Failed to serialize event \"" + baseEvent.getName() + "\" to JSON: ", e);
+            return true;
+        }
+
+        try {
+            eventLog.append(record);
+            return true;
+        } catch (IOException e) {
+            MoPubLog.d("Unable to write event to the event log.", e);
+            return false;
+        }
+    }
+
+    /**
+     * Lazily opens the event log once {@link ClientMetadata} is available to provide a
+     * directory, and moves any events queued in memory until then into the log.
+     *
+     * @return The event log or {@code null} if it isn't available.
+     */
+    @Nullable
+    private EventSegmentLog getEventLog() {
+        if (mEventLog != null || mIsEventLogUnavailable) {
+            return mEventLog;
+        }
+
+        final File directory = getEventLogDirectory();
+        if (directory == null) {
+            return null;
+        }
+
+        try {
+            mEventLog = EventSegmentLog.open(directory, EVENT_COUNT_SEND_THRESHHOLD,
+                    MAX_SEGMENT_SIZE_BYTES, MAX_SEGMENT_COUNT);
+        } catch (IOException e) {
+            MoPubLog.d("Unable to open the event log. Events will only be kept in memory.", e);
+            mIsEventLogUnavailable = true;
+            return null;
+        }
+
+        while (mEventQueue.peek() != null) {
+            if (!appendToEventLog(mEventLog, mEventQueue.peek())) {
+                break;
+            }
+            mEventQueue.poll();
+        }
+        return mEventLog;
+    }
+
+    @VisibleForTesting
+    @Nullable
+    File getEventLogDirectory() {
+        final ClientMetadata clientMetadata = ClientMetadata.getInstance();
+        if (clientMetadata == null) {
+            return null;
+        }
+        final File cacheDirectory = clientMetadata.getAppCacheDirectory();
+        if (cacheDirectory == null) {
+            return null;
+        }
+        return new File(cacheDirectory, EVENT_LOG_DIRECTORY);
+    }
+
+    /**
+     * Passes responses through to the {@link ScribeRequestManager} and, on success, posts back to
+     * the event logging thread to delete the segment that was sent.
+     */
+    private class SegmentRequestListener implements ScribeRequest.Listener {
+        @NonNull private final EventSegmentLog.Segment mSegment;
+        @Nullable private final ScribeRequest.Listener mListener;
+
+        SegmentRequestListener(@NonNull final EventSegmentLog.Segment segment,
+                @Nullable final ScribeRequest.Listener listener) {
+            mSegment = segment;
+            mListener = listener;
+        }
+
+        @Override
+        public void onResponse() {
+            if (mListener != null) {
+                mListener.onResponse();
+            }
+            mPollHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    onSegmentSent(mSegment);
+                }
+            });
+        }
+
+        @Override
+        public void onErrorResponse(final VolleyError volleyError) {
+            if (mListener != null) {
+                mListener.onErrorResponse(volleyError);
+            }
+        }
+    }
+
     class PollingRunnable implements Runnable {
         @Override
         public void run() {
@@ -1,6 +1,7 @@
 package com.mopub.mobileads;
 
 import android.os.Handler;
+import android.os.SystemClock;
 import android.support.annotation.NonNull;
 
 import com.mopub.common.Preconditions;
@@ -9,11 +10,30 @@ import com.mopub.common.VisibleForTesting;
 /**
  * A generic runnable that handles scheduling itself periodically on a Handler and stops when
  * requested.
+ *
+ * Subclasses that know when they next have work can override {@link #getMillisUntilNextWork()}.
+ * They are then scheduled at that deadline instead of at every update interval. Deadlines are
+ * rounded up to {@link #WAKEUP_ALIGNMENT_MILLIS} on the uptime clock, so runnables sharing a
+ * Handler whose deadlines fall in the same slot run in one Looper wakeup.
  */
 public abstract class RepeatingHandlerRunnable implements Runnable {
+    /**
+     * Returned by {@link #getMillisUntilNextWork()} to repeat at the update interval.
+     */
+    static final long NO_DEADLINE = -1;
+
+    /**
+     * Returned by {@link #getMillisUntilNextWork()} when there is no more work. The runnable stops
+     * until it is started again.
+     */
+    static final long NO_MORE_WORK = Long.MAX_VALUE;
+
+    static final long WAKEUP_ALIGNMENT_MILLIS = 50;
+
     @NonNull protected final Handler mHandler;
     private volatile boolean mIsRunning;
     private volatile long mUpdateIntervalMillis;
+    private int mRunCount;
 
     RepeatingHandlerRunnable(@NonNull final Handler handler) {
         Preconditions.checkNotNull(handler);
@@ -23,13 +43,26 @@ public abstract class RepeatingHandlerRunnable implements Runnable {
     @Override
     public void run() {
         if (mIsRunning) {
+            mRunCount++;
             doWork();
-            mHandler.postDelayed(this, mUpdateIntervalMillis);
+            scheduleNext();
         }
     }
 
     public abstract void doWork();
 
+    /**
+     * Returns how long after the current {@link #doWork()} there is more work to do,
+     * {@link #NO_DEADLINE} to repeat at the update interval or {@link #NO_MORE_WORK}.
+     */
+    protected long getMillisUntilNextWork() {
+        return NO_DEADLINE;
+    }
+
+    protected long getUpdateIntervalMillis() {
+        return mUpdateIntervalMillis;
+    }
+
     /**
      * Start this runnable immediately, repeating at the provided interval.
      */
@@ -50,8 +83,34 @@ public abstract class RepeatingHandlerRunnable implements Runnable {
         mIsRunning = false;
     }
 
+    private void scheduleNext() {
+        final long delayMillis = getMillisUntilNextWork();
+        if (delayMillis == NO_DEADLINE) {
+            mHandler.postDelayed(this, mUpdateIntervalMillis);
+        } else if (delayMillis == NO_MORE_WORK) {
+            mIsRunning = false;
+        } else {
+            mHandler.postAtTime(this,
+                    alignWakeup(SystemClock.uptimeMillis() + Math.max(delayMillis, 1)));
+        }
+    }
+
+    @VisibleForTesting
+    static long alignWakeup(final long uptimeMillis) {
+        final long remainder = uptimeMillis % WAKEUP_ALIGNMENT_MILLIS;
+        return remainder == 0 ? uptimeMillis : uptimeMillis + WAKEUP_ALIGNMENT_MILLIS - remainder;
+    }
+
     @VisibleForTesting
     boolean shouldBeRunning() {
         return mIsRunning;
     }
+
+    /**
+     * Returns how many times this runnable has woken up to do work.
+     */
+    @VisibleForTesting
+    int getRunCount() {
+        return mRunCount;
+    }
 }
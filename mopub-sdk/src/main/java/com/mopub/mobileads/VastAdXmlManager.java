@@ -4,7 +4,6 @@ import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
 import com.mopub.common.Preconditions;
-import com.mopub.mobileads.util.XmlUtils;
 
 import org.w3c.dom.Node;
 
@@ -24,11 +23,15 @@ class VastAdXmlManager {
     // Attribute names
     private static final String SEQUENCE = "sequence";
 
-    @NonNull private final Node mAdNode;
+    @NonNull private final VastXmlElement mAdElement;
 
     VastAdXmlManager(@NonNull final Node adNode) {
-        Preconditions.checkNotNull(adNode);
-        mAdNode = adNode;
+        this(VastXmlElement.fromNode(adNode));
+    }
+
+    VastAdXmlManager(@NonNull final VastXmlElement adElement) {
+        Preconditions.checkNotNull(adElement);
+        mAdElement = adElement;
     }
 
     /**
@@ -38,10 +41,10 @@ class VastAdXmlManager {
      */
     @Nullable
     VastInLineXmlManager getInLineXmlManager() {
-        Node inLineNode = XmlUtils.getFirstMatchingChildNode(mAdNode, INLINE);
+        VastXmlElement inLineElement = mAdElement.getFirstChild(INLINE);
         VastInLineXmlManager vastInLineXmlManager = null;
-        if (inLineNode != null) {
-            vastInLineXmlManager = new VastInLineXmlManager(inLineNode);
+        if (inLineElement != null) {
+            vastInLineXmlManager = new VastInLineXmlManager(inLineElement);
         }
         return vastInLineXmlManager;
     }
@@ -53,10 +56,10 @@ class VastAdXmlManager {
      */
     @Nullable
     VastWrapperXmlManager getWrapperXmlManager() {
-        Node wrapperNode = XmlUtils.getFirstMatchingChildNode(mAdNode, WRAPPER);
+        VastXmlElement wrapperElement = mAdElement.getFirstChild(WRAPPER);
         VastWrapperXmlManager vastWrapperXmlManager = null;
-        if (wrapperNode != null) {
-            vastWrapperXmlManager = new VastWrapperXmlManager(wrapperNode);
+        if (wrapperElement != null) {
+            vastWrapperXmlManager = new VastWrapperXmlManager(wrapperElement);
         }
         return vastWrapperXmlManager;
     }
@@ -68,6 +71,6 @@ class VastAdXmlManager {
      */
     @Nullable
     String getSequence() {
-        return XmlUtils.getAttributeValue(mAdNode, SEQUENCE);
+        return mAdElement.getAttribute(SEQUENCE);
     }
 }
@@ -4,7 +4,6 @@ import android.support.annotation.NonNull;
 import android.text.TextUtils;
 
 import com.mopub.common.Preconditions;
-import com.mopub.mobileads.util.XmlUtils;
 
 import org.w3c.dom.Node;
 
@@ -22,11 +21,15 @@ abstract class VastBaseInLineWrapperXmlManager {
     private static final String COMPANION_ADS = "CompanionAds";
     private static final String ERROR = "Error";
 
-    @NonNull protected final Node mNode;
+    @NonNull protected final VastXmlElement mElement;
 
     VastBaseInLineWrapperXmlManager(@NonNull Node node) {
-        Preconditions.checkNotNull(node);
-        mNode = node;
+        this(VastXmlElement.fromNode(node));
+    }
+
+    VastBaseInLineWrapperXmlManager(@NonNull VastXmlElement element) {
+        Preconditions.checkNotNull(element);
+        mElement = element;
     }
 
     /**
@@ -37,11 +40,11 @@ abstract class VastBaseInLineWrapperXmlManager {
      */
     @NonNull
     List<VastTracker> getImpressionTrackers() {
-        final List<Node> impressionNodes = XmlUtils.getMatchingChildNodes(mNode, IMPRESSION_TRACKER);
+        final List<VastXmlElement> impressionElements = mElement.getChildren(IMPRESSION_TRACKER);
 
         List<VastTracker> impressionTrackers = new ArrayList<VastTracker>();
-        for (Node impressionNode : impressionNodes) {
-            String uri = XmlUtils.getNodeValue(impressionNode);
+        for (VastXmlElement impressionElement : impressionElements) {
+            String uri = impressionElement.getText();
             if (!TextUtils.isEmpty(uri)) {
                 impressionTrackers.add(new VastTracker(uri));
             }
@@ -58,13 +61,10 @@ abstract class VastBaseInLineWrapperXmlManager {
     @NonNull
     List<VastTracker> getErrorTrackers() {
         final List<VastTracker> errorTrackers = new ArrayList<VastTracker>();
-        final List<Node> errorNodes = XmlUtils.getMatchingChildNodes(mNode, ERROR);
-        if (errorNodes == null) {
-            return errorTrackers;
-        }
+        final List<VastXmlElement> errorElements = mElement.getChildren(ERROR);
 
-        for (Node error : errorNodes) {
-            final String tracker = XmlUtils.getNodeValue(error);
+        for (VastXmlElement error : errorElements) {
+            final String tracker = error.getText();
             if (!TextUtils.isEmpty(tracker)) {
                 errorTrackers.add(new VastTracker(tracker, true));
             }
@@ -80,23 +80,19 @@ abstract class VastBaseInLineWrapperXmlManager {
     @NonNull
     List<VastLinearXmlManager> getLinearXmlManagers() {
         final List<VastLinearXmlManager> linearXmlManagers = new ArrayList<VastLinearXmlManager>();
-        final Node creativesNode = XmlUtils.getFirstMatchingChildNode(mNode, CREATIVES);
-        if (creativesNode == null) {
+        final VastXmlElement creativesElement = mElement.getFirstChild(CREATIVES);
+        if (creativesElement == null) {
             return linearXmlManagers;
         }
 
         // NOTE: there can only be one <Linear>, <CompanionAds>, OR <NonLinearAds> element
         // per creative node
 
-        final List<Node> creativeNodes = XmlUtils.getMatchingChildNodes(creativesNode, CREATIVE);
-        if (creativeNodes == null) {
-            return linearXmlManagers;
-        }
-
-        for (Node creativeNode : creativeNodes) {
-            Node linearNode = XmlUtils.getFirstMatchingChildNode(creativeNode, LINEAR);
-            if (linearNode != null) {
-                linearXmlManagers.add(new VastLinearXmlManager(linearNode));
+        final List<VastXmlElement> creativeElements = creativesElement.getChildren(CREATIVE);
+        for (VastXmlElement creativeElement : creativeElements) {
+            VastXmlElement linearElement = creativeElement.getFirstChild(LINEAR);
+            if (linearElement != null) {
+                linearXmlManagers.add(new VastLinearXmlManager(linearElement));
             }
         }
         return linearXmlManagers;
@@ -112,29 +108,21 @@ abstract class VastBaseInLineWrapperXmlManager {
     List<VastCompanionAdXmlManager> getCompanionAdXmlManagers() {
         final List<VastCompanionAdXmlManager> companionAdXmlManagers = new
                 ArrayList<VastCompanionAdXmlManager>();
-        final Node creativesNode = XmlUtils.getFirstMatchingChildNode(mNode, CREATIVES);
-        if (creativesNode == null) {
+        final VastXmlElement creativesElement = mElement.getFirstChild(CREATIVES);
+        if (creativesElement == null) {
             return companionAdXmlManagers;
         }
 
-        final List<Node> creativeNodes = XmlUtils.getMatchingChildNodes(creativesNode, CREATIVE);
-        if (creativeNodes == null) {
-            return companionAdXmlManagers;
-        }
-
-        for (Node creativeNode : creativeNodes) {
-            final Node companionAds = XmlUtils.getFirstMatchingChildNode(creativeNode, COMPANION_ADS);
+        final List<VastXmlElement> creativeElements = creativesElement.getChildren(CREATIVE);
+        for (VastXmlElement creativeElement : creativeElements) {
+            final VastXmlElement companionAds = creativeElement.getFirstChild(COMPANION_ADS);
             if (companionAds == null) {
                 continue;
             }
 
-            List<Node> companionAdsNodes = XmlUtils.getMatchingChildNodes(companionAds, COMPANION);
-            if (companionAdsNodes == null) {
-                continue;
-            }
-
-            for (Node companionNode : companionAdsNodes) {
-                companionAdXmlManagers.add(new VastCompanionAdXmlManager(companionNode));
+            List<VastXmlElement> companionElements = companionAds.getChildren(COMPANION);
+            for (VastXmlElement companionElement : companionElements) {
+                companionAdXmlManagers.add(new VastCompanionAdXmlManager(companionElement));
             }
         }
 
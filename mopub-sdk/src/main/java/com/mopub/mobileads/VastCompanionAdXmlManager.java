@@ -5,12 +5,10 @@ import android.support.annotation.Nullable;
 import android.text.TextUtils;
 
 import com.mopub.common.Preconditions;
-import com.mopub.mobileads.util.XmlUtils;
 
 import org.w3c.dom.Node;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 
 /**
@@ -32,13 +30,17 @@ class VastCompanionAdXmlManager {
     // Attribute values
     private static final String CREATIVE_VIEW = "creativeView";
 
-    @NonNull private final Node mCompanionNode;
+    @NonNull private final VastXmlElement mCompanionElement;
     @NonNull private final VastResourceXmlManager mResourceXmlManager;
 
     VastCompanionAdXmlManager(@NonNull final Node companionNode) {
-        Preconditions.checkNotNull(companionNode, "companionNode cannot be null");
-        mCompanionNode = companionNode;
-        mResourceXmlManager = new VastResourceXmlManager(companionNode);
+        this(VastXmlElement.fromNode(companionNode));
+    }
+
+    VastCompanionAdXmlManager(@NonNull final VastXmlElement companionElement) {
+        Preconditions.checkNotNull(companionElement, "companionElement cannot be null");
+        mCompanionElement = companionElement;
+        mResourceXmlManager = new VastResourceXmlManager(companionElement);
     }
 
     /**
@@ -49,7 +51,7 @@ class VastCompanionAdXmlManager {
      */
     @Nullable
     Integer getWidth() {
-        return XmlUtils.getAttributeValueAsInt(mCompanionNode, WIDTH);
+        return mCompanionElement.getAttributeAsInt(WIDTH);
     }
 
     /**
@@ -60,7 +62,7 @@ class VastCompanionAdXmlManager {
      */
     @Nullable
     Integer getHeight() {
-        return XmlUtils.getAttributeValueAsInt(mCompanionNode, HEIGHT);
+        return mCompanionElement.getAttributeAsInt(HEIGHT);
     }
 
     @NonNull
@@ -75,11 +77,7 @@ class VastCompanionAdXmlManager {
      */
     @Nullable
     String getClickThroughUrl() {
-        final Node node = XmlUtils.getFirstMatchingChildNode(
-                mCompanionNode,
-                COMPANION_CLICK_THROUGH
-        );
-        return XmlUtils.getNodeValue(node);
+        return mCompanionElement.getFirstChildText(COMPANION_CLICK_THROUGH);
     }
 
     /**
@@ -91,12 +89,10 @@ class VastCompanionAdXmlManager {
     @NonNull
     List<VastTracker> getClickTrackers() {
         final List<VastTracker> companionAdClickTrackers = new ArrayList<VastTracker>();
-        final List<Node> trackerNodes = XmlUtils.getMatchingChildNodes(mCompanionNode, COMPANION_CLICK_TRACKING);
-        if (trackerNodes == null) {
-            return companionAdClickTrackers;
-        }
-        for (final Node trackerNode : trackerNodes) {
-            String uri = XmlUtils.getNodeValue(trackerNode);
+        final List<VastXmlElement> trackerElements =
+                mCompanionElement.getChildren(COMPANION_CLICK_TRACKING);
+        for (final VastXmlElement trackerElement : trackerElements) {
+            String uri = trackerElement.getText();
             if (!TextUtils.isEmpty(uri)) {
                 companionAdClickTrackers.add(new VastTracker(uri));
             }
@@ -114,24 +110,20 @@ class VastCompanionAdXmlManager {
     @NonNull
     List<VastTracker> getCompanionCreativeViewTrackers() {
         final List<VastTracker> companionCreativeViewTrackers = new ArrayList<VastTracker>();
-        final Node node = XmlUtils.getFirstMatchingChildNode(
-                mCompanionNode,
-                TRACKING_EVENTS
-        );
+        final VastXmlElement trackingEvents = mCompanionElement.getFirstChild(TRACKING_EVENTS);
 
-        if (node == null) {
+        if (trackingEvents == null) {
             return companionCreativeViewTrackers;
         }
 
-        final List<Node> trackerNodes = XmlUtils.getMatchingChildNodes(
-                node,
+        final List<VastXmlElement> trackerElements = trackingEvents.getChildren(
                 VIDEO_TRACKER,
                 EVENT,
-                Collections.singletonList(CREATIVE_VIEW)
+                CREATIVE_VIEW
         );
 
-        for (final Node trackerNode : trackerNodes) {
-            final String trackerUrl = XmlUtils.getNodeValue(trackerNode);
+        for (final VastXmlElement trackerElement : trackerElements) {
+            final String trackerUrl = trackerElement.getText();
             companionCreativeViewTrackers.add(new VastTracker(trackerUrl));
         }
 
@@ -6,7 +6,6 @@ import android.support.annotation.Nullable;
 import com.mopub.common.Preconditions;
 import com.mopub.common.logging.MoPubLog;
 import com.mopub.common.util.Strings;
-import com.mopub.mobileads.util.XmlUtils;
 
 import org.w3c.dom.Node;
 
@@ -30,13 +29,17 @@ public class VastIconXmlManager {
     public static final String OFFSET = "offset";
     public static final String DURATION = "duration";
 
-    @NonNull private final Node mIconNode;
+    @NonNull private final VastXmlElement mIconElement;
     @NonNull private final VastResourceXmlManager mResourceXmlManager;
 
     VastIconXmlManager(@NonNull final Node iconNode) {
-        Preconditions.checkNotNull(iconNode);
-        mIconNode = iconNode;
-        mResourceXmlManager = new VastResourceXmlManager(iconNode);
+        this(VastXmlElement.fromNode(iconNode));
+    }
+
+    VastIconXmlManager(@NonNull final VastXmlElement iconElement) {
+        Preconditions.checkNotNull(iconElement);
+        mIconElement = iconElement;
+        mResourceXmlManager = new VastResourceXmlManager(iconElement);
     }
 
     /**
@@ -47,7 +50,7 @@ public class VastIconXmlManager {
      */
     @Nullable
     Integer getWidth() {
-        return XmlUtils.getAttributeValueAsInt(mIconNode, WIDTH);
+        return mIconElement.getAttributeAsInt(WIDTH);
     }
 
     /**
@@ -58,7 +61,7 @@ public class VastIconXmlManager {
      */
     @Nullable
     Integer getHeight() {
-        return XmlUtils.getAttributeValueAsInt(mIconNode, HEIGHT);
+        return mIconElement.getAttributeAsInt(HEIGHT);
     }
 
     /**
@@ -71,7 +74,7 @@ public class VastIconXmlManager {
      */
     @Nullable
     Integer getOffsetMS() {
-        String iconOffsetStr = XmlUtils.getAttributeValue(mIconNode, OFFSET);
+        String iconOffsetStr = mIconElement.getAttribute(OFFSET);
         Integer iconOffset = null;
         try {
             iconOffset = Strings.parseAbsoluteOffset(iconOffsetStr);
@@ -91,7 +94,7 @@ public class VastIconXmlManager {
      */
     @Nullable
     Integer getDurationMS() {
-        String iconDurationStr = XmlUtils.getAttributeValue(mIconNode, DURATION);
+        String iconDurationStr = mIconElement.getAttribute(DURATION);
         Integer iconDuration = null;
         try {
             iconDuration = Strings.parseAbsoluteOffset(iconDurationStr);
@@ -108,16 +111,16 @@ public class VastIconXmlManager {
 
     @NonNull
     List<VastTracker> getClickTrackingUris() {
-        Node iconClicksNode = XmlUtils.getFirstMatchingChildNode(mIconNode, ICON_CLICKS);
+        VastXmlElement iconClicksElement = mIconElement.getFirstChild(ICON_CLICKS);
         List<VastTracker> iconClickTrackingUris = new ArrayList<VastTracker>();
-        if (iconClicksNode == null) {
+        if (iconClicksElement == null) {
             return iconClickTrackingUris;
         }
 
-        List<Node> iconClickTrackingNodes =
-                XmlUtils.getMatchingChildNodes(iconClicksNode, ICON_CLICK_TRACKING);
-        for (Node iconClickTrackingNode : iconClickTrackingNodes) {
-            String uri = XmlUtils.getNodeValue(iconClickTrackingNode);
+        List<VastXmlElement> iconClickTrackingElements =
+                iconClicksElement.getChildren(ICON_CLICK_TRACKING);
+        for (VastXmlElement iconClickTrackingElement : iconClickTrackingElements) {
+            String uri = iconClickTrackingElement.getText();
             if (uri != null) {
                 iconClickTrackingUris.add(new VastTracker(uri));
             }
@@ -127,24 +130,22 @@ public class VastIconXmlManager {
 
     @Nullable
     String getClickThroughUri() {
-        Node iconClicksNode = XmlUtils.getFirstMatchingChildNode(mIconNode, ICON_CLICKS);
-        if (iconClicksNode == null) {
+        VastXmlElement iconClicksElement = mIconElement.getFirstChild(ICON_CLICKS);
+        if (iconClicksElement == null) {
             return null;
         }
 
-        Node iconClickThroughNode =
-                XmlUtils.getFirstMatchingChildNode(iconClicksNode, ICON_CLICK_THROUGH);
-        return XmlUtils.getNodeValue(iconClickThroughNode);
+        return iconClicksElement.getFirstChildText(ICON_CLICK_THROUGH);
     }
 
     @NonNull
     List<VastTracker> getViewTrackingUris() {
-        List<Node> iconViewTrackingNodes =
-                XmlUtils.getMatchingChildNodes(mIconNode, ICON_VIEW_TRACKING);
+        List<VastXmlElement> iconViewTrackingElements =
+                mIconElement.getChildren(ICON_VIEW_TRACKING);
         List<VastTracker> iconViewTrackingUris = new ArrayList<VastTracker>();
 
-        for (Node iconViewTrackingNode : iconViewTrackingNodes) {
-            String uri = XmlUtils.getNodeValue(iconViewTrackingNode);
+        for (VastXmlElement iconViewTrackingElement : iconViewTrackingElements) {
+            String uri = iconViewTrackingElement.getText();
             if (uri != null) {
                 iconViewTrackingUris.add(new VastTracker(uri));
             }
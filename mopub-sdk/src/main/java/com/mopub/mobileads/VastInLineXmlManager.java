@@ -13,4 +13,8 @@ class VastInLineXmlManager extends VastBaseInLineWrapperXmlManager {
     VastInLineXmlManager(@NonNull final Node inLineNode) {
         super(inLineNode);
     }
+
+    VastInLineXmlManager(@NonNull final VastXmlElement inLineElement) {
+        super(inLineElement);
+    }
 }
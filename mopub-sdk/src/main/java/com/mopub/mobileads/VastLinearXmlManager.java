@@ -6,7 +6,6 @@ import android.support.annotation.Nullable;
 import com.mopub.common.Preconditions;
 import com.mopub.common.logging.MoPubLog;
 import com.mopub.common.util.Strings;
-import com.mopub.mobileads.util.XmlUtils;
 
 import org.w3c.dom.Node;
 
@@ -56,11 +55,15 @@ class VastLinearXmlManager {
     private static final float MID_POINT_MARKER = 0.50f;
     private static final float THIRD_QUARTER_MARKER = 0.75f;
 
-    @NonNull private final Node mLinearNode;
+    @NonNull private final VastXmlElement mLinearElement;
 
     VastLinearXmlManager(@NonNull final Node linearNode) {
-        Preconditions.checkNotNull(linearNode);
-        mLinearNode = linearNode;
+        this(VastXmlElement.fromNode(linearNode));
+    }
+
+    VastLinearXmlManager(@NonNull final VastXmlElement linearElement) {
+        Preconditions.checkNotNull(linearElement);
+        mLinearElement = linearElement;
     }
 
     /**
@@ -90,20 +93,20 @@ class VastLinearXmlManager {
         addQuartileTrackerWithFraction(percentTrackers, getVideoTrackersByAttribute(MIDPOINT), MID_POINT_MARKER);
         addQuartileTrackerWithFraction(percentTrackers, getVideoTrackersByAttribute(THIRD_QUARTILE), THIRD_QUARTER_MARKER);
 
-        final Node trackingEvents = XmlUtils.getFirstMatchingChildNode(mLinearNode, TRACKING_EVENTS);
+        final VastXmlElement trackingEvents = mLinearElement.getFirstChild(TRACKING_EVENTS);
         if (trackingEvents != null) {
             // Get any other trackers with event="progress" offset="n%"
-            final List<Node> progressNodes = XmlUtils.getMatchingChildNodes(trackingEvents,
-                    VIDEO_TRACKER, EVENT, Collections.singletonList(PROGRESS));
+            final List<VastXmlElement> progressElements = trackingEvents.getChildren(
+                    VIDEO_TRACKER, EVENT, PROGRESS);
 
-            for (Node progressNode : progressNodes) {
-                String offsetString = XmlUtils.getAttributeValue(progressNode, OFFSET);
+            for (VastXmlElement progressElement : progressElements) {
+                String offsetString = progressElement.getAttribute(OFFSET);
                 if (offsetString == null) {
                     continue;
                 }
                 offsetString = offsetString.trim();
                 if (Strings.isPercentageTracker(offsetString)) {
-                    String trackingUrl = XmlUtils.getNodeValue(progressNode);
+                    String trackingUrl = progressElement.getText();
                     try {
                         float trackingFraction =
                                 Float.parseFloat(offsetString.replace("%", "")) / 100f;
@@ -148,20 +151,20 @@ class VastLinearXmlManager {
             trackers.add(new VastAbsoluteProgressTracker(url, START_TRACKER_THRESHOLD));
         }
 
-        final Node trackingEvents = XmlUtils.getFirstMatchingChildNode(mLinearNode, TRACKING_EVENTS);
+        final VastXmlElement trackingEvents = mLinearElement.getFirstChild(TRACKING_EVENTS);
         if (trackingEvents != null) {
             // Parse progress trackers and extract the absolute offsets of the form "HH:MM:SS[.mmm]"
 
-            final List<Node> progressNodes = XmlUtils.getMatchingChildNodes(trackingEvents,
-                    VIDEO_TRACKER, EVENT, Collections.singletonList(PROGRESS));
-            for (Node progressNode : progressNodes) {
-                String offsetString = XmlUtils.getAttributeValue(progressNode, OFFSET);
+            final List<VastXmlElement> progressElements = trackingEvents.getChildren(
+                    VIDEO_TRACKER, EVENT, PROGRESS);
+            for (VastXmlElement progressElement : progressElements) {
+                String offsetString = progressElement.getAttribute(OFFSET);
                 if (offsetString == null) {
                     continue;
                 }
                 offsetString = offsetString.trim();
                 if (Strings.isAbsoluteTracker(offsetString)) {
-                    String trackingUrl = XmlUtils.getNodeValue(progressNode);
+                    String trackingUrl = progressElement.getText();
                     try {
                         Integer trackingMilliseconds = Strings.parseAbsoluteOffset(offsetString);
                         if (trackingMilliseconds != null) {
@@ -175,11 +178,11 @@ class VastLinearXmlManager {
             }
 
             // Parse creativeView trackers
-            final List<Node> creativeViewNodes = XmlUtils.getMatchingChildNodes(trackingEvents,
-                    VIDEO_TRACKER, EVENT, Collections.singletonList(CREATIVE_VIEW));
-            for (Node creativeViewNode : creativeViewNodes) {
+            final List<VastXmlElement> creativeViewElements = trackingEvents.getChildren(
+                    VIDEO_TRACKER, EVENT, CREATIVE_VIEW);
+            for (VastXmlElement creativeViewElement : creativeViewElements) {
                 trackers.add(
-                        new VastAbsoluteProgressTracker(XmlUtils.getNodeValue(creativeViewNode),
+                        new VastAbsoluteProgressTracker(creativeViewElement.getText(),
                                 CREATIVE_VIEW_TRACKER_THRESHOLD));
             }
         }
@@ -258,11 +261,11 @@ class VastLinearXmlManager {
      */
     @Nullable
     String getClickThroughUrl() {
-        final Node videoClicks = XmlUtils.getFirstMatchingChildNode(mLinearNode, VIDEO_CLICKS);
+        final VastXmlElement videoClicks = mLinearElement.getFirstChild(VIDEO_CLICKS);
         if (videoClicks == null) {
             return null;
         }
-        return XmlUtils.getNodeValue(XmlUtils.getFirstMatchingChildNode(videoClicks, CLICK_THROUGH));
+        return videoClicks.getFirstChildText(CLICK_THROUGH);
     }
 
     /**
@@ -274,18 +277,15 @@ class VastLinearXmlManager {
     List<VastTracker> getClickTrackers() {
         List<VastTracker> clickTrackers = new ArrayList<VastTracker>();
 
-        final Node videoClicks = XmlUtils.getFirstMatchingChildNode(mLinearNode, VIDEO_CLICKS);
+        final VastXmlElement videoClicks = mLinearElement.getFirstChild(VIDEO_CLICKS);
         if (videoClicks == null) {
             return clickTrackers;
         }
 
-        final List<Node> clickTrackerNodes = XmlUtils.getMatchingChildNodes(
-                videoClicks,
-                CLICK_TRACKER
-        );
+        final List<VastXmlElement> clickTrackerElements = videoClicks.getChildren(CLICK_TRACKER);
 
-        for (Node clickTrackerNode : clickTrackerNodes) {
-            String tracker = XmlUtils.getNodeValue(clickTrackerNode);
+        for (VastXmlElement clickTrackerElement : clickTrackerElements) {
+            String tracker = clickTrackerElement.getText();
             if (tracker != null) {
                 clickTrackers.add(new VastTracker(tracker));
             }
@@ -302,7 +302,7 @@ class VastLinearXmlManager {
      */
     @Nullable
     String getSkipOffset() {
-        final String skipOffsetString = XmlUtils.getAttributeValue(mLinearNode, SKIP_OFFSET);
+        final String skipOffsetString = mLinearElement.getAttribute(SKIP_OFFSET);
         if (skipOffsetString == null) {
             return null;
         }
@@ -324,14 +324,14 @@ class VastLinearXmlManager {
     List<VastMediaXmlManager> getMediaXmlManagers() {
         final List<VastMediaXmlManager> mediaXmlManagers = new ArrayList<VastMediaXmlManager>();
 
-        final Node mediaFiles = XmlUtils.getFirstMatchingChildNode(mLinearNode, MEDIA_FILES);
+        final VastXmlElement mediaFiles = mLinearElement.getFirstChild(MEDIA_FILES);
         if (mediaFiles == null) {
             return mediaXmlManagers;
         }
 
-        List<Node> mediaNodes = XmlUtils.getMatchingChildNodes(mediaFiles, MEDIA_FILE);
-        for (Node mediaNode : mediaNodes) {
-            mediaXmlManagers.add(new VastMediaXmlManager(mediaNode));
+        List<VastXmlElement> mediaElements = mediaFiles.getChildren(MEDIA_FILE);
+        for (VastXmlElement mediaElement : mediaElements) {
+            mediaXmlManagers.add(new VastMediaXmlManager(mediaElement));
         }
 
         return mediaXmlManagers;
@@ -341,14 +341,14 @@ class VastLinearXmlManager {
     List<VastIconXmlManager> getIconXmlManagers() {
         final List<VastIconXmlManager> iconXmlManagers = new ArrayList<VastIconXmlManager>();
 
-        final Node icons= XmlUtils.getFirstMatchingChildNode(mLinearNode, ICONS);
+        final VastXmlElement icons = mLinearElement.getFirstChild(ICONS);
         if (icons == null) {
             return iconXmlManagers;
         }
 
-        List<Node> iconNodes = XmlUtils.getMatchingChildNodes(icons, ICON);
-        for (Node iconNode : iconNodes) {
-            iconXmlManagers.add(new VastIconXmlManager(iconNode));
+        List<VastXmlElement> iconElements = icons.getChildren(ICON);
+        for (VastXmlElement iconElement : iconElements) {
+            iconXmlManagers.add(new VastIconXmlManager(iconElement));
         }
 
         return iconXmlManagers;
@@ -377,20 +377,19 @@ class VastLinearXmlManager {
         Preconditions.checkNotNull(attributeValue);
         List<String> videoTrackers = new ArrayList<String>();
 
-        final Node trackingEvents = XmlUtils.getFirstMatchingChildNode(mLinearNode, TRACKING_EVENTS);
+        final VastXmlElement trackingEvents = mLinearElement.getFirstChild(TRACKING_EVENTS);
         if (trackingEvents == null) {
             return videoTrackers;
         }
 
-        final List<Node> videoTrackerNodes = XmlUtils.getMatchingChildNodes(
-                trackingEvents,
+        final List<VastXmlElement> videoTrackerElements = trackingEvents.getChildren(
                 VIDEO_TRACKER,
                 EVENT,
-                Collections.singletonList(attributeValue)
+                attributeValue
         );
 
-        for (Node videoTrackerNode : videoTrackerNodes) {
-            String tracker = XmlUtils.getNodeValue(videoTrackerNode);
+        for (VastXmlElement videoTrackerElement : videoTrackerElements) {
+            String tracker = videoTrackerElement.getText();
             if (tracker != null) {
                 videoTrackers.add(tracker);
             }
@@ -5,6 +5,7 @@ import android.support.annotation.Nullable;
 import android.text.TextUtils;
 
 import com.mopub.common.Preconditions;
+import com.mopub.common.VisibleForTesting;
 import com.mopub.common.logging.MoPubLog;
 
 import java.io.UnsupportedEncodingException;
@@ -21,41 +22,96 @@ import java.util.concurrent.TimeUnit;
  */
 public class VastMacroHelper {
 
-    @NonNull private final List<String> mOriginalUris;
+    @NonNull private final List<VastMacroTemplate> mTemplates;
     @NonNull private final Map<VastMacro, String> mMacroDataMap;
 
     public VastMacroHelper(@NonNull final List<String> uris) {
         Preconditions.checkNotNull(uris, "uris cannot be null");
-        mOriginalUris = uris;
+        mTemplates = new ArrayList<VastMacroTemplate>(uris.size());
+        for (final String uri : uris) {
+            if (!TextUtils.isEmpty(uri)) {
+                mTemplates.add(VastMacroTemplate.compile(uri));
+            }
+        }
         mMacroDataMap = new HashMap<VastMacro, String>();
         mMacroDataMap.put(VastMacro.CACHEBUSTING, getCachebustingString());
     }
 
+    private VastMacroHelper(@NonNull final List<VastMacroTemplate> templates,
+            @NonNull final Map<VastMacro, String> macroDataMap) {
+        mTemplates = templates;
+        mMacroDataMap = macroDataMap;
+    }
+
+    /**
+     * Creates a helper for the urls of the given trackers, reusing the macro templates each
+     * tracker has already compiled.
+     */
+    @NonNull
+    public static VastMacroHelper fromVastTrackers(@NonNull final List<VastTracker> vastTrackers) {
+        Preconditions.checkNotNull(vastTrackers, "vastTrackers cannot be null");
+        final List<VastMacroTemplate> templates =
+                new ArrayList<VastMacroTemplate>(vastTrackers.size());
+        for (final VastTracker vastTracker : vastTrackers) {
+            if (!TextUtils.isEmpty(vastTracker.getTrackingUrl())) {
+                templates.add(vastTracker.getMacroTemplate());
+            }
+        }
+        final Map<VastMacro, String> macroDataMap = new HashMap<VastMacro, String>();
+        macroDataMap.put(VastMacro.CACHEBUSTING, getCachebustingString());
+        return new VastMacroHelper(templates, macroDataMap);
+    }
+
     @NonNull
     public List<String> getUris() {
-        List<String> modifiedUris = new ArrayList<String>();
+        final List<String> modifiedUris = new ArrayList<String>(mTemplates.size());
+        final VastMacro[] vastMacros = VastMacro.values();
+        final String[] values = new String[vastMacros.length];
+        for (final VastMacro vastMacro : vastMacros) {
+            values[vastMacro.ordinal()] = mMacroDataMap.get(vastMacro);
+        }
 
-        for(final String originalUri : mOriginalUris) {
-            String modifiedUri = originalUri;
-            if (TextUtils.isEmpty(modifiedUri)) {
-                continue;
-            }
-            for (final VastMacro vastMacro : VastMacro.values()) {
-                String value = mMacroDataMap.get(vastMacro);
-                if (value == null) {
-                    value = "";
+        StringBuilder builder = null;
+        for (final VastMacroTemplate template : mTemplates) {
+            if (!template.hasMacros()) {
+                modifiedUris.add(template.getUri());
+            } else if (template.canExpandInOnePass(values)) {
+                if (builder == null) {
+                    builder = new StringBuilder(template.getUri().length() + 64);
+                } else {
+                    builder.setLength(0);
                 }
-
-                modifiedUri = modifiedUri.replaceAll("\\[" + vastMacro.name() + "\\]",
-                        value);
+                template.expandInto(builder, values);
+                modifiedUris.add(builder.toString());
+            } else {
+                modifiedUris.add(replaceMacros(template.getUri(), mMacroDataMap));
             }
-
-            modifiedUris.add(modifiedUri);
         }
 
         return modifiedUris;
     }
 
+    /**
+     * Replaces each macro in turn. This is the reference behavior that
+     * {@link VastMacroTemplate} reproduces in a single pass.
+     */
+    @VisibleForTesting
+    @NonNull
+    static String replaceMacros(@NonNull final String uri,
+            @NonNull final Map<VastMacro, String> macroDataMap) {
+        String modifiedUri = uri;
+        for (final VastMacro vastMacro : VastMacro.values()) {
+            String value = macroDataMap.get(vastMacro);
+            if (value == null) {
+                value = "";
+            }
+
+            modifiedUri = modifiedUri.replaceAll("\\[" + vastMacro.name() + "\\]",
+                    value);
+        }
+        return modifiedUri;
+    }
+
     @NonNull
     public VastMacroHelper withErrorCode(@Nullable final VastErrorCode errorCode) {
         if (errorCode != null) {
@@ -89,8 +145,13 @@ public class VastMacroHelper {
         return this;
     }
 
+    @VisibleForTesting
+    void putMacroValue(@NonNull final VastMacro vastMacro, @Nullable final String value) {
+        mMacroDataMap.put(vastMacro, value);
+    }
+
     @NonNull
-    private String getCachebustingString() {
+    private static String getCachebustingString() {
         return String.format(Locale.US, "%08d", Math.round(Math.random() * 100000000));
     }
 
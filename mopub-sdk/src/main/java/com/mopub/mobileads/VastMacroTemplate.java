@@ -0,0 +1,138 @@
+package com.mopub.mobileads;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.mopub.common.Preconditions;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A tracking url split once into literal text and {@link VastMacro} placeholders, so it can be
+ * expanded repeatedly without scanning the url or compiling a regex for every macro.
+ */
+class VastMacroTemplate {
+
+    private static final Map<String, VastMacro> MACROS_BY_NAME = new HashMap<String, VastMacro>();
+
+    static {
+        for (final VastMacro vastMacro : VastMacro.values()) {
+            MACROS_BY_NAME.put(vastMacro.name(), vastMacro);
+        }
+    }
+
+    @NonNull private final String mUri;
+    /**
+     * Literal text around the placeholders. Always one longer than {@link #mMacros}.
+     */
+    @NonNull private final String[] mLiterals;
+    @NonNull private final VastMacro[] mMacros;
+    /**
+     * Whether the literal text contains a '[' that does not start a macro. Substituting a value
+     * next to it could complete a new macro, which the sequential replacement would then expand.
+     */
+    private final boolean mHasStrayBracket;
+
+    private VastMacroTemplate(@NonNull final String uri, @NonNull final String[] literals,
+            @NonNull final VastMacro[] macros, final boolean hasStrayBracket) {
+        mUri = uri;
+        mLiterals = literals;
+        mMacros = macros;
+        mHasStrayBracket = hasStrayBracket;
+    }
+
+    @NonNull
+    static VastMacroTemplate compile(@NonNull final String uri) {
+        Preconditions.checkNotNull(uri);
+
+        final List<String> literals = new ArrayList<String>();
+        final List<VastMacro> macros = new ArrayList<VastMacro>();
+        boolean hasStrayBracket = false;
+        int literalStart = 0;
+        int open = uri.indexOf('[');
+        while (open != -1) {
+            final int close = uri.indexOf(']', open + 1);
+            if (close == -1) {
+                hasStrayBracket = true;
+                break;
+            }
+            final VastMacro vastMacro = MACROS_BY_NAME.get(uri.substring(open + 1, close));
+            if (vastMacro == null) {
+                hasStrayBracket = true;
+                open = uri.indexOf('[', open + 1);
+                continue;
+            }
+            literals.add(uri.substring(literalStart, open));
+            macros.add(vastMacro);
+            literalStart = close + 1;
+            open = uri.indexOf('[', literalStart);
+        }
+        literals.add(uri.substring(literalStart));
+
+        return new VastMacroTemplate(uri,
+                literals.toArray(new String[literals.size()]),
+                macros.toArray(new VastMacro[macros.size()]),
+                hasStrayBracket);
+    }
+
+    @NonNull
+    String getUri() {
+        return mUri;
+    }
+
+    boolean hasMacros() {
+        return mMacros.length > 0;
+    }
+
+    /**
+     * Returns true if a single left to right pass gives the same result as replacing each macro
+     * in turn with {@link String#replaceAll(String, String)}. That only differs when a value
+     * contains regex replacement escapes or brackets, or when the url has brackets of its own.
+     *
+     * @param values Macro values indexed by {@link VastMacro#ordinal()}.
+     */
+    boolean canExpandInOnePass(@NonNull final String[] values) {
+        if (mHasStrayBracket) {
+            return false;
+        }
+        for (final VastMacro vastMacro : mMacros) {
+            if (!isPlainValue(values[vastMacro.ordinal()])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Appends the url with every placeholder replaced by its value, or by nothing if the value is
+     * null.
+     *
+     * @param values Macro values indexed by {@link VastMacro#ordinal()}.
+     */
+    void expandInto(@NonNull final StringBuilder builder, @NonNull final String[] values) {
+        for (int i = 0; i < mMacros.length; i++) {
+            builder.append(mLiterals[i]);
+            final String value = values[mMacros[i].ordinal()];
+            if (value != null) {
+                builder.append(value);
+            }
+        }
+        builder.append(mLiterals[mMacros.length]);
+    }
+
+    private static boolean isPlainValue(@Nullable final String value) {
+        if (value == null) {
+            return true;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c == '$' || c == '\\' || c == '[' || c == ']') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
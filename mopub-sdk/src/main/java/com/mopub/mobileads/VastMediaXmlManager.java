@@ -4,7 +4,6 @@ import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
 import com.mopub.common.Preconditions;
-import com.mopub.mobileads.util.XmlUtils;
 
 import org.w3c.dom.Node;
 
@@ -19,11 +18,15 @@ class VastMediaXmlManager {
     private static final String DELIVERY = "delivery";
     private static final String VIDEO_TYPE  = "type";
 
-    @NonNull private final Node mMediaNode;
+    @NonNull private final VastXmlElement mMediaElement;
 
     VastMediaXmlManager(@NonNull final Node mediaNode) {
-        Preconditions.checkNotNull(mediaNode, "mediaNode cannot be null");
-        mMediaNode = mediaNode;
+        this(VastXmlElement.fromNode(mediaNode));
+    }
+
+    VastMediaXmlManager(@NonNull final VastXmlElement mediaElement) {
+        Preconditions.checkNotNull(mediaElement, "mediaElement cannot be null");
+        mMediaElement = mediaElement;
     }
 
     /**
@@ -35,7 +38,7 @@ class VastMediaXmlManager {
      */
     @Nullable
     String getDelivery() {
-        return XmlUtils.getAttributeValue(mMediaNode, DELIVERY);
+        return mMediaElement.getAttribute(DELIVERY);
     }
 
     /**
@@ -46,7 +49,7 @@ class VastMediaXmlManager {
      */
     @Nullable
     Integer getWidth() {
-        return XmlUtils.getAttributeValueAsInt(mMediaNode, WIDTH);
+        return mMediaElement.getAttributeAsInt(WIDTH);
     }
 
     /**
@@ -57,7 +60,7 @@ class VastMediaXmlManager {
      */
     @Nullable
     Integer getHeight() {
-        return XmlUtils.getAttributeValueAsInt(mMediaNode, HEIGHT);
+        return mMediaElement.getAttributeAsInt(HEIGHT);
     }
 
     /**
@@ -68,7 +71,7 @@ class VastMediaXmlManager {
      */
     @Nullable
     String getType() {
-        return XmlUtils.getAttributeValue(mMediaNode, VIDEO_TYPE);
+        return mMediaElement.getAttribute(VIDEO_TYPE);
     }
 
     /**
@@ -78,6 +81,6 @@ class VastMediaXmlManager {
      */
     @Nullable
     String getMediaUrl() {
-        return XmlUtils.getNodeValue(mMediaNode);
+        return mMediaElement.getText();
     }
 }
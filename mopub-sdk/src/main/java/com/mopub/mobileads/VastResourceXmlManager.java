@@ -4,7 +4,6 @@ import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
 import com.mopub.common.Preconditions;
-import com.mopub.mobileads.util.XmlUtils;
 
 import org.w3c.dom.Node;
 
@@ -18,11 +17,15 @@ public class VastResourceXmlManager {
     // Attribute names
     public static final String CREATIVE_TYPE = "creativeType";
 
-    @NonNull private final Node mResourceNode;
+    @NonNull private final VastXmlElement mResourceElement;
 
     VastResourceXmlManager(@NonNull final Node resourceNode) {
-        Preconditions.checkNotNull(resourceNode);
-        mResourceNode = resourceNode;
+        this(VastXmlElement.fromNode(resourceNode));
+    }
+
+    VastResourceXmlManager(@NonNull final VastXmlElement resourceElement) {
+        Preconditions.checkNotNull(resourceElement);
+        mResourceElement = resourceElement;
     }
 
     /**
@@ -33,7 +36,7 @@ public class VastResourceXmlManager {
      */
     @Nullable
     String getStaticResource() {
-        return XmlUtils.getNodeValue(XmlUtils.getFirstMatchingChildNode(mResourceNode, STATIC_RESOURCE));
+        return mResourceElement.getFirstChildText(STATIC_RESOURCE);
     }
 
     /**
@@ -44,8 +47,11 @@ public class VastResourceXmlManager {
      */
     @Nullable
     String getStaticResourceType() {
-        Node staticResource = XmlUtils.getFirstMatchingChildNode(mResourceNode, STATIC_RESOURCE);
-        String attribute = XmlUtils.getAttributeValue(staticResource, CREATIVE_TYPE);
+        VastXmlElement staticResource = mResourceElement.getFirstChild(STATIC_RESOURCE);
+        if (staticResource == null) {
+            return null;
+        }
+        String attribute = staticResource.getAttribute(CREATIVE_TYPE);
         if (attribute != null) {
             return attribute.toLowerCase();
         }
@@ -60,7 +66,7 @@ public class VastResourceXmlManager {
      */
     @Nullable
     String getIFrameResource() {
-        return XmlUtils.getNodeValue(XmlUtils.getFirstMatchingChildNode(mResourceNode, IFRAME_RESOURCE));
+        return mResourceElement.getFirstChildText(IFRAME_RESOURCE);
     }
 
     /**
@@ -71,6 +77,6 @@ public class VastResourceXmlManager {
      */
     @Nullable
     String getHTMLResource() {
-        return XmlUtils.getNodeValue(XmlUtils.getFirstMatchingChildNode(mResourceNode, HTML_RESOURCE));
+        return mResourceElement.getFirstChildText(HTML_RESOURCE);
     }
 }
@@ -1,6 +1,7 @@
 package com.mopub.mobileads;
 
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 
 import com.mopub.common.Preconditions;
 
@@ -15,6 +16,7 @@ public class VastTracker implements Serializable {
     @NonNull protected final String mTrackingUrl;
     private boolean mCalled;
     private boolean mIsRepeatable;
+    @Nullable private transient VastMacroTemplate mMacroTemplate;
 
     public VastTracker(@NonNull String trackingUrl) {
         Preconditions.checkNotNull(trackingUrl);
@@ -31,6 +33,18 @@ public class VastTracker implements Serializable {
         return mTrackingUrl;
     }
 
+    /**
+     * Returns the tracking url parsed for macro substitution. It is compiled on first use and kept
+     * for later progress and error events.
+     */
+    @NonNull
+    VastMacroTemplate getMacroTemplate() {
+        if (mMacroTemplate == null) {
+            mMacroTemplate = VastMacroTemplate.compile(mTrackingUrl);
+        }
+        return mMacroTemplate;
+    }
+
     public void setTracked() {
         mCalled = true;
     }
@@ -59,6 +59,13 @@ public class VastVideoConfig implements Serializable {
      */
     private boolean mIsForceOrientationSet;
 
+    /**
+     * Index of the first progress tracker in each sorted list that has not fired. Every tracker
+     * before it has been tracked, so scans during playback start here instead of at 0.
+     */
+    private transient int mAbsoluteTrackerCursor;
+    private transient int mFractionalTrackerCursor;
+
     public VastVideoConfig() {
         mImpressionTrackers = new ArrayList<VastTracker>();
         mFractionalTrackers = new ArrayList<VastFractionalProgressTracker>();
@@ -89,6 +96,7 @@ public class VastVideoConfig implements Serializable {
         Preconditions.checkNotNull(fractionalTrackers, "fractionalTrackers cannot be null");
         mFractionalTrackers.addAll(fractionalTrackers);
         Collections.sort(mFractionalTrackers);
+        mFractionalTrackerCursor = 0;
     }
 
     /**
@@ -98,6 +106,7 @@ public class VastVideoConfig implements Serializable {
         Preconditions.checkNotNull(absoluteTrackers, "absoluteTrackers cannot be null");
         mAbsoluteTrackers.addAll(absoluteTrackers);
         Collections.sort(mAbsoluteTrackers);
+        mAbsoluteTrackerCursor = 0;
     }
 
     public void addCompleteTrackers(@NonNull final List<VastTracker> completeTrackers) {
@@ -527,33 +536,9 @@ public class VastVideoConfig implements Serializable {
     @NonNull
     public List<VastTracker> getUntriggeredTrackersBefore(int currentPositionMillis, int videoLengthMillis) {
         if (Preconditions.NoThrow.checkArgument(videoLengthMillis > 0)) {
-            float progressFraction = currentPositionMillis / (float) (videoLengthMillis);
             List<VastTracker> untriggeredTrackers = new ArrayList<VastTracker>();
-
-            VastAbsoluteProgressTracker absoluteTest = new VastAbsoluteProgressTracker("", currentPositionMillis);
-            int absoluteTrackerCount = mAbsoluteTrackers.size();
-            for (int i = 0; i < absoluteTrackerCount; i++) {
-                VastAbsoluteProgressTracker tracker = mAbsoluteTrackers.get(i);
-                if (tracker.compareTo(absoluteTest) > 0) {
-                    break;
-                }
-                if (!tracker.isTracked()) {
-                    untriggeredTrackers.add(tracker);
-                }
-            }
-
-            final VastFractionalProgressTracker fractionalTest = new VastFractionalProgressTracker("", progressFraction);
-            int fractionalTrackerCount = mFractionalTrackers.size();
-            for (int i = 0; i < fractionalTrackerCount; i++) {
-                VastFractionalProgressTracker tracker = mFractionalTrackers.get(i);
-                if (tracker.compareTo(fractionalTest) > 0) {
-                    break;
-                }
-                if (!tracker.isTracked()) {
-                    untriggeredTrackers.add(tracker);
-                }
-            }
-
+            addUntriggeredTrackersBefore(currentPositionMillis, videoLengthMillis,
+                    untriggeredTrackers);
             return untriggeredTrackers;
         } else {
             return Collections.emptyList();
@@ -566,7 +551,121 @@ public class VastVideoConfig implements Serializable {
      * @return Integer count >= 0 of the remaining progress trackers.
      */
     public int getRemainingProgressTrackerCount() {
-        return getUntriggeredTrackersBefore(Integer.MAX_VALUE, Integer.MAX_VALUE).size();
+        return addUntriggeredTrackersBefore(Integer.MAX_VALUE, Integer.MAX_VALUE, null);
+    }
+
+    /**
+     * Returns the earliest video position at which an untriggered progress tracker fires, or
+     * {@link Integer#MAX_VALUE} if none are left. Until playback reaches it,
+     * {@link #getUntriggeredTrackersBefore(int, int)} would return an empty list.
+     *
+     * @param videoLengthMillis the total video length, used to place fractional trackers.
+     */
+    public int getNextProgressTrackerMillis(int videoLengthMillis) {
+        if (videoLengthMillis <= 0) {
+            return Integer.MAX_VALUE;
+        }
+
+        advanceTrackerCursors();
+        int next = Integer.MAX_VALUE;
+        if (mAbsoluteTrackerCursor < mAbsoluteTrackers.size()) {
+            next = mAbsoluteTrackers.get(mAbsoluteTrackerCursor).getTrackingMilliseconds();
+        }
+        if (mFractionalTrackerCursor < mFractionalTrackers.size()) {
+            final float fraction =
+                    mFractionalTrackers.get(mFractionalTrackerCursor).trackingFraction();
+            next = Math.min(next, getFirstPositionAtFraction(fraction, videoLengthMillis));
+        }
+        return next;
+    }
+
+    /**
+     * Adds untriggered progress trackers up to the provided position to {@code out}, absolute
+     * trackers first, each group in trigger order. Scanning starts after the trackers that have
+     * already fired, and nothing is allocated.
+     *
+     * @param out the list to add to, or null to only count the trackers.
+     * @return the number of trackers found.
+     */
+    private int addUntriggeredTrackersBefore(int currentPositionMillis, int videoLengthMillis,
+            @Nullable final List<VastTracker> out) {
+        advanceTrackerCursors();
+        final float progressFraction = currentPositionMillis / (float) (videoLengthMillis);
+        int count = 0;
+
+        final int absoluteTrackerCount = mAbsoluteTrackers.size();
+        for (int i = mAbsoluteTrackerCursor; i < absoluteTrackerCount; i++) {
+            final VastAbsoluteProgressTracker tracker = mAbsoluteTrackers.get(i);
+            if (tracker.getTrackingMilliseconds() > currentPositionMillis) {
+                break;
+            }
+            if (!tracker.isTracked()) {
+                count++;
+                if (out != null) {
+                    out.add(tracker);
+                }
+            }
+        }
+
+        final int fractionalTrackerCount = mFractionalTrackers.size();
+        for (int i = mFractionalTrackerCursor; i < fractionalTrackerCount; i++) {
+            final VastFractionalProgressTracker tracker = mFractionalTrackers.get(i);
+            if (Double.compare(tracker.trackingFraction(), progressFraction) > 0) {
+                break;
+            }
+            if (!tracker.isTracked()) {
+                count++;
+                if (out != null) {
+                    out.add(tracker);
+                }
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Moves each cursor past trackers that have fired. Trackers stay tracked once fired, so a
+     * seek backwards or a replay never needs to move a cursor back.
+     */
+    private void advanceTrackerCursors() {
+        final int absoluteTrackerCount = mAbsoluteTrackers.size();
+        if (mAbsoluteTrackerCursor > absoluteTrackerCount) {
+            mAbsoluteTrackerCursor = 0;
+        }
+        while (mAbsoluteTrackerCursor < absoluteTrackerCount
+                && mAbsoluteTrackers.get(mAbsoluteTrackerCursor).isTracked()) {
+            mAbsoluteTrackerCursor++;
+        }
+
+        final int fractionalTrackerCount = mFractionalTrackers.size();
+        if (mFractionalTrackerCursor > fractionalTrackerCount) {
+            mFractionalTrackerCursor = 0;
+        }
+        while (mFractionalTrackerCursor < fractionalTrackerCount
+                && mFractionalTrackers.get(mFractionalTrackerCursor).isTracked()) {
+            mFractionalTrackerCursor++;
+        }
+    }
+
+    /**
+     * Returns the smallest position for which position / videoLength, computed in float as
+     * {@link #getUntriggeredTrackersBefore(int, int)} does, reaches {@code fraction}.
+     */
+    private static int getFirstPositionAtFraction(float fraction, int videoLengthMillis) {
+        final double estimate = Math.ceil((double) fraction * videoLengthMillis);
+        if (estimate >= Integer.MAX_VALUE) {
+            return Integer.MAX_VALUE;
+        }
+        int position = (int) estimate;
+        // Float rounding can put the estimate a position off either way
+        while (position > 0 && (position - 1) / (float) videoLengthMillis >= fraction) {
+            position--;
+        }
+        while (position < Integer.MAX_VALUE && position / (float) videoLengthMillis < fraction) {
+            position++;
+        }
+        return position;
     }
 
     /**
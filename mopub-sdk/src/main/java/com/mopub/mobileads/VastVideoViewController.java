@@ -649,6 +649,17 @@ public class VastVideoViewController extends BaseVideoViewController {
         return !mShowCloseButtonEventFired && getCurrentPosition() >= mShowCloseButtonDelay;
     }
 
+    /**
+     * Returns the milliseconds of playback left before the video can be skipped, or -1 once it
+     * has been made skippable.
+     */
+    long getMillisUntilInteractable() {
+        if (mShowCloseButtonEventFired) {
+            return -1;
+        }
+        return Math.max(mShowCloseButtonDelay - getCurrentPosition(), 0);
+    }
+
     void updateCountdown() {
         if (mIsCalibrationDone) {
             mRadialCountdownWidget.updateCountdownProgress(mShowCloseButtonDelay, getCurrentPosition());
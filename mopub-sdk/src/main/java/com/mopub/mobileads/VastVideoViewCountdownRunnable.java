@@ -31,4 +31,17 @@ public class VastVideoViewCountdownRunnable extends RepeatingHandlerRunnable {
             mVideoViewController.makeVideoInteractable();
         }
     }
+
+    /**
+     * The countdown is redrawn every update interval until the video becomes skippable, which
+     * happens exactly on time. After that there is nothing left to count down.
+     */
+    @Override
+    protected long getMillisUntilNextWork() {
+        final long untilInteractable = mVideoViewController.getMillisUntilInteractable();
+        if (untilInteractable < 0) {
+            return NO_MORE_WORK;
+        }
+        return Math.min(getUpdateIntervalMillis(), untilInteractable);
+    }
 }
@@ -6,7 +6,6 @@ import android.support.annotation.NonNull;
 import com.mopub.common.Preconditions;
 import com.mopub.network.TrackingRequest;
 
-import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -37,23 +36,40 @@ public class VastVideoViewProgressRunnable extends RepeatingHandlerRunnable {
         mVideoViewController.updateProgressBar();
 
         if (videoLength > 0) {
-            final List<VastTracker> trackersToTrack =
-                    mVastVideoConfig.getUntriggeredTrackersBefore(currentPosition, videoLength);
-            if (!trackersToTrack.isEmpty()) {
-                final List<String> trackUrls = new ArrayList<String>();
-                for (VastTracker tracker : trackersToTrack) {
-                    trackUrls.add(tracker.getTrackingUrl());
-                    tracker.setTracked();
-                }
-                TrackingRequest.makeTrackingHttpRequest(
-                        new VastMacroHelper(trackUrls)
-                                .withAssetUri(mVideoViewController.getNetworkMediaFileUrl())
-                                .withContentPlayHead(currentPosition)
-                                .getUris(),
-                        mVideoViewController.getContext());
+            // Most ticks fall between tracker offsets, so only collect trackers once one is due
+            if (currentPosition >= mVastVideoConfig.getNextProgressTrackerMillis(videoLength)) {
+                trackProgress(currentPosition, videoLength);
             }
 
             mVideoViewController.handleIconDisplay(currentPosition);
         }
     }
+
+    /**
+     * The progress bar does not animate between updates and is on screen for the whole time this
+     * runs, so it is redrawn every update interval. Returning the interval as a deadline puts
+     * these wakeups on the same aligned slots as the countdown's.
+     */
+    @Override
+    protected long getMillisUntilNextWork() {
+        return getUpdateIntervalMillis();
+    }
+
+    private void trackProgress(final int currentPosition, final int videoLength) {
+        final List<VastTracker> trackersToTrack =
+                mVastVideoConfig.getUntriggeredTrackersBefore(currentPosition, videoLength);
+        if (trackersToTrack.isEmpty()) {
+            return;
+        }
+
+        for (VastTracker tracker : trackersToTrack) {
+            tracker.setTracked();
+        }
+        TrackingRequest.makeTrackingHttpRequest(
+                VastMacroHelper.fromVastTrackers(trackersToTrack)
+                        .withAssetUri(mVideoViewController.getNetworkMediaFileUrl())
+                        .withContentPlayHead(currentPosition)
+                        .getUris(),
+                mVideoViewController.getContext());
+    }
 }
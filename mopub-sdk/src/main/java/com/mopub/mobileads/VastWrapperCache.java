@@ -0,0 +1,84 @@
+package com.mopub.mobileads;
+
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v4.util.LruCache;
+
+import com.mopub.common.Preconditions;
+import com.mopub.common.VisibleForTesting;
+
+/**
+ * Short-lived, in-memory cache of VAST documents returned by Wrapper redirects, keyed by the
+ * redirect url. Demand partners frequently hand out the same wrapper url for many ads in a row,
+ * so a hit here saves a full network round trip while resolving a wrapper chain.
+ *
+ * Entries expire {@link #TIME_TO_LIVE_MS} after they were fetched. This is safe to use from
+ * multiple threads.
+ */
+public final class VastWrapperCache {
+
+    @VisibleForTesting static final int TIME_TO_LIVE_MS = 30 * 1000;
+    // Sized in chars of VAST xml
+    @VisibleForTesting static final int MAX_SIZE_CHARS = 256 * 1024;
+
+    private static final LruCache<String, CachedResponse> sCache =
+            new LruCache<String, CachedResponse>(MAX_SIZE_CHARS) {
+                @Override
+                protected int sizeOf(final String key, final CachedResponse value) {
+                    return key.length() + value.mVastXml.length();
+                }
+            };
+
+    private static class CachedResponse {
+        @NonNull final String mVastXml;
+        final long mExpirationTimeMs;
+
+        CachedResponse(@NonNull final String vastXml, final long expirationTimeMs) {
+            mVastXml = vastXml;
+            mExpirationTimeMs = expirationTimeMs;
+        }
+    }
+
+    private VastWrapperCache() {
+    }
+
+    /**
+     * Gets the cached VAST xml for the given redirect url.
+     *
+     * @return The xml, or {@code null} if it was never cached or has expired.
+     */
+    @Nullable
+    static String get(@NonNull final String url) {
+        Preconditions.checkNotNull(url);
+
+        synchronized (sCache) {
+            final CachedResponse cachedResponse = sCache.get(url);
+            if (cachedResponse == null) {
+                return null;
+            }
+            if (SystemClock.uptimeMillis() >= cachedResponse.mExpirationTimeMs) {
+                sCache.remove(url);
+                return null;
+            }
+            return cachedResponse.mVastXml;
+        }
+    }
+
+    static void put(@NonNull final String url, @NonNull final String vastXml) {
+        Preconditions.checkNotNull(url);
+        Preconditions.checkNotNull(vastXml);
+
+        synchronized (sCache) {
+            sCache.put(url, new CachedResponse(vastXml,
+                    SystemClock.uptimeMillis() + TIME_TO_LIVE_MS));
+        }
+    }
+
+    @VisibleForTesting
+    public static void clear() {
+        synchronized (sCache) {
+            sCache.evictAll();
+        }
+    }
+}
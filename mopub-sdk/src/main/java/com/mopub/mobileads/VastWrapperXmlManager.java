@@ -4,7 +4,6 @@ import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
 import com.mopub.common.Preconditions;
-import com.mopub.mobileads.util.XmlUtils;
 
 import org.w3c.dom.Node;
 
@@ -26,6 +25,10 @@ class VastWrapperXmlManager extends VastBaseInLineWrapperXmlManager {
         Preconditions.checkNotNull(wrapperNode);
     }
 
+    VastWrapperXmlManager(@NonNull final VastXmlElement wrapperElement) {
+        super(wrapperElement);
+    }
+
     /**
      * Gets the redirect URI to the next VAST xml document. If no redirect URL, return null.
      *
@@ -33,7 +36,6 @@ class VastWrapperXmlManager extends VastBaseInLineWrapperXmlManager {
      */
     @Nullable
     String getVastAdTagURI() {
-        Node vastAdTagURINode = XmlUtils.getFirstMatchingChildNode(mNode, VAST_AD_TAG);
-        return XmlUtils.getNodeValue(vastAdTagURINode);
+        return mElement.getFirstChildText(VAST_AD_TAG);
     }
 }
@@ -0,0 +1,242 @@
+package com.mopub.mobileads;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.mopub.common.Preconditions;
+
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Lightweight, read-only element of a parsed VAST document. The Vast*XmlManagers read their data
+ * from these instead of from a W3C DOM so that the document can be produced in a single pass by
+ * a pull parser. A DOM {@link Node} can also be converted for callers that already have one.
+ *
+ * The text of an element mirrors {@link com.mopub.mobileads.util.XmlUtils#getNodeValue(Node)}:
+ * it is the (coalesced) character data that appears before the first child element, or
+ * {@code null} if there is none.
+ */
+final class VastXmlElement {
+
+    private static final String[] NO_ATTRIBUTES = new String[0];
+
+    @NonNull private final String mName;
+    /**
+     * Attribute names and values interleaved as name0, value0, name1, value1, ...
+     */
+    @NonNull private final String[] mAttributes;
+    @Nullable private String mText;
+    @Nullable private List<VastXmlElement> mChildren;
+
+    VastXmlElement(@NonNull final String name, @Nullable final String[] attributes) {
+        Preconditions.checkNotNull(name);
+        mName = name;
+        mAttributes = attributes == null ? NO_ATTRIBUTES : attributes;
+    }
+
+    /**
+     * Recursively copies a DOM node and its child elements.
+     *
+     * @param node The DOM node to convert
+     * @return The equivalent {@link VastXmlElement}
+     */
+    @NonNull
+    static VastXmlElement fromNode(@NonNull final Node node) {
+        Preconditions.checkNotNull(node);
+
+        String[] attributes = null;
+        final NamedNodeMap attrMap = node.getAttributes();
+        if (attrMap != null && attrMap.getLength() > 0) {
+            attributes = new String[attrMap.getLength() * 2];
+            for (int i = 0; i < attrMap.getLength(); i++) {
+                final Node attrNode = attrMap.item(i);
+                attributes[2 * i] = attrNode.getNodeName();
+                attributes[2 * i + 1] = attrNode.getNodeValue();
+            }
+        }
+
+        final VastXmlElement element = new VastXmlElement(node.getNodeName(), attributes);
+        final Node firstChild = node.getFirstChild();
+        if (firstChild != null) {
+            element.mText = firstChild.getNodeValue();
+        }
+
+        final NodeList childNodes = node.getChildNodes();
+        for (int i = 0; i < childNodes.getLength(); i++) {
+            final Node childNode = childNodes.item(i);
+            if (childNode.getNodeType() == Node.ELEMENT_NODE) {
+                element.addChild(fromNode(childNode));
+            }
+        }
+        return element;
+    }
+
+    void appendText(@NonNull final String text) {
+        mText = mText == null ? text : mText + text;
+    }
+
+    void addChild(@NonNull final VastXmlElement child) {
+        if (mChildren == null) {
+            mChildren = new ArrayList<VastXmlElement>();
+        }
+        mChildren.add(child);
+    }
+
+    boolean hasChildren() {
+        return mChildren != null && !mChildren.isEmpty();
+    }
+
+    @NonNull
+    String getName() {
+        return mName;
+    }
+
+    /**
+     * Gets the trimmed text of this element.
+     *
+     * @return The text or {@code null} if this element does not start with character data.
+     */
+    @Nullable
+    String getText() {
+        return mText == null ? null : mText.trim();
+    }
+
+    @Nullable
+    String getAttribute(@NonNull final String attributeName) {
+        for (int i = 0; i < mAttributes.length; i += 2) {
+            if (mAttributes[i].equals(attributeName)) {
+                return mAttributes[i + 1];
+            }
+        }
+        return null;
+    }
+
+    @Nullable
+    Integer getAttributeAsInt(@NonNull final String attributeName) {
+        try {
+            return Integer.parseInt(getAttribute(attributeName));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Gets the first direct child with the given name. This does not allocate.
+     *
+     * @return The matching child or {@code null} if there isn't one.
+     */
+    @Nullable
+    VastXmlElement getFirstChild(@NonNull final String name) {
+        if (mChildren == null) {
+            return null;
+        }
+        for (int i = 0; i < mChildren.size(); i++) {
+            final VastXmlElement child = mChildren.get(i);
+            if (child.mName.equals(name)) {
+                return child;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gets the trimmed text of the first direct child with the given name.
+     *
+     * @return The text or {@code null} if there is no such child or it has no text.
+     */
+    @Nullable
+    String getFirstChildText(@NonNull final String name) {
+        final VastXmlElement child = getFirstChild(name);
+        return child == null ? null : child.getText();
+    }
+
+    /**
+     * Gets all direct children with the given name, in document order.
+     *
+     * @return The matching children or an empty list.
+     */
+    @NonNull
+    List<VastXmlElement> getChildren(@NonNull final String name) {
+        return getChildren(name, null, null);
+    }
+
+    /**
+     * Gets all direct children with the given name whose attribute {@code attributeName} equals
+     * {@code attributeValue}. Pass {@code null} for both to match by name only.
+     *
+     * @return The matching children or an empty list.
+     */
+    @NonNull
+    List<VastXmlElement> getChildren(@NonNull final String name,
+            @Nullable final String attributeName, @Nullable final String attributeValue) {
+        if (mChildren == null) {
+            return Collections.emptyList();
+        }
+
+        List<VastXmlElement> matches = null;
+        for (int i = 0; i < mChildren.size(); i++) {
+            final VastXmlElement child = mChildren.get(i);
+            if (!child.mName.equals(name)) {
+                continue;
+            }
+            if (attributeName != null && (attributeValue == null
+                    || !attributeValue.equals(child.getAttribute(attributeName)))) {
+                continue;
+            }
+            if (matches == null) {
+                matches = new ArrayList<VastXmlElement>();
+            }
+            matches.add(child);
+        }
+        return matches == null ? Collections.<VastXmlElement>emptyList() : matches;
+    }
+
+    /**
+     * Adds this element and all of its descendants with the given name to {@code results} in
+     * document order. This is the equivalent of {@code Document.getElementsByTagName}.
+     */
+    void collectDescendants(@NonNull final String name,
+            @NonNull final List<VastXmlElement> results) {
+        if (mName.equals(name)) {
+            results.add(this);
+        }
+        if (mChildren == null) {
+            return;
+        }
+        for (int i = 0; i < mChildren.size(); i++) {
+            mChildren.get(i).collectDescendants(name, results);
+        }
+    }
+
+    /**
+     * Finds the first element in document order, starting with this one, that has the given
+     * name and non-null text.
+     *
+     * @return The trimmed text or {@code null} if none found.
+     */
+    @Nullable
+    String getFirstDescendantText(@NonNull final String name) {
+        if (mName.equals(name)) {
+            final String text = getText();
+            if (text != null) {
+                return text;
+            }
+        }
+        if (mChildren == null) {
+            return null;
+        }
+        for (int i = 0; i < mChildren.size(); i++) {
+            final String text = mChildren.get(i).getFirstDescendantText(name);
+            if (text != null) {
+                return text;
+            }
+        }
+        return null;
+    }
+}
@@ -3,15 +3,16 @@ package com.mopub.mobileads;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.text.TextUtils;
+import android.util.Xml;
 
 import com.mopub.common.Preconditions;
 import com.mopub.common.util.DeviceUtils.ForceOrientation;
-import com.mopub.mobileads.util.XmlUtils;
 
 import org.w3c.dom.Document;
-import org.w3c.dom.NodeList;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
 
 import java.io.IOException;
 import java.io.StringReader;
@@ -27,6 +28,24 @@ import javax.xml.parsers.ParserConfigurationException;
  * Currently using the VAST 3.0 spec found here: http://www.iab.net/media/file/VASTv3.0.pdf.
  */
 class VastXmlManager {
+
+    /**
+     * The strategy used to turn a VAST string into {@link VastXmlElement}s. Both produce
+     * identical managers.
+     */
+    enum Parser {
+        /**
+         * Single-pass streaming parse. No intermediate DOM is built.
+         */
+        PULL,
+        /**
+         * Builds a W3C DOM with {@link DocumentBuilderFactory} and converts it.
+         */
+        DOM
+    }
+
+    static final Parser DEFAULT_PARSER = Parser.PULL;
+
     private static final String ROOT_TAG = "MPMoVideoXMLDocRoot";
     private static final String ROOT_TAG_OPEN = "<" + ROOT_TAG + ">";
     private static final String ROOT_TAG_CLOSE = "</" + ROOT_TAG + ">";
@@ -46,7 +65,17 @@ class VastXmlManager {
     private static final int MAX_CTA_TEXT_LENGTH = 15;
     private static final int MAX_SKIP_TEXT_LENGTH = 8;
 
-    @Nullable private Document mVastDoc;
+    @NonNull private final Parser mParser;
+    @Nullable private VastXmlElement mVastRoot;
+
+    VastXmlManager() {
+        this(DEFAULT_PARSER);
+    }
+
+    VastXmlManager(@NonNull final Parser parser) {
+        Preconditions.checkNotNull(parser);
+        mParser = parser;
+    }
 
     /**
      * Helper function that builds a document and tries to parse the XML.
@@ -68,10 +97,74 @@ class VastXmlManager {
         // wrap entire document in root node for this case.
         String documentString = ROOT_TAG_OPEN + xmlString + ROOT_TAG_CLOSE;
 
+        if (mParser == Parser.DOM) {
+            mVastRoot = parseWithDocumentBuilder(documentString);
+        } else {
+            try {
+                mVastRoot = parseWithPullParser(documentString);
+            } catch (XmlPullParserException e) {
+                throw new SAXException(e);
+            }
+        }
+    }
+
+    @NonNull
+    private static VastXmlElement parseWithDocumentBuilder(@NonNull final String documentString)
+            throws ParserConfigurationException, IOException, SAXException {
         DocumentBuilderFactory documentBuilderFactory = DocumentBuilderFactory.newInstance();
         documentBuilderFactory.setCoalescing(true);
         DocumentBuilder documentBuilder = documentBuilderFactory.newDocumentBuilder();
-        mVastDoc = documentBuilder.parse(new InputSource(new StringReader(documentString)));
+        Document vastDoc = documentBuilder.parse(new InputSource(new StringReader(documentString)));
+        return VastXmlElement.fromNode(vastDoc.getDocumentElement());
+    }
+
+    /**
+     * Reads the document in a single pass. Character data (including CDATA sections) is only
+     * kept until an element's first child element starts, which matches what the DOM path reads
+     * through the element's first child node.
+     */
+    @NonNull
+    private static VastXmlElement parseWithPullParser(@NonNull final String documentString)
+            throws XmlPullParserException, IOException {
+        final XmlPullParser parser = Xml.newPullParser();
+        parser.setInput(new StringReader(documentString));
+
+        final List<VastXmlElement> openElements = new ArrayList<VastXmlElement>();
+        VastXmlElement root = null;
+        int eventType = parser.getEventType();
+        while (eventType != XmlPullParser.END_DOCUMENT) {
+            if (eventType == XmlPullParser.START_TAG) {
+                final int attributeCount = parser.getAttributeCount();
+                String[] attributes = null;
+                if (attributeCount > 0) {
+                    attributes = new String[attributeCount * 2];
+                    for (int i = 0; i < attributeCount; i++) {
+                        attributes[2 * i] = parser.getAttributeName(i);
+                        attributes[2 * i + 1] = parser.getAttributeValue(i);
+                    }
+                }
+                final VastXmlElement element = new VastXmlElement(parser.getName(), attributes);
+                if (openElements.isEmpty()) {
+                    root = element;
+                } else {
+                    openElements.get(openElements.size() - 1).addChild(element);
+                }
+                openElements.add(element);
+            } else if (eventType == XmlPullParser.END_TAG) {
+                openElements.remove(openElements.size() - 1);
+            } else if (eventType == XmlPullParser.TEXT && !openElements.isEmpty()) {
+                final VastXmlElement current = openElements.get(openElements.size() - 1);
+                if (!current.hasChildren()) {
+                    current.appendText(parser.getText());
+                }
+            }
+            eventType = parser.next();
+        }
+
+        if (root == null) {
+            throw new XmlPullParserException("VAST document has no root element");
+        }
+        return root;
     }
 
     /**
@@ -87,12 +180,13 @@ class VastXmlManager {
     @NonNull
     List<VastAdXmlManager> getAdXmlManagers() {
         List<VastAdXmlManager> vastAdXmlManagers = new ArrayList<VastAdXmlManager>();
-        if (mVastDoc == null) {
+        if (mVastRoot == null) {
             return vastAdXmlManagers;
         }
-        NodeList nodes = mVastDoc.getElementsByTagName(AD);
-        for (int i = 0; i < nodes.getLength(); ++i) {
-            vastAdXmlManagers.add(new VastAdXmlManager(nodes.item(i)));
+        final List<VastXmlElement> adElements = new ArrayList<VastXmlElement>();
+        mVastRoot.collectDescendants(AD, adElements);
+        for (VastXmlElement adElement : adElements) {
+            vastAdXmlManagers.add(new VastAdXmlManager(adElement));
         }
         return vastAdXmlManagers;
     }
@@ -105,10 +199,10 @@ class VastXmlManager {
      */
     @Nullable
     VastTracker getErrorTracker() {
-        if (mVastDoc == null) {
+        if (mVastRoot == null) {
             return null;
         }
-        String errorTracker = XmlUtils.getFirstMatchingStringData(mVastDoc, ERROR);
+        String errorTracker = mVastRoot.getFirstDescendantText(ERROR);
         if (TextUtils.isEmpty(errorTracker)) {
             return null;
         }
@@ -122,10 +216,17 @@ class VastXmlManager {
      */
     @NonNull
     List<VastTracker> getMoPubImpressionTrackers() {
-        List<String> trackers = XmlUtils.getStringDataAsList(mVastDoc, MP_IMPRESSION_TRACKER);
-        List<VastTracker> vastTrackers = new ArrayList<VastTracker>(trackers.size());
-        for (String tracker : trackers) {
-            vastTrackers.add(new VastTracker(tracker));
+        List<VastTracker> vastTrackers = new ArrayList<VastTracker>();
+        if (mVastRoot == null) {
+            return vastTrackers;
+        }
+        final List<VastXmlElement> trackerElements = new ArrayList<VastXmlElement>();
+        mVastRoot.collectDescendants(MP_IMPRESSION_TRACKER, trackerElements);
+        for (VastXmlElement trackerElement : trackerElements) {
+            final String tracker = trackerElement.getText();
+            if (tracker != null) {
+                vastTrackers.add(new VastTracker(tracker));
+            }
         }
         return vastTrackers;
     }
@@ -137,7 +238,7 @@ class VastXmlManager {
      */
     @Nullable
     String getCustomCtaText() {
-        String customCtaText = XmlUtils.getFirstMatchingStringData(mVastDoc, CUSTOM_CTA_TEXT);
+        String customCtaText = getFirstMatchingText(CUSTOM_CTA_TEXT);
         if (customCtaText != null && customCtaText.length() <= MAX_CTA_TEXT_LENGTH) {
             return customCtaText;
         }
@@ -152,7 +253,7 @@ class VastXmlManager {
      */
     @Nullable
     String getCustomSkipText() {
-        String customSkipText = XmlUtils.getFirstMatchingStringData(mVastDoc, CUSTOM_SKIP_TEXT);
+        String customSkipText = getFirstMatchingText(CUSTOM_SKIP_TEXT);
         if (customSkipText != null && customSkipText.length() <= MAX_SKIP_TEXT_LENGTH) {
             return customSkipText;
         }
@@ -167,7 +268,7 @@ class VastXmlManager {
      */
     @Nullable
     String getCustomCloseIconUrl() {
-        return XmlUtils.getFirstMatchingStringData(mVastDoc, CUSTOM_CLOSE_ICON);
+        return getFirstMatchingText(CUSTOM_CLOSE_ICON);
     }
 
     /**
@@ -179,6 +280,14 @@ class VastXmlManager {
     @NonNull
     ForceOrientation getCustomForceOrientation() {
         return ForceOrientation.getForceOrientation(
-                XmlUtils.getFirstMatchingStringData(mVastDoc, CUSTOM_FORCE_ORIENTATION));
+                getFirstMatchingText(CUSTOM_FORCE_ORIENTATION));
+    }
+
+    @Nullable
+    private String getFirstMatchingText(@NonNull final String elementName) {
+        if (mVastRoot == null) {
+            return null;
+        }
+        return mVastRoot.getFirstDescendantText(elementName);
     }
 }
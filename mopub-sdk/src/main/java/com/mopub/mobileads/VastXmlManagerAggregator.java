@@ -4,15 +4,20 @@ import android.content.Context;
 import android.content.res.Configuration;
 import android.graphics.Point;
 import android.os.AsyncTask;
+import android.os.SystemClock;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.text.TextUtils;
 import android.view.Display;
 import android.view.WindowManager;
 
+import com.mopub.common.Constants;
 import com.mopub.common.MoPubHttpUrlConnection;
 import com.mopub.common.Preconditions;
 import com.mopub.common.VisibleForTesting;
+import com.mopub.common.event.BaseEvent;
+import com.mopub.common.event.Event;
+import com.mopub.common.event.MoPubEvents;
 import com.mopub.common.logging.MoPubLog;
 import com.mopub.common.util.Dips;
 import com.mopub.common.util.Streams;
@@ -24,11 +29,14 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.lang.ref.WeakReference;
 import java.net.HttpURLConnection;
+import java.net.SocketTimeoutException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 
 import static com.mopub.network.TrackingRequest.makeVastTrackingHttpRequest;
 
@@ -63,6 +71,9 @@ public class VastXmlManagerAggregator extends AsyncTask<String, Void, VastVideoC
 
     // More than reasonable number of nested VAST urls to follow
     static final int MAX_TIMES_TO_FOLLOW_VAST_REDIRECT = 10;
+    // Time budget for all the network requests of a single wrapper chain
+    @VisibleForTesting
+    static final int MAX_WRAPPER_CHAIN_DURATION_MS = Constants.TEN_SECONDS_MILLIS;
     private static final double ASPECT_RATIO_WEIGHT = 70;
     private static final double AREA_WEIGHT = 30;
     private static final List<String> VIDEO_MIME_TYPES =
@@ -81,6 +92,21 @@ public class VastXmlManagerAggregator extends AsyncTask<String, Void, VastVideoC
      */
     private int mTimesFollowedVastRedirect;
 
+    /**
+     * Uptime by which the whole wrapper chain must have been fetched. This is set when the first
+     * redirect is followed and is only accessed on the background thread.
+     */
+    @Nullable private Long mWrapperChainDeadlineMs;
+
+    /**
+     * Redirect urls already followed in this wrapper chain. A url that comes up again is always
+     * requested from the network instead of being served by {@link VastWrapperCache}. This value
+     * is only accessed on the background thread.
+     */
+    @NonNull private final Set<String> mFollowedRedirectUrls = new HashSet<String>();
+
+    @NonNull private VastXmlManager.Parser mVastXmlParser = VastXmlManager.DEFAULT_PARSER;
+
     VastXmlManagerAggregator(@NonNull final VastXmlManagerAggregatorListener vastXmlManagerAggregatorListener,
             final double screenAspectRatio,
             final int screenAreaDp,
@@ -159,7 +185,7 @@ public class VastXmlManagerAggregator extends AsyncTask<String, Void, VastVideoC
         Preconditions.checkNotNull(vastXml, "vastXml cannot be null");
         Preconditions.checkNotNull(errorTrackers, "errorTrackers cannot be null");
 
-        final VastXmlManager xmlManager = new VastXmlManager();
+        final VastXmlManager xmlManager = new VastXmlManager(mVastXmlParser);
         try {
             xmlManager.parseVastXml(vastXml);
         } catch (Exception e) {
@@ -677,29 +703,91 @@ public class VastXmlManagerAggregator extends AsyncTask<String, Void, VastVideoC
         }
     }
 
+    /**
+     * Fetches the VAST xml at the given Wrapper redirect url. Responses are served from
+     * {@link VastWrapperCache} when possible, unless the url was already followed earlier in
+     * this chain. Network requests share the time budget of the wrapper chain, so each one times
+     * out no later than the chain's deadline. Connections are not disconnected after a successful
+     * read so they can be kept alive and reused by the next request to the same host. The
+     * latency of each network request is logged.
+     *
+     * @param redirectUrl The VASTAdTagURI of the Wrapper
+     * @return The VAST xml, or {@code null} if the maximum number of redirects has been followed
+     * @throws IOException if the request fails or the wrapper chain has run out of time
+     */
     @Nullable
     private String followVastRedirect(@NonNull final String redirectUrl) throws IOException {
         Preconditions.checkNotNull(redirectUrl);
 
-        if (mTimesFollowedVastRedirect < MAX_TIMES_TO_FOLLOW_VAST_REDIRECT) {
-            mTimesFollowedVastRedirect++;
+        if (mTimesFollowedVastRedirect >= MAX_TIMES_TO_FOLLOW_VAST_REDIRECT) {
+            return null;
+        }
+        mTimesFollowedVastRedirect++;
 
-            HttpURLConnection urlConnection = null;
-            InputStream inputStream = null;
-            try {
-                urlConnection = MoPubHttpUrlConnection.getHttpUrlConnection(redirectUrl);
-                inputStream = new BufferedInputStream(urlConnection.getInputStream());
+        if (mFollowedRedirectUrls.add(redirectUrl)) {
+            final String cachedVastXml = VastWrapperCache.get(redirectUrl);
+            if (cachedVastXml != null) {
+                return cachedVastXml;
+            }
+        }
 
-                return Strings.fromStream(inputStream);
-            } finally {
-                Streams.closeStream(inputStream);
-                if (urlConnection != null) {
-                    urlConnection.disconnect();
-                }
+        final long startTimeMs = SystemClock.uptimeMillis();
+        if (mWrapperChainDeadlineMs == null) {
+            mWrapperChainDeadlineMs = startTimeMs + MAX_WRAPPER_CHAIN_DURATION_MS;
+        }
+        final long remainingTimeMs = mWrapperChainDeadlineMs - startTimeMs;
+        if (remainingTimeMs <= 0) {
+            throw new SocketTimeoutException("VAST wrapper chain exceeded "
+                    + MAX_WRAPPER_CHAIN_DURATION_MS + "ms");
+        }
+
+        HttpURLConnection urlConnection = null;
+        InputStream inputStream = null;
+        Integer statusCode = null;
+        boolean isComplete = false;
+        try {
+            urlConnection = MoPubHttpUrlConnection.getHttpUrlConnection(redirectUrl);
+            urlConnection.setConnectTimeout((int) remainingTimeMs);
+            urlConnection.setReadTimeout((int) remainingTimeMs);
+            statusCode = urlConnection.getResponseCode();
+            inputStream = new BufferedInputStream(urlConnection.getInputStream());
+
+            final String vastXml = Strings.fromStream(inputStream);
+            isComplete = true;
+            if (statusCode == HttpURLConnection.HTTP_OK) {
+                VastWrapperCache.put(redirectUrl, vastXml);
+            }
+            return vastXml;
+        } finally {
+            // Closing a fully read stream returns the connection to the keep-alive pool
+            Streams.closeStream(inputStream);
+            if (!isComplete && urlConnection != null) {
+                urlConnection.disconnect();
             }
+            logWrapperRequest(redirectUrl, statusCode, SystemClock.uptimeMillis() - startTimeMs);
         }
+    }
 
-        return null;
+    private static void logWrapperRequest(@NonNull final String redirectUrl,
+            @Nullable final Integer statusCode, final long durationMs) {
+        MoPubEvents.log(
+                new Event.Builder(BaseEvent.Name.VAST_WRAPPER_REQUEST,
+                        BaseEvent.Category.REQUESTS,
+                        BaseEvent.SamplingRate.VAST_WRAPPER_REQUEST.getSamplingRate())
+                        .withRequestUri(redirectUrl)
+                        .withRequestStatusCode(statusCode)
+                        .withPerformanceDurationMs((double) durationMs)
+                        .build()
+        );
+    }
+
+    /**
+     * Selects how VAST documents, including wrapper redirects, are parsed. Defaults to
+     * {@link VastXmlManager#DEFAULT_PARSER}.
+     */
+    void setVastXmlParser(@NonNull final VastXmlManager.Parser vastXmlParser) {
+        Preconditions.checkNotNull(vastXmlParser);
+        mVastXmlParser = vastXmlParser;
     }
 
     @VisibleForTesting
@@ -1,7 +1,7 @@
 package com.mopub.nativeads;
 
 import android.content.Context;
-import android.os.Handler;
+import android.os.SystemClock;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.view.View;
@@ -16,10 +16,15 @@ import java.util.WeakHashMap;
 import static com.mopub.nativeads.VisibilityTracker.VisibilityChecker;
 import static com.mopub.nativeads.VisibilityTracker.VisibilityTrackerListener;
 
+/**
+ * Records impressions for views that stay visible long enough.
+ *
+ * There is no separate polling schedule. While views are waiting on their time on screen, the
+ * visibility tracker runs a pass when the earliest of them is due, and each pass both updates
+ * which views are visible and checks how long they have been.
+ */
 class ImpressionTracker {
 
-    private static final int PERIOD = 250;
-
     // Object tracking visibility of added views
     @NonNull private final VisibilityTracker mVisibilityTracker;
 
@@ -29,11 +34,9 @@ class ImpressionTracker {
     // Visible views being polled for time on screen before tracking impression
     @NonNull private final Map<View, TimestampWrapper<NativeResponse>> mPollingViews;
 
-    // Handler for polling visible views
-    @NonNull private final Handler mPollHandler;
-
-    // Runnable to run on each visibility loop
-    @NonNull private final PollingRunnable mPollingRunnable;
+    // Views that were visible long enough, removed after iterating. Created once to avoid
+    // excessive garbage collection observed when calculating these on each pass.
+    @NonNull private final ArrayList<View> mRemovedViews;
 
     // Object to check actual visibility
     @NonNull private final VisibilityChecker mVisibilityChecker;
@@ -45,16 +48,14 @@ class ImpressionTracker {
         this(new WeakHashMap<View, NativeResponse>(),
                 new WeakHashMap<View, TimestampWrapper<NativeResponse>>(),
                 new VisibilityChecker(),
-                new VisibilityTracker(context),
-                new Handler());
+                new VisibilityTracker(context));
     }
 
     @VisibleForTesting
     ImpressionTracker(@NonNull final Map<View, NativeResponse> trackedViews,
             @NonNull final Map<View, TimestampWrapper<NativeResponse>> pollingViews,
             @NonNull final VisibilityChecker visibilityChecker,
-            @NonNull final VisibilityTracker visibilityTracker,
-            @NonNull final Handler handler) {
+            @NonNull final VisibilityTracker visibilityTracker) {
         mTrackedViews = trackedViews;
         mPollingViews = pollingViews;
         mVisibilityChecker = visibilityChecker;
@@ -86,13 +87,14 @@ class ImpressionTracker {
                 for (final View view : invisibleViews) {
                     mPollingViews.remove(view);
                 }
+
+                recordElapsedImpressions();
                 scheduleNextPoll();
             }
         };
         mVisibilityTracker.setVisibilityTrackerListener(mVisibilityTrackerListener);
 
-        mPollHandler = handler;
-        mPollingRunnable = new PollingRunnable();
+        mRemovedViews = new ArrayList<View>();
     }
 
     /**
@@ -128,7 +130,6 @@ class ImpressionTracker {
         mTrackedViews.clear();
         mPollingViews.clear();
         mVisibilityTracker.clear();
-        mPollHandler.removeMessages(0);
     }
 
     void destroy() {
@@ -137,14 +138,23 @@ class ImpressionTracker {
         mVisibilityTrackerListener = null;
     }
 
+    /**
+     * Asks for another visibility pass when the first view waiting on its time on screen is due,
+     * even if nothing is drawn in the meantime.
+     */
     @VisibleForTesting
     void scheduleNextPoll() {
-        // Only schedule if there are no messages already scheduled.
-        if (mPollHandler.hasMessages(0)) {
+        if (mPollingViews.isEmpty()) {
             return;
         }
 
-        mPollHandler.postDelayed(mPollingRunnable, PERIOD);
+        final long now = SystemClock.uptimeMillis();
+        long nextDeadlineMillis = Long.MAX_VALUE;
+        for (final TimestampWrapper<NativeResponse> timestampWrapper : mPollingViews.values()) {
+            nextDeadlineMillis = Math.min(nextDeadlineMillis, timestampWrapper.mCreatedTimestamp
+                    + timestampWrapper.mInstance.getImpressionMinTimeViewed());
+        }
+        mVisibilityTracker.scheduleVisibilityCheck(nextDeadlineMillis - now);
     }
 
     private void removePollingView(final View view) {
@@ -152,43 +162,28 @@ class ImpressionTracker {
     }
 
     @VisibleForTesting
-    class PollingRunnable implements Runnable {
-        // Create this once to avoid excessive garbage collection observed when calculating
-        // these on each pass.
-        @NonNull private final ArrayList<View> mRemovedViews;
-
-        PollingRunnable() {
-            mRemovedViews = new ArrayList<View>();
-        }
-
-        @Override
-        public void run() {
-            for (final Map.Entry<View, TimestampWrapper<NativeResponse>> entry : mPollingViews.entrySet()) {
-                final View view = entry.getKey();
-                final TimestampWrapper<NativeResponse> timestampWrapper = entry.getValue();
-
-                // If it's been visible for the min impression time, trigger the callback
-                if (!mVisibilityChecker.hasRequiredTimeElapsed(
-                        timestampWrapper.mCreatedTimestamp,
-                        timestampWrapper.mInstance.getImpressionMinTimeViewed())) {
-                    continue;
-                }
-
-                timestampWrapper.mInstance.recordImpression(view);
-
-                // Removed in a separate loop to avoid a ConcurrentModification exception.
-                mRemovedViews.add(view);
+    void recordElapsedImpressions() {
+        for (final Map.Entry<View, TimestampWrapper<NativeResponse>> entry : mPollingViews.entrySet()) {
+            final View view = entry.getKey();
+            final TimestampWrapper<NativeResponse> timestampWrapper = entry.getValue();
+
+            // If it's been visible for the min impression time, trigger the callback
+            if (!mVisibilityChecker.hasRequiredTimeElapsed(
+                    timestampWrapper.mCreatedTimestamp,
+                    timestampWrapper.mInstance.getImpressionMinTimeViewed())) {
+                continue;
             }
 
-            for (View view : mRemovedViews) {
-              removeView(view);
-            }
-            mRemovedViews.clear();
+            timestampWrapper.mInstance.recordImpression(view);
 
-            if (!mPollingViews.isEmpty()) {
-                scheduleNextPoll();
-            }
+            // Removed in a separate loop to avoid a ConcurrentModification exception.
+            mRemovedViews.add(view);
+        }
+
+        for (View view : mRemovedViews) {
+            removeView(view);
         }
+        mRemovedViews.clear();
     }
 
     @Nullable
@@ -19,6 +19,8 @@ import java.util.WeakHashMap;
 
 import static com.mopub.nativeads.MoPubRecyclerAdapter.ContentChangeStrategy.INSERT_AT_END;
 import static com.mopub.nativeads.MoPubRecyclerAdapter.ContentChangeStrategy.KEEP_ADS_FIXED;
+import static com.mopub.nativeads.MoPubRecyclerAdapter.ContentChangeStrategy.MOVE_ALL_ADS_WITH_CONTENT;
+import static com.mopub.nativeads.PlacementData.NOT_FOUND;
 
 
 public final class MoPubRecyclerAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
@@ -106,15 +108,16 @@ public final class MoPubRecyclerAdapter extends RecyclerView.Adapter<RecyclerVie
 
             @Override
             public void onItemRangeInserted(final int positionStart, final int itemCount) {
-                final int adjustedStartPosition = mStreamAdPlacer.getAdjustedPosition(positionStart);
                 final int newOriginalCount = mOriginalAdapter.getItemCount();
                 mStreamAdPlacer.setItemCount(newOriginalCount);
                 final boolean addingToEnd = positionStart + itemCount >= newOriginalCount;
                 if (KEEP_ADS_FIXED == mStrategy
                         || (INSERT_AT_END == mStrategy
                         && addingToEnd)) {
-                    notifyDataSetChanged();
+                    notifyItemRangeInsertedAroundFixedAds(positionStart, itemCount,
+                            newOriginalCount - itemCount);
                 } else {
+                    final int adjustedStartPosition = mStreamAdPlacer.getAdjustedPosition(positionStart);
                     for (int i = 0; i < itemCount; i++) {
                         // We insert itemCount items at the original position, moving ads downstream.
                         mStreamAdPlacer.insertItem(positionStart);
@@ -125,15 +128,16 @@ public final class MoPubRecyclerAdapter extends RecyclerView.Adapter<RecyclerVie
 
             @Override
             public void onItemRangeRemoved(final int positionStart, final int itemsRemoved) {
-                int adjustedStartPosition = mStreamAdPlacer.getAdjustedPosition(positionStart);
                 final int newOriginalCount = mOriginalAdapter.getItemCount();
                 mStreamAdPlacer.setItemCount(newOriginalCount);
                 final boolean removingFromEnd = positionStart + itemsRemoved >= newOriginalCount;
                 if (KEEP_ADS_FIXED == mStrategy
                         || (INSERT_AT_END == mStrategy
                         && removingFromEnd)) {
-                    notifyDataSetChanged();
+                    notifyItemRangeRemovedAroundFixedAds(positionStart, itemsRemoved,
+                            newOriginalCount);
                 } else {
+                    int adjustedStartPosition = mStreamAdPlacer.getAdjustedPosition(positionStart);
                     final int oldAdjustedCount = mStreamAdPlacer.getAdjustedCount(newOriginalCount + itemsRemoved);
                     for (int i = 0; i < itemsRemoved; i++) {
                         // We remove itemsRemoved items at the original position.
@@ -150,7 +154,23 @@ public final class MoPubRecyclerAdapter extends RecyclerView.Adapter<RecyclerVie
             @Override
             public void onItemRangeMoved(final int fromPosition, final int toPosition,
                     final int itemCount) {
-                notifyDataSetChanged();
+                // RecyclerView only moves single items
+                if (itemCount != 1) {
+                    notifyDataSetChanged();
+                    return;
+                }
+
+                if (MOVE_ALL_ADS_WITH_CONTENT == mStrategy) {
+                    final int adjustedFromPosition = mStreamAdPlacer.getAdjustedPosition(fromPosition);
+                    mStreamAdPlacer.moveItem(fromPosition, toPosition);
+                    notifyItemMoved(adjustedFromPosition,
+                            mStreamAdPlacer.getAdjustedPosition(toPosition));
+                } else {
+                    // Ads stay where they are while the content moves around them.
+                    final int originalCount = mOriginalAdapter.getItemCount();
+                    notifyItemRangeRemovedAroundFixedAds(fromPosition, 1, originalCount - 1);
+                    notifyItemRangeInsertedAroundFixedAds(toPosition, 1, originalCount - 1);
+                }
             }
         };
 
@@ -533,6 +553,58 @@ public final class MoPubRecyclerAdapter extends RecyclerView.Adapter<RecyclerVie
         notifyItemRemoved(position);
     }
 
+    /**
+     * Notifies observers of content inserted while placed ads keep their positions, so that only
+     * the new items are bound instead of the whole list.
+     *
+     * The new items go in right after the item before them, which pushes every later ad down.
+     * Moving each of those ads back up, first to last, leaves the content in order between ads
+     * that never moved. Ads that were hidden because no content followed them come back last.
+     */
+    private void notifyItemRangeInsertedAroundFixedAds(final int originalStartPosition,
+            final int itemCount, final int oldOriginalCount) {
+        final int oldAdjustedCount = mStreamAdPlacer.getAdjustedCount(oldOriginalCount);
+        final int newAdjustedCount = mStreamAdPlacer.getAdjustedCount(oldOriginalCount + itemCount);
+        final int adjustedStartPosition = mStreamAdPlacer.getAdjustedCount(originalStartPosition);
+
+        notifyItemRangeInserted(adjustedStartPosition, itemCount);
+
+        int adPosition = mStreamAdPlacer.nextAdPosition(adjustedStartPosition - 1);
+        while (adPosition != NOT_FOUND && adPosition < oldAdjustedCount) {
+            notifyItemMoved(adPosition + itemCount, adPosition);
+            adPosition = mStreamAdPlacer.nextAdPosition(adPosition);
+        }
+        while (adPosition != NOT_FOUND && adPosition < newAdjustedCount) {
+            notifyItemInserted(adPosition);
+            adPosition = mStreamAdPlacer.nextAdPosition(adPosition);
+        }
+    }
+
+    /**
+     * Notifies observers of content removed while placed ads keep their positions. This reverses
+     * {@link #notifyItemRangeInsertedAroundFixedAds}: ads left with no content after them are
+     * hidden, the remaining later ads move down past the removed items, last to first, and the
+     * removed items are then contiguous.
+     */
+    private void notifyItemRangeRemovedAroundFixedAds(final int originalStartPosition,
+            final int itemsRemoved, final int newOriginalCount) {
+        final int oldAdjustedCount = mStreamAdPlacer.getAdjustedCount(newOriginalCount + itemsRemoved);
+        final int newAdjustedCount = mStreamAdPlacer.getAdjustedCount(newOriginalCount);
+        final int adjustedStartPosition = mStreamAdPlacer.getAdjustedCount(originalStartPosition);
+
+        int adPosition = mStreamAdPlacer.previousAdPosition(oldAdjustedCount);
+        while (adPosition != NOT_FOUND && adPosition >= newAdjustedCount) {
+            notifyItemRemoved(adPosition);
+            adPosition = mStreamAdPlacer.previousAdPosition(adPosition);
+        }
+        while (adPosition != NOT_FOUND && adPosition >= adjustedStartPosition) {
+            notifyItemMoved(adPosition, adPosition + itemsRemoved);
+            adPosition = mStreamAdPlacer.previousAdPosition(adPosition);
+        }
+
+        notifyItemRangeRemoved(adjustedStartPosition, itemsRemoved);
+    }
+
     private void handleVisibilityChanged(final List<View> visibleViews,
             final List<View> invisibleViews) {
         // Loop through all visible positions in order to build a max and min range, and then
@@ -2,6 +2,7 @@ package com.mopub.nativeads;
 
 import android.content.Context;
 import android.os.Handler;
+import android.os.SystemClock;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.view.View;
@@ -85,6 +86,17 @@ public class MoPubStreamAdPlacer {
     private static final int RANGE_BUFFER = 10;
     private boolean mNeedsPlacement;
 
+    // Ads are prefetched for the positions that scrolling at the current speed will reach within
+    // roughly the time it takes to load an ad.
+    private static final int PREFETCH_HORIZON_MILLIS = 3000;
+    // Placements further apart than this mean the user stopped scrolling in between.
+    private static final int MAX_SCROLL_SAMPLE_INTERVAL_MILLIS = 1000;
+    private static final double SCROLL_SMOOTHING_FACTOR = 0.5;
+    private int mLastPlacementRangeStart;
+    private long mLastPlacementMillis;
+    // Items per millisecond, only counting downward scrolling
+    private double mScrollVelocity;
+
     /**
      * Creates a new MoPubStreamAdPlacer object.
      *
@@ -490,6 +502,29 @@ public class MoPubStreamAdPlacer {
         return clearedAdsCount;
     }
 
+    /**
+     * Returns the position of the next placed ad after the given position, or {@link
+     * PlacementData#NOT_FOUND} if there are no more ads. Adapters use this to describe how ads
+     * move when content changes.
+     *
+     * @param position The stream position.
+     * @return The position of the next ad.
+     */
+    int nextAdPosition(final int position) {
+        return mPlacementData.nextPlacedAdPosition(position);
+    }
+
+    /**
+     * Returns the position of the previous placed ad before the given position, or {@link
+     * PlacementData#NOT_FOUND} if there are no ads before it.
+     *
+     * @param position The stream position.
+     * @return The position of the previous ad.
+     */
+    int previousAdPosition(final int position) {
+        return mPlacementData.previousPlacedAdPosition(position);
+    }
+
     /**
      * Returns the number of ad view types that can be placed by this ad placer. The number of
      * possible ad view types is currently 1, but this is subject to change in future SDK versions.
@@ -662,14 +697,53 @@ public class MoPubStreamAdPlacer {
      */
     private void placeAds() {
         // Place ads within the visible range
-        if (!tryPlaceAdsInRange(mVisibleRangeStart, mVisibleRangeEnd)) {
-            return;
+        if (tryPlaceAdsInRange(mVisibleRangeStart, mVisibleRangeEnd)) {
+            // Place ads after the visible range so that user will see an ad if they scroll down.
+            // We don't place an ad before the visible range, because we are trying to be mindful
+            // of changes that will affect scrolling.
+            tryPlaceAdsInRange(mVisibleRangeEnd, mVisibleRangeEnd + RANGE_BUFFER);
+        }
+
+        updatePredictedDemand();
+    }
+
+    /**
+     * Tells the ad source how many ads the positions ahead of the user will need, so that it can
+     * load them before the user scrolls there.
+     */
+    private void updatePredictedDemand() {
+        final long now = SystemClock.uptimeMillis();
+        final long elapsed = now - mLastPlacementMillis;
+        if (mLastPlacementMillis == 0 || elapsed > MAX_SCROLL_SAMPLE_INTERVAL_MILLIS) {
+            mScrollVelocity = 0;
+        } else if (elapsed > 0) {
+            final double velocity =
+                    Math.max(0, mVisibleRangeStart - mLastPlacementRangeStart) / (double) elapsed;
+            mScrollVelocity += SCROLL_SMOOTHING_FACTOR * (velocity - mScrollVelocity);
         }
+        mLastPlacementRangeStart = mVisibleRangeStart;
+        mLastPlacementMillis = now;
 
-        // Place ads after the visible range so that user will see an ad if they scroll down. We
-        // don't place an ad before the visible range, because we are trying to be mindful of
-        // changes that will affect scrolling.
-        tryPlaceAdsInRange(mVisibleRangeEnd, mVisibleRangeEnd + RANGE_BUFFER);
+        final int predictedEnd = mVisibleRangeEnd + RANGE_BUFFER
+                + (int) Math.ceil(mScrollVelocity * PREFETCH_HORIZON_MILLIS);
+        mAdSource.setPredictedDemand(countAdPositionsInRange(mVisibleRangeStart,
+                Math.min(predictedEnd, mItemCount), NativeAdSource.MAX_CACHE_LIMIT));
+    }
+
+    /**
+     * Counts the positions in the range [start, end) that should be an ad but have none yet,
+     * stopping at the given limit.
+     */
+    private int countAdPositionsInRange(final int start, final int end, final int limit) {
+        int count = 0;
+        int position = mPlacementData.shouldPlaceAd(start)
+                ? start
+                : mPlacementData.nextInsertionPosition(start);
+        while (position != PlacementData.NOT_FOUND && position < end && count < limit) {
+            count++;
+            position = mPlacementData.nextInsertionPosition(position);
+        }
+        return count;
     }
 
     /**
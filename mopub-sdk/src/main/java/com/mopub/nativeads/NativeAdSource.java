@@ -8,6 +8,7 @@ import android.support.annotation.Nullable;
 
 import com.mopub.common.VisibleForTesting;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -21,17 +22,25 @@ import static com.mopub.nativeads.MoPubNative.MoPubNativeNetworkListener;
  * a queue, so that the first ad loaded from the server will be the first ad available for dequeue.
  * To take an ad out of the cache, call {@link #dequeueAd}.
  *
- * The cache size may be automatically adjusted by the MoPub server based on an app's usage and
- * ad fill rate. Cached ads have a maximum TTL of 15 minutes before which they expire.
+ * The cache holds at least {@link #CACHE_LIMIT} ads and grows up to {@link #MAX_CACHE_LIMIT}
+ * when ads are consumed faster than a single request can replace them, or when the stream
+ * reports through {@link #setPredictedDemand(int)} that scrolling will soon reach more ad
+ * positions. While the cache is growing, up to {@link #MAX_CONCURRENT_REQUESTS} requests run at
+ * once. Cached ads have a maximum TTL of 15 minutes and are destroyed as soon as they expire.
  *
  * The ad source also takes care of retrying failed ad requests, with a reasonable back-off to
- * avoid spamming the server.
+ * avoid spamming the server. While backing off, only one request runs at a time.
  *
  * This class is not thread safe and should only be called from the UI thread.
  */
 class NativeAdSource {
     private static final int CACHE_LIMIT = 3;
+    static final int MAX_CACHE_LIMIT = 8;
+    private static final int MAX_CONCURRENT_REQUESTS = 3;
     private static final int EXPIRATION_TIME_MILLISECONDS = 15 * 60 * 1000; // 15 minutes
+    // Dequeues further apart than this no longer count towards the consumption rate.
+    private static final int CONSUMPTION_WINDOW_MILLISECONDS = 30 * 1000;
+    private static final double SMOOTHING_FACTOR = 0.3;
     private static final int DEFAULT_RETRY_TIME_MILLISECONDS = 1000; // 1 second
     private static final int MAXIMUM_RETRY_TIME_MILLISECONDS = 5 * 60 * 1000; // 5 minutes.
     private static final double EXPONENTIAL_BACKOFF_FACTOR = 2.0;
@@ -39,12 +48,33 @@ class NativeAdSource {
     @NonNull private final List<TimestampWrapper<NativeResponse>> mNativeAdCache;
     @NonNull private final Handler mReplenishCacheHandler;
     @NonNull private final Runnable mReplenishCacheRunnable;
+    @NonNull private final Runnable mExpireAdsRunnable;
     @NonNull private final MoPubNativeNetworkListener mMoPubNativeNetworkListener;
+    // Start times of in flight requests, oldest first
+    @NonNull private final ArrayDeque<Long> mRequestStartTimes;
 
-    @VisibleForTesting boolean mRequestInFlight;
+    @VisibleForTesting int mRequestsInFlight;
     @VisibleForTesting boolean mRetryInFlight;
     @VisibleForTesting int mSequenceNumber;
+    // Only ever increases between clears, so concurrent requests never share a sequence number
+    @VisibleForTesting int mNextSequenceNumber;
     @VisibleForTesting int mRetryTimeMilliseconds;
+    private boolean mExpirationScheduled;
+
+    // Demand estimates used to size the cache
+    private int mPredictedDemand;
+    private long mLastDequeueMillis;
+    private double mAverageDequeueIntervalMillis;
+    private double mAverageLoadMillis;
+
+    // Counters for getStats()
+    private long mAdsRequested;
+    private long mAdsLoaded;
+    private long mAdsFailed;
+    private long mAdsServed;
+    private long mDequeueMisses;
+    private long mAdsExpired;
+    private long mAdsDiscarded;
 
     @Nullable private AdSourceListener mAdSourceListener;
 
@@ -62,8 +92,94 @@ class NativeAdSource {
         void onAdsAvailable();
     }
 
+    /**
+     * Fill and waste counters since the ad source was created.
+     */
+    static class Stats {
+        private final long mAdsRequested;
+        private final long mAdsLoaded;
+        private final long mAdsFailed;
+        private final long mAdsServed;
+        private final long mDequeueMisses;
+        private final long mAdsExpired;
+        private final long mAdsDiscarded;
+        private final int mTargetCacheSize;
+
+        Stats(final long adsRequested, final long adsLoaded, final long adsFailed,
+                final long adsServed, final long dequeueMisses, final long adsExpired,
+                final long adsDiscarded, final int targetCacheSize) {
+            mAdsRequested = adsRequested;
+            mAdsLoaded = adsLoaded;
+            mAdsFailed = adsFailed;
+            mAdsServed = adsServed;
+            mDequeueMisses = dequeueMisses;
+            mAdsExpired = adsExpired;
+            mAdsDiscarded = adsDiscarded;
+            mTargetCacheSize = targetCacheSize;
+        }
+
+        long getAdsRequested() {
+            return mAdsRequested;
+        }
+
+        long getAdsLoaded() {
+            return mAdsLoaded;
+        }
+
+        long getAdsFailed() {
+            return mAdsFailed;
+        }
+
+        /**
+         * Ads handed out by {@link #dequeueAd()}.
+         */
+        long getAdsServed() {
+            return mAdsServed;
+        }
+
+        /**
+         * Calls to {@link #dequeueAd()} that found no ad, each an ad slot left unfilled.
+         */
+        long getDequeueMisses() {
+            return mDequeueMisses;
+        }
+
+        /**
+         * Loaded ads that expired before they were dequeued.
+         */
+        long getAdsExpired() {
+            return mAdsExpired;
+        }
+
+        /**
+         * Loaded ads destroyed by {@link #clear()} before they were dequeued.
+         */
+        long getAdsDiscarded() {
+            return mAdsDiscarded;
+        }
+
+        int getTargetCacheSize() {
+            return mTargetCacheSize;
+        }
+
+        /**
+         * Fraction of dequeues that returned an ad, or 0 if there were none.
+         */
+        double getSlotFillRate() {
+            final long dequeues = mAdsServed + mDequeueMisses;
+            return dequeues == 0 ? 0 : mAdsServed / (double) dequeues;
+        }
+
+        /**
+         * Fraction of loaded ads that were never shown, or 0 if none were loaded.
+         */
+        double getWasteRate() {
+            return mAdsLoaded == 0 ? 0 : (mAdsExpired + mAdsDiscarded) / (double) mAdsLoaded;
+        }
+    }
+
     NativeAdSource() {
-        this(new ArrayList<TimestampWrapper<NativeResponse>>(CACHE_LIMIT), new Handler());
+        this(new ArrayList<TimestampWrapper<NativeResponse>>(MAX_CACHE_LIMIT), new Handler());
     }
 
     @VisibleForTesting
@@ -78,6 +194,15 @@ class NativeAdSource {
                 replenishCache();
             }
         };
+        mExpireAdsRunnable = new Runnable() {
+            @Override
+            public void run() {
+                mExpirationScheduled = false;
+                expireAds();
+                replenishCache();
+            }
+        };
+        mRequestStartTimes = new ArrayDeque<Long>(MAX_CONCURRENT_REQUESTS);
 
         // Construct native URL and start filling the cache
         mMoPubNativeNetworkListener = new MoPubNativeNetworkListener() {
@@ -89,7 +214,8 @@ class NativeAdSource {
                     return;
                 }
 
-                mRequestInFlight = false;
+                onRequestFinished();
+                mAdsLoaded++;
                 mSequenceNumber++;
                 resetRetryTime();
 
@@ -98,13 +224,15 @@ class NativeAdSource {
                     mAdSourceListener.onAdsAvailable();
                 }
 
+                scheduleExpiration();
                 replenishCache();
             }
 
             @Override
             public void onNativeFail(final NativeErrorCode errorCode) {
                 // Reset the retry time for the next time we dequeue.
-                mRequestInFlight = false;
+                onRequestFinished();
+                mAdsFailed++;
 
                 // Stopping requests after the max retry time prevents us from using battery when
                 // the user is not interacting with the stream, eg. the app is backgrounded.
@@ -114,12 +242,16 @@ class NativeAdSource {
                 }
 
                 updateRetryTime();
-                mRetryInFlight = true;
-                mReplenishCacheHandler.postDelayed(mReplenishCacheRunnable, mRetryTimeMilliseconds);
+                if (!mRetryInFlight) {
+                    mRetryInFlight = true;
+                    mReplenishCacheHandler.postDelayed(mReplenishCacheRunnable,
+                            mRetryTimeMilliseconds);
+                }
             }
         };
 
         mSequenceNumber = 0;
+        mNextSequenceNumber = 0;
         mRetryTimeMilliseconds = DEFAULT_RETRY_TIME_MILLISECONDS;
     }
 
@@ -163,14 +295,44 @@ class NativeAdSource {
         for (final TimestampWrapper<NativeResponse> timestampWrapper : mNativeAdCache) {
             timestampWrapper.mInstance.destroy();
         }
+        mAdsDiscarded += mNativeAdCache.size();
         mNativeAdCache.clear();
 
+        // Removes the pending retry and expiration runnables as well
         mReplenishCacheHandler.removeMessages(0);
-        mRequestInFlight = false;
+        mRequestsInFlight = 0;
+        mRequestStartTimes.clear();
+        mRetryInFlight = false;
+        mExpirationScheduled = false;
         mSequenceNumber = 0;
+        mNextSequenceNumber = 0;
+        mPredictedDemand = 0;
+        mLastDequeueMillis = 0;
+        mAverageDequeueIntervalMillis = 0;
         resetRetryTime();
     }
 
+    /**
+     * Tells the ad source how many ads the stream expects to place soon, based on the ad positions
+     * that scrolling is about to reach. The cache grows to hold them, up to
+     * {@link #MAX_CACHE_LIMIT}.
+     */
+    void setPredictedDemand(final int predictedDemand) {
+        final int previousDemand = mPredictedDemand;
+        mPredictedDemand = Math.max(0, predictedDemand);
+        if (mPredictedDemand > previousDemand && !mRetryInFlight
+                && mRequestsInFlight < getMaxConcurrentRequests()
+                && mNativeAdCache.size() + mRequestsInFlight < getTargetCacheSize()) {
+            mReplenishCacheHandler.post(mReplenishCacheRunnable);
+        }
+    }
+
+    @NonNull
+    Stats getStats() {
+        return new Stats(mAdsRequested, mAdsLoaded, mAdsFailed, mAdsServed, mDequeueMisses,
+                mAdsExpired, mAdsDiscarded, getTargetCacheSize());
+    }
+
     /**
      * Removes an ad from the front of the ad source cache.
      *
@@ -186,7 +348,7 @@ class NativeAdSource {
         final long now = SystemClock.uptimeMillis();
 
         // Starting an ad request takes several millis. Post for performance reasons.
-        if (!mRequestInFlight && !mRetryInFlight) {
+        if (mRequestsInFlight < getMaxConcurrentRequests() && !mRetryInFlight) {
             mReplenishCacheHandler.post(mReplenishCacheRunnable);
         }
 
@@ -195,9 +357,14 @@ class NativeAdSource {
             TimestampWrapper<NativeResponse> responseWrapper = mNativeAdCache.remove(0);
 
             if (now - responseWrapper.mCreatedTimestamp < EXPIRATION_TIME_MILLISECONDS) {
+                mAdsServed++;
+                recordDequeue(now);
                 return responseWrapper.mInstance;
             }
+            responseWrapper.mInstance.destroy();
+            mAdsExpired++;
         }
+        mDequeueMisses++;
         return null;
     }
 
@@ -222,12 +389,106 @@ class NativeAdSource {
      */
     @VisibleForTesting
     void replenishCache() {
-        if (!mRequestInFlight && mMoPubNative != null && mNativeAdCache.size() < CACHE_LIMIT) {
-            mRequestInFlight = true;
-            mMoPubNative.makeRequest(mRequestParameters, mSequenceNumber);
+        while (mMoPubNative != null && !mRetryInFlight
+                && mRequestsInFlight < getMaxConcurrentRequests()
+                && mNativeAdCache.size() + mRequestsInFlight < getTargetCacheSize()) {
+            final int sequenceNumber = mNextSequenceNumber++;
+            mRequestsInFlight++;
+            mRequestStartTimes.add(SystemClock.uptimeMillis());
+            mAdsRequested++;
+            mMoPubNative.makeRequest(mRequestParameters, sequenceNumber);
         }
     }
 
+    /**
+     * The number of ads to keep cached or in flight. This is {@link #CACHE_LIMIT} unless ads are
+     * being consumed faster than one request can replace them, or the stream predicts more ad
+     * positions ahead.
+     */
+    @VisibleForTesting
+    int getTargetCacheSize() {
+        int target = Math.max(CACHE_LIMIT, mPredictedDemand);
+
+        final long now = SystemClock.uptimeMillis();
+        if (mAverageDequeueIntervalMillis > 0 && mAverageLoadMillis > 0
+                && now - mLastDequeueMillis < CONSUMPTION_WINDOW_MILLISECONDS) {
+            // Ads dequeued while one request is loading, plus one to cover the next dequeue
+            final int consumedWhileLoading =
+                    (int) Math.ceil(mAverageLoadMillis / mAverageDequeueIntervalMillis) + 1;
+            target = Math.max(target, consumedWhileLoading);
+        }
+
+        return Math.min(target, MAX_CACHE_LIMIT);
+    }
+
+    /**
+     * Requests run one at a time while the cache is at its base size or the server is failing,
+     * and in parallel only when the cache needs to grow.
+     */
+    @VisibleForTesting
+    int getMaxConcurrentRequests() {
+        if (mRetryTimeMilliseconds > DEFAULT_RETRY_TIME_MILLISECONDS) {
+            return 1;
+        }
+        return Math.min(1 + getTargetCacheSize() - CACHE_LIMIT, MAX_CONCURRENT_REQUESTS);
+    }
+
+    private void onRequestFinished() {
+        if (mRequestsInFlight > 0) {
+            mRequestsInFlight--;
+        }
+        // Responses usually arrive in request order, so pair this one with the oldest request
+        final Long startTime = mRequestStartTimes.poll();
+        if (startTime != null) {
+            mAverageLoadMillis = smooth(mAverageLoadMillis,
+                    SystemClock.uptimeMillis() - startTime);
+        }
+    }
+
+    private void recordDequeue(final long now) {
+        if (mLastDequeueMillis > 0 && now - mLastDequeueMillis < CONSUMPTION_WINDOW_MILLISECONDS) {
+            mAverageDequeueIntervalMillis = smooth(mAverageDequeueIntervalMillis,
+                    Math.max(1, now - mLastDequeueMillis));
+        }
+        mLastDequeueMillis = now;
+    }
+
+    private static double smooth(final double average, final double sample) {
+        if (average <= 0) {
+            return sample;
+        }
+        return average + SMOOTHING_FACTOR * (sample - average);
+    }
+
+    /**
+     * Destroys expired ads at the front of the cache and schedules the next expiration.
+     */
+    private void expireAds() {
+        final long now = SystemClock.uptimeMillis();
+        while (!mNativeAdCache.isEmpty()) {
+            final TimestampWrapper<NativeResponse> responseWrapper = mNativeAdCache.get(0);
+            if (now - responseWrapper.mCreatedTimestamp < EXPIRATION_TIME_MILLISECONDS) {
+                break;
+            }
+            mNativeAdCache.remove(0);
+            responseWrapper.mInstance.destroy();
+            mAdsExpired++;
+        }
+        scheduleExpiration();
+    }
+
+    private void scheduleExpiration() {
+        if (mExpirationScheduled || mNativeAdCache.isEmpty()) {
+            return;
+        }
+
+        // Ads are cached in load order, so the first one expires first
+        final long age = SystemClock.uptimeMillis() - mNativeAdCache.get(0).mCreatedTimestamp;
+        mExpirationScheduled = true;
+        mReplenishCacheHandler.postDelayed(mExpireAdsRunnable,
+                Math.max(0, EXPIRATION_TIME_MILLISECONDS - age));
+    }
+
     @Deprecated
     @VisibleForTesting
     void setMoPubNative(final MoPubNative moPubNative) {
@@ -3,6 +3,7 @@ package com.mopub.nativeads;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
+import com.mopub.common.VisibleForTesting;
 import com.mopub.common.logging.MoPubLog;
 import com.mopub.nativeads.MoPubNativeAdPositioning.MoPubClientPositioning;
 
@@ -12,7 +13,7 @@ import java.util.List;
  * A data that represents placed ads in a {@link com.mopub.nativeads.MoPubStreamAdPlacer},
  * useful for tracking insertion and placed ad positions.
  *
- * It maintains four lists of integers
+ * Conceptually it maintains four lists of integers
  * 1) Desired insertion positions - positions to place ads
  * 2) Desired original positions - original position for each ad to place
  * 2) Adjusted ad positions - ad positions that were placed
@@ -113,10 +114,27 @@ import java.util.List;
  * originalPositions: {3}
  * adjustedPositions: {3}
  *
- * Some runtime guarantees in terms of number of insertion ads:
+ * Rather than storing these lists, every ad, placed or not, is kept as a slot in a single
+ * sequence ordered by original position. Slots are only ever appended; placing or clearing an
+ * ad flips a flag on its slot. The position of a slot in the adjusted list (its insertion
+ * position if it is desired, its adjusted position if it is placed) is its original position
+ * plus the number of placed slots before it. Two Fenwick trees over the slots, one of original
+ * position deltas and one of placed flags, make all of these positions prefix sums. Inserting or
+ * removing a content item only changes a single delta.
+ *
+ * Repeating positions are not bounded. Their slots are appended lazily as positions further
+ * down the list are queried.
+ *
+ * Adapters ask about the same few adjusted positions several times per layout pass (view type,
+ * item id, binding), so the translations of recently queried positions are cached until the next
+ * change to placed ads or content.
+ *
+ * Some runtime guarantees in terms of number of ad slots:
  * - Finds the next or previous insertion position in O(logN)
+ * - Finds the next or previous placed ad in O(logN)
  * - Maps from adjusted to original positions and vice versa in O(logN)
- * - Places an ad (moves positions from desired to placed) in O(N)
+ * - Places an ad, inserts, removes or moves a content item in O(logN)
+ * - Clears K ads in O(KlogN)
  */
 class PlacementData {
     /**
@@ -124,27 +142,53 @@ class PlacementData {
      */
     public final static int NOT_FOUND = -1;
 
-    // Cap the number of ads to avoid unrestrained memory usage. 200 allows the 5 positioning
-    // arrays to fit in less than 4K.
-    private final static int MAX_ADS = 200;
-
-    // Initialize all of these to their max capacity. This prevents garbage collection when
-    // reallocating the list, which causes noticeable stuttering when scrolling on some devices.
-    @NonNull private final int[] mDesiredOriginalPositions = new int[MAX_ADS];
-    @NonNull private final int[] mDesiredInsertionPositions = new int[MAX_ADS];
-    private int mDesiredCount = 0;
-    @NonNull private final int[] mOriginalAdPositions = new int[MAX_ADS];
-    @NonNull private final int[] mAdjustedAdPositions = new int[MAX_ADS];
-    @NonNull private final NativeAdData[] mAdDataObjects = new NativeAdData[MAX_ADS];
+    // Grows by doubling. Starting with room for a typical feed keeps reallocation, and the GC
+    // stutter it can cause while scrolling, rare.
+    @VisibleForTesting static final int INITIAL_CAPACITY = 64;
+
+    // Covers the items on screen in a typical list, even with several rows per item. Must be a
+    // power of two.
+    @VisibleForTesting static final int TRANSLATION_CACHE_SIZE = 64;
+
+    // Fenwick trees, 1-indexed. The prefix sum of the first i deltas is the original position of
+    // slot i - 1. The prefix sum of the first i flags is the number of placed ads in slots [0, i).
+    @NonNull private int[] mOriginalPositionDeltaTree;
+    @NonNull private int[] mPlacedFlagTree;
+    @NonNull private boolean[] mIsPlaced;
+    @NonNull private NativeAdData[] mAdDataObjects;
+    private int mSlotCount = 0;
     private int mPlacedCount = 0;
 
+    // The original position of the next repeating ad slot that has not been appended yet, or
+    // NOT_FOUND if the positioning doesn't repeat.
+    private int mNextRepeatingOriginalPosition = NOT_FOUND;
+    private final int mRepeatingInterval;
+
+    // Direct mapped by adjusted position. An entry is valid while its generation is current.
+    @NonNull private final int[] mCachedPositions = new int[TRANSLATION_CACHE_SIZE];
+    @NonNull private final int[] mCachedGenerations = new int[TRANSLATION_CACHE_SIZE];
+    // The original position, or NOT_FOUND for an ad
+    @NonNull private final int[] mCachedOriginalPositions = new int[TRANSLATION_CACHE_SIZE];
+    // The placed slot, or NOT_FOUND for content
+    @NonNull private final int[] mCachedPlacedSlots = new int[TRANSLATION_CACHE_SIZE];
+    private int mGeneration = 1;
+
     /**
      * @param desiredInsertionPositions Insertion positions, expressed as original positions
      */
-    private PlacementData(@NonNull final int[] desiredInsertionPositions) {
-        mDesiredCount = Math.min(desiredInsertionPositions.length, MAX_ADS);
-        System.arraycopy(desiredInsertionPositions, 0, mDesiredInsertionPositions, 0, mDesiredCount);
-        System.arraycopy(desiredInsertionPositions, 0, mDesiredOriginalPositions, 0, mDesiredCount);
+    private PlacementData(@NonNull final int[] desiredInsertionPositions,
+            final int repeatingInterval, final int nextRepeatingOriginalPosition) {
+        final int capacity = Math.max(INITIAL_CAPACITY, desiredInsertionPositions.length);
+        mOriginalPositionDeltaTree = new int[capacity + 1];
+        mPlacedFlagTree = new int[capacity + 1];
+        mIsPlaced = new boolean[capacity];
+        mAdDataObjects = new NativeAdData[capacity];
+
+        for (final int position : desiredInsertionPositions) {
+            appendSlot(position);
+        }
+        mRepeatingInterval = repeatingInterval;
+        mNextRepeatingOriginalPosition = nextRepeatingOriginalPosition;
     }
 
     @NonNull
@@ -152,8 +196,7 @@ class PlacementData {
         final List<Integer> fixed = adPositioning.getFixedPositions();
         final int interval = adPositioning.getRepeatingInterval();
 
-        final int size = (interval == MoPubClientPositioning.NO_REPEAT ? fixed.size() : MAX_ADS);
-        final int[] desiredInsertionPositions = new int[size];
+        final int[] desiredInsertionPositions = new int[fixed.size()];
 
         // Fixed positions are in terms of final positions. Calculate current insertion positions
         // by decrementing numAds at each index.
@@ -164,25 +207,23 @@ class PlacementData {
             desiredInsertionPositions[numAds++] = lastPos;
         }
 
-        // Expand the repeating positions, if there are any
-        while (numAds < size) {
-            lastPos = lastPos + interval - 1;
-            desiredInsertionPositions[numAds++] = lastPos;
+        // The repeating positions are appended as they are needed
+        if (interval == MoPubClientPositioning.NO_REPEAT) {
+            return new PlacementData(desiredInsertionPositions, interval, NOT_FOUND);
         }
-        return new PlacementData(desiredInsertionPositions);
+        return new PlacementData(desiredInsertionPositions, interval, lastPos + interval - 1);
     }
 
     @NonNull
     static PlacementData empty() {
-        return new PlacementData(new int[] {});
+        return new PlacementData(new int[] {}, MoPubClientPositioning.NO_REPEAT, NOT_FOUND);
     }
 
     /**
      * Whether the given position should be an ad.
      */
     boolean shouldPlaceAd(final int position) {
-        final int index = binarySearch(mDesiredInsertionPositions, 0, mDesiredCount, position);
-        return index >= 0;
+        return findDesiredSlot(position) != NOT_FOUND;
     }
 
     /**
@@ -190,12 +231,15 @@ class PlacementData {
      * more ads.
      */
     int nextInsertionPosition(final int position) {
-        final int index = binarySearchGreaterThan(
-                mDesiredInsertionPositions, mDesiredCount, position);
-        if (index == mDesiredCount) {
-            return NOT_FOUND;
+        appendRepeatingSlotsThrough(position);
+        final int desiredIndex = countDesiredSlotsBefore(countSlotsBefore(position + 1));
+        if (desiredIndex < mSlotCount - mPlacedCount) {
+            return getPosition(selectDesiredSlot(desiredIndex));
+        }
+        if (mNextRepeatingOriginalPosition != NOT_FOUND) {
+            return mNextRepeatingOriginalPosition + mPlacedCount;
         }
-        return mDesiredInsertionPositions[index];
+        return NOT_FOUND;
     }
 
     /**
@@ -203,12 +247,12 @@ class PlacementData {
      * are no more ads.
      */
     int previousInsertionPosition(final int position) {
-        final int index = binarySearchFirstEquals(
-                mDesiredInsertionPositions,  mDesiredCount, position);
-        if (index == 0) {
+        appendRepeatingSlotsThrough(position);
+        final int desiredIndex = countDesiredSlotsBefore(countSlotsBefore(position));
+        if (desiredIndex == 0) {
             return NOT_FOUND;
         }
-        return mDesiredInsertionPositions[index - 1];
+        return getPosition(selectDesiredSlot(desiredIndex - 1));
     }
 
     /**
@@ -216,54 +260,25 @@ class PlacementData {
      */
     void placeAd(final int adjustedPosition, final NativeAdData adData) {
         // See if this is a insertion ad
-        final int desiredIndex = binarySearchFirstEquals(
-                mDesiredInsertionPositions, mDesiredCount, adjustedPosition);
-        if (desiredIndex == mDesiredCount
-                || mDesiredInsertionPositions[desiredIndex] != adjustedPosition) {
+        final int slot = findDesiredSlot(adjustedPosition);
+        if (slot == NOT_FOUND) {
             MoPubLog.w("Attempted to insert an ad at an invalid position");
             return;
         }
 
-        // Add to placed array
-        final int originalPosition = mDesiredOriginalPositions[desiredIndex];
-        int placeIndex = binarySearchGreaterThan(
-                mOriginalAdPositions, mPlacedCount, originalPosition);
-        if (placeIndex < mPlacedCount) {
-            final int num = mPlacedCount - placeIndex;
-            System.arraycopy(mOriginalAdPositions, placeIndex,
-                    mOriginalAdPositions, placeIndex + 1, num);
-            System.arraycopy(mAdjustedAdPositions, placeIndex,
-                    mAdjustedAdPositions, placeIndex + 1, num);
-            System.arraycopy(mAdDataObjects, placeIndex, mAdDataObjects, placeIndex + 1, num);
-        }
-        mOriginalAdPositions[placeIndex] = originalPosition;
-        mAdjustedAdPositions[placeIndex] = adjustedPosition;
-        mAdDataObjects[placeIndex] = adData;
+        // Every slot after this one moves down by one
+        mIsPlaced[slot] = true;
+        mAdDataObjects[slot] = adData;
+        add(mPlacedFlagTree, slot, 1);
         mPlacedCount++;
-
-        // Remove desired index
-        final int num = mDesiredCount - desiredIndex - 1;
-        System.arraycopy(mDesiredInsertionPositions, desiredIndex + 1,
-                mDesiredInsertionPositions, desiredIndex, num);
-        System.arraycopy(mDesiredOriginalPositions, desiredIndex + 1,
-                mDesiredOriginalPositions, desiredIndex, num);
-        mDesiredCount--;
-
-        // Increment adjusted positions
-        for (int i = desiredIndex; i < mDesiredCount; ++i) {
-            mDesiredInsertionPositions[i]++;
-        }
-        for (int i = placeIndex + 1; i < mPlacedCount; ++i) {
-            mAdjustedAdPositions[i]++;
-        }
+        invalidateTranslations();
     }
 
     /**
      * @see {@link com.mopub.nativeads.MoPubStreamAdPlacer#isAd(int)}
      */
     boolean isPlacedAd(final int position) {
-        final int index = binarySearch(mAdjustedAdPositions, 0, mPlacedCount, position);
-        return index >= 0;
+        return mCachedPlacedSlots[translate(position)] != NOT_FOUND;
     }
 
     /**
@@ -272,11 +287,35 @@ class PlacementData {
      */
     @Nullable
     NativeAdData getPlacedAd(final int position) {
-        final int index = binarySearch(mAdjustedAdPositions, 0, mPlacedCount, position);
-        if (index < 0) {
+        final int slot = mCachedPlacedSlots[translate(position)];
+        if (slot == NOT_FOUND) {
             return null;
         }
-        return mAdDataObjects[index];
+        return mAdDataObjects[slot];
+    }
+
+    /**
+     * The position of the next placed ad after this position. Returns NOT_FOUND if there are no
+     * more placed ads.
+     */
+    int nextPlacedAdPosition(final int position) {
+        final int placedIndex = prefixSum(mPlacedFlagTree, countSlotsBefore(position + 1));
+        if (placedIndex == mPlacedCount) {
+            return NOT_FOUND;
+        }
+        return getPosition(selectPlacedSlot(placedIndex));
+    }
+
+    /**
+     * The position of the previous placed ad before this position. Returns NOT_FOUND if there
+     * are no placed ads before it.
+     */
+    int previousPlacedAdPosition(final int position) {
+        final int placedIndex = prefixSum(mPlacedFlagTree, countSlotsBefore(position));
+        if (placedIndex == 0) {
+            return NOT_FOUND;
+        }
+        return getPosition(selectPlacedSlot(placedIndex - 1));
     }
 
     /**
@@ -286,7 +325,9 @@ class PlacementData {
     @NonNull
     int[] getPlacedAdPositions() {
         int[] positions = new int[mPlacedCount];
-        System.arraycopy(mAdjustedAdPositions, 0, positions, 0, mPlacedCount);
+        for (int i = 0; i < mPlacedCount; i++) {
+            positions[i] = getPosition(selectPlacedSlot(i));
+        }
         return positions;
     }
 
@@ -294,24 +335,16 @@ class PlacementData {
      * @see com.mopub.nativeads.MoPubStreamAdPlacer#getOriginalPosition(int)
      */
     int getOriginalPosition(final int position) {
-        final int index = binarySearch(mAdjustedAdPositions, 0, mPlacedCount, position);
-
-        // No match, ~index is the number of ads before this pos.
-        if (index < 0) {
-            return position - ~index;
-        }
-
-        // This is an ad - there is no original position
-        return NOT_FOUND;
+        return mCachedOriginalPositions[translate(position)];
     }
 
     /**
      * @see com.mopub.nativeads.MoPubStreamAdPlacer#getAdjustedPosition(int)
      */
     int getAdjustedPosition(final int originalPosition) {
-        // This is an ad. Since binary search doesn't properly handle dups, find the first non-ad.
-        int index = binarySearchGreaterThan(mOriginalAdPositions, mPlacedCount, originalPosition);
-        return originalPosition + index;
+        // Ads at this original position come before the item, so they count as well
+        final int slots = countSlotsAtOrBeforeOriginalPosition(originalPosition);
+        return originalPosition + prefixSum(mPlacedFlagTree, slots);
     }
 
     /**
@@ -343,61 +376,25 @@ class PlacementData {
      * positions.
      */
     int clearAdsInRange(final int adjustedStartRange, final int adjustedEndRange) {
-        // Temporary arrays to store the cleared positions. Using temporary arrays makes it
-        // easy to debug what positions are being cleared.
-        int[] clearOriginalPositions = new int[mPlacedCount];
-        int[] clearAdjustedPositions = new int[mPlacedCount];
-        int clearCount = 0;
-
-        // Add to the clear position arrays any positions that fall inside
-        // [adjustedRangeStart, adjustedRangeEnd).
-        for (int i = 0; i < mPlacedCount; ++i) {
-            int originalPosition = mOriginalAdPositions[i];
-            int adjustedPosition = mAdjustedAdPositions[i];
-            if (adjustedStartRange <= adjustedPosition && adjustedPosition < adjustedEndRange) {
-                // When copying adjusted positions, subtract the current clear count because there
-                // is no longer an ad incrementing the desired insertion position.
-                clearOriginalPositions[clearCount] = originalPosition;
-                clearAdjustedPositions[clearCount] = adjustedPosition - clearCount;
-
-                // Destroying and nulling out the ad objects to avoids a memory leak.
-                mAdDataObjects[i].getAd().destroy();
-                mAdDataObjects[i] = null;
-                clearCount++;
-            } else if (clearCount > 0) {
-                // The position is not in the range; shift it by the number of cleared ads.
-                int newIndex = i - clearCount;
-                mOriginalAdPositions[newIndex] = originalPosition;
-                mAdjustedAdPositions[newIndex] = adjustedPosition - clearCount;
-                mAdDataObjects[newIndex] = mAdDataObjects[i];
-            }
-        }
-
-        // If we have cleared nothing, this method was a no-op.
-        if (clearCount == 0) {
-            return 0;
+        // Ranges are in terms of adjusted positions before anything is cleared
+        final int firstCleared = prefixSum(mPlacedFlagTree, countSlotsBefore(adjustedStartRange));
+        final int clearCount =
+                prefixSum(mPlacedFlagTree, countSlotsBefore(adjustedEndRange)) - firstCleared;
+
+        // Clearing an ad makes the next one in the range the firstCleared-th placed ad
+        for (int i = 0; i < clearCount; i++) {
+            final int slot = selectPlacedSlot(firstCleared);
+
+            // Destroying and nulling out the ad objects to avoids a memory leak.
+            mAdDataObjects[slot].getAd().destroy();
+            mAdDataObjects[slot] = null;
+            mIsPlaced[slot] = false;
+            add(mPlacedFlagTree, slot, -1);
+            mPlacedCount--;
         }
-
-        // Modify the desired positions arrays in order to make space to put back the
-        // cleared ad positions. For example if the desired array was {1, 10,
-        // 15} and we need to insert {3, 7} we'll shift the desired array to be {1, ?, ? , 10, 15}.
-        int firstCleared = clearAdjustedPositions[0];
-        int desiredIndex = binarySearchFirstEquals(
-                mDesiredInsertionPositions, mDesiredCount, firstCleared);
-        for (int i = mDesiredCount - 1; i >= desiredIndex; --i) {
-            mDesiredOriginalPositions[i + clearCount] = mDesiredOriginalPositions[i];
-            mDesiredInsertionPositions[i + clearCount] = mDesiredInsertionPositions[i] - clearCount;
-        }
-
-        // Copy the cleared ad positions into the desired arrays.
-        for (int i = 0; i < clearCount; ++i) {
-            mDesiredOriginalPositions[desiredIndex + i] = clearOriginalPositions[i];
-            mDesiredInsertionPositions[desiredIndex + i] = clearAdjustedPositions[i];
+        if (clearCount > 0) {
+            invalidateTranslations();
         }
-
-        // Update the array counts, and we're done.
-        mDesiredCount = mDesiredCount + clearCount;
-        mPlacedCount = mPlacedCount - clearCount;
         return clearCount;
     }
 
@@ -410,55 +407,45 @@ class PlacementData {
             return;
         }
 
-        clearAdsInRange(0, mAdjustedAdPositions[mPlacedCount - 1] + 1);
+        clearAdsInRange(0, getPosition(selectPlacedSlot(mPlacedCount - 1)) + 1);
     }
 
     /**
      * @see com.mopub.nativeads.MoPubStreamAdPlacer#insertItem(int)
      */
     void insertItem(final int originalPosition) {
+        // Make sure all pending repeating slots are after the item so they shift together
+        appendRepeatingSlotsThroughOriginalPosition(originalPosition);
 
-        // Increment desired arrays.
-        int indexToIncrement = binarySearchFirstEquals(
-                mDesiredOriginalPositions, mDesiredCount, originalPosition);
-        for (int i = indexToIncrement; i < mDesiredCount; ++i) {
-            mDesiredOriginalPositions[i]++;
-            mDesiredInsertionPositions[i]++;
+        // Increment all slots at or after the original position.
+        final int firstSlot = countSlotsAtOrBeforeOriginalPosition(originalPosition - 1);
+        if (firstSlot < mSlotCount) {
+            add(mOriginalPositionDeltaTree, firstSlot, 1);
         }
-
-        // Increment placed arrays.
-        indexToIncrement = binarySearchFirstEquals(
-                mOriginalAdPositions, mPlacedCount, originalPosition);
-        for (int i = indexToIncrement; i < mPlacedCount; ++i) {
-            mOriginalAdPositions[i]++;
-            mAdjustedAdPositions[i]++;
+        if (mNextRepeatingOriginalPosition != NOT_FOUND) {
+            mNextRepeatingOriginalPosition++;
         }
+        invalidateTranslations();
     }
 
     /**
      * @see com.mopub.nativeads.MoPubStreamAdPlacer#removeItem(int)
      */
     void removeItem(final int originalPosition) {
+        appendRepeatingSlotsThroughOriginalPosition(originalPosition);
+
         // When removing items, we only decrement ad position values *greater* than the original
         // position we're removing. The original position associated with an ad is the original
         // position of the first content item after the ad, so we shouldn't change the original
         // position of an ad that matches the original position removed.
-        int indexToDecrement = binarySearchGreaterThan(
-                mDesiredOriginalPositions, mDesiredCount, originalPosition);
-
-        // Decrement desired arrays.
-        for (int i = indexToDecrement; i < mDesiredCount; ++i) {
-            mDesiredOriginalPositions[i]--;
-            mDesiredInsertionPositions[i]--;
+        final int firstSlot = countSlotsAtOrBeforeOriginalPosition(originalPosition);
+        if (firstSlot < mSlotCount) {
+            add(mOriginalPositionDeltaTree, firstSlot, -1);
         }
-
-        indexToDecrement = binarySearchGreaterThan(
-                mOriginalAdPositions, mPlacedCount, originalPosition);
-
-        for (int i = indexToDecrement; i < mPlacedCount; ++i) {
-            mOriginalAdPositions[i]--;
-            mAdjustedAdPositions[i]--;
+        if (mNextRepeatingOriginalPosition != NOT_FOUND) {
+            mNextRepeatingOriginalPosition--;
         }
+        invalidateTranslations();
     }
 
     /**
@@ -469,59 +456,237 @@ class PlacementData {
         insertItem(newPosition);
     }
 
-    private static int binarySearchFirstEquals(int[] array, int count, int value) {
-        int index = binarySearch(array, 0, count, value);
+    @VisibleForTesting
+    int getSlotCount() {
+        return mSlotCount;
+    }
 
-        // If not found, binarySearch returns the 2's complement of the index of the nearest
-        // value higher than the target value, which is also the insertion index.
-        if (index < 0) {
-            return ~index;
+    /**
+     * Returns the desired slot whose insertion position is the given position, or NOT_FOUND.
+     */
+    private int findDesiredSlot(final int position) {
+        appendRepeatingSlotsThrough(position);
+        final int desiredIndex = countDesiredSlotsBefore(countSlotsBefore(position));
+        if (desiredIndex == mSlotCount - mPlacedCount) {
+            return NOT_FOUND;
         }
+        final int slot = selectDesiredSlot(desiredIndex);
+        return getPosition(slot) == position ? slot : NOT_FOUND;
+    }
 
-        int duplicateValue = array[index];
-        while (index >= 0 && array[index] == duplicateValue) {
-            index--;
+    /**
+     * Returns the translation cache entry for the given adjusted position, translating it first if
+     * it isn't cached. Only placed slots decide the translation, so appending desired slots leaves
+     * the cache valid.
+     */
+    private int translate(final int position) {
+        final int entry = position & (TRANSLATION_CACHE_SIZE - 1);
+        if (mCachedGenerations[entry] == mGeneration && mCachedPositions[entry] == position) {
+            return entry;
+        }
+
+        final int placedBefore = prefixSum(mPlacedFlagTree, countSlotsBefore(position));
+        int placedSlot = NOT_FOUND;
+        if (placedBefore < mPlacedCount) {
+            final int slot = selectPlacedSlot(placedBefore);
+            if (getPosition(slot) == position) {
+                placedSlot = slot;
+            }
         }
 
-        return index + 1;
+        mCachedPositions[entry] = position;
+        mCachedGenerations[entry] = mGeneration;
+        mCachedPlacedSlots[entry] = placedSlot;
+        // An ad has no original position
+        mCachedOriginalPositions[entry] =
+                placedSlot == NOT_FOUND ? position - placedBefore : NOT_FOUND;
+        return entry;
     }
 
-    private static int binarySearchGreaterThan(int[] array, int count, int value) {
-        int index = binarySearch(array, 0, count, value);
+    private void invalidateTranslations() {
+        mGeneration++;
+        if (mGeneration == 0) {
+            // Wrapped around, so old entries could look current again
+            for (int i = 0; i < TRANSLATION_CACHE_SIZE; i++) {
+                mCachedGenerations[i] = 0;
+            }
+            mGeneration = 1;
+        }
+    }
+
+    /**
+     * The position of the slot in the adjusted list.
+     */
+    private int getPosition(final int slot) {
+        return prefixSum(mOriginalPositionDeltaTree, slot + 1)
+                + prefixSum(mPlacedFlagTree, slot);
+    }
+
+    private int countDesiredSlotsBefore(final int slotCount) {
+        return slotCount - prefixSum(mPlacedFlagTree, slotCount);
+    }
+
+    /**
+     * The number of leading slots whose position in the adjusted list is less than the given
+     * position. Positions never decrease along the slots.
+     */
+    private int countSlotsBefore(final int position) {
+        int count = 0;
+        int originalPosition = 0;
+        int placedCount = 0;
+        for (int step = Integer.highestOneBit(mSlotCount); step > 0; step >>= 1) {
+            final int next = count + step;
+            if (next > mSlotCount) {
+                continue;
+            }
+            final int nextOriginalPosition = originalPosition + mOriginalPositionDeltaTree[next];
+            final int nextPlacedCount = placedCount + mPlacedFlagTree[next];
+            // Placed ads before slot next - 1, not including itself
+            final int slotPosition = nextOriginalPosition + nextPlacedCount
+                    - (mIsPlaced[next - 1] ? 1 : 0);
+            if (slotPosition < position) {
+                count = next;
+                originalPosition = nextOriginalPosition;
+                placedCount = nextPlacedCount;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * The number of leading slots whose original position is at most the given position.
+     */
+    private int countSlotsAtOrBeforeOriginalPosition(final int originalPosition) {
+        int count = 0;
+        int sum = 0;
+        for (int step = Integer.highestOneBit(mSlotCount); step > 0; step >>= 1) {
+            final int next = count + step;
+            if (next <= mSlotCount && sum + mOriginalPositionDeltaTree[next] <= originalPosition) {
+                count = next;
+                sum += mOriginalPositionDeltaTree[next];
+            }
+        }
+        return count;
+    }
+
+    /**
+     * The slot of the placed ad with the given index, counting from 0.
+     */
+    private int selectPlacedSlot(final int placedIndex) {
+        int count = 0;
+        int placed = 0;
+        for (int step = Integer.highestOneBit(mSlotCount); step > 0; step >>= 1) {
+            final int next = count + step;
+            if (next <= mSlotCount && placed + mPlacedFlagTree[next] <= placedIndex) {
+                count = next;
+                placed += mPlacedFlagTree[next];
+            }
+        }
+        return count;
+    }
 
-        // If not found, binarySearch returns the 2's complement of the index of the nearest
-        // value higher than the target value, which is also the insertion index.
-        if (index < 0) {
-            return ~index;
+    /**
+     * The slot of the desired ad with the given index, counting from 0.
+     */
+    private int selectDesiredSlot(final int desiredIndex) {
+        int count = 0;
+        int desired = 0;
+        for (int step = Integer.highestOneBit(mSlotCount); step > 0; step >>= 1) {
+            final int next = count + step;
+            // Tree node next covers exactly step slots
+            if (next <= mSlotCount && desired + step - mPlacedFlagTree[next] <= desiredIndex) {
+                count = next;
+                desired += step - mPlacedFlagTree[next];
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Appends repeating slots until every desired slot at or before the given adjusted position
+     * exists.
+     */
+    private void appendRepeatingSlotsThrough(final int position) {
+        while (mNextRepeatingOriginalPosition != NOT_FOUND
+                && mNextRepeatingOriginalPosition + mPlacedCount <= position) {
+            appendRepeatingSlot();
         }
+    }
 
-        int duplicateValue = array[index];
-        while (index < count && array[index] == duplicateValue) {
-            index++;
+    /**
+     * Appends repeating slots until every slot at or before the given original position exists.
+     */
+    private void appendRepeatingSlotsThroughOriginalPosition(final int originalPosition) {
+        while (mNextRepeatingOriginalPosition != NOT_FOUND
+                && mNextRepeatingOriginalPosition <= originalPosition) {
+            appendRepeatingSlot();
         }
+    }
 
-        return index;
+    private void appendRepeatingSlot() {
+        appendSlot(mNextRepeatingOriginalPosition);
+        mNextRepeatingOriginalPosition += mRepeatingInterval - 1;
     }
 
     /**
-     * Copied from Arrays.java, which isn't available until Gingerbread.
+     * Appends a desired slot. Original positions must not decrease.
      */
-    private static int binarySearch(int[] array, int startIndex, int endIndex, int value) {
-        int lo = startIndex;
-        int hi = endIndex - 1;
+    private void appendSlot(final int originalPosition) {
+        if (mSlotCount == mIsPlaced.length) {
+            final int capacity = mIsPlaced.length * 2;
+            mOriginalPositionDeltaTree = copyOf(mOriginalPositionDeltaTree, capacity + 1);
+            mPlacedFlagTree = copyOf(mPlacedFlagTree, capacity + 1);
+            final boolean[] isPlaced = new boolean[capacity];
+            System.arraycopy(mIsPlaced, 0, isPlaced, 0, mSlotCount);
+            mIsPlaced = isPlaced;
+            final NativeAdData[] adDataObjects = new NativeAdData[capacity];
+            System.arraycopy(mAdDataObjects, 0, adDataObjects, 0, mSlotCount);
+            mAdDataObjects = adDataObjects;
+        }
 
-        while (lo <= hi) {
-            int mid = (lo + hi) >>> 1;
-            int midVal = array[mid];
+        final int delta = mSlotCount == 0
+                ? originalPosition
+                : originalPosition - prefixSum(mOriginalPositionDeltaTree, mSlotCount);
+
+        // Tree node i sums the values of slots (i - lowestOneBit(i), i]
+        final int node = mSlotCount + 1;
+        final int firstCovered = node - Integer.lowestOneBit(node);
+        mOriginalPositionDeltaTree[node] = delta
+                + prefixSum(mOriginalPositionDeltaTree, mSlotCount)
+                - prefixSum(mOriginalPositionDeltaTree, firstCovered);
+        mPlacedFlagTree[node] = prefixSum(mPlacedFlagTree, mSlotCount)
+                - prefixSum(mPlacedFlagTree, firstCovered);
+        mIsPlaced[mSlotCount] = false;
+        mSlotCount++;
+    }
 
-            if (midVal < value) {
-                lo = mid + 1;
-            } else if (midVal > value) {
-                hi = mid - 1;
-            } else {
-                return mid;  // value found
-            }
+    /**
+     * Adds the delta to the value of the given slot.
+     */
+    private void add(@NonNull final int[] tree, final int slot, final int delta) {
+        for (int i = slot + 1; i <= mSlotCount; i += Integer.lowestOneBit(i)) {
+            tree[i] += delta;
         }
-        return ~lo;  // value not present
+    }
+
+    /**
+     * The sum of the values of the first count slots.
+     */
+    private static int prefixSum(@NonNull final int[] tree, final int count) {
+        int sum = 0;
+        for (int i = count; i > 0; i -= Integer.lowestOneBit(i)) {
+            sum += tree[i];
+        }
+        return sum;
+    }
+
+    /**
+     * Arrays.copyOf isn't available until Gingerbread.
+     */
+    @NonNull
+    private static int[] copyOf(@NonNull final int[] array, final int length) {
+        final int[] copy = new int[length];
+        System.arraycopy(array, 0, copy, 0, Math.min(array.length, length));
+        return copy;
     }
 }
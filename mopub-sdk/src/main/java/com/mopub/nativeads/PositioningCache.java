@@ -0,0 +1,113 @@
+package com.mopub.nativeads;
+
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.mopub.common.Preconditions;
+import com.mopub.common.VisibleForTesting;
+import com.mopub.nativeads.MoPubNativeAdPositioning.MoPubClientPositioning;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * In-memory cache of server positioning, keyed by ad unit id and shared by every
+ * {@link ServerPositioningSource} in the process. Screens that recreate their ad placer for the
+ * same ad unit get their positions back without another round trip.
+ *
+ * Entries are fresh for {@link #TIME_TO_LIVE_MS}. After that they are still served, for up to
+ * {@link #MAX_STALE_MS}, while a new request revalidates them. This also tracks which source
+ * has a request in flight for each ad unit so that concurrent loads can share it. This should
+ * only be used from the main thread.
+ */
+public final class PositioningCache {
+
+    @VisibleForTesting static final int TIME_TO_LIVE_MS = 10 * 60 * 1000;
+    @VisibleForTesting static final int MAX_STALE_MS = 60 * 60 * 1000;
+
+    private static final Map<String, Entry> sEntries = new HashMap<String, Entry>();
+    private static final Map<String, ServerPositioningSource> sInFlightSources =
+            new HashMap<String, ServerPositioningSource>();
+
+    static class Entry {
+        @NonNull private final MoPubClientPositioning mPositioning;
+        private final long mFetchTimeMs;
+
+        Entry(@NonNull final MoPubClientPositioning positioning, final long fetchTimeMs) {
+            mPositioning = positioning;
+            mFetchTimeMs = fetchTimeMs;
+        }
+
+        /**
+         * Returns a copy of the cached positioning, so that callers can't modify the cache.
+         */
+        @NonNull
+        MoPubClientPositioning getPositioning() {
+            return MoPubNativeAdPositioning.clone(mPositioning);
+        }
+
+        boolean isStale() {
+            return SystemClock.uptimeMillis() - mFetchTimeMs >= TIME_TO_LIVE_MS;
+        }
+    }
+
+    private PositioningCache() {
+    }
+
+    /**
+     * Gets the cached positioning for the given ad unit.
+     *
+     * @return The entry, which may be stale, or {@code null} if it was never cached or is too
+     * old to be served.
+     */
+    @Nullable
+    static Entry get(@NonNull final String adUnitId) {
+        Preconditions.checkNotNull(adUnitId);
+
+        final Entry entry = sEntries.get(adUnitId);
+        if (entry == null) {
+            return null;
+        }
+        if (SystemClock.uptimeMillis() - entry.mFetchTimeMs >= MAX_STALE_MS) {
+            sEntries.remove(adUnitId);
+            return null;
+        }
+        return entry;
+    }
+
+    static void put(@NonNull final String adUnitId,
+            @NonNull final MoPubClientPositioning positioning) {
+        Preconditions.checkNotNull(adUnitId);
+        Preconditions.checkNotNull(positioning);
+
+        sEntries.put(adUnitId, new Entry(MoPubNativeAdPositioning.clone(positioning),
+                SystemClock.uptimeMillis()));
+    }
+
+    @Nullable
+    static ServerPositioningSource getInFlightSource(@NonNull final String adUnitId) {
+        return sInFlightSources.get(adUnitId);
+    }
+
+    static void setInFlightSource(@NonNull final String adUnitId,
+            @NonNull final ServerPositioningSource source) {
+        sInFlightSources.put(adUnitId, source);
+    }
+
+    /**
+     * Clears the in flight source for the ad unit, but only if it is the given source.
+     */
+    static void clearInFlightSource(@NonNull final String adUnitId,
+            @NonNull final ServerPositioningSource source) {
+        if (sInFlightSources.get(adUnitId) == source) {
+            sInFlightSources.remove(adUnitId);
+        }
+    }
+
+    @VisibleForTesting
+    public static void clear() {
+        sEntries.clear();
+        sInFlightSources.clear();
+    }
+}
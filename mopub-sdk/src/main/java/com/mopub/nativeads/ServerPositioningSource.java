@@ -17,6 +17,9 @@ import com.mopub.volley.RequestQueue;
 import com.mopub.volley.Response;
 import com.mopub.volley.VolleyError;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Requests positioning information from the MoPub ad server.
  *
@@ -43,6 +46,9 @@ import com.mopub.volley.VolleyError;
  *
  * The JSON parsing logic treats any violations to the above spec as invalid,
  * rather than trying to continue with a partially valid response.
+ *
+ * Successful responses are kept in {@link PositioningCache}, and sources loading the same ad unit
+ * at the same time share a single request.
  */
 class ServerPositioningSource implements PositioningSource {
 
@@ -66,6 +72,13 @@ class ServerPositioningSource implements PositioningSource {
     private int mRetryCount;
     @Nullable private String mRetryUrl;
     @Nullable private PositioningRequest mRequest;
+    @Nullable private String mAdUnitId;
+    @Nullable private Runnable mCachedDeliveryRunnable;
+
+    // Request sharing: the source whose request we are waiting on, or the sources waiting on ours.
+    @Nullable private ServerPositioningSource mLeader;
+    @NonNull private final List<ServerPositioningSource> mFollowers =
+            new ArrayList<ServerPositioningSource>();
 
     ServerPositioningSource(@NonNull final Context context) {
         mContext = context.getApplicationContext();
@@ -104,6 +117,33 @@ class ServerPositioningSource implements PositioningSource {
 
     @Override
     public void loadPositions(@NonNull String adUnitId, @NonNull PositioningListener listener) {
+        cancel();
+
+        mAdUnitId = adUnitId;
+        mListener = listener;
+
+        final PositioningCache.Entry cachedEntry = PositioningCache.get(adUnitId);
+        if (cachedEntry != null) {
+            deliverCachedPositioning(cachedEntry.getPositioning());
+            // Serve stale positioning right away, but refresh it for the next load.
+            if (cachedEntry.isStale() && PositioningCache.getInFlightSource(adUnitId) == null) {
+                requestPositioning();
+            }
+            return;
+        }
+
+        // Share a request that another source already has in flight for this ad unit.
+        final ServerPositioningSource inFlightSource = PositioningCache.getInFlightSource(adUnitId);
+        if (inFlightSource != null) {
+            mLeader = inFlightSource;
+            inFlightSource.mFollowers.add(this);
+            return;
+        }
+
+        requestPositioning();
+    }
+
+    private void cancel() {
         // If a request is in flight, remove it.
         if (mRequest != null) {
             mRequest.cancel();
@@ -116,9 +156,61 @@ class ServerPositioningSource implements PositioningSource {
             mRetryCount = 0;
         }
 
-        mListener = listener;
+        if (mCachedDeliveryRunnable != null) {
+            mRetryHandler.removeCallbacks(mCachedDeliveryRunnable);
+            mCachedDeliveryRunnable = null;
+        }
+
+        if (mLeader != null) {
+            mLeader.mFollowers.remove(this);
+            mLeader = null;
+        }
+
+        if (mAdUnitId != null) {
+            PositioningCache.clearInFlightSource(mAdUnitId, this);
+        }
+
+        // Sources that were waiting on our request have to load on their own now.
+        final List<ServerPositioningSource> followers =
+                new ArrayList<ServerPositioningSource>(mFollowers);
+        mFollowers.clear();
+        for (final ServerPositioningSource follower : followers) {
+            follower.mLeader = null;
+            if (follower.mAdUnitId != null && follower.mListener != null) {
+                follower.loadPositions(follower.mAdUnitId, follower.mListener);
+            }
+        }
+
+        mListener = null;
+    }
+
+    private void deliverCachedPositioning(@NonNull final MoPubClientPositioning positioning) {
+        // Clear the listener now so that a revalidation can't deliver to it a second time.
+        final PositioningListener listener = mListener;
+        mListener = null;
+        if (listener == null) {
+            return;
+        }
+
+        // Post so that listeners are never called back from inside loadPositions.
+        mCachedDeliveryRunnable = new Runnable() {
+            @Override
+            public void run() {
+                mCachedDeliveryRunnable = null;
+                listener.onLoad(positioning);
+            }
+        };
+        mRetryHandler.post(mCachedDeliveryRunnable);
+    }
+
+    private void requestPositioning() {
+        if (mAdUnitId == null) {
+            return;
+        }
+
+        PositioningCache.setInFlightSource(mAdUnitId, this);
         mRetryUrl = new PositioningUrlGenerator(mContext)
-                .withAdUnitId(adUnitId)
+                .withAdUnitId(mAdUnitId)
                 .generateUrlString(Constants.HOST);
         requestPositioningInternal();
     }
@@ -132,22 +224,46 @@ class ServerPositioningSource implements PositioningSource {
     }
 
     private void handleSuccess(@NonNull MoPubClientPositioning positioning) {
+        mRequest = null;
+        if (mAdUnitId != null) {
+            PositioningCache.put(mAdUnitId, positioning);
+            PositioningCache.clearInFlightSource(mAdUnitId, this);
+        }
+
         if (mListener != null) {
             mListener.onLoad(positioning);
         }
         mListener = null;
         mRetryCount = 0;
+
+        for (final ServerPositioningSource follower : takeFollowers()) {
+            if (follower.mListener != null) {
+                follower.mListener.onLoad(MoPubNativeAdPositioning.clone(positioning));
+            }
+            follower.mListener = null;
+        }
     }
 
     private void handleFailure() {
+        mRequest = null;
         double multiplier = Math.pow(EXPONENTIAL_BACKOFF_FACTOR, mRetryCount + 1);
         int delay = (int) (DEFAULT_RETRY_TIME_MILLISECONDS * multiplier);
         if (delay >= mMaximumRetryTimeMillis) {
             MoPubLog.d("Error downloading positioning information");
+            if (mAdUnitId != null) {
+                PositioningCache.clearInFlightSource(mAdUnitId, this);
+            }
             if (mListener != null) {
                 mListener.onFailed();
             }
             mListener = null;
+
+            for (final ServerPositioningSource follower : takeFollowers()) {
+                if (follower.mListener != null) {
+                    follower.mListener.onFailed();
+                }
+                follower.mListener = null;
+            }
             return;
         }
 
@@ -155,6 +271,17 @@ class ServerPositioningSource implements PositioningSource {
         mRetryHandler.postDelayed(mRetryRunnable, delay);
     }
 
+    @NonNull
+    private List<ServerPositioningSource> takeFollowers() {
+        final List<ServerPositioningSource> followers =
+                new ArrayList<ServerPositioningSource>(mFollowers);
+        mFollowers.clear();
+        for (final ServerPositioningSource follower : followers) {
+            follower.mLeader = null;
+        }
+        return followers;
+    }
+
     @Deprecated
     @VisibleForTesting
     void setMaximumRetryTimeMilliseconds(int millis) {
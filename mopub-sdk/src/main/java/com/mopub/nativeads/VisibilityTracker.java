@@ -19,16 +19,27 @@ import java.util.List;
 import java.util.Map;
 import java.util.WeakHashMap;
 
+import static android.view.ViewTreeObserver.OnGlobalLayoutListener;
 import static android.view.ViewTreeObserver.OnPreDrawListener;
+import static android.view.ViewTreeObserver.OnScrollChangedListener;
 
 /**
  * Tracks views to determine when they become visible or invisible, where visibility is defined as
  * having been at least X% on the screen.
+ *
+ * Each pass goes over every tracked view once, but only measures the views that may have moved:
+ * all of them after the window scrolls or lays out, otherwise only the ones whose own bounds,
+ * visibility or parent changed. The others keep their result from the last pass, so a pass over
+ * hundreds of views that sit still costs little more than iterating them.
  */
 class VisibilityTracker {
     // Time interval to use for throttling visibility checks.
     private static final int VISIBILITY_THROTTLE_MILLIS = 100;
 
+    // Ancestor transforms, such as animated translations, move views without a scroll or layout.
+    // Measure every view at least this often to catch them.
+    @VisibleForTesting static final int MAX_MEASURE_INTERVAL_MILLIS = 1000;
+
     // Trim the tracked views after this many accesses. This protects us against tracking
     // too many views if the developer uses the adapter for multiple ListViews. It also
     // limits the memory leak if a developer forgets to call destroy().
@@ -46,11 +57,45 @@ class VisibilityTracker {
     }
 
     @Nullable @VisibleForTesting OnPreDrawListener mOnPreDrawListener;
+    @Nullable @VisibleForTesting OnScrollChangedListener mOnScrollChangedListener;
+    @Nullable @VisibleForTesting OnGlobalLayoutListener mOnGlobalLayoutListener;
     @NonNull @VisibleForTesting final WeakReference<View> mRootView;
 
     static class TrackingInfo {
         int mMinViewablePercent;
         long mAccessOrder;
+
+        // What the view looked like when it was last measured, and whether it was visible. The
+        // parent is not kept, as it would keep a recycled view from being collected.
+        boolean mIsMeasured;
+        boolean mWasVisible;
+        int mLeft;
+        int mTop;
+        int mRight;
+        int mBottom;
+        int mVisibility;
+        boolean mHasParent;
+
+        boolean isUnchangedSinceMeasured(@NonNull final View view) {
+            return mIsMeasured
+                    && mLeft == view.getLeft()
+                    && mTop == view.getTop()
+                    && mRight == view.getRight()
+                    && mBottom == view.getBottom()
+                    && mVisibility == view.getVisibility()
+                    && mHasParent == (view.getParent() != null);
+        }
+
+        void recordMeasurement(@NonNull final View view, final boolean isVisible) {
+            mIsMeasured = true;
+            mWasVisible = isVisible;
+            mLeft = view.getLeft();
+            mTop = view.getTop();
+            mRight = view.getRight();
+            mBottom = view.getBottom();
+            mVisibility = view.getVisibility();
+            mHasParent = view.getParent() != null;
+        }
     }
 
     // Views that are being tracked, mapped to the min viewable percentage
@@ -71,6 +116,12 @@ class VisibilityTracker {
     // Whether the visibility runnable is scheduled
     private boolean mIsVisibilityScheduled;
 
+    // Whether the window scrolled or laid out since the last pass, which moves every view
+    @VisibleForTesting boolean mHasWindowChanged = true;
+    private long mLastMeasureAllMillis;
+    // Uptime at which the scheduled pass runs, if one is scheduled
+    private long mScheduledCheckMillis;
+
     public VisibilityTracker(@NonNull final Context context) {
         this(context,
                 new WeakHashMap<View, TrackingInfo>(10),
@@ -103,7 +154,22 @@ class VisibilityTracker {
                     return true;
                 }
             };
+            // ListView and RecyclerView report scrolling through onScrollChanged as well.
+            mOnScrollChangedListener = new OnScrollChangedListener() {
+                @Override
+                public void onScrollChanged() {
+                    mHasWindowChanged = true;
+                }
+            };
+            mOnGlobalLayoutListener = new OnGlobalLayoutListener() {
+                @Override
+                public void onGlobalLayout() {
+                    mHasWindowChanged = true;
+                }
+            };
             viewTreeObserver.addOnPreDrawListener(mOnPreDrawListener);
+            viewTreeObserver.addOnScrollChangedListener(mOnScrollChangedListener);
+            viewTreeObserver.addOnGlobalLayoutListener(mOnGlobalLayoutListener);
         }
     }
 
@@ -122,6 +188,9 @@ class VisibilityTracker {
             trackingInfo = new TrackingInfo();
             mTrackedViews.put(view, trackingInfo);
             scheduleVisibilityCheck();
+        } else if (trackingInfo.mMinViewablePercent != minPercentageViewed) {
+            // The last result was for a different threshold
+            trackingInfo.mIsMeasured = false;
         }
         trackingInfo.mMinViewablePercent = minPercentageViewed;
         trackingInfo.mAccessOrder = mAccessCounter;
@@ -166,6 +235,7 @@ class VisibilityTracker {
     /**
      * Destroy the visibility tracker, preventing it from future use.
      */
+    @SuppressWarnings("deprecation")
     void destroy() {
         clear();
         final View rootView = mRootView.get();
@@ -173,21 +243,41 @@ class VisibilityTracker {
             final ViewTreeObserver viewTreeObserver = rootView.getViewTreeObserver();
             if (viewTreeObserver.isAlive()) {
                 viewTreeObserver.removeOnPreDrawListener(mOnPreDrawListener);
+                viewTreeObserver.removeOnScrollChangedListener(mOnScrollChangedListener);
+                // removeOnGlobalLayoutListener was added in Jelly Bean
+                viewTreeObserver.removeGlobalOnLayoutListener(mOnGlobalLayoutListener);
             }
             mOnPreDrawListener = null;
+            mOnScrollChangedListener = null;
+            mOnGlobalLayoutListener = null;
         }
         mVisibilityTrackerListener = null;
     }
 
     void scheduleVisibilityCheck() {
+        scheduleVisibilityCheck(VISIBILITY_THROTTLE_MILLIS);
+    }
+
+    /**
+     * Schedules a visibility pass after the given delay, but never sooner than the throttle
+     * interval. A pass that is already scheduled earlier is kept; a later one is moved up.
+     */
+    void scheduleVisibilityCheck(final long delayMillis) {
+        final long clampedDelayMillis = Math.max(delayMillis, VISIBILITY_THROTTLE_MILLIS);
+        final long checkMillis = SystemClock.uptimeMillis() + clampedDelayMillis;
+
         // Tracking this directly instead of calling hasMessages directly because we measured that
         // this led to slightly better performance.
         if (mIsVisibilityScheduled) {
-            return;
+            if (checkMillis >= mScheduledCheckMillis) {
+                return;
+            }
+            mVisibilityHandler.removeCallbacks(mVisibilityRunnable);
         }
 
         mIsVisibilityScheduled = true;
-        mVisibilityHandler.postDelayed(mVisibilityRunnable, VISIBILITY_THROTTLE_MILLIS);
+        mScheduledCheckMillis = checkMillis;
+        mVisibilityHandler.postDelayed(mVisibilityRunnable, clampedDelayMillis);
     }
 
     class VisibilityRunnable implements Runnable {
@@ -204,11 +294,29 @@ class VisibilityTracker {
         @Override
         public void run() {
             mIsVisibilityScheduled = false;
+
+            final long now = SystemClock.uptimeMillis();
+            final boolean measureAll = mHasWindowChanged
+                    || now - mLastMeasureAllMillis >= MAX_MEASURE_INTERVAL_MILLIS;
+            if (measureAll) {
+                mHasWindowChanged = false;
+                mLastMeasureAllMillis = now;
+            }
+
             for (final Map.Entry<View, TrackingInfo> entry : mTrackedViews.entrySet()) {
                 final View view = entry.getKey();
-                final int minPercentageViewed = entry.getValue().mMinViewablePercent;
+                final TrackingInfo trackingInfo = entry.getValue();
+
+                final boolean isVisible;
+                if (!measureAll && trackingInfo.isUnchangedSinceMeasured(view)) {
+                    isVisible = trackingInfo.mWasVisible;
+                } else {
+                    isVisible = mVisibilityChecker.isVisible(view,
+                            trackingInfo.mMinViewablePercent);
+                    trackingInfo.recordMeasurement(view, isVisible);
+                }
 
-                if (mVisibilityChecker.isVisible(view, minPercentageViewed)) {
+                if (isVisible) {
                     mVisibleViews.add(view);
                 } else {
                     mInvisibleViews.add(view);
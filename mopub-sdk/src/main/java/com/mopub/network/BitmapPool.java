@@ -0,0 +1,101 @@
+package com.mopub.network;
+
+import android.annotation.TargetApi;
+import android.graphics.Bitmap;
+import android.os.Build;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+
+/**
+ * A size-bounded pool of mutable bitmaps that decodes can write into through
+ * {@link android.graphics.BitmapFactory.Options#inBitmap}.
+ *
+ * Only bitmaps that never left the decoder belong here, such as the sampled bitmap that is
+ * scaled down to its final size. Bitmaps handed to an ImageView are never returned, since there
+ * is no way to know when the view stops drawing them.
+ */
+@TargetApi(Build.VERSION_CODES.KITKAT)
+class BitmapPool {
+    private final long mMaxBytes;
+    // Least recently returned first
+    @NonNull private final LinkedList<Bitmap> mBitmaps;
+    private long mBytes;
+
+    BitmapPool(final long maxBytes) {
+        mMaxBytes = maxBytes;
+        mBitmaps = new LinkedList<Bitmap>();
+    }
+
+    /**
+     * Whether pooled bitmaps can be reused for a decode of a different size, which needs KitKat.
+     */
+    static boolean isSupported() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT;
+    }
+
+    /**
+     * Removes and returns a pooled bitmap large enough to hold an image of the given size, or
+     * null if there is none.
+     */
+    @Nullable
+    synchronized Bitmap get(final int width, final int height, @NonNull final Bitmap.Config config) {
+        final long neededBytes = (long) width * height * getBytesPerPixel(config);
+        final Iterator<Bitmap> iterator = mBitmaps.iterator();
+        while (iterator.hasNext()) {
+            final Bitmap bitmap = iterator.next();
+            if (bitmap.getAllocationByteCount() >= neededBytes) {
+                iterator.remove();
+                mBytes -= bitmap.getAllocationByteCount();
+                return bitmap;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Adds a bitmap to the pool, evicting the least recently added ones to stay within the size
+     * limit. Bitmaps that can't be reused are recycled instead.
+     */
+    synchronized void put(@NonNull final Bitmap bitmap) {
+        if (bitmap.isRecycled() || !bitmap.isMutable() || !isSupported()
+                || bitmap.getAllocationByteCount() > mMaxBytes) {
+            bitmap.recycle();
+            return;
+        }
+
+        mBitmaps.add(bitmap);
+        mBytes += bitmap.getAllocationByteCount();
+        while (mBytes > mMaxBytes) {
+            final Bitmap evicted = mBitmaps.removeFirst();
+            mBytes -= evicted.getAllocationByteCount();
+            evicted.recycle();
+        }
+    }
+
+    synchronized long getSizeBytes() {
+        return mBytes;
+    }
+
+    synchronized void clear() {
+        for (final Bitmap bitmap : mBitmaps) {
+            bitmap.recycle();
+        }
+        mBitmaps.clear();
+        mBytes = 0;
+    }
+
+    private static int getBytesPerPixel(@NonNull final Bitmap.Config config) {
+        switch (config) {
+            case ALPHA_8:
+                return 1;
+            case RGB_565:
+            case ARGB_4444:
+                return 2;
+            default:
+                return 4;
+        }
+    }
+}
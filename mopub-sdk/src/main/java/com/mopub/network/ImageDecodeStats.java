@@ -0,0 +1,63 @@
+package com.mopub.network;
+
+/**
+ * Decode time and memory counters for the images loaded through {@link MaxWidthImageLoader}.
+ * Decodes run on the {@link ImageRequestQueue}'s threads, so all access is synchronized.
+ */
+public class ImageDecodeStats {
+    private long mDecodeCount;
+    private long mFailureCount;
+    private long mTotalDecodeMillis;
+    private long mMaxDecodeMillis;
+    private long mDecodedBytes;
+    private long mPooledBitmapReuseCount;
+
+    synchronized void recordDecode(final long decodeMillis, final long bitmapBytes,
+            final boolean reusedPooledBitmap) {
+        mDecodeCount++;
+        mTotalDecodeMillis += decodeMillis;
+        mMaxDecodeMillis = Math.max(mMaxDecodeMillis, decodeMillis);
+        mDecodedBytes += bitmapBytes;
+        if (reusedPooledBitmap) {
+            mPooledBitmapReuseCount++;
+        }
+    }
+
+    synchronized void recordFailure() {
+        mFailureCount++;
+    }
+
+    public synchronized long getDecodeCount() {
+        return mDecodeCount;
+    }
+
+    public synchronized long getFailureCount() {
+        return mFailureCount;
+    }
+
+    public synchronized long getTotalDecodeMillis() {
+        return mTotalDecodeMillis;
+    }
+
+    public synchronized long getMaxDecodeMillis() {
+        return mMaxDecodeMillis;
+    }
+
+    public synchronized long getAverageDecodeMillis() {
+        return mDecodeCount == 0 ? 0 : mTotalDecodeMillis / mDecodeCount;
+    }
+
+    /**
+     * Total size of the bitmaps handed out, in bytes.
+     */
+    public synchronized long getDecodedBytes() {
+        return mDecodedBytes;
+    }
+
+    /**
+     * Number of decodes that wrote into a pooled bitmap instead of allocating a new one.
+     */
+    public synchronized long getPooledBitmapReuseCount() {
+        return mPooledBitmapReuseCount;
+    }
+}
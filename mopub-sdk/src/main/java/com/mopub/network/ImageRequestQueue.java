@@ -0,0 +1,99 @@
+package com.mopub.network;
+
+import android.graphics.Bitmap;
+import android.support.annotation.NonNull;
+
+import com.mopub.common.VisibleForTesting;
+import com.mopub.volley.Cache;
+import com.mopub.volley.ExecutorDelivery;
+import com.mopub.volley.Network;
+import com.mopub.volley.Request;
+import com.mopub.volley.RequestQueue;
+import com.mopub.volley.Response;
+import com.mopub.volley.ResponseDelivery;
+import com.mopub.volley.VolleyError;
+import com.mopub.volley.toolbox.ImageRequest;
+
+import java.util.concurrent.Executor;
+
+/**
+ * The request queue behind {@link MaxWidthImageLoader}. Volley's ImageLoader still batches
+ * requests by url and keeps the memory cache, but each ImageRequest it adds is run as a
+ * {@link MoPubImageRequest} for the same url, decoded to this queue's bounds. The result is then
+ * handed back to the ImageRequest, which reports it to the ImageLoader.
+ *
+ * This only relies on {@link RequestQueue#add}, which every version of ImageLoader goes through,
+ * rather than on the request factory that newer ImageLoaders let subclasses override.
+ */
+class ImageRequestQueue extends RequestQueue {
+    private static final int BITMAP_POOL_SIZE_BYTES = 4 * 1024 * 1024; // 4 MB
+
+    private final int mMaxImageWidth;
+    private final int mMaxImageHeight;
+    @NonNull private final BitmapPool mBitmapPool;
+    @NonNull private final ImageDecodeStats mDecodeStats;
+    // MoPubImageRequest listeners already run on the main thread, so results are passed on to
+    // the ImageRequest right away.
+    @NonNull private final ResponseDelivery mForwardingDelivery;
+
+    ImageRequestQueue(@NonNull final Cache cache, @NonNull final Network network,
+            final int threadPoolSize, final int maxImageWidth, final int maxImageHeight) {
+        super(cache, network, threadPoolSize);
+        mMaxImageWidth = maxImageWidth;
+        mMaxImageHeight = maxImageHeight;
+        mBitmapPool = new BitmapPool(BITMAP_POOL_SIZE_BYTES);
+        mDecodeStats = new ImageDecodeStats();
+        mForwardingDelivery = new ExecutorDelivery(new Executor() {
+            @Override
+            public void execute(@NonNull final Runnable runnable) {
+                runnable.run();
+            }
+        });
+    }
+
+    @Override
+    public <T> Request<T> add(final Request<T> request) {
+        if (!(request instanceof ImageRequest)) {
+            return super.add(request);
+        }
+
+        super.add(createImageRequest((ImageRequest) request));
+        return request;
+    }
+
+    @VisibleForTesting
+    @NonNull
+    MoPubImageRequest createImageRequest(@NonNull final ImageRequest imageRequest) {
+        // The ImageRequest is finished through this queue once its result is delivered.
+        imageRequest.setRequestQueue(this);
+
+        // Same config as Volley's ImageLoader
+        return new MoPubImageRequest(imageRequest.getUrl(),
+                new Response.Listener<Bitmap>() {
+                    @Override
+                    public void onResponse(final Bitmap bitmap) {
+                        mForwardingDelivery.postResponse(imageRequest,
+                                Response.success(bitmap, null));
+                    }
+                },
+                mMaxImageWidth, mMaxImageHeight, Bitmap.Config.RGB_565,
+                new Response.ErrorListener() {
+                    @Override
+                    public void onErrorResponse(final VolleyError volleyError) {
+                        mForwardingDelivery.postError(imageRequest, volleyError);
+                    }
+                },
+                mBitmapPool, mDecodeStats) {
+            // Canceling the ImageLoader's request also stops the download.
+            @Override
+            public boolean isCanceled() {
+                return super.isCanceled() || imageRequest.isCanceled();
+            }
+        };
+    }
+
+    @NonNull
+    public ImageDecodeStats getDecodeStats() {
+        return mDecodeStats;
+    }
+}
@@ -4,19 +4,50 @@ import android.annotation.TargetApi;
 import android.content.Context;
 import android.graphics.Point;
 import android.os.Build;
+import android.support.annotation.NonNull;
 import android.view.Display;
 import android.view.WindowManager;
 
 import com.mopub.volley.RequestQueue;
 
+/**
+ * Loads images no wider than the short side and no taller than the long side of the display.
+ *
+ * Every image is requested with the same bounds, so ads that share an image url share one
+ * download, one decode and one memory cache entry. Decoding is done by the
+ * {@link ImageRequestQueue} that {@link Networking} builds for this loader.
+ */
 public class MaxWidthImageLoader extends com.mopub.volley.toolbox.ImageLoader {
     private final int mMaxImageWidth;
+    private final int mMaxImageHeight;
+    @NonNull private final ImageDecodeStats mDecodeStats;
 
-
-    @TargetApi(Build.VERSION_CODES.HONEYCOMB_MR2)
     public MaxWidthImageLoader(final RequestQueue queue, final Context context, final ImageCache imageCache) {
         super(queue, imageCache);
 
+        final Point size = getDisplaySize(context);
+        mMaxImageWidth = getMaxImageWidth(size);
+        mMaxImageHeight = getMaxImageHeight(size);
+
+        // Other queues decode with Volley's ImageRequest, which records nothing.
+        mDecodeStats = queue instanceof ImageRequestQueue
+                ? ((ImageRequestQueue) queue).getDecodeStats()
+                : new ImageDecodeStats();
+    }
+
+    @Override
+    public ImageContainer get(final String requestUrl, final ImageListener listener) {
+        return super.get(requestUrl, listener, mMaxImageWidth, mMaxImageHeight);
+    }
+
+    @NonNull
+    public ImageDecodeStats getDecodeStats() {
+        return mDecodeStats;
+    }
+
+    @TargetApi(Build.VERSION_CODES.HONEYCOMB_MR2)
+    @NonNull
+    static Point getDisplaySize(@NonNull final Context context) {
         // Get Display Options
         WindowManager wm = (WindowManager) context.getSystemService(Context.WINDOW_SERVICE);
         Display display = wm.getDefaultDisplay();
@@ -26,13 +57,16 @@ public class MaxWidthImageLoader extends com.mopub.volley.toolbox.ImageLoader {
         } else {
             display.getSize(size);
         }
+        return size;
+    }
 
-        // Make our images no wider than the skinny side of the display.
-        mMaxImageWidth = Math.min(size.x, size.y);
+    // Make our images no wider than the skinny side of the display, and no taller than the long
+    // side so that very tall images don't decode at full size.
+    static int getMaxImageWidth(@NonNull final Point displaySize) {
+        return Math.min(displaySize.x, displaySize.y);
     }
 
-    @Override
-    public ImageContainer get(final String requestUrl, final ImageListener listener) {
-        return super.get(requestUrl, listener, mMaxImageWidth, 0 /* no height limit */);
+    static int getMaxImageHeight(@NonNull final Point displaySize) {
+        return Math.max(displaySize.x, displaySize.y);
     }
 }
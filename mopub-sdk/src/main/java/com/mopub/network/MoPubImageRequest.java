@@ -0,0 +1,207 @@
+package com.mopub.network;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.mopub.common.VisibleForTesting;
+import com.mopub.common.logging.MoPubLog;
+import com.mopub.volley.DefaultRetryPolicy;
+import com.mopub.volley.NetworkResponse;
+import com.mopub.volley.ParseError;
+import com.mopub.volley.Request;
+import com.mopub.volley.Response;
+import com.mopub.volley.toolbox.HttpHeaderParser;
+
+/**
+ * Downloads an image and decodes it no larger than the given bounds.
+ *
+ * Unlike Volley's ImageRequest, decodes are not serialized behind a global lock. They run on the
+ * threads of the image request queue, which bounds how many run at once. Each thread reuses its
+ * own decode buffer, and sampled bitmaps that still need scaling are decoded into and returned
+ * to a {@link BitmapPool}.
+ */
+class MoPubImageRequest extends Request<Bitmap> {
+    // Same retry policy as Volley's ImageRequest
+    private static final int IMAGE_TIMEOUT_MS = 1000;
+    private static final int IMAGE_MAX_RETRIES = 2;
+    private static final float IMAGE_BACKOFF_MULT = 2f;
+
+    private static final int DECODE_BUFFER_SIZE = 16 * 1024;
+    private static final ThreadLocal<byte[]> sDecodeBuffer = new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[DECODE_BUFFER_SIZE];
+        }
+    };
+
+    @NonNull private final Response.Listener<Bitmap> mListener;
+    private final int mMaxWidth;
+    private final int mMaxHeight;
+    @NonNull private final Bitmap.Config mConfig;
+    @Nullable private final BitmapPool mBitmapPool;
+    @NonNull private final ImageDecodeStats mDecodeStats;
+
+    MoPubImageRequest(@NonNull final String url,
+            @NonNull final Response.Listener<Bitmap> listener,
+            final int maxWidth,
+            final int maxHeight,
+            @NonNull final Bitmap.Config config,
+            @NonNull final Response.ErrorListener errorListener,
+            @Nullable final BitmapPool bitmapPool,
+            @NonNull final ImageDecodeStats decodeStats) {
+        super(Method.GET, url, errorListener);
+        setRetryPolicy(new DefaultRetryPolicy(IMAGE_TIMEOUT_MS, IMAGE_MAX_RETRIES,
+                IMAGE_BACKOFF_MULT));
+        mListener = listener;
+        mMaxWidth = maxWidth;
+        mMaxHeight = maxHeight;
+        mConfig = config;
+        mBitmapPool = bitmapPool;
+        mDecodeStats = decodeStats;
+    }
+
+    @Override
+    public Priority getPriority() {
+        return Priority.LOW;
+    }
+
+    @Override
+    protected Response<Bitmap> parseNetworkResponse(final NetworkResponse networkResponse) {
+        final Bitmap bitmap;
+        try {
+            bitmap = decode(networkResponse.data, mMaxWidth, mMaxHeight, mConfig, mBitmapPool,
+                    mDecodeStats);
+        } catch (OutOfMemoryError e) {
+            MoPubLog.d("Ran out of memory decoding image: " + getUrl(), e);
+            mDecodeStats.recordFailure();
+            return Response.error(new ParseError(e));
+        }
+
+        if (bitmap == null) {
+            return Response.error(new ParseError(networkResponse));
+        }
+        return Response.success(bitmap, HttpHeaderParser.parseCacheHeaders(networkResponse));
+    }
+
+    @Override
+    protected void deliverResponse(final Bitmap bitmap) {
+        mListener.onResponse(bitmap);
+    }
+
+    /**
+     * Decodes an image, keeping its aspect ratio and scaling it down to fit within the given
+     * bounds. A bound of 0 means no limit.
+     *
+     * @return The decoded bitmap or null if the data isn't an image.
+     */
+    @VisibleForTesting
+    @Nullable
+    static Bitmap decode(@NonNull final byte[] data,
+            final int maxWidth,
+            final int maxHeight,
+            @NonNull final Bitmap.Config config,
+            @Nullable final BitmapPool bitmapPool,
+            @NonNull final ImageDecodeStats decodeStats) {
+        final long startMillis = SystemClock.uptimeMillis();
+
+        final BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inTempStorage = sDecodeBuffer.get();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(data, 0, data.length, options);
+        final int actualWidth = options.outWidth;
+        final int actualHeight = options.outHeight;
+        if (actualWidth <= 0 || actualHeight <= 0) {
+            decodeStats.recordFailure();
+            return null;
+        }
+
+        double scale = 1;
+        if (maxWidth > 0) {
+            scale = Math.min(scale, (double) maxWidth / actualWidth);
+        }
+        if (maxHeight > 0) {
+            scale = Math.min(scale, (double) maxHeight / actualHeight);
+        }
+        final int desiredWidth = Math.max(1, (int) (actualWidth * scale));
+        final int desiredHeight = Math.max(1, (int) (actualHeight * scale));
+
+        options.inJustDecodeBounds = false;
+        options.inPreferredConfig = config;
+        options.inSampleSize =
+                findBestSampleSize(actualWidth, actualHeight, desiredWidth, desiredHeight);
+
+        final boolean canPool = bitmapPool != null && BitmapPool.isSupported();
+        Bitmap bitmap = null;
+        boolean reusedPooledBitmap = false;
+        if (canPool) {
+            // Mutable so that a sampled bitmap can go back to the pool once it has been scaled
+            options.inMutable = true;
+            final Bitmap pooledBitmap = bitmapPool.get(
+                    divideRoundingUp(actualWidth, options.inSampleSize),
+                    divideRoundingUp(actualHeight, options.inSampleSize),
+                    config);
+            if (pooledBitmap != null) {
+                options.inBitmap = pooledBitmap;
+                try {
+                    bitmap = BitmapFactory.decodeByteArray(data, 0, data.length, options);
+                } catch (IllegalArgumentException e) {
+                    // The decoder couldn't reuse this bitmap. Decode into a new one instead.
+                    bitmap = null;
+                }
+                options.inBitmap = null;
+                if (bitmap == null) {
+                    bitmapPool.put(pooledBitmap);
+                } else {
+                    reusedPooledBitmap = true;
+                }
+            }
+        }
+        if (bitmap == null) {
+            bitmap = BitmapFactory.decodeByteArray(data, 0, data.length, options);
+        }
+        if (bitmap == null) {
+            decodeStats.recordFailure();
+            return null;
+        }
+
+        if (bitmap.getWidth() > desiredWidth || bitmap.getHeight() > desiredHeight) {
+            final Bitmap scaledBitmap =
+                    Bitmap.createScaledBitmap(bitmap, desiredWidth, desiredHeight, true);
+            if (scaledBitmap != bitmap) {
+                if (canPool) {
+                    bitmapPool.put(bitmap);
+                } else {
+                    bitmap.recycle();
+                }
+                bitmap = scaledBitmap;
+            }
+        }
+
+        decodeStats.recordDecode(SystemClock.uptimeMillis() - startMillis,
+                (long) bitmap.getRowBytes() * bitmap.getHeight(), reusedPooledBitmap);
+        return bitmap;
+    }
+
+    /**
+     * Returns the largest power of 2 to sample the image by that keeps it at least as large as
+     * the desired size.
+     */
+    @VisibleForTesting
+    static int findBestSampleSize(final int actualWidth, final int actualHeight,
+            final int desiredWidth, final int desiredHeight) {
+        final double ratio = Math.min((double) actualWidth / desiredWidth,
+                (double) actualHeight / desiredHeight);
+        int sampleSize = 1;
+        while (sampleSize * 2 <= ratio) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    private static int divideRoundingUp(final int dividend, final int divisor) {
+        return (dividend + divisor - 1) / divisor;
+    }
+}
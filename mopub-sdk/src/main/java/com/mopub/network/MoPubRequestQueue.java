@@ -2,6 +2,7 @@ package com.mopub.network;
 
 import android.os.Handler;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 
 import com.mopub.common.Preconditions;
 import com.mopub.common.VisibleForTesting;
@@ -21,7 +22,9 @@ import java.util.Map;
  * the future. This is useful for our backoff policy architecture.
  *
  * We've overridden certain implementation methods but have kept the contract of the
- * original method consistent.
+ * original method consistent. Tracking requests are handed to a {@link TrackingDispatcher}, when
+ * one is set, instead of going through the network dispatchers. Cancellations are forwarded to
+ * the TrackingDispatcher as well.
  */
 public class MoPubRequestQueue extends RequestQueue {
 
@@ -30,19 +33,42 @@ public class MoPubRequestQueue extends RequestQueue {
     @NonNull
     private final Map<Request<?>, DelayedRequestHelper> mDelayedRequests;
 
+    @Nullable
+    private final TrackingDispatcher mTrackingDispatcher;
+
+    MoPubRequestQueue(Cache cache, Network network, @Nullable TrackingDispatcher trackingDispatcher) {
+        super(cache, network);
+        mDelayedRequests = new HashMap<Request<?>, DelayedRequestHelper>(CAPACITY);
+        mTrackingDispatcher = trackingDispatcher;
+    }
+
     MoPubRequestQueue(Cache cache, Network network, int threadPoolSize, ResponseDelivery delivery) {
         super(cache, network, threadPoolSize, delivery);
         mDelayedRequests = new HashMap<Request<?>, DelayedRequestHelper>(CAPACITY);
+        mTrackingDispatcher = null;
     }
 
     MoPubRequestQueue(Cache cache, Network network, int threadPoolSize) {
         super(cache, network, threadPoolSize);
         mDelayedRequests = new HashMap<Request<?>, DelayedRequestHelper>(CAPACITY);
+        mTrackingDispatcher = null;
     }
 
     MoPubRequestQueue(Cache cache, Network network) {
-        super(cache, network);
-        mDelayedRequests = new HashMap<Request<?>, DelayedRequestHelper>(CAPACITY);
+        this(cache, network, (TrackingDispatcher) null);
+    }
+
+    /**
+     * Tracking requests skip the cache and network dispatchers when a TrackingDispatcher is set;
+     * everything else is added as usual.
+     */
+    @Override
+    public <T> Request<T> add(final Request<T> request) {
+        if (mTrackingDispatcher != null && request instanceof TrackingRequest) {
+            mTrackingDispatcher.dispatch((TrackingRequest) request);
+            return request;
+        }
+        return super.add(request);
     }
 
     /**
@@ -69,7 +95,8 @@ public class MoPubRequestQueue extends RequestQueue {
     }
 
     /**
-     * Override of cancelAll method to ensure delayed requests are cancelled as well.
+     * Override of cancelAll method to ensure delayed and dispatched tracking requests are
+     * cancelled as well.
      */
     @Override
     public void cancelAll(@NonNull RequestFilter filter) {
@@ -77,6 +104,10 @@ public class MoPubRequestQueue extends RequestQueue {
 
         super.cancelAll(filter);
 
+        if (mTrackingDispatcher != null) {
+            mTrackingDispatcher.cancelAll(filter);
+        }
+
         Iterator<Map.Entry<Request<?>, DelayedRequestHelper>> iterator = mDelayedRequests.entrySet().iterator();
         while (iterator.hasNext()) {
             Map.Entry<Request<?>, DelayedRequestHelper> entry = iterator.next();
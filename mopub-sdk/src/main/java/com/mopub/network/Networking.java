@@ -2,6 +2,7 @@ package com.mopub.network;
 
 import android.content.Context;
 import android.graphics.Bitmap;
+import android.graphics.Point;
 import android.os.Looper;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
@@ -19,7 +20,6 @@ import com.mopub.volley.RequestQueue;
 import com.mopub.volley.toolbox.BasicNetwork;
 import com.mopub.volley.toolbox.DiskBasedCache;
 import com.mopub.volley.toolbox.HttpStack;
-import com.mopub.volley.toolbox.HurlStack;
 import com.mopub.volley.toolbox.ImageLoader;
 
 import java.io.File;
@@ -29,14 +29,20 @@ import javax.net.ssl.SSLSocketFactory;
 public class Networking {
     @VisibleForTesting
     static final String CACHE_DIRECTORY_NAME = "mopub-volley-cache";
+    @VisibleForTesting
+    static final String IMAGE_CACHE_DIRECTORY_NAME = "mopub-image-cache";
+    // Images download and decode on these threads, which bounds how many decodes run at once.
+    private static final int IMAGE_THREAD_POOL_SIZE = 2;
     private static final String DEFAULT_USER_AGENT = System.getProperty("http.agent");
 
     // These are volatile so that double-checked locking works.
     // See http://en.wikipedia.org/wiki/Double-checked_locking#Usage_in_Java
     // for more information.
     private volatile static MoPubRequestQueue sRequestQueue;
+    private volatile static ImageRequestQueue sImageRequestQueue;
     private volatile static String sUserAgent;
     private volatile static MaxWidthImageLoader sMaxWidthImageLoader;
+    private volatile static PlayServicesUrlRewriter sUrlRewriter;
     public static boolean sUseHttps = false;
 
     @Nullable
@@ -52,20 +58,19 @@ public class Networking {
             synchronized (Networking.class) {
                 requestQueue = sRequestQueue;
                 if (requestQueue == null) {
-
-                    // Guarantee ClientMetadata is set up.
-                    final ClientMetadata clientMetadata = ClientMetadata.getInstance(context);
-                    final HurlStack.UrlRewriter urlRewriter = new PlayServicesUrlRewriter(clientMetadata.getDeviceId(), context);
-                    final SSLSocketFactory socketFactory = CustomSSLSocketFactory.getDefault(Constants.TEN_SECONDS_MILLIS);
-
-                    final String userAgent = Networking.getUserAgent(context.getApplicationContext());
-                    HttpStack httpStack = new RequestQueueHttpStack(userAgent, urlRewriter, socketFactory);
-
-                    Network network = new BasicNetwork(httpStack);
+                    Network network = createNetwork(context);
+                    // Tracking pings bypass Volley and reuse connections per host. Billable pings
+                    // that could not be sent in a previous session go out right away.
+                    TrackingDispatcher trackingDispatcher = new TrackingDispatcher(
+                            Networking.getUserAgent(context.getApplicationContext()),
+                            getUrlRewriter(context), createSocketFactory(),
+                            new TrackingOutbox(context, TrackingOutbox.DEFAULT_TTL_MILLIS),
+                            ClientMetadata.getInstance(context));
+                    trackingDispatcher.flush();
                     File volleyCacheDir = new File(context.getCacheDir().getPath() + File.separator
                             + CACHE_DIRECTORY_NAME);
                     Cache cache = new DiskBasedCache(volleyCacheDir, (int) DeviceUtils.diskCacheSizeBytes(volleyCacheDir, Constants.TEN_MB));
-                    requestQueue = new MoPubRequestQueue(cache, network);
+                    requestQueue = new MoPubRequestQueue(cache, network, trackingDispatcher);
                     sRequestQueue = requestQueue;
                     requestQueue.start();
                 }
@@ -75,6 +80,79 @@ public class Networking {
         return requestQueue;
     }
 
+    /**
+     * Images go through their own queue, so that their disk cache has its own budget and doesn't
+     * evict other responses, and so that decoding them never holds up ad requests.
+     */
+    @NonNull
+    private static ImageRequestQueue getImageRequestQueue(@NonNull Context context) {
+        ImageRequestQueue imageRequestQueue = sImageRequestQueue;
+        // Double-check locking to initialize.
+        if (imageRequestQueue == null) {
+            synchronized (Networking.class) {
+                imageRequestQueue = sImageRequestQueue;
+                if (imageRequestQueue == null) {
+                    Network network = createNetwork(context);
+                    File imageCacheDir = new File(context.getCacheDir().getPath() + File.separator
+                            + IMAGE_CACHE_DIRECTORY_NAME);
+                    Cache cache = new DiskBasedCache(imageCacheDir, (int) DeviceUtils.diskCacheSizeBytes(imageCacheDir, Constants.TEN_MB));
+                    final Point displaySize = MaxWidthImageLoader.getDisplaySize(context);
+                    imageRequestQueue = new ImageRequestQueue(cache, network, IMAGE_THREAD_POOL_SIZE,
+                            MaxWidthImageLoader.getMaxImageWidth(displaySize),
+                            MaxWidthImageLoader.getMaxImageHeight(displaySize));
+                    sImageRequestQueue = imageRequestQueue;
+                    imageRequestQueue.start();
+                }
+            }
+        }
+
+        return imageRequestQueue;
+    }
+
+    /**
+     * Both request queues and the tracking dispatcher share this rewriter, so the advertising
+     * info is only fetched once.
+     */
+    @NonNull
+    private static PlayServicesUrlRewriter getUrlRewriter(@NonNull Context context) {
+        PlayServicesUrlRewriter urlRewriter = sUrlRewriter;
+        // Double-check locking to initialize.
+        if (urlRewriter == null) {
+            synchronized (Networking.class) {
+                urlRewriter = sUrlRewriter;
+                if (urlRewriter == null) {
+                    // Guarantee ClientMetadata is set up.
+                    final ClientMetadata clientMetadata = ClientMetadata.getInstance(context);
+                    urlRewriter = new PlayServicesUrlRewriter(clientMetadata.getDeviceId(), context);
+                    urlRewriter.prefetch();
+                    sUrlRewriter = urlRewriter;
+                }
+            }
+        }
+
+        return urlRewriter;
+    }
+
+    @NonNull
+    private static SSLSocketFactory createSocketFactory() {
+        return CustomSSLSocketFactory.getDefault(Constants.TEN_SECONDS_MILLIS);
+    }
+
+    /**
+     * Both request queues go through networks built here, and the tracking dispatcher uses the
+     * same rewriter, socket factory and user agent helpers, so they send identical requests.
+     */
+    @NonNull
+    private static Network createNetwork(@NonNull Context context) {
+        final PlayServicesUrlRewriter urlRewriter = getUrlRewriter(context);
+        final SSLSocketFactory socketFactory = createSocketFactory();
+
+        final String userAgent = Networking.getUserAgent(context.getApplicationContext());
+        HttpStack httpStack = new RequestQueueHttpStack(userAgent, urlRewriter, socketFactory);
+
+        return new BasicNetwork(httpStack);
+    }
+
     @NonNull
     public static ImageLoader getImageLoader(@NonNull Context context) {
         MaxWidthImageLoader imageLoader = sMaxWidthImageLoader;
@@ -83,7 +161,7 @@ public class Networking {
             synchronized (Networking.class) {
                 imageLoader = sMaxWidthImageLoader;
                 if (imageLoader == null) {
-                    RequestQueue queue = getRequestQueue(context);
+                    RequestQueue queue = getImageRequestQueue(context);
                     int cacheSize = DeviceUtils.memoryCacheSizeBytes(context);
                     final LruCache<String, Bitmap> imageCache = new LruCache<String, Bitmap>(cacheSize) {
                         @Override
@@ -161,8 +239,10 @@ public class Networking {
     @VisibleForTesting
     public static synchronized void clearForTesting() {
         sRequestQueue = null;
+        sImageRequestQueue = null;
         sMaxWidthImageLoader = null;
         sUserAgent = null;
+        sUrlRewriter = null;
     }
 
     @VisibleForTesting
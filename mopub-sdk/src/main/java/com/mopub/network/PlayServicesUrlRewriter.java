@@ -2,13 +2,18 @@ package com.mopub.network;
 
 import android.content.Context;
 import android.net.Uri;
+import android.support.annotation.NonNull;
 
-import com.mopub.common.GpsHelper;
+import com.mopub.common.AdvertisingInfoProvider;
+import com.mopub.common.VisibleForTesting;
 import com.mopub.volley.toolbox.HurlStack;
 
 /**
  * Url Rewriter that replaces MoPub templates for Google Advertising ID and Do Not Track settings
  * when a request is queued for dispatch by the HurlStack in Volley.
+ *
+ * The advertising info comes from an {@link AdvertisingInfoProvider}, so only the first rewrite
+ * pays for the Google Play Services lookup.
  */
 public class PlayServicesUrlRewriter implements HurlStack.UrlRewriter {
     private static final String IFA_PREFIX = "ifa:";
@@ -16,36 +21,62 @@ public class PlayServicesUrlRewriter implements HurlStack.UrlRewriter {
     public static final String UDID_TEMPLATE = "mp_tmpl_advertising_id";
     public static final String DO_NOT_TRACK_TEMPLATE = "mp_tmpl_do_not_track";
 
-    private final String deviceIdentifier;
-    private final Context applicationContext;
+    @NonNull private final AdvertisingInfoProvider mAdvertisingInfoProvider;
 
     public PlayServicesUrlRewriter(String deviceId, Context context) {
-        deviceIdentifier = deviceId;
-        applicationContext = context.getApplicationContext();
+        this(new AdvertisingInfoProvider(deviceId, context));
+    }
+
+    @VisibleForTesting
+    PlayServicesUrlRewriter(@NonNull final AdvertisingInfoProvider advertisingInfoProvider) {
+        mAdvertisingInfoProvider = advertisingInfoProvider;
+    }
+
+    /**
+     * Starts resolving the advertising info in the background so the first request does not
+     * have to wait for it.
+     */
+    public void prefetch() {
+        mAdvertisingInfoProvider.refreshAsync();
     }
 
     @Override
     public String rewriteUrl(final String url) {
-        if (!url.contains(UDID_TEMPLATE) && !url.contains(DO_NOT_TRACK_TEMPLATE)) {
+        final int udidIndex = url.indexOf(UDID_TEMPLATE);
+        final int doNotTrackIndex = url.indexOf(DO_NOT_TRACK_TEMPLATE);
+        if (udidIndex < 0 && doNotTrackIndex < 0) {
             return url;
         }
 
-        String prefix = "";
-        GpsHelper.AdvertisingInfo advertisingInfo = new GpsHelper.AdvertisingInfo(deviceIdentifier, false);
+        final AdvertisingInfoProvider.Snapshot snapshot = mAdvertisingInfoProvider.get();
+        final String prefix = snapshot.isPlayServicesId ? IFA_PREFIX : "";
 
-        // Attempt to fetch the Google Play Services fields
-        if (GpsHelper.isPlayServicesAvailable(applicationContext)) {
-            // We can do this synchronously because urlRewrite happens in a background thread.
-            GpsHelper.AdvertisingInfo playServicesAdInfo = GpsHelper.fetchAdvertisingInfoSync(applicationContext);
-            if (playServicesAdInfo != null) {
-                prefix = IFA_PREFIX;
-                advertisingInfo = playServicesAdInfo;
+        // Fill in the templates
+        return replaceTemplates(url, udidIndex, doNotTrackIndex,
+                Uri.encode(prefix + snapshot.advertisingInfo.advertisingId),
+                snapshot.advertisingInfo.limitAdTracking ? "1" : "0");
+    }
+
+    /**
+     * Replaces every occurrence of both templates while copying the url once.
+     */
+    @NonNull
+    @VisibleForTesting
+    static String replaceTemplates(@NonNull final String url, int udidIndex, int doNotTrackIndex,
+            @NonNull final String udid, @NonNull final String doNotTrack) {
+        final StringBuilder builder = new StringBuilder(url.length() + udid.length());
+        int copyFrom = 0;
+        while (udidIndex >= 0 || doNotTrackIndex >= 0) {
+            if (doNotTrackIndex < 0 || (udidIndex >= 0 && udidIndex < doNotTrackIndex)) {
+                builder.append(url, copyFrom, udidIndex).append(udid);
+                copyFrom = udidIndex + UDID_TEMPLATE.length();
+                udidIndex = url.indexOf(UDID_TEMPLATE, copyFrom);
+            } else {
+                builder.append(url, copyFrom, doNotTrackIndex).append(doNotTrack);
+                copyFrom = doNotTrackIndex + DO_NOT_TRACK_TEMPLATE.length();
+                doNotTrackIndex = url.indexOf(DO_NOT_TRACK_TEMPLATE, copyFrom);
             }
         }
-
-        // Fill in the templates
-        String toReturn = url.replace(UDID_TEMPLATE, Uri.encode(prefix + advertisingInfo.advertisingId));
-        toReturn = toReturn.replace(DO_NOT_TRACK_TEMPLATE, advertisingInfo.limitAdTracking ? "1" : "0");
-        return toReturn;
+        return builder.append(url, copyFrom, url.length()).toString();
     }
 }
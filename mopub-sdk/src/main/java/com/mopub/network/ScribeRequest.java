@@ -1,10 +1,13 @@
 package com.mopub.network;
 
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 
 import com.mopub.common.VisibleForTesting;
 import com.mopub.common.event.BaseEvent;
+import com.mopub.common.event.CompactEventSerializer;
 import com.mopub.common.event.EventSerializer;
+import com.mopub.volley.AuthFailureError;
 import com.mopub.volley.DefaultRetryPolicy;
 import com.mopub.volley.NetworkResponse;
 import com.mopub.volley.Request;
@@ -13,6 +16,7 @@ import com.mopub.volley.toolbox.HttpHeaderParser;
 
 import org.json.JSONArray;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -31,17 +35,51 @@ public class ScribeRequest extends Request<Void> {
     }
 
     @NonNull private final List<BaseEvent> mEvents;
-    @NonNull private final EventSerializer mEventSerializer;
+    @Nullable private final EventSerializer mEventSerializer;
+    @Nullable private final CompactEventSerializer mCompactEventSerializer;
+    @Nullable private final List<String> mSerializedEvents;
     @NonNull private final ScribeRequest.Listener mListener;
 
     public ScribeRequest(@NonNull String url,
             @NonNull List<BaseEvent> events,
             @NonNull EventSerializer eventSerializer,
             @NonNull Listener listener) {
+        this(url, events, eventSerializer, null, null, listener);
+    }
+
+    /**
+     * Creates a request that posts the events as a single gzipped binary body instead of a JSON
+     * form parameter. See {@link CompactEventSerializer}.
+     */
+    public ScribeRequest(@NonNull String url,
+            @NonNull List<BaseEvent> events,
+            @NonNull CompactEventSerializer compactEventSerializer,
+            @NonNull Listener listener) {
+        this(url, events, null, compactEventSerializer, null, listener);
+    }
+
+    /**
+     * Creates a request for events that have already been serialized, one JSON object per
+     * String, for example events read back from disk.
+     */
+    public ScribeRequest(@NonNull String url,
+            @NonNull List<String> serializedEvents,
+            @NonNull Listener listener) {
+        this(url, Collections.<BaseEvent>emptyList(), null, null, serializedEvents, listener);
+    }
+
+    private ScribeRequest(@NonNull String url,
+            @NonNull List<BaseEvent> events,
+            @Nullable EventSerializer eventSerializer,
+            @Nullable CompactEventSerializer compactEventSerializer,
+            @Nullable List<String> serializedEvents,
+            @NonNull Listener listener) {
         super(Method.POST, url, listener);
 
         mEvents = events;
         mEventSerializer = eventSerializer;
+        mCompactEventSerializer = compactEventSerializer;
+        mSerializedEvents = serializedEvents;
         mListener = listener;
 
         setShouldCache(false);
@@ -55,12 +93,47 @@ public class ScribeRequest extends Request<Void> {
      */
     @Override
     protected Map<String,String> getParams() {
-        JSONArray jsonArray = mEventSerializer.serializeAsJson(mEvents);
         Map<String,String> params = new HashMap<String, String>();
-        params.put("log", jsonArray.toString());
+        if (mSerializedEvents != null) {
+            params.put("log", joinAsJsonArray(mSerializedEvents));
+        } else {
+            JSONArray jsonArray = mEventSerializer.serializeAsJson(mEvents);
+            params.put("log", jsonArray.toString());
+        }
         return params;
     }
 
+    /**
+     * This is method runs on the background thread
+     */
+    @Override
+    public byte[] getBody() throws AuthFailureError {
+        if (mCompactEventSerializer != null) {
+            return mCompactEventSerializer.serialize(mEvents);
+        }
+        return super.getBody();
+    }
+
+    @Override
+    public String getBodyContentType() {
+        if (mCompactEventSerializer != null) {
+            return CompactEventSerializer.CONTENT_TYPE;
+        }
+        return super.getBodyContentType();
+    }
+
+    @NonNull
+    private static String joinAsJsonArray(@NonNull List<String> serializedEvents) {
+        final StringBuilder stringBuilder = new StringBuilder("[");
+        for (int i = 0; i < serializedEvents.size(); i++) {
+            if (i > 0) {
+                stringBuilder.append(',');
+            }
+            stringBuilder.append(serializedEvents.get(i));
+        }
+        return stringBuilder.append(']').toString();
+    }
+
     @Override
     protected Response<Void> parseNetworkResponse(NetworkResponse networkResponse) {
         // NOTE: We never get status codes outside of {[200, 299], 304}. Those errors are sent to the
@@ -79,5 +152,11 @@ public class ScribeRequest extends Request<Void> {
     public List<BaseEvent> getEvents() {
         return mEvents;
     }
-}
 
+    @Nullable
+    @Deprecated
+    @VisibleForTesting
+    public List<String> getSerializedEvents() {
+        return mSerializedEvents;
+    }
+}
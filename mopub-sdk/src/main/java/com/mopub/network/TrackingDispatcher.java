@@ -0,0 +1,444 @@
+package com.mopub.network;
+
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.mopub.common.ClientMetadata;
+import com.mopub.common.Constants;
+import com.mopub.common.Preconditions;
+import com.mopub.common.VisibleForTesting;
+import com.mopub.common.logging.MoPubLog;
+import com.mopub.common.util.ResponseHeader;
+import com.mopub.common.util.Streams;
+import com.mopub.volley.NoConnectionError;
+import com.mopub.volley.RequestQueue;
+import com.mopub.volley.TimeoutError;
+import com.mopub.volley.VolleyError;
+import com.mopub.volley.toolbox.HurlStack;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLSocketFactory;
+
+/**
+ * Fires {@link TrackingRequest}s outside of the Volley pipeline.
+ *
+ * Tracking responses are discarded, so each ping only waits for the status line and headers and
+ * drains the (normally empty) body so that the connection goes back to the keep-alive pool.
+ * Requests are grouped by host and each host gets at most {@link #MAX_CONNECTIONS_PER_HOST}
+ * workers, which drain that host's queue back to back over the same persistent connections.
+ * Failed pings are retried with exponential backoff and jitter.
+ *
+ * Billable pings are also recorded in a {@link TrackingOutbox} before they are sent. Those that
+ * can't be delivered stay there and are flushed in batches once the device reports connectivity.
+ *
+ * Dispatched requests can be canceled through {@link #cancelAll}, which
+ * {@link MoPubRequestQueue} forwards its own cancelAll calls to.
+ */
+class TrackingDispatcher {
+    @VisibleForTesting static final int MAX_CONNECTIONS_PER_HOST = 2;
+    @VisibleForTesting static final int MAX_RETRIES = 2;
+    private static final int THREAD_POOL_SIZE = 4;
+    private static final long BASE_RETRY_DELAY_MILLIS = 1000;
+    // Larger bodies are cheaper to abandon along with the connection than to read.
+    private static final int MAX_DRAIN_BYTES = 4 * 1024;
+
+    @NonNull private final String mUserAgent;
+    @Nullable private final HurlStack.UrlRewriter mUrlRewriter;
+    @Nullable private final SSLSocketFactory mSslSocketFactory;
+    @Nullable private final TrackingOutbox mTrackingOutbox;
+    @Nullable private final ClientMetadata mClientMetadata;
+    @NonNull private final ScheduledThreadPoolExecutor mExecutor;
+    @NonNull private final Executor mDelivery;
+    private final long mBaseRetryDelayMillis;
+    @NonNull private final Random mRandom;
+
+    // Guarded by itself.
+    @NonNull private final Map<String, HostQueue> mHostQueues;
+    // Dispatched requests that haven't finished, including those waiting for a retry. Guarded by
+    // mHostQueues.
+    @NonNull private final Set<TrackingRequest> mActiveRequests;
+
+    private static class HostQueue {
+        @NonNull final ArrayDeque<Attempt> mPending = new ArrayDeque<Attempt>();
+        int mActiveWorkers;
+    }
+
+    private static class Attempt {
+        @NonNull final TrackingRequest mRequest;
+        @NonNull final String mHost;
+        int mRetryCount;
+
+        Attempt(@NonNull final TrackingRequest request, @NonNull final String host) {
+            mRequest = request;
+            mHost = host;
+        }
+    }
+
+    TrackingDispatcher(@NonNull final String userAgent,
+            @Nullable final HurlStack.UrlRewriter urlRewriter,
+            @Nullable final SSLSocketFactory sslSocketFactory,
+            @Nullable final TrackingOutbox trackingOutbox,
+            @Nullable final ClientMetadata clientMetadata) {
+        this(userAgent, urlRewriter, sslSocketFactory, trackingOutbox, clientMetadata, new Executor() {
+            private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+            @Override
+            public void execute(@NonNull final Runnable runnable) {
+                mHandler.post(runnable);
+            }
+        }, BASE_RETRY_DELAY_MILLIS);
+    }
+
+    @VisibleForTesting
+    TrackingDispatcher(@NonNull final String userAgent,
+            @Nullable final HurlStack.UrlRewriter urlRewriter,
+            @Nullable final SSLSocketFactory sslSocketFactory,
+            @Nullable final TrackingOutbox trackingOutbox,
+            @Nullable final ClientMetadata clientMetadata,
+            @NonNull final Executor delivery,
+            final long baseRetryDelayMillis) {
+        Preconditions.checkNotNull(userAgent);
+        Preconditions.checkNotNull(delivery);
+
+        mUserAgent = userAgent;
+        mUrlRewriter = urlRewriter;
+        mSslSocketFactory = sslSocketFactory;
+        mTrackingOutbox = trackingOutbox;
+        mClientMetadata = clientMetadata;
+        mDelivery = delivery;
+        mBaseRetryDelayMillis = baseRetryDelayMillis;
+        mRandom = new Random();
+        mHostQueues = new HashMap<String, HostQueue>();
+        mActiveRequests = new HashSet<TrackingRequest>();
+
+        mExecutor = new ScheduledThreadPoolExecutor(THREAD_POOL_SIZE);
+        mExecutor.setKeepAliveTime(60, TimeUnit.SECONDS);
+        mExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Queues the request behind any other pings to the same host. Results are delivered to the
+     * request's listener on the delivery executor, which is the main thread by default.
+     */
+    void dispatch(@NonNull final TrackingRequest request) {
+        Preconditions.checkNotNull(request);
+
+        synchronized (mHostQueues) {
+            mActiveRequests.add(request);
+        }
+
+        final TrackingOutbox trackingOutbox = mTrackingOutbox;
+        if (trackingOutbox == null || !request.isDurable()) {
+            enqueue(newAttempt(request));
+            return;
+        }
+
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (trackingOutbox.record(request.getUrl())) {
+                    enqueue(newAttempt(request));
+                } else {
+                    MoPubLog.d("Tracking url is already being sent: " + request.getUrl());
+                    finish(request);
+                }
+                // A new billable ping is a good moment to retry older ones.
+                flushOutbox();
+            }
+        });
+    }
+
+    /**
+     * Cancels every dispatched request that matches the filter and hasn't finished yet. Canceled
+     * requests are not sent if they haven't been already, and their listeners are not called.
+     */
+    void cancelAll(@NonNull final RequestQueue.RequestFilter filter) {
+        Preconditions.checkNotNull(filter);
+
+        synchronized (mHostQueues) {
+            for (final TrackingRequest request : mActiveRequests) {
+                if (filter.apply(request)) {
+                    request.cancel();
+                }
+            }
+        }
+    }
+
+    /**
+     * Sends the next batch of undelivered billable pings if the device has connectivity.
+     */
+    void flush() {
+        if (mTrackingOutbox == null) {
+            return;
+        }
+
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                flushOutbox();
+            }
+        });
+    }
+
+    private void flushOutbox() {
+        if (mTrackingOutbox == null
+                || (mClientMetadata != null && !mClientMetadata.isNetworkAvailable())) {
+            return;
+        }
+
+        final List<String> batch = mTrackingOutbox.takeBatch();
+        for (final String url : batch) {
+            enqueue(newAttempt(new TrackingRequest(url, null, true)));
+        }
+    }
+
+    @NonNull
+    private static Attempt newAttempt(@NonNull final TrackingRequest request) {
+        final String host = Uri.parse(request.getUrl()).getHost();
+        return new Attempt(request, host == null ? "" : host);
+    }
+
+    private void enqueue(@NonNull final Attempt attempt) {
+        synchronized (mHostQueues) {
+            HostQueue hostQueue = mHostQueues.get(attempt.mHost);
+            if (hostQueue == null) {
+                hostQueue = new HostQueue();
+                mHostQueues.put(attempt.mHost, hostQueue);
+            }
+            hostQueue.mPending.add(attempt);
+
+            if (hostQueue.mActiveWorkers >= MAX_CONNECTIONS_PER_HOST) {
+                return;
+            }
+            hostQueue.mActiveWorkers++;
+        }
+
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                drainHost(attempt.mHost);
+            }
+        });
+    }
+
+    private void drainHost(@NonNull final String host) {
+        while (true) {
+            final Attempt attempt;
+            synchronized (mHostQueues) {
+                final HostQueue hostQueue = mHostQueues.get(host);
+                attempt = hostQueue.mPending.poll();
+                if (attempt == null) {
+                    hostQueue.mActiveWorkers--;
+                    if (hostQueue.mActiveWorkers == 0) {
+                        mHostQueues.remove(host);
+                    }
+                    return;
+                }
+            }
+            perform(attempt);
+        }
+    }
+
+    private void perform(@NonNull final Attempt attempt) {
+        if (!send(attempt)) {
+            finish(attempt.mRequest);
+        }
+    }
+
+    private void finish(@NonNull final TrackingRequest request) {
+        synchronized (mHostQueues) {
+            mActiveRequests.remove(request);
+        }
+    }
+
+    /**
+     * @return Whether the request was scheduled to be retried.
+     */
+    private boolean send(@NonNull final Attempt attempt) {
+        final TrackingRequest request = attempt.mRequest;
+        if (request.isCanceled()) {
+            onUndelivered(request);
+            return false;
+        }
+
+        HttpURLConnection connection = null;
+        try {
+            final String url = mUrlRewriter == null
+                    ? request.getUrl()
+                    : mUrlRewriter.rewriteUrl(request.getUrl());
+            connection = openConnection(url);
+
+            final int statusCode = connection.getResponseCode();
+            releaseConnection(connection, statusCode);
+
+            if (statusCode >= 500) {
+                if (retry(attempt)) {
+                    return true;
+                }
+                onUndelivered(request);
+            } else {
+                onDelivered(request, statusCode == HttpURLConnection.HTTP_OK);
+            }
+            deliverStatusCode(request, statusCode);
+        } catch (IOException e) {
+            if (connection != null) {
+                connection.disconnect();
+            }
+            if (retry(attempt)) {
+                return true;
+            }
+            onUndelivered(request);
+            deliverError(request, e instanceof SocketTimeoutException
+                    ? new TimeoutError()
+                    : new NoConnectionError(e));
+        } catch (RuntimeException e) {
+            // Malformed urls and similar are not worth retrying.
+            MoPubLog.d("Unable to hit tracking endpoint: " + request.getUrl(), e);
+            onDelivered(request, false);
+            deliverError(request, new VolleyError(e));
+        }
+        return false;
+    }
+
+    /**
+     * The server answered, so a billable ping must not be sent again, even if it was rejected.
+     */
+    private void onDelivered(@NonNull final TrackingRequest request, final boolean isSuccess) {
+        if (mTrackingOutbox == null || !request.isDurable()) {
+            return;
+        }
+
+        mTrackingOutbox.remove(request.getUrl());
+        if (isSuccess) {
+            // Connectivity is back; keep draining the outbox.
+            flushOutbox();
+        }
+    }
+
+    private void onUndelivered(@NonNull final TrackingRequest request) {
+        if (mTrackingOutbox != null && request.isDurable()) {
+            mTrackingOutbox.onFailure(request.getUrl());
+        }
+    }
+
+    @NonNull
+    private HttpURLConnection openConnection(@NonNull final String url) throws IOException {
+        final HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setRequestProperty(ResponseHeader.USER_AGENT.getKey(), mUserAgent);
+        connection.setConnectTimeout(Constants.TEN_SECONDS_MILLIS);
+        connection.setReadTimeout(Constants.TEN_SECONDS_MILLIS);
+        connection.setUseCaches(false);
+
+        if (mSslSocketFactory != null && connection instanceof HttpsURLConnection) {
+            ((HttpsURLConnection) connection).setSSLSocketFactory(mSslSocketFactory);
+        }
+        return connection;
+    }
+
+    /**
+     * Reads past a small body so the connection can be reused, and abandons the connection
+     * otherwise.
+     */
+    private static void releaseConnection(@NonNull final HttpURLConnection connection,
+            final int statusCode) {
+        if (connection.getContentLength() > MAX_DRAIN_BYTES) {
+            connection.disconnect();
+            return;
+        }
+
+        InputStream inputStream = null;
+        try {
+            inputStream = statusCode >= 400
+                    ? connection.getErrorStream()
+                    : connection.getInputStream();
+            if (inputStream == null) {
+                return;
+            }
+
+            final byte[] buffer = new byte[512];
+            int drained = 0;
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                drained += read;
+                if (drained > MAX_DRAIN_BYTES) {
+                    connection.disconnect();
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            connection.disconnect();
+        } finally {
+            Streams.closeStream(inputStream);
+        }
+    }
+
+    private boolean retry(@NonNull final Attempt attempt) {
+        if (attempt.mRetryCount >= MAX_RETRIES || attempt.mRequest.isCanceled()) {
+            return false;
+        }
+
+        final long delayMillis =
+                getRetryDelayMillis(attempt.mRetryCount, mBaseRetryDelayMillis, mRandom);
+        attempt.mRetryCount++;
+        mExecutor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                enqueue(attempt);
+            }
+        }, delayMillis, TimeUnit.MILLISECONDS);
+        return true;
+    }
+
+    /**
+     * Exponential backoff where the delay is drawn from the upper half of the window, so pings
+     * that failed together do not all retry at the same moment.
+     */
+    @VisibleForTesting
+    static long getRetryDelayMillis(final int retryCount, final long baseDelayMillis,
+            @NonNull final Random random) {
+        final long windowMillis = baseDelayMillis << retryCount;
+        return windowMillis / 2 + (long) (random.nextDouble() * (windowMillis / 2));
+    }
+
+    private void deliverStatusCode(@NonNull final TrackingRequest request, final int statusCode) {
+        mDelivery.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (!request.isCanceled()) {
+                    request.deliverStatusCode(statusCode);
+                }
+            }
+        });
+    }
+
+    private void deliverError(@NonNull final TrackingRequest request,
+            @NonNull final VolleyError volleyError) {
+        mDelivery.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (!request.isCanceled()) {
+                    request.deliverError(volleyError);
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,235 @@
+package com.mopub.network;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.mopub.common.Preconditions;
+import com.mopub.common.VisibleForTesting;
+import com.mopub.common.logging.MoPubLog;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Persistent record of billable tracking urls (impressions and clicks) that have not been
+ * delivered yet, so they survive losing connectivity or the process being killed.
+ *
+ * Each url is stored once along with its creation time and retry count. Urls leave the outbox
+ * when they are delivered, rejected by the server, older than the TTL or out of retries. All
+ * methods touch SharedPreferences and should be called off the main thread.
+ */
+class TrackingOutbox {
+    @VisibleForTesting static final String PREFERENCE_NAME = "mopubTrackingOutbox";
+    static final long DEFAULT_TTL_MILLIS = 24 * 60 * 60 * 1000;
+    @VisibleForTesting static final int BATCH_SIZE = 10;
+    @VisibleForTesting static final int MAX_RETRIES = 10;
+
+    private static final String VALUE_SEPARATOR = ":";
+
+    @VisibleForTesting
+    static class Entry {
+        final long mCreatedAtMillis;
+        int mRetryCount;
+        boolean mIsInFlight;
+
+        Entry(final long createdAtMillis, final int retryCount) {
+            mCreatedAtMillis = createdAtMillis;
+            mRetryCount = retryCount;
+        }
+    }
+
+    @NonNull private final Context mContext;
+    private final long mTtlMillis;
+
+    // Lazily loaded so that nothing reads from disk on the thread that creates the outbox.
+    // Insertion ordered, so batches go out oldest first.
+    @Nullable private SharedPreferences mPreferences;
+    @Nullable private LinkedHashMap<String, Entry> mEntries;
+
+    TrackingOutbox(@NonNull final Context context, final long ttlMillis) {
+        Preconditions.checkNotNull(context);
+
+        mContext = context.getApplicationContext();
+        mTtlMillis = ttlMillis;
+    }
+
+    /**
+     * Records a url that is about to be sent.
+     *
+     * @return false if the same url is already being sent, in which case it must not be sent
+     * again.
+     */
+    synchronized boolean record(@NonNull final String url) {
+        final Map<String, Entry> entries = getEntries();
+        Entry entry = entries.get(url);
+        if (entry != null) {
+            if (entry.mIsInFlight) {
+                return false;
+            }
+        } else {
+            entry = new Entry(System.currentTimeMillis(), 0);
+            entries.put(url, entry);
+            write(url, entry);
+        }
+        entry.mIsInFlight = true;
+        return true;
+    }
+
+    /**
+     * Removes a url that was delivered or permanently rejected. This is committed before
+     * returning so that a later flush can never send it again.
+     */
+    synchronized void remove(@NonNull final String url) {
+        if (getEntries().remove(url) != null) {
+            getPreferences().edit().remove(url).commit();
+        }
+    }
+
+    /**
+     * Keeps a url that could not be delivered for a later flush, unless it is out of retries.
+     */
+    synchronized void onFailure(@NonNull final String url) {
+        final Entry entry = getEntries().get(url);
+        if (entry == null) {
+            return;
+        }
+
+        entry.mIsInFlight = false;
+        entry.mRetryCount++;
+        if (entry.mRetryCount > MAX_RETRIES) {
+            remove(url);
+            return;
+        }
+        write(url, entry);
+    }
+
+    /**
+     * Drops expired urls and returns the oldest ones that are not being sent, marked as in
+     * flight, keeping at most {@link #BATCH_SIZE} in flight.
+     */
+    @NonNull
+    synchronized List<String> takeBatch() {
+        final long now = System.currentTimeMillis();
+        final List<String> batch = new ArrayList<String>();
+        final List<String> expired = new ArrayList<String>();
+
+        int inFlight = 0;
+        for (final Entry entry : getEntries().values()) {
+            if (entry.mIsInFlight) {
+                inFlight++;
+            }
+        }
+
+        final Iterator<Map.Entry<String, Entry>> iterator = getEntries().entrySet().iterator();
+        while (iterator.hasNext() && inFlight + batch.size() < BATCH_SIZE) {
+            final Map.Entry<String, Entry> mapEntry = iterator.next();
+            final Entry entry = mapEntry.getValue();
+            if (entry.mIsInFlight) {
+                continue;
+            }
+            if (now - entry.mCreatedAtMillis >= mTtlMillis) {
+                expired.add(mapEntry.getKey());
+                continue;
+            }
+            entry.mIsInFlight = true;
+            batch.add(mapEntry.getKey());
+        }
+
+        for (final String url : expired) {
+            MoPubLog.d("Dropping expired tracking url: " + url);
+            remove(url);
+        }
+        return batch;
+    }
+
+    synchronized boolean isEmpty() {
+        return getEntries().isEmpty();
+    }
+
+    @Nullable
+    @VisibleForTesting
+    synchronized Entry getEntry(@NonNull final String url) {
+        return getEntries().get(url);
+    }
+
+    @NonNull
+    private SharedPreferences getPreferences() {
+        if (mPreferences == null) {
+            mPreferences = mContext.getSharedPreferences(PREFERENCE_NAME, Context.MODE_PRIVATE);
+        }
+        return mPreferences;
+    }
+
+    @NonNull
+    private Map<String, Entry> getEntries() {
+        if (mEntries != null) {
+            return mEntries;
+        }
+
+        final List<String> urls = new ArrayList<String>();
+        final Map<String, Entry> parsed = new HashMap<String, Entry>();
+        final List<String> malformed = new ArrayList<String>();
+        for (final Map.Entry<String, ?> storedEntry : getPreferences().getAll().entrySet()) {
+            final Entry entry = parse(storedEntry.getValue());
+            if (entry == null) {
+                malformed.add(storedEntry.getKey());
+            } else {
+                urls.add(storedEntry.getKey());
+                parsed.put(storedEntry.getKey(), entry);
+            }
+        }
+
+        // Preferences come back unordered; restore oldest first.
+        Collections.sort(urls, new Comparator<String>() {
+            @Override
+            public int compare(final String lhs, final String rhs) {
+                final long lhsCreated = parsed.get(lhs).mCreatedAtMillis;
+                final long rhsCreated = parsed.get(rhs).mCreatedAtMillis;
+                return lhsCreated < rhsCreated ? -1 : (lhsCreated == rhsCreated ? 0 : 1);
+            }
+        });
+        mEntries = new LinkedHashMap<String, Entry>();
+        for (final String url : urls) {
+            mEntries.put(url, parsed.get(url));
+        }
+        if (!malformed.isEmpty()) {
+            final SharedPreferences.Editor editor = getPreferences().edit();
+            for (final String url : malformed) {
+                editor.remove(url);
+            }
+            editor.commit();
+        }
+        return mEntries;
+    }
+
+    private void write(@NonNull final String url, @NonNull final Entry entry) {
+        getPreferences().edit()
+                .putString(url, entry.mCreatedAtMillis + VALUE_SEPARATOR + entry.mRetryCount)
+                .commit();
+    }
+
+    @Nullable
+    private static Entry parse(@Nullable final Object value) {
+        if (!(value instanceof String)) {
+            return null;
+        }
+
+        final String[] parts = ((String) value).split(VALUE_SEPARATOR);
+        if (parts.length != 2) {
+            return null;
+        }
+        try {
+            return new Entry(Long.parseLong(parts[0]), Integer.parseInt(parts[1]));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
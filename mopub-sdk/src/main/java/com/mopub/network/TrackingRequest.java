@@ -6,6 +6,7 @@ import android.support.annotation.Nullable;
 import android.text.TextUtils;
 
 import com.mopub.common.Preconditions;
+import com.mopub.common.VisibleForTesting;
 import com.mopub.common.event.BaseEvent;
 import com.mopub.common.logging.MoPubLog;
 import com.mopub.mobileads.VastErrorCode;
@@ -21,6 +22,7 @@ import com.mopub.volley.toolbox.HttpHeaderParser;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 public class TrackingRequest extends Request<Void> {
@@ -30,10 +32,20 @@ public class TrackingRequest extends Request<Void> {
     }
 
     @Nullable private final TrackingRequest.Listener mListener;
+    // Billable pings are kept in the TrackingOutbox until they are delivered.
+    private final boolean mIsDurable;
 
-    private TrackingRequest(@NonNull final String url, @Nullable final Listener listener) {
+    @VisibleForTesting
+    TrackingRequest(@NonNull final String url, @Nullable final Listener listener) {
+        this(url, listener, false);
+    }
+
+    @VisibleForTesting
+    TrackingRequest(@NonNull final String url, @Nullable final Listener listener,
+            final boolean isDurable) {
         super(Method.GET, url, listener);
         mListener = listener;
+        mIsDurable = isDurable;
         setShouldCache(false);
         setRetryPolicy(new DefaultRetryPolicy(
                 DefaultRetryPolicy.DEFAULT_TIMEOUT_MS,
@@ -59,6 +71,24 @@ public class TrackingRequest extends Request<Void> {
         }
     }
 
+    boolean isDurable() {
+        return mIsDurable;
+    }
+
+    /**
+     * Delivers the outcome of a request that {@link TrackingDispatcher} made outside of Volley,
+     * applying the same success criteria as {@link #parseNetworkResponse}.
+     */
+    void deliverStatusCode(final int statusCode) {
+        final Response<Void> response = parseNetworkResponse(new NetworkResponse(statusCode,
+                new byte[0], Collections.<String, String>emptyMap(), false));
+        if (response.isSuccess()) {
+            deliverResponse(null);
+        } else {
+            deliverError(response.error);
+        }
+    }
+
     ///////////////////////////////////////////////////////////////
     // Static helper methods that can be used as utilities:
     //////////////////////////////////////////////////////////////
@@ -71,7 +101,7 @@ public class TrackingRequest extends Request<Void> {
             @Nullable final Context context) {
         Preconditions.checkNotNull(vastTrackers);
 
-        List<String> trackers = new ArrayList<String>(vastTrackers.size());
+        List<VastTracker> trackers = new ArrayList<VastTracker>(vastTrackers.size());
         for (VastTracker vastTracker : vastTrackers) {
             if (vastTracker == null) {
                 continue;
@@ -79,12 +109,12 @@ public class TrackingRequest extends Request<Void> {
             if (vastTracker.isTracked() && !vastTracker.isRepeatable()) {
                 continue;
             }
-            trackers.add(vastTracker.getTrackingUrl());
+            trackers.add(vastTracker);
             vastTracker.setTracked();
         }
 
         makeTrackingHttpRequest(
-                new VastMacroHelper(trackers)
+                VastMacroHelper.fromVastTrackers(trackers)
                         .withErrorCode(vastErrorCode)
                         .withContentPlayHead(contentPlayHead)
                         .withAssetUri(assetUri)
@@ -135,11 +165,16 @@ public class TrackingRequest extends Request<Void> {
                     }
                 }
             };
-            final TrackingRequest trackingRequest = new TrackingRequest(url, internalListener);
+            final TrackingRequest trackingRequest =
+                    new TrackingRequest(url, internalListener, isBillable(name));
             requestQueue.add(trackingRequest);
         }
     }
 
+    private static boolean isBillable(@Nullable final BaseEvent.Name name) {
+        return name == BaseEvent.Name.IMPRESSION_REQUEST || name == BaseEvent.Name.CLICK_REQUEST;
+    }
+
     public static void makeTrackingHttpRequest(@Nullable final String url,
             @Nullable final Context context) {
         makeTrackingHttpRequest(url, context, null, null);
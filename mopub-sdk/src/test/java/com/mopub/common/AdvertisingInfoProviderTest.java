@@ -0,0 +1,120 @@
+package com.mopub.common;
+
+import android.app.Activity;
+import android.content.Context;
+
+import com.mopub.common.test.support.SdkTestRunner;
+import com.mopub.common.util.Reflection;
+import com.mopub.common.util.test.support.TestMethodBuilderFactory;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.shadows.ShadowSystemClock;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.when;
+
+@RunWith(SdkTestRunner.class)
+public class AdvertisingInfoProviderTest {
+
+    private Reflection.MethodBuilder methodBuilder;
+    private List<Runnable> scheduledRunnables;
+    private AdvertisingInfoProvider subject;
+
+    @Before
+    public void setUp() throws Exception {
+        Context context = Robolectric.buildActivity(Activity.class).create().get();
+        GpsHelper.setClassNamesForTesting();
+        methodBuilder = TestMethodBuilderFactory.getSingletonMock();
+        reset(methodBuilder);
+        when(methodBuilder.setStatic(any(Class.class))).thenReturn(methodBuilder);
+        when(methodBuilder.addParam(any(Class.class), any())).thenReturn(methodBuilder);
+
+        // XXX We need this to ensure that our SystemClock starts
+        ShadowSystemClock.uptimeMillis();
+
+        scheduledRunnables = new ArrayList<Runnable>();
+        subject = new AdvertisingInfoProvider("sha:testDeviceID", context, new Executor() {
+            @Override
+            public void execute(final Runnable runnable) {
+                scheduledRunnables.add(runnable);
+            }
+        });
+    }
+
+    @Test
+    public void get_withPlayServices_shouldResolveOnceAndCache() throws Exception {
+        stubPlayServices("first-id", true);
+
+        AdvertisingInfoProvider.Snapshot snapshot = subject.get();
+        reset(methodBuilder);
+
+        assertThat(subject.get()).isSameAs(snapshot);
+        assertThat(snapshot.isPlayServicesId).isTrue();
+        assertThat(snapshot.advertisingInfo.advertisingId).isEqualTo("first-id");
+        assertThat(snapshot.advertisingInfo.limitAdTracking).isTrue();
+        assertThat(scheduledRunnables).isEmpty();
+    }
+
+    @Test
+    public void get_withoutPlayServices_shouldFallBackToDeviceId() throws Exception {
+        when(methodBuilder.execute()).thenReturn(GpsHelper.GOOGLE_PLAY_SUCCESS_CODE + 1);
+
+        AdvertisingInfoProvider.Snapshot snapshot = subject.get();
+
+        assertThat(snapshot.isPlayServicesId).isFalse();
+        assertThat(snapshot.advertisingInfo.advertisingId).isEqualTo("sha:testDeviceID");
+        assertThat(snapshot.advertisingInfo.limitAdTracking).isFalse();
+    }
+
+    @Test
+    public void get_afterTtl_shouldReturnStaleValueAndRefreshInBackground() throws Exception {
+        stubPlayServices("first-id", true);
+        AdvertisingInfoProvider.Snapshot first = subject.get();
+
+        ShadowSystemClock.sleep(AdvertisingInfoProvider.TTL_MILLIS);
+        assertThat(subject.get()).isSameAs(first);
+        // A second stale read should not queue another refresh.
+        assertThat(subject.get()).isSameAs(first);
+        assertThat(scheduledRunnables).hasSize(1);
+
+        stubPlayServices("second-id", false);
+        scheduledRunnables.remove(0).run();
+
+        AdvertisingInfoProvider.Snapshot second = subject.get();
+        assertThat(second.advertisingInfo.advertisingId).isEqualTo("second-id");
+        assertThat(second.advertisingInfo.limitAdTracking).isFalse();
+        assertThat(scheduledRunnables).isEmpty();
+    }
+
+    @Test
+    public void refreshAsync_shouldPopulateCacheBeforeFirstGet() throws Exception {
+        subject.refreshAsync();
+        stubPlayServices("prefetched-id", false);
+        scheduledRunnables.remove(0).run();
+        reset(methodBuilder);
+
+        assertThat(subject.get().advertisingInfo.advertisingId).isEqualTo("prefetched-id");
+    }
+
+    private void stubPlayServices(final String advertisingId, final boolean limitAdTracking)
+            throws Exception {
+        reset(methodBuilder);
+        when(methodBuilder.setStatic(any(Class.class))).thenReturn(methodBuilder);
+        when(methodBuilder.addParam(any(Class.class), any())).thenReturn(methodBuilder);
+        when(methodBuilder.execute()).thenReturn(
+                GpsHelper.GOOGLE_PLAY_SUCCESS_CODE,
+                new GpsHelperTest.TestAdInfo(),
+                advertisingId,
+                limitAdTracking
+        );
+    }
+}
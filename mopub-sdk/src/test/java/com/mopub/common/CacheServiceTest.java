@@ -3,6 +3,7 @@ package com.mopub.common;
 import android.app.Activity;
 
 import com.mopub.common.test.support.SdkTestRunner;
+import com.mopub.common.util.Streams;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -14,6 +15,8 @@ import org.robolectric.Robolectric;
 import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.concurrent.Semaphore;
 
 import static com.mopub.common.CacheService.DiskLruCacheGetListener;
@@ -23,6 +26,7 @@ import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @RunWith(SdkTestRunner.class)
@@ -69,7 +73,7 @@ public class CacheServiceTest {
         assertThat(CacheService.getDiskLruCache()).isNull();
 
         CacheService.initialize(context);
-        DiskLruCache diskLruCache = CacheService.getDiskLruCache();
+        MappedDiskLruCache diskLruCache = CacheService.getDiskLruCache();
         assertThat(diskLruCache).isNotNull();
 
         CacheService.initialize(context);
@@ -148,6 +152,124 @@ public class CacheServiceTest {
         assertThat(CacheService.getFromDiskCache(key1)).isEqualTo(data1.getBytes());
     }
 
+    @Test
+    public void getFromDiskCache_shouldCountDiskHits() throws Exception {
+        CacheService.initialize(context);
+        CacheService.putToDiskCache(key1, data1.getBytes());
+
+        assertThat(CacheService.getFromDiskCache(key1)).isEqualTo(data1.getBytes());
+        assertThat(CacheService.getFromDiskCache(key1)).isEqualTo(data1.getBytes());
+
+        CacheService.Stats stats = CacheService.getStats();
+        assertThat(stats.getDiskHits()).isEqualTo(2);
+        assertThat(stats.getMisses()).isEqualTo(0);
+    }
+
+    @Test
+    public void getFromDiskCache_whenEmpty_shouldCountMiss() throws Exception {
+        CacheService.initialize(context);
+
+        CacheService.getFromDiskCache(key1);
+
+        assertThat(CacheService.getStats().getMisses()).isEqualTo(1);
+    }
+
+    @Test
+    public void putToDiskCache_pastMaxSize_shouldCountEvictions() throws Exception {
+        CacheService.initialize(context);
+        final MappedDiskLruCache diskLruCache = CacheService.getDiskLruCache();
+        diskLruCache.setMaxSize(2 * data1.length());
+
+        CacheService.putToDiskCache(key1, data1.getBytes());
+        CacheService.putToDiskCache("http://www.mopub.com/2", data1.getBytes());
+        CacheService.putToDiskCache("http://www.mopub.com/3", data1.getBytes());
+        diskLruCache.flush();
+
+        assertThat(CacheService.getStats().getEvictions()).isEqualTo(1);
+        assertThat(CacheService.containsKeyDiskCache(key1)).isFalse();
+        assertThat(CacheService.containsKeyDiskCache("http://www.mopub.com/3")).isTrue();
+    }
+
+    @Test
+    public void getStats_withoutDiskCache_shouldReportNoEvictions() throws Exception {
+        assertThat(CacheService.getStats().getEvictions()).isEqualTo(0);
+    }
+
+    @Test
+    public void putToDiskCache_withInputStream_shouldReplaceValue() throws Exception {
+        CacheService.initialize(context);
+        CacheService.putToDiskCache(key1, data1.getBytes());
+
+        CacheService.putToDiskCache(key1, getInputStreamFromString("image_data_2"));
+
+        assertThat(CacheService.getFromDiskCache(key1)).isEqualTo("image_data_2".getBytes());
+    }
+
+    @Test
+    public void diskLruCacheAsyncGet_withConcurrentGetsForSameKey_shouldShareOneDiskRead() throws Exception {
+        CacheService.initialize(context);
+        CacheService.putToDiskCache(key1, data1.getBytes());
+        DiskLruCacheGetListener otherListener = mock(DiskLruCacheGetListener.class);
+
+        Robolectric.getBackgroundScheduler().pause();
+        CacheService.getFromDiskCacheAsync(key1, diskCacheGetListener);
+        CacheService.getFromDiskCacheAsync(key1, otherListener);
+        Robolectric.getBackgroundScheduler().unPause();
+        semaphore.acquire();
+
+        assertThat(getBytes).isEqualTo(data1.getBytes());
+        verify(otherListener).onComplete(key1, getBytes);
+        assertThat(CacheService.getStats().getDiskHits()).isEqualTo(1);
+    }
+
+    @Test
+    public void getInputStreamFromDiskCache_shouldStreamValue() throws Exception {
+        CacheService.initialize(context);
+        CacheService.putToDiskCache(key1, data1.getBytes());
+
+        InputStream in = CacheService.getInputStreamFromDiskCache(key1);
+        byte[] bytes = new byte[data1.length()];
+        try {
+            Streams.readStream(in, bytes);
+            assertThat(in.read()).isEqualTo(-1);
+        } finally {
+            in.close();
+        }
+
+        assertThat(bytes).isEqualTo(data1.getBytes());
+    }
+
+    @Test
+    public void getInputStreamFromDiskCache_whenEmpty_shouldReturnNull() throws Exception {
+        CacheService.initialize(context);
+
+        assertThat(CacheService.getInputStreamFromDiskCache(key1)).isNull();
+    }
+
+    @Test
+    public void getFileChannelFromDiskCache_shouldMapValue() throws Exception {
+        CacheService.initialize(context);
+        CacheService.putToDiskCache(key1, data1.getBytes());
+
+        FileChannel channel = CacheService.getFileChannelFromDiskCache(key1);
+        try {
+            assertThat(channel.size()).isEqualTo(data1.length());
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            byte[] bytes = new byte[buffer.remaining()];
+            buffer.get(bytes);
+            assertThat(bytes).isEqualTo(data1.getBytes());
+        } finally {
+            channel.close();
+        }
+    }
+
+    @Test
+    public void getFileChannelFromDiskCache_whenEmpty_shouldReturnNull() throws Exception {
+        CacheService.initialize(context);
+
+        assertThat(CacheService.getFileChannelFromDiskCache(key1)).isNull();
+    }
+
     private static InputStream getInputStreamFromString(final String string) {
         return spy(new ByteArrayInputStream(string.getBytes()));
     }
@@ -0,0 +1,484 @@
+package com.mopub.common;
+
+import com.mopub.common.test.support.SdkTestRunner;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+@RunWith(SdkTestRunner.class)
+public class MappedDiskLruCacheTest {
+    private static final int APP_VERSION = 1;
+    private static final long MAX_SIZE = 1024 * 1024;
+
+    private File directory;
+    private MappedDiskLruCache subject;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = new File(System.getProperty("java.io.tmpdir"),
+                "mapped-disk-lru-cache-" + System.nanoTime());
+        subject = MappedDiskLruCache.open(directory, APP_VERSION, 2, MAX_SIZE);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        subject.close();
+        DiskLruCacheUtil.deleteContents(directory);
+        directory.delete();
+    }
+
+    @Test
+    public void edit_thenGet_shouldReturnValues() throws Exception {
+        set(subject, "k1", "abc", "de");
+
+        final MappedDiskLruCache.Snapshot snapshot = subject.get("k1");
+        assertThat(snapshot.getString(0)).isEqualTo("abc");
+        assertThat(snapshot.getLength(0)).isEqualTo(3);
+        assertThat(snapshot.getString(1)).isEqualTo("de");
+        assertThat(snapshot.getLength(1)).isEqualTo(2);
+        snapshot.close();
+        assertThat(subject.size()).isEqualTo(5);
+    }
+
+    @Test
+    public void get_withMissingKey_shouldReturnNull() throws Exception {
+        assertThat(subject.get("k1")).isNull();
+    }
+
+    @Test
+    public void edit_whileEditInProgress_shouldReturnNull() throws Exception {
+        final MappedDiskLruCache.Editor editor = subject.edit("k1");
+
+        assertThat(subject.edit("k1")).isNull();
+
+        editor.abort();
+        assertThat(subject.edit("k1")).isNotNull();
+    }
+
+    @Test
+    public void snapshotEdit_afterEntryChanged_shouldReturnNull() throws Exception {
+        set(subject, "k1", "a", "a");
+        final MappedDiskLruCache.Snapshot snapshot = subject.get("k1");
+        set(subject, "k1", "b", "b");
+
+        assertThat(snapshot.edit()).isNull();
+        snapshot.close();
+    }
+
+    @Test
+    public void remove_shouldDeleteFilesAndUpdateSize() throws Exception {
+        set(subject, "k1", "abc", "de");
+
+        assertThat(subject.remove("k1")).isTrue();
+
+        assertThat(subject.get("k1")).isNull();
+        assertThat(new File(directory, "k1.0").exists()).isFalse();
+        assertThat(new File(directory, "k1.1").exists()).isFalse();
+        assertThat(subject.size()).isEqualTo(0);
+    }
+
+    @Test
+    public void close_thenOpen_shouldRestoreEntries() throws Exception {
+        set(subject, "k1", "abc", "de");
+        set(subject, "k2", "f", "g");
+        subject.remove("k2");
+        subject.close();
+
+        subject = MappedDiskLruCache.open(directory, APP_VERSION, 2, MAX_SIZE);
+
+        assertValue(subject, "k1", "abc", "de");
+        assertThat(subject.get("k2")).isNull();
+        assertThat(subject.size()).isEqualTo(5);
+    }
+
+    @Test
+    public void close_thenOpen_withHexKeys_shouldRestoreEntries() throws Exception {
+        final String key = CacheService.createValidDiskCacheKey("http://www.mopub.com/");
+        set(subject, key, "abc", "de");
+        set(subject, "abc", "f", "g");
+        subject.close();
+
+        subject = MappedDiskLruCache.open(directory, APP_VERSION, 2, MAX_SIZE);
+
+        assertValue(subject, key, "abc", "de");
+        assertValue(subject, "abc", "f", "g");
+    }
+
+    @Test
+    public void close_thenOpen_withLargeValue_shouldRestoreLength() throws Exception {
+        final StringBuilder value = new StringBuilder();
+        for (int i = 0; i < 100000; i++) {
+            value.append('x');
+        }
+        set(subject, "k1", value.toString(), "");
+        subject.close();
+
+        subject = MappedDiskLruCache.open(directory, APP_VERSION, 2, MAX_SIZE);
+
+        assertThat(subject.size()).isEqualTo(100000);
+        final MappedDiskLruCache.Snapshot snapshot = subject.get("k1");
+        assertThat(snapshot.getLength(0)).isEqualTo(100000);
+        assertThat(snapshot.getLength(1)).isEqualTo(0);
+        snapshot.close();
+    }
+
+    @Test
+    public void open_withDifferentAppVersion_shouldClearCache() throws Exception {
+        set(subject, "k1", "abc", "de");
+        subject.close();
+
+        subject = MappedDiskLruCache.open(directory, APP_VERSION + 1, 2, MAX_SIZE);
+
+        assertThat(subject.get("k1")).isNull();
+        assertThat(new File(directory, "k1.0").exists()).isFalse();
+    }
+
+    @Test
+    public void flush_overMaxSize_shouldEvictLeastRecentlyUsedAcrossStripes() throws Exception {
+        subject.close();
+        subject = MappedDiskLruCache.open(directory, APP_VERSION, 2, 10);
+
+        // Enough keys to spread over several stripes
+        for (int i = 0; i < 5; i++) {
+            set(subject, "k" + i, "a", "b");
+        }
+        subject.get("k0").close();
+        set(subject, "k5", "a", "b");
+        set(subject, "k6", "a", "b");
+        subject.flush();
+
+        assertThat(subject.size()).isEqualTo(10);
+        assertThat(subject.get("k1")).isNull();
+        assertThat(subject.get("k2")).isNull();
+        assertValue(subject, "k0", "a", "b");
+        assertValue(subject, "k3", "a", "b");
+        assertValue(subject, "k6", "a", "b");
+    }
+
+    @Test
+    public void close_thenOpen_shouldRestoreLruOrder() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            set(subject, "k" + i, "a", "b");
+        }
+        subject.get("k0").close();
+        subject.close();
+
+        subject = MappedDiskLruCache.open(directory, APP_VERSION, 2, MAX_SIZE);
+        subject.setMaxSize(4);
+        subject.flush();
+
+        assertThat(subject.get("k1")).isNull();
+        assertValue(subject, "k0", "a", "b");
+        assertValue(subject, "k2", "a", "b");
+    }
+
+    @Test
+    public void commit_shouldNotFlushJournal_shouldFlushInGroupsOnBackgroundThread()
+            throws Exception {
+        awaitExecutor(subject);
+        final int flushCount = subject.getJournalFlushCount();
+        final long journalLength = journalFile().length();
+
+        // Block the background thread so the records of all edits are pending together
+        final CountDownLatch latch = blockExecutor(subject);
+        for (int i = 0; i < 20; i++) {
+            set(subject, "k" + i, "a", "b");
+        }
+        assertThat(journalFile().length()).isEqualTo(journalLength);
+
+        latch.countDown();
+        awaitExecutor(subject);
+
+        assertThat(subject.getJournalFlushCount()).isEqualTo(flushCount + 1);
+        assertThat(journalFile().length()).isGreaterThan(journalLength);
+    }
+
+    @Test
+    public void edit_withReadableEntry_shouldFlushJournal() throws Exception {
+        set(subject, "k1", "a", "b");
+        awaitExecutor(subject);
+        final long journalLength = journalFile().length();
+        final CountDownLatch latch = blockExecutor(subject);
+
+        final MappedDiskLruCache.Editor editor = subject.edit("k1");
+
+        assertThat(journalFile().length()).isGreaterThan(journalLength);
+        latch.countDown();
+        editor.abort();
+    }
+
+    @Test
+    public void edit_withNewEntry_shouldNotFlushJournal() throws Exception {
+        awaitExecutor(subject);
+        final long journalLength = journalFile().length();
+        final CountDownLatch latch = blockExecutor(subject);
+
+        final MappedDiskLruCache.Editor editor = subject.edit("k1");
+
+        assertThat(journalFile().length()).isEqualTo(journalLength);
+        latch.countDown();
+        editor.abort();
+    }
+
+    @Test
+    public void open_withTruncatedJournal_shouldRecoverIntactRecords_shouldDeleteOrphanedFiles()
+            throws Exception {
+        set(subject, "k1", "abc", "de");
+        set(subject, "k2", "f", "g");
+        subject.flush();
+
+        // Simulate a crash in the middle of writing the last CLEAN record
+        truncateJournal(3);
+        subject = reopenWithoutClosing();
+        awaitExecutor(subject);
+
+        assertValue(subject, "k1", "abc", "de");
+        assertThat(subject.get("k2")).isNull();
+        assertThat(new File(directory, "k2.0").exists()).isFalse();
+        assertThat(new File(directory, "k2.1").exists()).isFalse();
+        assertThat(subject.size()).isEqualTo(5);
+
+        // The journal was rebuilt, so new records aren't appended after the torn one
+        set(subject, "k3", "h", "i");
+        subject.close();
+        subject = MappedDiskLruCache.open(directory, APP_VERSION, 2, MAX_SIZE);
+        assertValue(subject, "k1", "abc", "de");
+        assertValue(subject, "k3", "h", "i");
+    }
+
+    @Test
+    public void open_withCorruptRecord_shouldStopReplayingAtIt() throws Exception {
+        set(subject, "k1", "abc", "de");
+        subject.flush();
+        final long firstRecordsEnd = journalFile().length();
+        set(subject, "k2", "f", "g");
+        set(subject, "k3", "h", "i");
+        subject.flush();
+
+        // Flip a bit in the key of k2's DIRTY record
+        final RandomAccessFile file = new RandomAccessFile(journalFile(), "rw");
+        file.seek(firstRecordsEnd + 3);
+        final int value = file.read();
+        file.seek(firstRecordsEnd + 3);
+        file.write(value ^ 1);
+        file.close();
+        subject = reopenWithoutClosing();
+        awaitExecutor(subject);
+
+        assertValue(subject, "k1", "abc", "de");
+        assertThat(subject.get("k2")).isNull();
+        assertThat(subject.get("k3")).isNull();
+        assertThat(new File(directory, "k3.0").exists()).isFalse();
+    }
+
+    @Test
+    public void open_withEditInProgress_shouldDropEntry_shouldDeleteFiles() throws Exception {
+        set(subject, "k1", "abc", "de");
+        final MappedDiskLruCache.Editor editor = subject.edit("k1");
+        editor.set(0, "xyz");
+        subject.flush();
+
+        subject = reopenWithoutClosing();
+
+        assertThat(subject.get("k1")).isNull();
+        assertThat(new File(directory, "k1.0").exists()).isFalse();
+        assertThat(new File(directory, "k1.0.tmp").exists()).isFalse();
+        assertThat(subject.size()).isEqualTo(0);
+    }
+
+    @Test
+    public void open_withStrayFiles_shouldDeleteThem() throws Exception {
+        set(subject, "k1", "abc", "de");
+        subject.close();
+        writeFile(new File(directory, "k2.0"), "stray");
+        writeFile(new File(directory, "k2.0.tmp"), "stray");
+
+        subject = MappedDiskLruCache.open(directory, APP_VERSION, 2, MAX_SIZE);
+        awaitExecutor(subject);
+
+        assertValue(subject, "k1", "abc", "de");
+        assertThat(new File(directory, "k2.0").exists()).isFalse();
+        assertThat(new File(directory, "k2.0.tmp").exists()).isFalse();
+    }
+
+    @Test
+    public void open_withDiskLruCacheJournal_shouldMigrateEntries() throws Exception {
+        subject.close();
+        DiskLruCacheUtil.deleteContents(directory);
+        final DiskLruCache legacyCache = DiskLruCache.open(directory, APP_VERSION, 2, MAX_SIZE);
+        for (int i = 0; i < 3; i++) {
+            final DiskLruCache.Editor editor = legacyCache.edit("k" + i);
+            editor.set(0, "value" + i);
+            editor.set(1, "" + i);
+            editor.commit();
+        }
+        legacyCache.remove("k1");
+        legacyCache.edit("k3").set(0, "dirty");
+        legacyCache.flush();
+        legacyCache.get("k0").close();
+        legacyCache.close();
+
+        subject = MappedDiskLruCache.open(directory, APP_VERSION, 2, MAX_SIZE);
+        awaitExecutor(subject);
+
+        assertValue(subject, "k0", "value0", "0");
+        assertValue(subject, "k2", "value2", "2");
+        assertThat(subject.get("k1")).isNull();
+        assertThat(subject.get("k3")).isNull();
+        assertThat(subject.size()).isEqualTo(14);
+        assertThat(new File(directory, DiskLruCache.JOURNAL_FILE).exists()).isFalse();
+        assertThat(journalFile().exists()).isTrue();
+
+        subject.close();
+        subject = MappedDiskLruCache.open(directory, APP_VERSION, 2, MAX_SIZE);
+        assertValue(subject, "k0", "value0", "0");
+    }
+
+    @Test
+    public void open_withCorruptDiskLruCacheJournal_shouldClearCache() throws Exception {
+        subject.close();
+        DiskLruCacheUtil.deleteContents(directory);
+        writeFile(new File(directory, DiskLruCache.JOURNAL_FILE),
+                DiskLruCache.MAGIC + "\n" + DiskLruCache.VERSION_1 + "\n1\n2\n\nBOGUS k1\n");
+        writeFile(new File(directory, "k1.0"), "value");
+
+        subject = MappedDiskLruCache.open(directory, APP_VERSION, 2, MAX_SIZE);
+
+        assertThat(subject.get("k1")).isNull();
+        assertThat(new File(directory, "k1.0").exists()).isFalse();
+    }
+
+    @Test
+    public void manyRedundantOps_shouldCompactJournal() throws Exception {
+        set(subject, "k1", "a", "b");
+        for (int i = 0; i < 3000; i++) {
+            subject.get("k1").close();
+        }
+        awaitExecutor(subject);
+        subject.flush();
+
+        assertThat(journalFile().length()).isLessThan(2000 * 10);
+        subject.close();
+        subject = MappedDiskLruCache.open(directory, APP_VERSION, 2, MAX_SIZE);
+        assertValue(subject, "k1", "a", "b");
+    }
+
+    @Test
+    public void concurrentEdits_ofDifferentKeys_shouldAllSucceed() throws Exception {
+        final int threadCount = 8;
+        final int editsPerThread = 50;
+        final List<Thread> threads = new ArrayList<Thread>();
+        final List<Throwable> failures = new ArrayList<Throwable>();
+        for (int t = 0; t < threadCount; t++) {
+            final int threadIndex = t;
+            threads.add(new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < editsPerThread; i++) {
+                            final String key = "t" + threadIndex + "_" + i;
+                            set(subject, key, "value", "" + i);
+                            assertValue(subject, key, "value", "" + i);
+                        }
+                    } catch (Throwable e) {
+                        synchronized (failures) {
+                            failures.add(e);
+                        }
+                    }
+                }
+            });
+        }
+        for (final Thread thread : threads) {
+            thread.start();
+        }
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+
+        assertThat(failures).isEmpty();
+        long expectedSize = 0;
+        for (int i = 0; i < editsPerThread; i++) {
+            expectedSize += threadCount * (5 + ("" + i).length());
+        }
+        assertThat(subject.size()).isEqualTo(expectedSize);
+
+        subject.close();
+        subject = MappedDiskLruCache.open(directory, APP_VERSION, 2, MAX_SIZE);
+        assertThat(subject.size()).isEqualTo(expectedSize);
+        assertValue(subject, "t7_49", "value", "49");
+    }
+
+    private File journalFile() {
+        return new File(directory, MappedDiskLruCache.JOURNAL_FILE);
+    }
+
+    private MappedDiskLruCache reopenWithoutClosing() throws Exception {
+        awaitExecutor(subject);
+        // The abandoned instance is never closed, like after the process dies
+        return MappedDiskLruCache.open(directory, APP_VERSION, 2, MAX_SIZE);
+    }
+
+    private void truncateJournal(final int bytes) throws IOException {
+        final RandomAccessFile file = new RandomAccessFile(journalFile(), "rw");
+        file.setLength(file.length() - bytes);
+        file.close();
+    }
+
+    private static CountDownLatch blockExecutor(final MappedDiskLruCache cache) {
+        final CountDownLatch latch = new CountDownLatch(1);
+        cache.executorService.submit(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                latch.await();
+                return null;
+            }
+        });
+        return latch;
+    }
+
+    private static void awaitExecutor(final MappedDiskLruCache cache) throws Exception {
+        cache.executorService.submit(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                return null;
+            }
+        }).get(5, TimeUnit.SECONDS);
+    }
+
+    private static void set(final MappedDiskLruCache cache, final String key, final String a,
+            final String b) throws IOException {
+        final MappedDiskLruCache.Editor editor = cache.edit(key);
+        editor.set(0, a);
+        editor.set(1, b);
+        editor.commit();
+    }
+
+    private static void assertValue(final MappedDiskLruCache cache, final String key,
+            final String a, final String b) throws IOException {
+        final MappedDiskLruCache.Snapshot snapshot = cache.get(key);
+        assertThat(snapshot).isNotNull();
+        assertThat(snapshot.getString(0)).isEqualTo(a);
+        assertThat(snapshot.getString(1)).isEqualTo(b);
+        snapshot.close();
+    }
+
+    private static void writeFile(final File file, final String content) throws IOException {
+        final FileOutputStream out = new FileOutputStream(file);
+        out.write(content.getBytes("US-ASCII"));
+        out.close();
+    }
+}
@@ -107,6 +107,8 @@ public class BaseEventTest {
                 .isEqualTo("impression_request");
         assertThat(BaseEvent.Name.CLICK_REQUEST.getName())
                 .isEqualTo("click_request");
+        assertThat(BaseEvent.Name.VAST_WRAPPER_REQUEST.getName())
+                .isEqualTo("vast_wrapper_request");
     }
 
     @Test
@@ -120,6 +122,7 @@ public class BaseEventTest {
     public void SamplingRate_shouldHaveExpectedValues() throws Exception {
         // We're testing this since our backend data definitions depend on these values matching
         assertThat(BaseEvent.SamplingRate.AD_REQUEST.getSamplingRate()).isEqualTo(0.1);
+        assertThat(BaseEvent.SamplingRate.VAST_WRAPPER_REQUEST.getSamplingRate()).isEqualTo(0.1);
     }
 
     @Test
@@ -0,0 +1,217 @@
+package com.mopub.common.event;
+
+import android.app.Activity;
+
+import com.mopub.common.ClientMetadata;
+import com.mopub.common.test.support.SdkTestRunner;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.robolectric.Robolectric;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.GZIPOutputStream;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.fest.assertions.api.Assertions.fail;
+import static org.mockito.Mockito.when;
+
+@RunWith(SdkTestRunner.class)
+public class CompactEventSerializerTest {
+
+    private CompactEventSerializer subject;
+    private EventSerializer eventSerializer;
+
+    @Mock private Event mockEvent;
+    @Mock private Event mockEvent2;
+    @Mock private ErrorEvent mockErrorEvent;
+
+    @Before
+    public void setUp() {
+        subject = new CompactEventSerializer();
+        eventSerializer = new EventSerializer();
+
+        Activity context = Robolectric.buildActivity(Activity.class).create().get();
+        ClientMetadata.getInstance(context);
+
+        populateBaseEventFields(mockEvent);
+        populateBaseEventFields(mockEvent2);
+        populateBaseEventFields(mockErrorEvent);
+
+        when(mockErrorEvent.getErrorExceptionClassName()).thenReturn("error_exception_class_name");
+        when(mockErrorEvent.getErrorMessage()).thenReturn("error_message");
+        when(mockErrorEvent.getErrorStackTrace()).thenReturn("error_stack_trace");
+        when(mockErrorEvent.getErrorFileName()).thenReturn("error_file_name");
+        when(mockErrorEvent.getErrorClassName()).thenReturn("error_class_name");
+        when(mockErrorEvent.getErrorMethodName()).thenReturn("error_method_name");
+        when(mockErrorEvent.getErrorLineNumber()).thenReturn(-123);
+    }
+
+    @Test
+    public void serialize_thenDecode_shouldMatchJsonSerialization() throws Exception {
+        assertRoundTrip(Arrays.<BaseEvent>asList(mockEvent, mockErrorEvent, mockEvent2));
+    }
+
+    @Test
+    public void serialize_thenDecode_withRealEvents_shouldMatchJsonSerialization() throws Exception {
+        final BaseEvent event = new Event.Builder(BaseEvent.Name.AD_REQUEST,
+                BaseEvent.Category.REQUESTS, 0.1)
+                .withAdUnitId("ad_unit_id")
+                .withGeoLat(37.7833)
+                .withRequestStatusCode(200)
+                .build();
+        final BaseEvent errorEvent = new ErrorEvent.Builder(BaseEvent.Name.AD_REQUEST,
+                BaseEvent.Category.REQUESTS, 0.1)
+                .withException(new IllegalStateException("message"))
+                .build();
+
+        assertRoundTrip(Arrays.asList(event, errorEvent));
+    }
+
+    @Test
+    public void serialize_thenDecode_withSessionFieldsDifferingFromHeader_shouldKeepPerEventValues() throws Exception {
+        when(mockEvent2.getAppVersion()).thenReturn("2.0");
+        when(mockEvent2.getDeviceModel()).thenReturn(null);
+        when(mockEvent.getSdkVersion()).thenReturn(null);
+
+        final List<JSONObject> decoded =
+                assertRoundTrip(Arrays.<BaseEvent>asList(mockEvent, mockEvent2, mockErrorEvent));
+
+        assertThat(decoded.get(1).getString("app_version")).isEqualTo("2.0");
+        assertThat(decoded.get(1).has("device_model")).isFalse();
+        assertThat(decoded.get(2).getString("device_model")).isEqualTo("Nexus 5");
+        assertThat(decoded.get(0).has("sdk_version")).isFalse();
+        assertThat(decoded.get(1).getString("sdk_version")).isEqualTo("3.5.0");
+    }
+
+    @Test
+    public void serialize_thenDecode_withNoEvents_shouldReturnEmptyList() throws Exception {
+        assertThat(decode(subject.serialize(Collections.<BaseEvent>emptyList()))).isEmpty();
+    }
+
+    @Test
+    public void serialize_withManyEvents_shouldBeMuchSmallerThanJson() throws Exception {
+        final List<BaseEvent> events = new ArrayList<BaseEvent>();
+        for (int i = 0; i < 100; i++) {
+            events.add(i % 10 == 0 ? mockErrorEvent : mockEvent);
+        }
+
+        final int jsonSize = eventSerializer.serializeAsJson(events).toString().getBytes().length;
+        final int gzippedJsonSize = gzip(eventSerializer.serializeAsJson(events).toString()
+                .getBytes()).length;
+        final int compactSize = subject.serialize(events).length;
+
+        assertThat(compactSize).isLessThan(jsonSize / 20);
+        assertThat(compactSize).isLessThan(gzippedJsonSize);
+    }
+
+    @Test
+    public void decode_withWrongMagic_shouldThrowIOException() throws Exception {
+        try {
+            decode(gzip(new byte[] {0, 0, 0, 0, 1, 0, 0}));
+            fail("Expected IOException");
+        } catch (IOException e) {
+            // pass
+        }
+    }
+
+    @Test
+    public void Field_shouldFitInMask() throws Exception {
+        assertThat(CompactEventSerializer.Field.values().length).isLessThanOrEqualTo(64);
+    }
+
+    private List<JSONObject> assertRoundTrip(final List<BaseEvent> events) throws Exception {
+        final List<JSONObject> decoded = decode(subject.serialize(events));
+        final JSONArray expected = eventSerializer.serializeAsJson(events);
+
+        assertThat(decoded).hasSize(expected.length());
+        for (int i = 0; i < decoded.size(); i++) {
+            assertJsonEquals(decoded.get(i), expected.getJSONObject(i));
+        }
+        return decoded;
+    }
+
+    private static void assertJsonEquals(final JSONObject actual, final JSONObject expected)
+            throws Exception {
+        assertThat(keys(actual)).isEqualTo(keys(expected));
+        for (final String key : keys(expected)) {
+            assertThat(actual.get(key)).as(key).isEqualTo(expected.get(key));
+        }
+    }
+
+    private static Set<String> keys(final JSONObject jsonObject) {
+        final Set<String> keys = new HashSet<String>();
+        final Iterator<?> iterator = jsonObject.keys();
+        while (iterator.hasNext()) {
+            keys.add((String) iterator.next());
+        }
+        return keys;
+    }
+
+    private static List<JSONObject> decode(final byte[] bytes) throws Exception {
+        return CompactEventSerializer.decode(new ByteArrayInputStream(bytes));
+    }
+
+    private static byte[] gzip(final byte[] bytes) throws Exception {
+        final ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        final GZIPOutputStream gzipOutputStream = new GZIPOutputStream(byteArrayOutputStream);
+        gzipOutputStream.write(bytes);
+        gzipOutputStream.close();
+        return byteArrayOutputStream.toByteArray();
+    }
+
+    private void populateBaseEventFields(BaseEvent mockBaseEvent) {
+        when(mockBaseEvent.getScribeCategory()).thenReturn(BaseEvent.ScribeCategory.EXCHANGE_CLIENT_EVENT);
+        when(mockBaseEvent.getName()).thenReturn(BaseEvent.Name.AD_REQUEST);
+        when(mockBaseEvent.getCategory()).thenReturn(BaseEvent.Category.REQUESTS);
+        when(mockBaseEvent.getSdkProduct()).thenReturn(BaseEvent.SdkProduct.NATIVE);
+        when(mockBaseEvent.getSdkVersion()).thenReturn("3.5.0");
+        when(mockBaseEvent.getAdUnitId()).thenReturn("8cf00598d3664adaaeccd800e46afaca");
+        when(mockBaseEvent.getAdCreativeId()).thenReturn("3c2b887e2c2a4cd0ae6a925440a62f0d");
+        when(mockBaseEvent.getAdType()).thenReturn("html");
+        when(mockBaseEvent.getAdNetworkType()).thenReturn("admob");
+        when(mockBaseEvent.getAdWidthPx()).thenReturn(320.0);
+        when(mockBaseEvent.getAdHeightPx()).thenReturn(50.0);
+        when(mockBaseEvent.getAppPlatform()).thenReturn(BaseEvent.AppPlatform.ANDROID);
+        when(mockBaseEvent.getAppName()).thenReturn("MoPub Sample App");
+        when(mockBaseEvent.getAppPackageName()).thenReturn("com.mopub.simpleadsdemo");
+        when(mockBaseEvent.getAppVersion()).thenReturn("1.0");
+        when(mockBaseEvent.getObfuscatedClientAdvertisingId()).thenCallRealMethod();
+        when(mockBaseEvent.getClientDoNotTrack()).thenReturn(false);
+        when(mockBaseEvent.getDeviceManufacturer()).thenReturn("LGE");
+        when(mockBaseEvent.getDeviceModel()).thenReturn("Nexus 5");
+        when(mockBaseEvent.getDeviceProduct()).thenReturn("hammerhead");
+        when(mockBaseEvent.getDeviceOsVersion()).thenReturn("5.0");
+        when(mockBaseEvent.getDeviceScreenWidthDip()).thenReturn(1080);
+        when(mockBaseEvent.getDeviceScreenHeightDip()).thenReturn(1920);
+        when(mockBaseEvent.getGeoLat()).thenReturn(37.7833);
+        when(mockBaseEvent.getGeoLon()).thenReturn(-122.4183333);
+        when(mockBaseEvent.getGeoAccuracy()).thenReturn(10.0);
+        when(mockBaseEvent.getPerformanceDurationMs()).thenReturn(100.0);
+        when(mockBaseEvent.getNetworkType()).thenReturn(ClientMetadata.MoPubNetworkType.WIFI);
+        when(mockBaseEvent.getNetworkOperatorCode()).thenReturn("310410");
+        when(mockBaseEvent.getNetworkOperatorName()).thenReturn("AT&T");
+        when(mockBaseEvent.getNetworkIsoCountryCode()).thenReturn("US");
+        when(mockBaseEvent.getNetworkSimCode()).thenReturn("network_sim_code");
+        when(mockBaseEvent.getNetworkSimOperatorName()).thenReturn("network_operator_name");
+        when(mockBaseEvent.getNetworkSimIsoCountryCode()).thenReturn("US");
+        when(mockBaseEvent.getRequestId()).thenReturn("b550796074da4559a27c5072dcba2b27");
+        when(mockBaseEvent.getRequestStatusCode()).thenReturn(200);
+        when(mockBaseEvent.getRequestUri()).thenReturn("http://ads.mopub.com/m/ad?id=8cf00598d3664adaaeccd800e46afaca");
+        when(mockBaseEvent.getRequestRetries()).thenReturn(0);
+        when(mockBaseEvent.getTimestampUtcMs()).thenReturn(1416447053472L);
+    }
+}
@@ -10,15 +10,20 @@ import com.mopub.common.test.support.SdkTestRunner;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.InOrder;
 import org.mockito.Mock;
+import org.robolectric.Robolectric;
 
 import java.util.ArrayList;
 import java.util.List;
 
+import static org.fest.assertions.api.Assertions.assertThat;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
 
@@ -61,4 +66,142 @@ public class EventDispatcherTest {
         verify(mockEventRecorder1, never()).record(any(BaseEvent.class));
         verify(mockEventRecorder2, never()).record(any(BaseEvent.class));
     }
+
+    @Test
+    public void dispatch_shouldRecordEventOnAllRecorders_shouldUpdateCounters() throws Exception {
+        BaseEvent event = mock(Event.class);
+        subject = new EventDispatcher(recorders, Looper.getMainLooper());
+
+        subject.dispatch(event);
+
+        verify(mockEventRecorder1).record(event);
+        verify(mockEventRecorder2).record(event);
+        assertThat(subject.getQueuedEventCount()).isEqualTo(1);
+        assertThat(subject.getDispatchedEventCount()).isEqualTo(1);
+        assertThat(subject.getDroppedEventCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void dispatch_withManyEvents_shouldPostSingleDrainMessage_shouldRecordInOrder() throws Exception {
+        Robolectric.pauseMainLooper();
+        subject = new EventDispatcher(recorders, Looper.getMainLooper());
+        BaseEvent event1 = mock(Event.class);
+        BaseEvent event2 = mock(Event.class);
+        BaseEvent event3 = mock(Event.class);
+
+        subject.dispatch(event1);
+        subject.dispatch(event2);
+        subject.dispatch(event3);
+
+        assertThat(Robolectric.getUiThreadScheduler().enqueuedTaskCount()).isEqualTo(1);
+        verify(mockEventRecorder1, never()).record(any(BaseEvent.class));
+
+        Robolectric.runUiThreadTasks();
+
+        InOrder inOrder = inOrder(mockEventRecorder1);
+        inOrder.verify(mockEventRecorder1).record(event1);
+        inOrder.verify(mockEventRecorder1).record(event2);
+        inOrder.verify(mockEventRecorder1).record(event3);
+        assertThat(subject.getPendingEventCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void dispatch_withMoreThanMaxBatchSize_shouldDrainInBatches() throws Exception {
+        Robolectric.pauseMainLooper();
+        subject = new EventDispatcher(recorders, Looper.getMainLooper());
+
+        for (int i = 0; i < EventDispatcher.MAX_BATCH_SIZE + 1; i++) {
+            subject.dispatch(mock(Event.class));
+        }
+
+        Robolectric.getUiThreadScheduler().runOneTask();
+        verify(mockEventRecorder1, times(EventDispatcher.MAX_BATCH_SIZE))
+                .record(any(BaseEvent.class));
+        assertThat(subject.getPendingEventCount()).isEqualTo(1);
+        assertThat(Robolectric.getUiThreadScheduler().enqueuedTaskCount()).isEqualTo(1);
+
+        Robolectric.getUiThreadScheduler().runOneTask();
+        verify(mockEventRecorder1, times(EventDispatcher.MAX_BATCH_SIZE + 1))
+                .record(any(BaseEvent.class));
+        assertThat(subject.getDispatchedEventCount())
+                .isEqualTo(EventDispatcher.MAX_BATCH_SIZE + 1);
+        assertThat(Robolectric.getUiThreadScheduler().enqueuedTaskCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void dispatch_withFullQueue_withDropOldest_shouldDropOldestEvents() throws Exception {
+        Robolectric.pauseMainLooper();
+        subject = new EventDispatcher(recorders, Looper.getMainLooper(), 3,
+                EventDispatcher.BackpressurePolicy.DROP_OLDEST);
+        List<BaseEvent> events = new ArrayList<BaseEvent>();
+        for (int i = 0; i < 5; i++) {
+            events.add(i == 0 ? mock(ErrorEvent.class) : mock(Event.class));
+            subject.dispatch(events.get(i));
+        }
+
+        Robolectric.runUiThreadTasks();
+
+        verify(mockEventRecorder1, never()).record(events.get(0));
+        verify(mockEventRecorder1, never()).record(events.get(1));
+        InOrder inOrder = inOrder(mockEventRecorder1);
+        inOrder.verify(mockEventRecorder1).record(events.get(2));
+        inOrder.verify(mockEventRecorder1).record(events.get(3));
+        inOrder.verify(mockEventRecorder1).record(events.get(4));
+        assertThat(subject.getQueuedEventCount()).isEqualTo(5);
+        assertThat(subject.getDroppedEventCount()).isEqualTo(2);
+        assertThat(subject.getDispatchedEventCount()).isEqualTo(3);
+    }
+
+    @Test
+    public void dispatch_withFullQueue_withDropByPriority_shouldDropNonErrorEventsFirst() throws Exception {
+        Robolectric.pauseMainLooper();
+        subject = new EventDispatcher(recorders, Looper.getMainLooper(), 3,
+                EventDispatcher.BackpressurePolicy.DROP_BY_PRIORITY);
+        BaseEvent error1 = mock(ErrorEvent.class);
+        BaseEvent event1 = mock(Event.class);
+        BaseEvent error2 = mock(ErrorEvent.class);
+        BaseEvent event2 = mock(Event.class);
+        BaseEvent error3 = mock(ErrorEvent.class);
+        BaseEvent event3 = mock(Event.class);
+        BaseEvent error4 = mock(ErrorEvent.class);
+
+        subject.dispatch(error1);
+        subject.dispatch(event1);
+        subject.dispatch(error2);
+        // Drops event1
+        subject.dispatch(event2);
+        // Drops event2
+        subject.dispatch(error3);
+        // Only errors are queued, so event3 itself is dropped
+        subject.dispatch(event3);
+        // Drops error1
+        subject.dispatch(error4);
+
+        Robolectric.runUiThreadTasks();
+
+        verify(mockEventRecorder1, never()).record(error1);
+        verify(mockEventRecorder1, never()).record(event1);
+        verify(mockEventRecorder1, never()).record(event2);
+        verify(mockEventRecorder1, never()).record(event3);
+        InOrder inOrder = inOrder(mockEventRecorder1);
+        inOrder.verify(mockEventRecorder1).record(error2);
+        inOrder.verify(mockEventRecorder1).record(error3);
+        inOrder.verify(mockEventRecorder1).record(error4);
+        assertThat(subject.getQueuedEventCount()).isEqualTo(7);
+        assertThat(subject.getDroppedEventCount()).isEqualTo(4);
+        assertThat(subject.getDispatchedEventCount()).isEqualTo(3);
+    }
+
+    @Test
+    public void dispatch_afterDrain_shouldReuseQueueSlots() throws Exception {
+        subject = new EventDispatcher(recorders, Looper.getMainLooper(), 2,
+                EventDispatcher.BackpressurePolicy.DROP_OLDEST);
+
+        for (int i = 0; i < 10; i++) {
+            subject.dispatch(mock(Event.class));
+        }
+
+        verify(mockEventRecorder1, times(10)).record(any(BaseEvent.class));
+        assertThat(subject.getDroppedEventCount()).isEqualTo(0);
+    }
 }
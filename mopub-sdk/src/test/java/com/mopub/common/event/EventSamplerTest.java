@@ -6,10 +6,15 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
+import org.robolectric.shadows.ShadowSystemClock;
 
 import java.util.Random;
 
 import static org.fest.assertions.api.Assertions.assertThat;
+import static org.fest.assertions.api.Assertions.offset;
+import static org.mockito.Matchers.anyDouble;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @RunWith(SdkTestRunner.class)
@@ -42,4 +47,124 @@ public class EventSamplerTest {
 
         assertThat(result).isFalse();
     }
+
+    @Test
+    public void sample_withEventPassingSampling_shouldSetSamplingWeight() throws Exception {
+        when(mockRandom.nextDouble()).thenReturn(0.09);
+
+        subject.sample(mockBaseEvent);
+
+        verify(mockBaseEvent).setSamplingWeight(10.0);
+    }
+
+    @Test
+    public void sample_withEventFailingSampling_shouldNotSetSamplingWeight() throws Exception {
+        when(mockRandom.nextDouble()).thenReturn(0.5);
+
+        subject.sample(mockBaseEvent);
+
+        verify(mockBaseEvent, never()).setSamplingWeight(anyDouble());
+    }
+
+    @Test
+    public void getEffectiveSamplingRate_withEventsUnderBudget_shouldUseSamplingRate() throws Exception {
+        for (int i = 0; i < EventSampler.MAX_SAMPLED_EVENTS_PER_WINDOW * 10; i++) {
+            assertThat(subject.getEffectiveSamplingRate(createEvent(0.1))).isEqualTo(0.1);
+        }
+    }
+
+    @Test
+    public void getEffectiveSamplingRate_withBurstOverBudget_shouldLowerSamplingRate() throws Exception {
+        final int arrivals = EventSampler.MAX_SAMPLED_EVENTS_PER_WINDOW * 100;
+        double samplingRate = 0;
+        for (int i = 0; i < arrivals; i++) {
+            samplingRate = subject.getEffectiveSamplingRate(createEvent(1.0));
+        }
+
+        assertThat(samplingRate).isEqualTo(
+                (double) EventSampler.MAX_SAMPLED_EVENTS_PER_WINDOW / arrivals);
+    }
+
+    @Test
+    public void getEffectiveSamplingRate_shouldCarryRateIntoNextWindow_thenDecay() throws Exception {
+        final int arrivals = EventSampler.MAX_SAMPLED_EVENTS_PER_WINDOW * 8;
+        for (int i = 0; i < arrivals; i++) {
+            subject.getEffectiveSamplingRate(createEvent(1.0));
+        }
+
+        ShadowSystemClock.sleep(EventSampler.WINDOW_MS);
+        // Half of the last window's rate is carried over
+        assertThat(subject.getEffectiveSamplingRate(createEvent(1.0))).isEqualTo(0.25);
+
+        ShadowSystemClock.sleep(EventSampler.WINDOW_MS * 10);
+        assertThat(subject.getEffectiveSamplingRate(createEvent(1.0))).isEqualTo(1.0);
+    }
+
+    @Test
+    public void getEffectiveSamplingRate_shouldKeepBudgetsPerEventKind() throws Exception {
+        for (int i = 0; i < EventSampler.MAX_SAMPLED_EVENTS_PER_WINDOW * 100; i++) {
+            subject.getEffectiveSamplingRate(createEvent(1.0));
+        }
+
+        final BaseEvent otherEvent = new Event.Builder(BaseEvent.Name.CLICK_REQUEST,
+                BaseEvent.Category.REQUESTS, 1.0).build();
+        assertThat(subject.getEffectiveSamplingRate(otherEvent)).isEqualTo(1.0);
+    }
+
+    @Test
+    public void getEffectiveSamplingRate_withErrorEvents_shouldUseLargerBudget() throws Exception {
+        final int arrivals = EventSampler.MAX_SAMPLED_EVENTS_PER_WINDOW * 100;
+        double eventSamplingRate = 0;
+        double errorEventSamplingRate = 0;
+        for (int i = 0; i < arrivals; i++) {
+            eventSamplingRate = subject.getEffectiveSamplingRate(createEvent(1.0));
+            errorEventSamplingRate = subject.getEffectiveSamplingRate(createErrorEvent(1.0));
+        }
+
+        assertThat(errorEventSamplingRate).isEqualTo(
+                eventSamplingRate * EventSampler.ERROR_BUDGET_MULTIPLIER);
+    }
+
+    @Test
+    public void sample_withChattyAndRareEvents_shouldBoundChattyEvents_shouldKeepRareEvents_shouldBeUnbiased() throws Exception {
+        subject = new EventSampler(new Random(42));
+        final int chattyArrivalsPerWindow = 2000;
+        final int windows = 10;
+
+        int sampledChattyEvents = 0;
+        double weightedChattyEvents = 0;
+        int sampledErrorEvents = 0;
+        for (int window = 0; window < windows; window++) {
+            for (int i = 0; i < chattyArrivalsPerWindow; i++) {
+                final BaseEvent event = createEvent(1.0);
+                if (subject.sample(event)) {
+                    sampledChattyEvents++;
+                    weightedChattyEvents += event.getSamplingWeight();
+                }
+                if (i % 200 == 0 && subject.sample(createErrorEvent(1.0))) {
+                    sampledErrorEvents++;
+                }
+            }
+            ShadowSystemClock.sleep(EventSampler.WINDOW_MS);
+        }
+
+        // Close to the budget rather than to the 20000 events that were recorded
+        assertThat(sampledChattyEvents).isLessThan(
+                EventSampler.MAX_SAMPLED_EVENTS_PER_WINDOW * windows * 3);
+        // Re-weighting recovers the real number of events
+        assertThat(weightedChattyEvents).isEqualTo(chattyArrivalsPerWindow * windows,
+                offset(chattyArrivalsPerWindow * windows * 0.15));
+        // Rare error events are never cut
+        assertThat(sampledErrorEvents).isEqualTo(windows * chattyArrivalsPerWindow / 200);
+    }
+
+    private static BaseEvent createEvent(double samplingRate) {
+        return new Event.Builder(BaseEvent.Name.AD_REQUEST, BaseEvent.Category.REQUESTS,
+                samplingRate).build();
+    }
+
+    private static BaseEvent createErrorEvent(double samplingRate) {
+        return new ErrorEvent.Builder(BaseEvent.Name.AD_REQUEST, BaseEvent.Category.REQUESTS,
+                samplingRate).build();
+    }
 }
@@ -0,0 +1,215 @@
+package com.mopub.common.event;
+
+import android.app.Activity;
+
+import com.mopub.common.test.support.SdkTestRunner;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.List;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+@RunWith(SdkTestRunner.class)
+public class EventSegmentLogTest {
+
+    private static final int MAX_RECORDS_PER_SEGMENT = 3;
+    private static final int MAX_SEGMENT_SIZE_BYTES = 64;
+    private static final int MAX_SEGMENT_COUNT = 2;
+
+    private File directory;
+    private EventSegmentLog subject;
+
+    @Before
+    public void setUp() throws Exception {
+        Activity activity = Robolectric.buildActivity(Activity.class).create().get();
+        directory = new File(activity.getCacheDir(), "event-segment-log-test");
+        final File[] files = directory.listFiles();
+        if (files != null) {
+            for (final File file : files) {
+                file.delete();
+            }
+        }
+
+        subject = open();
+    }
+
+    @Test
+    public void open_shouldCreateDirectory_shouldBeEmpty() throws Exception {
+        assertThat(directory.isDirectory()).isTrue();
+        assertThat(subject.isEmpty()).isTrue();
+        assertThat(subject.hasSealedSegment()).isFalse();
+        assertThat(subject.getOldestSegment()).isNull();
+    }
+
+    @Test
+    public void append_shouldSealSegmentOnceItHoldsMaxRecords() throws Exception {
+        subject.append(bytes("a"));
+        subject.append(bytes("b"));
+        assertThat(subject.hasSealedSegment()).isFalse();
+
+        subject.append(bytes("c"));
+
+        assertThat(subject.hasSealedSegment()).isTrue();
+        assertThat(strings(subject.read(subject.getOldestSegment()))).containsExactly("a", "b", "c");
+    }
+
+    @Test
+    public void append_withRecordThatDoesNotFit_shouldSealSegmentFirst() throws Exception {
+        // Each record takes up 8 header bytes plus its length
+        subject.append(bytes("0123456789012345678901234567890123456789"));
+        assertThat(subject.hasSealedSegment()).isFalse();
+
+        subject.append(bytes("0123456789"));
+
+        assertThat(subject.hasSealedSegment()).isTrue();
+        assertThat(subject.getOldestSegment().mRecordCount).isEqualTo(1);
+        assertThat(subject.getSegmentCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void append_withRecordLargerThanSegment_shouldReturnFalse() throws Exception {
+        assertThat(subject.append(new byte[MAX_SEGMENT_SIZE_BYTES])).isFalse();
+        assertThat(subject.isEmpty()).isTrue();
+    }
+
+    @Test
+    public void append_withMoreThanMaxSegments_shouldDropOldestSegment() throws Exception {
+        for (int i = 0; i < MAX_RECORDS_PER_SEGMENT * 3; i++) {
+            subject.append(bytes("event" + i));
+        }
+
+        assertThat(subject.getSegmentCount()).isEqualTo(MAX_SEGMENT_COUNT);
+        assertThat(strings(subject.read(subject.getOldestSegment())))
+                .containsExactly("event3", "event4", "event5");
+    }
+
+    @Test
+    public void getOldestSegment_withOnlyActiveSegment_shouldSealAndReturnIt() throws Exception {
+        subject.append(bytes("a"));
+
+        final EventSegmentLog.Segment segment = subject.getOldestSegment();
+
+        assertThat(segment.mRecordCount).isEqualTo(1);
+        assertThat(subject.hasSealedSegment()).isTrue();
+
+        // New records go into a new segment
+        subject.append(bytes("b"));
+        assertThat(subject.getOldestSegment()).isSameAs(segment);
+        assertThat(strings(subject.read(segment))).containsExactly("a");
+    }
+
+    @Test
+    public void delete_shouldDeleteSegmentFile() throws Exception {
+        subject.append(bytes("a"));
+        final EventSegmentLog.Segment segment = subject.getOldestSegment();
+
+        subject.delete(segment);
+
+        assertThat(segment.mFile.exists()).isFalse();
+        assertThat(subject.isEmpty()).isTrue();
+        assertThat(subject.getOldestSegment()).isNull();
+
+        // Deleting again is a no-op
+        subject.delete(segment);
+    }
+
+    @Test
+    public void open_shouldRecoverSegmentsFromPreviousLog() throws Exception {
+        for (int i = 0; i < MAX_RECORDS_PER_SEGMENT + 1; i++) {
+            subject.append(bytes("event" + i));
+        }
+
+        subject = open();
+
+        assertThat(subject.getSegmentCount()).isEqualTo(2);
+        final EventSegmentLog.Segment oldestSegment = subject.getOldestSegment();
+        assertThat(strings(subject.read(oldestSegment)))
+                .containsExactly("event0", "event1", "event2");
+        subject.delete(oldestSegment);
+        assertThat(strings(subject.read(subject.getOldestSegment()))).containsExactly("event3");
+    }
+
+    @Test
+    public void open_shouldNotReuseRecoveredSegmentFiles() throws Exception {
+        subject.append(bytes("old"));
+
+        subject = open();
+        subject.append(bytes("new"));
+        subject.append(bytes("newer"));
+        subject.append(bytes("newest"));
+
+        assertThat(strings(subject.read(subject.getOldestSegment()))).containsExactly("old");
+    }
+
+    @Test
+    public void open_withPartialRecordAtEnd_shouldTruncateSegment() throws Exception {
+        subject.append(bytes("a"));
+        subject.append(bytes("bcdef"));
+        final File segmentFile = subject.getOldestSegment().mFile;
+        truncate(segmentFile, segmentFile.length() - 2);
+
+        subject = open();
+
+        assertThat(strings(subject.read(subject.getOldestSegment()))).containsExactly("a");
+        assertThat(segmentFile.length()).isEqualTo(9);
+    }
+
+    @Test
+    public void open_withCorruptRecord_shouldDropRecordsFromCorruptionOnwards() throws Exception {
+        subject.append(bytes("a"));
+        subject.append(bytes("b"));
+        subject.append(bytes("c"));
+        final File segmentFile = subject.getOldestSegment().mFile;
+        // Flip the payload byte of the second record
+        final RandomAccessFile randomAccessFile = new RandomAccessFile(segmentFile, "rw");
+        randomAccessFile.seek(9 + 8);
+        randomAccessFile.write('x');
+        randomAccessFile.close();
+
+        subject = open();
+
+        assertThat(strings(subject.read(subject.getOldestSegment()))).containsExactly("a");
+        assertThat(subject.getOldestSegment().mRecordCount).isEqualTo(1);
+    }
+
+    @Test
+    public void open_withOnlyCorruptRecords_shouldDeleteSegment() throws Exception {
+        subject.append(bytes("a"));
+        final File segmentFile = subject.getOldestSegment().mFile;
+        truncate(segmentFile, 4);
+
+        subject = open();
+
+        assertThat(subject.isEmpty()).isTrue();
+        assertThat(segmentFile.exists()).isFalse();
+    }
+
+    private EventSegmentLog open() throws Exception {
+        return EventSegmentLog.open(directory, MAX_RECORDS_PER_SEGMENT, MAX_SEGMENT_SIZE_BYTES,
+                MAX_SEGMENT_COUNT);
+    }
+
+    private static void truncate(final File file, final long length) throws Exception {
+        final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        randomAccessFile.setLength(length);
+        randomAccessFile.close();
+    }
+
+    private static byte[] bytes(final String string) {
+        return string.getBytes();
+    }
+
+    private static String[] strings(final List<byte[]> records) {
+        final String[] strings = new String[records.size()];
+        for (int i = 0; i < records.size(); i++) {
+            strings[i] = new String(records.get(i));
+        }
+        return strings;
+    }
+}
@@ -77,6 +77,24 @@ public class EventSerializerTest {
         assertThat(jsonObject.getInt("error_line_number")).isEqualTo(123);
     }
 
+    @Test
+    public void serializeAsJson_withSamplingWeight_shouldIncludeSamplingWeight() throws Exception {
+        when(mockEvent.getSamplingWeight()).thenReturn(12.5);
+
+        JSONObject jsonObject = subject.serializeAsJson(mockEvent);
+
+        assertThat(jsonObject.getDouble("sampling_weight")).isEqualTo(12.5);
+    }
+
+    @Test
+    public void serializeAsJson_withoutSamplingWeight_shouldOmitSamplingWeight() throws Exception {
+        when(mockEvent.getSamplingWeight()).thenReturn(null);
+
+        JSONObject jsonObject = subject.serializeAsJson(mockEvent);
+
+        assertThat(jsonObject.has("sampling_weight")).isFalse();
+    }
+
     @Test
     public void serializeAsJson_shouldReturnJsonArrayOfEvents() throws Exception {
         when(mockEvent.getName()).thenReturn(BaseEvent.Name.AD_REQUEST);
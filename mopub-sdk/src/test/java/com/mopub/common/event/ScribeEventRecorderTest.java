@@ -1,19 +1,27 @@
 package com.mopub.common.event;
 
+import android.app.Activity;
 import android.os.Handler;
 
+import com.mopub.common.ClientMetadata;
 import com.mopub.common.test.support.SdkTestRunner;
 import com.mopub.network.ScribeBackoffPolicy;
 import com.mopub.network.ScribeRequest;
 import com.mopub.network.ScribeRequestManager;
 
+import org.json.JSONArray;
+import org.json.JSONObject;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
+import org.robolectric.Robolectric;
 
+import java.io.File;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Queue;
 
@@ -22,7 +30,9 @@ import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyLong;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -37,6 +47,9 @@ public class ScribeEventRecorderTest {
     @Mock private ScribeRequestManager mockScribeRequestManager;
     @Mock private Handler mockHandler;
     @Mock private Event mockEvent;
+    @Mock private ScribeRequest.Listener mockListener;
+    private File eventLogDirectory;
+    private boolean eventLogDirectoryCleared;
 
     @Before
     public void setUp() {
@@ -206,5 +219,140 @@ public class ScribeEventRecorderTest {
         verify(mockScribeRequestManager).makeRequest(any(ScribeRequest.ScribeRequestFactory.class), any(ScribeBackoffPolicy.class));
         verify(mockHandler).postDelayed(any(ScribeEventRecorder.PollingRunnable.class), eq(Long.valueOf(120000)));
     }
-}
 
+    @Test
+    public void getEventLogDirectory_withoutClientMetadata_shouldReturnNull() throws Exception {
+        assertThat(subject.getEventLogDirectory()).isNull();
+    }
+
+    @Test
+    public void getEventLogDirectory_withClientMetadata_shouldReturnDirectoryInCacheDir() throws Exception {
+        Activity activity = Robolectric.buildActivity(Activity.class).create().get();
+        ClientMetadata.getInstance(activity);
+
+        assertThat(subject.getEventLogDirectory())
+                .isEqualTo(new File(activity.getCacheDir(), "mopub-events"));
+    }
+
+    @Test
+    public void record_withEventLog_shouldAppendToEventLog_shouldNotQueueEvent_shouldScheduleNextPoll() throws Exception {
+        subject = createRecorderWithEventLog(new LinkedList<BaseEvent>());
+
+        subject.record(mockEvent);
+
+        verify(mockQueue, never()).add(any(BaseEvent.class));
+        verify(mockScribeRequestManager, never()).makeRequest(any(ScribeRequest.ScribeRequestFactory.class), any(ScribeBackoffPolicy.class));
+        verify(mockHandler).postDelayed(any(ScribeEventRecorder.PollingRunnable.class), eq(Long.valueOf(120000)));
+        assertThat(eventLogDirectory.list()).hasSize(1);
+    }
+
+    @Test
+    public void record_withEventLog_withQueuedEvents_shouldMoveQueuedEventsToEventLog() throws Exception {
+        final Queue<BaseEvent> eventQueue = new LinkedList<BaseEvent>();
+        eventQueue.add(mockEvent);
+        subject = createRecorderWithEventLog(eventQueue);
+
+        subject.record(mockEvent);
+        subject.sendEvents();
+
+        assertThat(eventQueue).isEmpty();
+        assertThat(getSerializedEventsFromRequest().length()).isEqualTo(2);
+    }
+
+    @Test
+    public void record_withEventLog_atSendThreshold_shouldSendSegmentAsOneBatch() throws Exception {
+        subject = createRecorderWithEventLog(new LinkedList<BaseEvent>());
+
+        for (int i = 0; i < 100; i++) {
+            subject.record(mockEvent);
+        }
+
+        final JSONArray serializedEvents = getSerializedEventsFromRequest();
+        assertThat(serializedEvents.length()).isEqualTo(100);
+        assertThat(serializedEvents.getJSONObject(99).getString("name")).isEqualTo("ad_request");
+    }
+
+    @Test
+    public void sendEvents_withEventLog_onSuccess_shouldDeleteSegment() throws Exception {
+        subject = createRecorderWithEventLog(new LinkedList<BaseEvent>());
+        subject.record(mockEvent);
+        subject.sendEvents();
+        final ScribeRequest scribeRequest = getScribeRequest(mockListener);
+
+        ((ScribeRequest.Listener) scribeRequest.getErrorListener()).onResponse();
+
+        verify(mockListener).onResponse();
+        ArgumentCaptor<Runnable> runnableCaptor = ArgumentCaptor.forClass(Runnable.class);
+        verify(mockHandler).post(runnableCaptor.capture());
+        assertThat(eventLogDirectory.list()).hasSize(1);
+        runnableCaptor.getValue().run();
+        assertThat(eventLogDirectory.list()).isEmpty();
+    }
+
+    @Test
+    public void sendEvents_withEventLog_withoutSuccess_shouldKeepSegment_shouldDropAfterMaxAttempts() throws Exception {
+        subject = createRecorderWithEventLog(new LinkedList<BaseEvent>());
+        subject.record(mockEvent);
+
+        for (int i = 0; i < ScribeEventRecorder.MAX_SEGMENT_SEND_ATTEMPTS; i++) {
+            subject.sendEvents();
+            assertThat(eventLogDirectory.list()).hasSize(1);
+        }
+        verify(mockScribeRequestManager, times(ScribeEventRecorder.MAX_SEGMENT_SEND_ATTEMPTS)).makeRequest(any(ScribeRequest.ScribeRequestFactory.class), any(ScribeBackoffPolicy.class));
+
+        subject.sendEvents();
+
+        assertThat(eventLogDirectory.list()).isEmpty();
+        verify(mockScribeRequestManager, times(ScribeEventRecorder.MAX_SEGMENT_SEND_ATTEMPTS)).makeRequest(any(ScribeRequest.ScribeRequestFactory.class), any(ScribeBackoffPolicy.class));
+    }
+
+    @Test
+    public void record_withEventLog_shouldRecoverEventsFromPreviousProcess() throws Exception {
+        subject = createRecorderWithEventLog(new LinkedList<BaseEvent>());
+        subject.record(mockEvent);
+
+        subject = createRecorderWithEventLog(new LinkedList<BaseEvent>());
+        subject.record(mockEvent);
+
+        // The recovered segment is sealed so it is sent right away
+        assertThat(getSerializedEventsFromRequest().length()).isEqualTo(1);
+    }
+
+    private ScribeEventRecorder createRecorderWithEventLog(final Queue<BaseEvent> eventQueue)
+            throws Exception {
+        Activity activity = Robolectric.buildActivity(Activity.class).create().get();
+        eventLogDirectory = new File(activity.getCacheDir(), "scribe-event-recorder-test");
+        if (!eventLogDirectory.exists()) {
+            eventLogDirectory.mkdirs();
+        } else if (!eventLogDirectoryCleared) {
+            for (final File file : eventLogDirectory.listFiles()) {
+                file.delete();
+            }
+        }
+        eventLogDirectoryCleared = true;
+
+        when(mockEventSerializer.serializeAsJson(any(BaseEvent.class))).thenAnswer(
+                new Answer<JSONObject>() {
+                    @Override
+                    public JSONObject answer(InvocationOnMock invocation) throws Throwable {
+                        return new JSONObject().put("name", "ad_request");
+                    }
+                });
+
+        final ScribeEventRecorder recorder = spy(new ScribeEventRecorder(mockEventSampler,
+                eventQueue, mockEventSerializer, mockScribeRequestManager, mockHandler));
+        doReturn(eventLogDirectory).when(recorder).getEventLogDirectory();
+        return recorder;
+    }
+
+    private ScribeRequest getScribeRequest(final ScribeRequest.Listener listener) {
+        ArgumentCaptor<ScribeRequest.ScribeRequestFactory> factoryCaptor =
+                ArgumentCaptor.forClass(ScribeRequest.ScribeRequestFactory.class);
+        verify(mockScribeRequestManager).makeRequest(factoryCaptor.capture(), any(ScribeBackoffPolicy.class));
+        return factoryCaptor.getValue().createRequest(listener);
+    }
+
+    private JSONArray getSerializedEventsFromRequest() throws Exception {
+        return new JSONArray(getScribeRequest(null).getSerializedEvents().toString());
+    }
+}
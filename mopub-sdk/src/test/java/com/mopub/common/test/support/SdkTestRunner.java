@@ -13,6 +13,7 @@ import com.mopub.common.util.test.support.ShadowAsyncTasks;
 import com.mopub.common.util.test.support.ShadowMoPubHttpUrlConnection;
 import com.mopub.common.util.test.support.TestDateAndTime;
 import com.mopub.common.util.test.support.TestMethodBuilderFactory;
+import com.mopub.mobileads.VastWrapperCache;
 import com.mopub.mobileads.factories.AdViewControllerFactory;
 import com.mopub.mobileads.factories.CustomEventBannerAdapterFactory;
 import com.mopub.mobileads.factories.CustomEventBannerFactory;
@@ -33,6 +34,7 @@ import com.mopub.mobileads.test.support.TestHtmlInterstitialWebViewFactory;
 import com.mopub.mobileads.test.support.TestMoPubViewFactory;
 import com.mopub.mobileads.test.support.TestMraidControllerFactory;
 import com.mopub.mobileads.test.support.TestVastManagerFactory;
+import com.mopub.nativeads.PositioningCache;
 import com.mopub.nativeads.factories.CustomEventNativeFactory;
 import com.mopub.nativeads.test.support.TestCustomEventNativeFactory;
 
@@ -100,6 +102,8 @@ public class SdkTestRunner extends RobolectricTestRunner {
 
             AsyncTasks.setExecutor(new RobolectricBackgroundExecutorService());
             CacheService.clearAndNullCaches();
+            VastWrapperCache.clear();
+            PositioningCache.clear();
         }
     }
 }
@@ -1,6 +1,7 @@
 package com.mopub.mobileads;
 
 import android.os.Handler;
+import android.os.SystemClock;
 import android.support.annotation.NonNull;
 
 import com.mopub.common.test.support.SdkTestRunner;
@@ -8,9 +9,13 @@ import com.mopub.common.test.support.SdkTestRunner;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.mockito.Matchers.anyLong;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.reset;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyZeroInteractions;
@@ -74,6 +79,73 @@ public class RepeatingHandlerRunnableTest {
         verifyZeroInteractions(mockHandler);
     }
 
+    @Test
+    public void run_withDeadline_shouldScheduleAtAlignedDeadline() {
+        final DeadlineRunnable deadlineRunnable = new DeadlineRunnable(mockHandler);
+        deadlineRunnable.startRepeating(250);
+        deadlineRunnable.mDelay = 120;
+
+        final long before = SystemClock.uptimeMillis();
+        deadlineRunnable.run();
+
+        final ArgumentCaptor<Long> uptimeCaptor = ArgumentCaptor.forClass(Long.class);
+        verify(mockHandler).postAtTime(eq(deadlineRunnable), uptimeCaptor.capture());
+        verify(mockHandler, never()).postDelayed(eq(deadlineRunnable), anyLong());
+        final long uptime = uptimeCaptor.getValue();
+        assertThat(uptime % RepeatingHandlerRunnable.WAKEUP_ALIGNMENT_MILLIS).isEqualTo(0);
+        assertThat(uptime).isGreaterThanOrEqualTo(before + 120);
+        assertThat(uptime).isLessThan(
+                SystemClock.uptimeMillis() + 120 + RepeatingHandlerRunnable.WAKEUP_ALIGNMENT_MILLIS);
+        assertThat(deadlineRunnable.getRunCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void run_withNoMoreWork_shouldStopWithoutScheduling() {
+        final DeadlineRunnable deadlineRunnable = new DeadlineRunnable(mockHandler);
+        deadlineRunnable.startRepeating(250);
+        reset(mockHandler);
+        deadlineRunnable.mDelay = RepeatingHandlerRunnable.NO_MORE_WORK;
+
+        deadlineRunnable.run();
+
+        verifyZeroInteractions(mockHandler);
+        assertThat(deadlineRunnable.shouldBeRunning()).isFalse();
+
+        deadlineRunnable.startRepeating(250);
+        verify(mockHandler).post(eq(deadlineRunnable));
+    }
+
+    @Test
+    public void alignWakeup_shouldRoundUpToAlignment() {
+        assertThat(RepeatingHandlerRunnable.alignWakeup(1000)).isEqualTo(1000);
+        assertThat(RepeatingHandlerRunnable.alignWakeup(1001)).isEqualTo(1050);
+        assertThat(RepeatingHandlerRunnable.alignWakeup(1049)).isEqualTo(1050);
+    }
+
+    @Test
+    public void alignWakeup_withNearbyDeadlines_shouldCoalesce() {
+        assertThat(RepeatingHandlerRunnable.alignWakeup(10210))
+                .isEqualTo(RepeatingHandlerRunnable.alignWakeup(10249));
+    }
+
+    private static class DeadlineRunnable extends RepeatingHandlerRunnable {
+        long mDelay = NO_DEADLINE;
+
+        DeadlineRunnable(@NonNull final Handler handler) {
+            super(handler);
+        }
+
+        @Override
+        public void doWork() {
+            // pass
+        }
+
+        @Override
+        protected long getMillisUntilNextWork() {
+            return mDelay;
+        }
+    }
+
     private static class NoopRepeatingHandlerRunnable extends RepeatingHandlerRunnable {
 
         NoopRepeatingHandlerRunnable(@NonNull final Handler handler) {
@@ -0,0 +1,138 @@
+package com.mopub.mobileads;
+
+import com.mopub.common.test.support.SdkTestRunner;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+@RunWith(SdkTestRunner.class)
+public class VastMacroTemplateTest {
+
+    private static final List<String> URIS = Arrays.asList(
+            "http://www.derp.com/herp?errorcode=[ERRORCODE]&contentplayhead=[CONTENTPLAYHEAD]&asseturi=[ASSETURI]&cachebusting=[CACHEBUSTING]",
+            "http://www.derp.com/herp",
+            "[ERRORCODE]",
+            "[ERRORCODE][ERRORCODE][CONTENTPLAYHEAD]",
+            "http://www.derp.com/[UNKNOWN]?e=[ERRORCODE]",
+            "http://www.derp.com/[[ERRORCODE]]",
+            "http://www.derp.com/[CACHE[ERRORCODE]BUSTING]",
+            "http://www.derp.com/[ERRORCODE",
+            "http://www.derp.com/ERRORCODE]",
+            "http://www.derp.com/[errorcode]",
+            "http://www.derp.com/]ERRORCODE[");
+
+    private Map<VastMacro, String> macroDataMap;
+
+    @Before
+    public void setUp() {
+        macroDataMap = new HashMap<VastMacro, String>();
+        macroDataMap.put(VastMacro.CACHEBUSTING, "12345678");
+    }
+
+    @Test
+    public void compile_withNoMacros_shouldNotHaveMacros() {
+        assertThat(VastMacroTemplate.compile("http://www.derp.com/herp").hasMacros()).isFalse();
+        assertThat(VastMacroTemplate.compile("http://www.derp.com/[UNKNOWN]").hasMacros())
+                .isFalse();
+    }
+
+    @Test
+    public void compile_withMacros_shouldHaveMacros() {
+        assertThat(VastMacroTemplate.compile("[ERRORCODE]").hasMacros()).isTrue();
+        assertThat(VastMacroTemplate.compile("http://a.b/[[ASSETURI]]").hasMacros()).isTrue();
+    }
+
+    @Test
+    public void expand_shouldMatchSequentialReplacement() {
+        assertExpandsLikeReplaceAll();
+
+        macroDataMap.put(VastMacro.ERRORCODE, "900");
+        macroDataMap.put(VastMacro.CONTENTPLAYHEAD, "00:01:40.000");
+        macroDataMap.put(VastMacro.ASSETURI, "http%3A%2F%2Fa.ss.et");
+        assertExpandsLikeReplaceAll();
+    }
+
+    @Test
+    public void expand_withValuesContainingMacros_shouldMatchSequentialReplacement() {
+        macroDataMap.put(VastMacro.ERRORCODE, "[CACHEBUSTING]");
+        macroDataMap.put(VastMacro.CONTENTPLAYHEAD, "CACHE");
+        macroDataMap.put(VastMacro.ASSETURI, "[ERRORCODE]");
+        assertExpandsLikeReplaceAll();
+    }
+
+    @Test
+    public void expand_withReplacementEscapesInValue_shouldMatchSequentialReplacement() {
+        macroDataMap.put(VastMacro.ASSETURI, "a\\b\\$c");
+        assertExpandsLikeReplaceAll();
+    }
+
+    @Test
+    public void canExpandInOnePass_withStrayBracket_shouldReturnFalse() {
+        final String[] values = new String[VastMacro.values().length];
+
+        assertThat(VastMacroTemplate.compile("http://a.b/[ERRORCODE]").canExpandInOnePass(values))
+                .isTrue();
+        assertThat(VastMacroTemplate.compile("http://a.b/[CACHE[ERRORCODE]BUSTING]")
+                .canExpandInOnePass(values)).isFalse();
+        assertThat(VastMacroTemplate.compile("http://a.b/[ERRORCODE]?[")
+                .canExpandInOnePass(values)).isFalse();
+    }
+
+    @Test
+    public void canExpandInOnePass_withBracketOrEscapeInValue_shouldReturnFalse() {
+        final VastMacroTemplate template = VastMacroTemplate.compile("http://a.b/[ASSETURI]");
+        final String[] values = new String[VastMacro.values().length];
+
+        values[VastMacro.ASSETURI.ordinal()] = "http%3A%2F%2Fa.ss.et";
+        assertThat(template.canExpandInOnePass(values)).isTrue();
+        values[VastMacro.ASSETURI.ordinal()] = "$1";
+        assertThat(template.canExpandInOnePass(values)).isFalse();
+        values[VastMacro.ASSETURI.ordinal()] = "[CACHEBUSTING]";
+        assertThat(template.canExpandInOnePass(values)).isFalse();
+    }
+
+    @Test
+    public void getMacroTemplate_shouldCompileOncePerTracker() {
+        final VastTracker vastTracker = new VastTracker("http://a.b/[ERRORCODE]");
+
+        final VastMacroTemplate template = vastTracker.getMacroTemplate();
+
+        assertThat(vastTracker.getMacroTemplate()).isSameAs(template);
+        assertThat(template.getUri()).isEqualTo("http://a.b/[ERRORCODE]");
+    }
+
+    @Test
+    public void fromVastTrackers_shouldExpandTrackerUrlsAndSkipEmptyOnes() {
+        final VastMacroHelper subject = VastMacroHelper.fromVastTrackers(Arrays.asList(
+                new VastTracker("http://a.b/?e=[ERRORCODE]&p=[CONTENTPLAYHEAD]"),
+                new VastTracker(""),
+                new VastTracker("http://a.b/c")))
+                .withErrorCode(VastErrorCode.UNDEFINED_ERROR)
+                .withContentPlayHead(500);
+
+        assertThat(subject.getUris()).containsExactly(
+                "http://a.b/?e=900&p=00:00:00.500", "http://a.b/c");
+    }
+
+    private void assertExpandsLikeReplaceAll() {
+        for (final String uri : URIS) {
+            final String expected = VastMacroHelper.replaceMacros(uri, macroDataMap);
+
+            final VastMacroHelper subject = new VastMacroHelper(Collections.singletonList(uri));
+            for (final Map.Entry<VastMacro, String> entry : macroDataMap.entrySet()) {
+                subject.putMacroValue(entry.getKey(), entry.getValue());
+            }
+
+            assertThat(subject.getUris()).as(uri).containsExactly(expected);
+        }
+    }
+}
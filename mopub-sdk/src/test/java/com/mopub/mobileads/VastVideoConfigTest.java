@@ -143,6 +143,97 @@ public class VastVideoConfigTest {
         assertThat(((VastFractionalProgressTracker) tracker4).trackingFraction()).isEqualTo(0.75f);
     }
 
+    @Test
+    public void getUntriggeredTrackersBefore_afterSeekBackward_shouldNotReturnTrackedTrackers() throws Exception {
+        subject.addAbsoluteTrackers(
+                Arrays.asList(new VastAbsoluteProgressTracker("1secs", 1000),
+                        new VastAbsoluteProgressTracker("5secs", 5000)));
+        subject.addFractionalTrackers(
+                Arrays.asList(new VastFractionalProgressTracker("half", 0.5f)));
+
+        for (VastTracker tracker : subject.getUntriggeredTrackersBefore(6000, 10000)) {
+            tracker.setTracked();
+        }
+
+        assertThat(subject.getUntriggeredTrackersBefore(500, 10000)).isEmpty();
+        assertThat(subject.getUntriggeredTrackersBefore(6000, 10000)).isEmpty();
+        assertThat(subject.getRemainingProgressTrackerCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void getUntriggeredTrackersBefore_afterSeekForward_shouldReturnEverySkippedTracker() throws Exception {
+        subject.addAbsoluteTrackers(
+                Arrays.asList(new VastAbsoluteProgressTracker("1secs", 1000),
+                        new VastAbsoluteProgressTracker("5secs", 5000),
+                        new VastAbsoluteProgressTracker("9secs", 9000)));
+        subject.getUntriggeredTrackersBefore(1000, 10000).get(0).setTracked();
+
+        final List<VastTracker> untriggeredTrackers =
+                subject.getUntriggeredTrackersBefore(9500, 10000);
+
+        assertThat(untriggeredTrackers).hasSize(2);
+        assertThat(untriggeredTrackers.get(0).getTrackingUrl()).isEqualTo("5secs");
+        assertThat(untriggeredTrackers.get(1).getTrackingUrl()).isEqualTo("9secs");
+    }
+
+    @Test
+    public void getNextProgressTrackerMillis_shouldReturnEarliestUntriggeredTracker() throws Exception {
+        subject.addAbsoluteTrackers(
+                Arrays.asList(new VastAbsoluteProgressTracker("2secs", 2000),
+                        new VastAbsoluteProgressTracker("8secs", 8000)));
+        subject.addFractionalTrackers(
+                Arrays.asList(new VastFractionalProgressTracker("quarter", 0.25f),
+                        new VastFractionalProgressTracker("half", 0.5f)));
+
+        assertThat(subject.getNextProgressTrackerMillis(10000)).isEqualTo(2000);
+        assertThat(subject.getNextProgressTrackerMillis(4000)).isEqualTo(1000);
+
+        for (VastTracker tracker : subject.getUntriggeredTrackersBefore(2500, 10000)) {
+            tracker.setTracked();
+        }
+        assertThat(subject.getNextProgressTrackerMillis(10000)).isEqualTo(5000);
+
+        for (VastTracker tracker : subject.getUntriggeredTrackersBefore(8000, 10000)) {
+            tracker.setTracked();
+        }
+        assertThat(subject.getNextProgressTrackerMillis(10000)).isEqualTo(Integer.MAX_VALUE);
+    }
+
+    @Test
+    public void getNextProgressTrackerMillis_withFractionalTracker_shouldMatchFirstPositionReturningIt() throws Exception {
+        final int videoLength = 58837;
+        subject.addFractionalTrackers(
+                Arrays.asList(new VastFractionalProgressTracker("third", 1 / 3f)));
+
+        final int next = subject.getNextProgressTrackerMillis(videoLength);
+
+        assertThat(subject.getUntriggeredTrackersBefore(next - 1, videoLength)).isEmpty();
+        assertThat(subject.getUntriggeredTrackersBefore(next, videoLength)).hasSize(1);
+    }
+
+    @Test
+    public void getNextProgressTrackerMillis_withNoTrackersOrInvalidLength_shouldReturnMaxValue() throws Exception {
+        assertThat(subject.getNextProgressTrackerMillis(10000)).isEqualTo(Integer.MAX_VALUE);
+
+        subject.addAbsoluteTrackers(
+                Arrays.asList(new VastAbsoluteProgressTracker("2secs", 2000)));
+        assertThat(subject.getNextProgressTrackerMillis(0)).isEqualTo(Integer.MAX_VALUE);
+    }
+
+    @Test
+    public void addAbsoluteTrackers_afterTrackersFired_shouldReturnEarlierNewTracker() throws Exception {
+        subject.addAbsoluteTrackers(
+                Arrays.asList(new VastAbsoluteProgressTracker("5secs", 5000)));
+        subject.getUntriggeredTrackersBefore(5000, 10000).get(0).setTracked();
+        assertThat(subject.getNextProgressTrackerMillis(10000)).isEqualTo(Integer.MAX_VALUE);
+
+        subject.addAbsoluteTrackers(
+                Arrays.asList(new VastAbsoluteProgressTracker("1secs", 1000)));
+
+        assertThat(subject.getNextProgressTrackerMillis(10000)).isEqualTo(1000);
+        assertThat(subject.getUntriggeredTrackersBefore(5000, 10000)).hasSize(1);
+    }
+
     @Test
     public void handleClick_withNullClickThroughUrl_shouldNotOpenNewActivity() throws Exception {
         subject.handleClick(activity, 1234, 1);
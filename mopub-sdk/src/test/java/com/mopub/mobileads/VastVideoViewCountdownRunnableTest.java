@@ -9,6 +9,9 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -45,4 +48,27 @@ public class VastVideoViewCountdownRunnableTest {
         verify(mockVideoViewController).updateCountdown();
         verify(mockVideoViewController, never()).makeVideoInteractable();
     }
+
+    @Test
+    public void getMillisUntilNextWork_beforeInteractable_shouldWakeAtIntervalOrWhenSkippable() {
+        subject.startRepeating(250);
+
+        when(mockVideoViewController.getMillisUntilInteractable()).thenReturn(4000L);
+        assertThat(subject.getMillisUntilNextWork()).isEqualTo(250);
+
+        when(mockVideoViewController.getMillisUntilInteractable()).thenReturn(120L);
+        assertThat(subject.getMillisUntilNextWork()).isEqualTo(120);
+    }
+
+    @Test
+    public void run_afterInteractable_shouldStopRescheduling() {
+        subject.startRepeating(250);
+        when(mockVideoViewController.getMillisUntilInteractable()).thenReturn(-1L);
+
+        subject.run();
+
+        assertThat(subject.shouldBeRunning()).isFalse();
+        verify(mockHandler, never()).postAtTime(eq(subject), anyLong());
+        verify(mockHandler, never()).postDelayed(eq(subject), anyLong());
+    }
 }
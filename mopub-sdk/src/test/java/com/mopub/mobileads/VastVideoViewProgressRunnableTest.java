@@ -14,8 +14,11 @@ import org.junit.runner.RunWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
 import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import static org.fest.assertions.api.Assertions.assertThat;
@@ -96,4 +99,67 @@ public class VastVideoViewProgressRunnableTest {
 
         verifyNoMoreInteractions(mockVastVideoViewController, mockRequestQueue);
     }
+
+    @Test
+    public void doWork_beforeNextTrackerIsDue_shouldNotCollectTrackers() {
+        when(mockVideoConfig.getNextProgressTrackerMillis(eq(4000))).thenReturn(3500);
+        when(mockVastVideoViewController.getCurrentPosition()).thenReturn(3000);
+        when(mockVastVideoViewController.getDuration()).thenReturn(4000);
+
+        subject.doWork();
+
+        verify(mockVideoConfig).getNextProgressTrackerMillis(eq(4000));
+        verifyNoMoreInteractions(mockVideoConfig);
+        verify(mockVastVideoViewController).handleIconDisplay(eq(3000));
+        verify(mockVastVideoViewController).updateProgressBar();
+        verifyNoMoreInteractions(mockRequestQueue);
+    }
+
+    @Test
+    public void getMillisUntilNextWork_shouldUseUpdateInterval() {
+        subject.startRepeating(50);
+        when(mockVastVideoViewController.getDuration()).thenReturn(-1);
+        subject.doWork();
+
+        assertThat(subject.getMillisUntilNextWork()).isEqualTo(50);
+
+        when(mockVastVideoViewController.getCurrentPosition()).thenReturn(3000);
+        when(mockVastVideoViewController.getDuration()).thenReturn(10000);
+        when(mockVideoConfig.getNextProgressTrackerMillis(eq(10000))).thenReturn(5000);
+        subject.doWork();
+
+        assertThat(subject.getMillisUntilNextWork()).isEqualTo(50);
+    }
+
+    @Test
+    public void doWork_overWholeVideo_shouldTrackEveryProgressTracker() {
+        final VastVideoConfig vastVideoConfig = new VastVideoConfig();
+        vastVideoConfig.addAbsoluteTrackers(
+                Arrays.asList(new VastAbsoluteProgressTracker("http://example.com/start", 2000)));
+        vastVideoConfig.addFractionalTrackers(
+                Arrays.asList(new VastFractionalProgressTracker("http://example.com/q1", 0.25f),
+                        new VastFractionalProgressTracker("http://example.com/mid", 0.5f),
+                        new VastFractionalProgressTracker("http://example.com/q3", 0.75f)));
+        subject = new VastVideoViewProgressRunnable(mockVastVideoViewController, vastVideoConfig,
+                mockHandler);
+        subject.startRepeating(50);
+        final int[] position = new int[1];
+        when(mockVastVideoViewController.getDuration()).thenReturn(30000);
+        when(mockVastVideoViewController.getCurrentPosition()).thenAnswer(new Answer<Integer>() {
+            @Override
+            public Integer answer(final InvocationOnMock invocation) {
+                return position[0];
+            }
+        });
+
+        int wakeups = 0;
+        while (position[0] < 30000) {
+            subject.doWork();
+            wakeups++;
+            position[0] += subject.getMillisUntilNextWork();
+        }
+
+        assertThat(wakeups).isEqualTo(600);
+        assertThat(vastVideoConfig.getRemainingProgressTrackerCount()).isEqualTo(0);
+    }
 }
@@ -0,0 +1,123 @@
+package com.mopub.mobileads;
+
+import com.mopub.common.test.support.SdkTestRunner;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.mopub.mobileads.test.support.VastUtils.createNode;
+import static org.fest.assertions.api.Assertions.assertThat;
+
+@RunWith(SdkTestRunner.class)
+public class VastXmlElementTest {
+
+    private VastXmlElement subject;
+
+    @Before
+    public void setup() throws Exception {
+        String xml = "<Root version=\"3.0\">" +
+                "   <![CDATA[ root text ]]>" +
+                "   <Tracking event=\"start\">http://start</Tracking>" +
+                "   <Tracking event=\"pause\">http://pause</Tracking>" +
+                "   <Tracking event=\"start\"><![CDATA[ http://start2 ]]></Tracking>" +
+                "   <Empty/>" +
+                "   <Nested width=\"12\" height=\"abc\">" +
+                "       <Tracking event=\"start\">http://nested</Tracking>" +
+                "   </Nested>" +
+                "</Root>";
+        subject = VastXmlElement.fromNode(createNode(xml));
+    }
+
+    @Test
+    public void fromNode_shouldCopyNameAndTextBeforeFirstChild() throws Exception {
+        assertThat(subject.getName()).isEqualTo("Root");
+        assertThat(subject.getText()).isEqualTo("root text");
+    }
+
+    @Test
+    public void getText_withNoCharacterData_shouldReturnNull() throws Exception {
+        assertThat(subject.getFirstChild("Empty").getText()).isNull();
+    }
+
+    @Test
+    public void getText_withChildElementFirst_shouldReturnNull() throws Exception {
+        VastXmlElement element = VastXmlElement.fromNode(createNode("<A><B/>text</A>"));
+
+        assertThat(element.getText()).isNull();
+    }
+
+    @Test
+    public void getAttribute_shouldReturnValueOrNull() throws Exception {
+        assertThat(subject.getAttribute("version")).isEqualTo("3.0");
+        assertThat(subject.getAttribute("missing")).isNull();
+    }
+
+    @Test
+    public void getAttributeAsInt_shouldReturnIntegerOrNull() throws Exception {
+        VastXmlElement nested = subject.getFirstChild("Nested");
+
+        assertThat(nested.getAttributeAsInt("width")).isEqualTo(12);
+        assertThat(nested.getAttributeAsInt("height")).isNull();
+        assertThat(nested.getAttributeAsInt("missing")).isNull();
+    }
+
+    @Test
+    public void getFirstChild_shouldOnlyLookAtDirectChildren() throws Exception {
+        assertThat(subject.getFirstChild("Tracking").getText()).isEqualTo("http://start");
+        assertThat(subject.getFirstChild("Missing")).isNull();
+        assertThat(subject.getFirstChildText("Missing")).isNull();
+    }
+
+    @Test
+    public void getChildren_shouldReturnAllMatchingDirectChildrenInOrder() throws Exception {
+        List<VastXmlElement> trackers = subject.getChildren("Tracking");
+
+        assertThat(trackers).hasSize(3);
+        assertThat(trackers.get(0).getText()).isEqualTo("http://start");
+        assertThat(trackers.get(1).getText()).isEqualTo("http://pause");
+        assertThat(trackers.get(2).getText()).isEqualTo("http://start2");
+    }
+
+    @Test
+    public void getChildren_withAttributeFilter_shouldReturnOnlyMatchingChildren() throws Exception {
+        List<VastXmlElement> trackers = subject.getChildren("Tracking", "event", "start");
+
+        assertThat(trackers).hasSize(2);
+        assertThat(trackers.get(0).getText()).isEqualTo("http://start");
+        assertThat(trackers.get(1).getText()).isEqualTo("http://start2");
+        assertThat(subject.getChildren("Tracking", "event", "resume")).isEmpty();
+        assertThat(subject.getChildren("Tracking", "event", null)).isEmpty();
+    }
+
+    @Test
+    public void collectDescendants_shouldReturnAllElementsInDocumentOrder() throws Exception {
+        List<VastXmlElement> trackers = new ArrayList<VastXmlElement>();
+        subject.collectDescendants("Tracking", trackers);
+
+        assertThat(trackers).hasSize(4);
+        assertThat(trackers.get(3).getText()).isEqualTo("http://nested");
+    }
+
+    @Test
+    public void getFirstDescendantText_shouldSkipElementsWithoutText() throws Exception {
+        VastXmlElement element = VastXmlElement.fromNode(
+                createNode("<A><Error/><B><Error> http://error </Error></B></A>"));
+
+        assertThat(element.getFirstDescendantText("Error")).isEqualTo("http://error");
+        assertThat(element.getFirstDescendantText("Missing")).isNull();
+    }
+
+    @Test
+    public void appendText_shouldConcatenateCharacterData() throws Exception {
+        VastXmlElement element = new VastXmlElement("Impression", null);
+        element.appendText(" http://");
+        element.appendText("impression ");
+
+        assertThat(element.getText()).isEqualTo("http://impression");
+        assertThat(element.getAttribute("id")).isNull();
+    }
+}
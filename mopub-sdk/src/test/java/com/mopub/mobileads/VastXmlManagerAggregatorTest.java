@@ -7,6 +7,9 @@ import android.graphics.Point;
 import android.view.Display;
 import android.view.WindowManager;
 
+import com.mopub.common.event.BaseEvent;
+import com.mopub.common.event.EventDispatcher;
+import com.mopub.common.event.MoPubEvents;
 import com.mopub.common.test.support.SdkTestRunner;
 import com.mopub.common.util.test.support.ShadowMoPubHttpUrlConnection;
 import com.mopub.mobileads.test.support.VastUtils;
@@ -16,12 +19,17 @@ import com.mopub.network.Networking;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 import org.robolectric.Robolectric;
 import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowSystemClock;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -34,6 +42,8 @@ import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.argThat;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
@@ -915,6 +925,39 @@ public class VastXmlManagerAggregatorTest {
         assertThat(bestIcon.getVastResource().getResource()).isEqualTo("HTMLResource");
     }
 
+    @Test
+    public void evaluateVastXmlManager_withPullAndDomParsers_shouldReturnIdenticalVastVideoConfigurations() throws Exception {
+        final String[] vastXmlStrings = {
+                TEST_VAST_XML_STRING,
+                TEST_NESTED_VAST_XML_STRING,
+                TEST_NESTED_NO_COMPANION_VAST_XML_STRING,
+                TEST_VAST_BAD_NEST_URL_XML_STRING,
+                TEST_JUST_ERROR_XML_STRING,
+                TEST_INVALID_VAST_XML_STRING,
+                TEST_INVALID_XML_STRING,
+                TEST_VAST_WITH_NEGATIVE_SEQUENCE_NUMBER_XML_STRING
+        };
+
+        for (String vastXmlString : vastXmlStrings) {
+            final VastVideoConfig pullConfig =
+                    evaluateWithParser(vastXmlString, VastXmlManager.Parser.PULL);
+            final VastVideoConfig domConfig =
+                    evaluateWithParser(vastXmlString, VastXmlManager.Parser.DOM);
+
+            if (domConfig == null) {
+                assertThat(pullConfig).isNull();
+            } else {
+                assertThat(VastUtils.serialize(pullConfig))
+                        .isEqualTo(VastUtils.serialize(domConfig));
+            }
+        }
+
+        // Make sure the comparison above covered real configurations
+        assertThat(evaluateWithParser(TEST_VAST_XML_STRING, VastXmlManager.Parser.PULL)
+                .getNetworkMediaFileUrl())
+                .isEqualTo("https://s3.amazonaws.com/mopub-vast/tapad-video.mp4");
+    }
+
     @Test
     public void evaluateVastXmlManager_withStandardInline_shouldReturnValidVastVideoConfiguration() {
         VastVideoConfig vastVideoConfig = subject.evaluateVastXmlManager(
@@ -1225,6 +1268,89 @@ public class VastXmlManagerAggregatorTest {
         verifyNoMoreInteractions(mockRequestQueue);
     }
 
+    @Test
+    public void evaluateVastXmlManager_withCachedWrapperResponse_shouldNotMakeNetworkRequest() throws Exception {
+        ShadowMoPubHttpUrlConnection.addPendingResponse(200, TEST_NESTED_VAST_XML_STRING);
+        subject.evaluateVastXmlManager(TEST_VAST_XML_STRING, new ArrayList<VastTracker>());
+        assertThat(ShadowMoPubHttpUrlConnection.getPendingUrlConnections()).isEmpty();
+
+        final VastXmlManagerAggregator secondAggregator = new VastXmlManagerAggregator(
+                vastXmlManagerAggregatorListener, 800.0 / 480, 800 * 480, context);
+        VastVideoConfig vastVideoConfig = secondAggregator.evaluateVastXmlManager(
+                TEST_VAST_XML_STRING, new ArrayList<VastTracker>());
+
+        assertThat(vastVideoConfig.getNetworkMediaFileUrl()).isEqualTo("https://s3" +
+                ".amazonaws.com/mopub-vast/tapad-video.mp4");
+    }
+
+    @Test
+    public void evaluateVastXmlManager_withExpiredCachedWrapperResponse_shouldMakeNetworkRequest() throws Exception {
+        ShadowMoPubHttpUrlConnection.addPendingResponse(200, TEST_NESTED_VAST_XML_STRING);
+        subject.evaluateVastXmlManager(TEST_VAST_XML_STRING, new ArrayList<VastTracker>());
+
+        ShadowSystemClock.sleep(VastWrapperCache.TIME_TO_LIVE_MS);
+        final VastXmlManagerAggregator secondAggregator = new VastXmlManagerAggregator(
+                vastXmlManagerAggregatorListener, 800.0 / 480, 800 * 480, context);
+        VastVideoConfig vastVideoConfig = secondAggregator.evaluateVastXmlManager(
+                TEST_VAST_XML_STRING, new ArrayList<VastTracker>());
+
+        // There is no pending response so the network request fails
+        assertThat(vastVideoConfig).isNull();
+    }
+
+    @Test
+    public void evaluateVastXmlManager_withNon200WrapperResponse_shouldNotCacheResponse() throws Exception {
+        ShadowMoPubHttpUrlConnection.addPendingResponse(203, TEST_NESTED_VAST_XML_STRING);
+        subject.evaluateVastXmlManager(TEST_VAST_XML_STRING, new ArrayList<VastTracker>());
+
+        assertThat(VastWrapperCache.get("http://dsp.x-team.staging.mopub.com/xml")).isNull();
+    }
+
+    @Test
+    public void evaluateVastXmlManager_whenWrapperChainExceedsTimeBudget_shouldStopFollowingRedirects_shouldFireErrorTracker() throws Exception {
+        ShadowMoPubHttpUrlConnection.addPendingResponse(200, TEST_VAST_XML_STRING);
+        final HttpURLConnection slowUrlConnection =
+                (HttpURLConnection) ShadowMoPubHttpUrlConnection.getPendingUrlConnections().peek();
+        when(slowUrlConnection.getInputStream()).thenAnswer(new Answer<InputStream>() {
+            @Override
+            public InputStream answer(final InvocationOnMock invocation) throws Throwable {
+                ShadowSystemClock.sleep(VastXmlManagerAggregator.MAX_WRAPPER_CHAIN_DURATION_MS);
+                return new ByteArrayInputStream(TEST_VAST_XML_STRING.getBytes());
+            }
+        });
+        ShadowMoPubHttpUrlConnection.addPendingResponse(200, TEST_NESTED_VAST_XML_STRING);
+
+        VastVideoConfig vastVideoConfig = subject.evaluateVastXmlManager(
+                TEST_VAST_XML_STRING, new ArrayList<VastTracker>());
+
+        assertThat(vastVideoConfig).isNull();
+        assertThat(ShadowMoPubHttpUrlConnection.getPendingUrlConnections()).hasSize(1);
+        verify(slowUrlConnection).setConnectTimeout(VastXmlManagerAggregator.MAX_WRAPPER_CHAIN_DURATION_MS);
+        verify(slowUrlConnection).setReadTimeout(VastXmlManagerAggregator.MAX_WRAPPER_CHAIN_DURATION_MS);
+        verify(mockRequestQueue, times(2)).add(argThat(isUrl("http://wrapperErrorOne?errorcode=301")));
+    }
+
+    @Test
+    public void evaluateVastXmlManager_withSuccessfulWrapperRequest_shouldNotDisconnect_shouldLogEvent() throws Exception {
+        final EventDispatcher mockEventDispatcher = mock(EventDispatcher.class);
+        MoPubEvents.setEventDispatcher(mockEventDispatcher);
+        ShadowMoPubHttpUrlConnection.addPendingResponse(200, TEST_NESTED_VAST_XML_STRING);
+        final HttpURLConnection urlConnection =
+                (HttpURLConnection) ShadowMoPubHttpUrlConnection.getPendingUrlConnections().peek();
+
+        subject.evaluateVastXmlManager(TEST_VAST_XML_STRING, new ArrayList<VastTracker>());
+
+        verify(urlConnection, never()).disconnect();
+        final ArgumentCaptor<BaseEvent> eventCaptor = ArgumentCaptor.forClass(BaseEvent.class);
+        verify(mockEventDispatcher).dispatch(eventCaptor.capture());
+        final BaseEvent event = eventCaptor.getValue();
+        assertThat(event.getName()).isEqualTo(BaseEvent.Name.VAST_WRAPPER_REQUEST);
+        assertThat(event.getCategory()).isEqualTo(BaseEvent.Category.REQUESTS);
+        assertThat(event.getRequestUri()).isEqualTo("http://dsp.x-team.staging.mopub.com/xml");
+        assertThat(event.getRequestStatusCode()).isEqualTo(200);
+        assertThat(event.getPerformanceDurationMs()).isNotNull();
+    }
+
     private VastMediaXmlManager initializeMediaXmlManagerMock(
             final Integer width,
             final Integer height,
@@ -1339,4 +1465,16 @@ public class VastXmlManagerAggregatorTest {
         return mockResourceXmlManager;
     }
 
+    private VastVideoConfig evaluateWithParser(final String vastXml,
+            final VastXmlManager.Parser parser) throws Exception {
+        // Each document may redirect at most once to the nested inline document
+        ShadowMoPubHttpUrlConnection.reset();
+        VastWrapperCache.clear();
+        ShadowMoPubHttpUrlConnection.addPendingResponse(200, TEST_NESTED_VAST_XML_STRING);
+
+        final VastXmlManagerAggregator aggregator = new VastXmlManagerAggregator(
+                vastXmlManagerAggregatorListener, 800.0 / 480, 800 * 480, context);
+        aggregator.setVastXmlParser(parser);
+        return aggregator.evaluateVastXmlManager(vastXml, new ArrayList<VastTracker>());
+    }
 }
@@ -10,6 +10,7 @@ import org.junit.runner.RunWith;
 import org.xml.sax.SAXException;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 
 import javax.xml.parsers.ParserConfigurationException;
@@ -421,6 +422,69 @@ public class VastXmlManagerTest {
         assertThat(badManager.getAdXmlManagers()).isEmpty();
     }
 
+    @Test(expected = SAXException.class)
+    public void parseVastXml_withPullParser_withMalformedXml_shouldThrowSAXException() throws Exception {
+        String badXml = "<im>going<<<to||***crash></,>CDATA[]YOUR_FACE";
+
+        new VastXmlManager(VastXmlManager.Parser.PULL).parseVastXml(badXml);
+    }
+
+    @Test(expected = SAXException.class)
+    public void parseVastXml_withDomParser_withMalformedXml_shouldThrowSAXException() throws Exception {
+        String badXml = "<im>going<<<to||***crash></,>CDATA[]YOUR_FACE";
+
+        new VastXmlManager(VastXmlManager.Parser.DOM).parseVastXml(badXml);
+    }
+
+    @Test
+    public void parseVastXml_withPullAndDomParsers_shouldProduceTheSameData() throws Exception {
+        VastXmlManager pullManager = new VastXmlManager(VastXmlManager.Parser.PULL);
+        pullManager.parseVastXml(XML_HEADER_TAG + TEST_VAST_XML_STRING);
+        VastXmlManager domManager = new VastXmlManager(VastXmlManager.Parser.DOM);
+        domManager.parseVastXml(XML_HEADER_TAG + TEST_VAST_XML_STRING);
+
+        assertThat(VastUtils.vastTrackersToStrings(pullManager.getMoPubImpressionTrackers()))
+                .isEqualTo(VastUtils.vastTrackersToStrings(domManager.getMoPubImpressionTrackers()));
+        assertThat(pullManager.getCustomCtaText()).isEqualTo(domManager.getCustomCtaText());
+        assertThat(pullManager.getCustomSkipText()).isEqualTo(domManager.getCustomSkipText());
+        assertThat(pullManager.getCustomCloseIconUrl())
+                .isEqualTo(domManager.getCustomCloseIconUrl());
+        assertThat(pullManager.getCustomForceOrientation())
+                .isEqualTo(domManager.getCustomForceOrientation());
+
+        List<VastAdXmlManager> pullAds = pullManager.getAdXmlManagers();
+        List<VastAdXmlManager> domAds = domManager.getAdXmlManagers();
+        assertThat(pullAds).hasSize(domAds.size());
+        for (int i = 0; i < pullAds.size(); i++) {
+            assertThat(pullAds.get(i).getSequence()).isEqualTo(domAds.get(i).getSequence());
+
+            VastLinearXmlManager pullLinear =
+                    pullAds.get(i).getInLineXmlManager().getLinearXmlManagers().get(0);
+            VastLinearXmlManager domLinear =
+                    domAds.get(i).getInLineXmlManager().getLinearXmlManagers().get(0);
+            assertThat(VastUtils.serialize(new ArrayList<VastTracker>(pullLinear.getAbsoluteProgressTrackers())))
+                    .isEqualTo(VastUtils.serialize(new ArrayList<VastTracker>(domLinear.getAbsoluteProgressTrackers())));
+            assertThat(VastUtils.serialize(new ArrayList<VastTracker>(pullLinear.getFractionalProgressTrackers())))
+                    .isEqualTo(VastUtils.serialize(new ArrayList<VastTracker>(domLinear.getFractionalProgressTrackers())));
+            assertThat(VastUtils.vastTrackersToStrings(pullLinear.getClickTrackers()))
+                    .isEqualTo(VastUtils.vastTrackersToStrings(domLinear.getClickTrackers()));
+            assertThat(pullLinear.getClickThroughUrl()).isEqualTo(domLinear.getClickThroughUrl());
+            assertThat(pullLinear.getSkipOffset()).isEqualTo(domLinear.getSkipOffset());
+            assertThat(pullLinear.getMediaXmlManagers().get(0).getMediaUrl())
+                    .isEqualTo(domLinear.getMediaXmlManagers().get(0).getMediaUrl());
+        }
+    }
+
+    @Test
+    public void parseVastXml_withPullParser_withTextAfterChildElement_shouldIgnoreTrailingText() throws Exception {
+        String vastXml = "<VAST><Error><Nested/>http://trailing</Error><Error> http://error </Error></VAST>";
+
+        VastXmlManager subject = new VastXmlManager(VastXmlManager.Parser.PULL);
+        subject.parseVastXml(vastXml);
+
+        assertThat(subject.getErrorTracker().getTrackingUrl()).isEqualTo("http://error");
+    }
+
     @Test
     public void getAdXmlManagers_shouldReturnAllAdXmlManagers() throws Exception {
         String vastXml = "<VAST xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\" version=\"2.0\" xsi:noNamespaceSchemaLocation=\"vast.xsd\">" +
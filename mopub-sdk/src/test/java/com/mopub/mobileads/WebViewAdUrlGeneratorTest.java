@@ -19,10 +19,13 @@ import android.view.Display;
 import android.view.WindowManager;
 
 import com.mopub.common.ClientMetadata;
+import com.mopub.common.Constants;
 import com.mopub.common.GpsHelper;
 import com.mopub.common.GpsHelperTest;
+import com.mopub.common.LocationService;
 import com.mopub.common.MoPub;
 import com.mopub.common.test.support.SdkTestRunner;
+import com.mopub.common.util.DateAndTime;
 import com.mopub.common.util.Reflection.MethodBuilder;
 import com.mopub.common.util.Utils;
 import com.mopub.common.util.test.support.TestMethodBuilderFactory;
@@ -493,6 +496,116 @@ public class WebViewAdUrlGeneratorTest {
         assertThat(getParameterFromRequestUrl(adUrl, "ll")).isNullOrEmpty();
     }
 
+    @Test
+    public void generateAdUrl_withCachedParams_shouldMatchUncachedGenerator() throws Exception {
+        final UncachedAdUrlGenerator uncached = new UncachedAdUrlGenerator(context);
+        Location location = new Location("");
+        location.setLatitude(20.1);
+        location.setLongitude(30.0);
+        location.setAccuracy(1.23f);
+        location.setTime(System.currentTimeMillis() - 101325);
+        shadowTelephonyManager.setNetworkOperator("123456");
+        shadowTelephonyManager.setNetworkOperatorName("expected carrier");
+
+        subject.withAdUnitId("adUnitId").withKeywords("key:value").withLocation(location);
+        uncached.withAdUnitId("adUnitId").withKeywords("key:value").withLocation(location);
+        assertUrlsMatch(subject, uncached);
+        // Second request is served from the cache.
+        assertUrlsMatch(subject, uncached);
+
+        configuration.orientation = Configuration.ORIENTATION_LANDSCAPE;
+        shadowConnectivityManager.setActiveNetworkInfo(createNetworkInfo(TYPE_WIFI));
+        assertUrlsMatch(subject, uncached);
+
+        location.setLatitude(-12.5);
+        assertUrlsMatch(subject, uncached);
+
+        subject.withAdUnitId(null).withLocation(null);
+        uncached.withAdUnitId(null).withLocation(null);
+        assertUrlsMatch(subject, uncached);
+
+        ClientMetadata.clearForTesting();
+        shadowTelephonyManager.setNetworkOperator("98765");
+        assertUrlsMatch(subject, uncached);
+    }
+
+    private void assertUrlsMatch(final WebViewAdUrlGenerator cached,
+            final WebViewAdUrlGenerator uncached) {
+        // Location freshness depends on the clock, so only compare the seconds.
+        final String cachedUrl = cached.generateUrlString("ads.mopub.com")
+                .replaceFirst("llf=([0-9]+)[0-9]{3}", "llf=$1");
+        final String uncachedUrl = uncached.generateUrlString("ads.mopub.com")
+                .replaceFirst("llf=([0-9]+)[0-9]{3}", "llf=$1");
+        assertThat(cachedUrl).isEqualTo(uncachedUrl);
+    }
+
+    /**
+     * Adds every parameter directly, the way the generator did before parameters were cached.
+     */
+    private static class UncachedAdUrlGenerator extends WebViewAdUrlGenerator {
+        private final boolean mIsStorePictureSupported;
+
+        UncachedAdUrlGenerator(final Context context) {
+            this(context, new MraidNativeCommandHandler().isStorePictureSupported(context));
+        }
+
+        private UncachedAdUrlGenerator(final Context context, final boolean isStorePictureSupported) {
+            super(context, isStorePictureSupported);
+            mIsStorePictureSupported = isStorePictureSupported;
+        }
+
+        @Override
+        public String generateUrlString(final String serverHostname) {
+            initUrlString(serverHostname, Constants.AD_HANDLER);
+            setApiVersion("6");
+
+            final ClientMetadata clientMetadata = ClientMetadata.getInstance(mContext);
+            setAdUnitId(mAdUnitId);
+            setSdkVersion(clientMetadata.getSdkVersion());
+            setDeviceInfo(clientMetadata.getDeviceManufacturer(),
+                    clientMetadata.getDeviceModel(),
+                    clientMetadata.getDeviceProduct());
+            setBundleId(clientMetadata.getAppPackageName());
+            setKeywords(mKeywords);
+            setUncachedLocation();
+            setTimezone(DateAndTime.getTimeZoneOffsetString());
+            setOrientation(clientMetadata.getOrientationString());
+            setDeviceDimensions(clientMetadata.getDeviceDimensions());
+            setDensity(clientMetadata.getDensity());
+            final String networkOperator = clientMetadata.getNetworkOperatorForUrl();
+            setMccCode(networkOperator);
+            setMncCode(networkOperator);
+            setIsoCountryCode(clientMetadata.getIsoCountryCode());
+            setCarrierName(clientMetadata.getNetworkOperatorName());
+            setNetworkType(clientMetadata.getActiveNetworkType());
+            setAppVersion(clientMetadata.getAppVersion());
+            appendAdvertisingInfoTemplates();
+
+            setMraidFlag(true);
+            setExternalStoragePermission(mIsStorePictureSupported);
+            return getFinalUrlString();
+        }
+
+        private void setUncachedLocation() {
+            Location bestLocation = mLocation;
+            final Location locationFromLocationService = LocationService.getLastKnownLocation(
+                    mContext, MoPub.getLocationPrecision(), MoPub.getLocationAwareness());
+            if (locationFromLocationService != null && (mLocation == null
+                    || locationFromLocationService.getTime() >= mLocation.getTime())) {
+                bestLocation = locationFromLocationService;
+            }
+
+            if (bestLocation != null) {
+                addParam("ll", bestLocation.getLatitude() + "," + bestLocation.getLongitude());
+                addParam("lla", String.valueOf((int) bestLocation.getAccuracy()));
+                addParam("llf", String.valueOf(System.currentTimeMillis() - bestLocation.getTime()));
+                if (bestLocation == locationFromLocationService) {
+                    addParam("llsdk", "1");
+                }
+            }
+        }
+    }
+
     private String getParameterFromRequestUrl(String requestString, String key) {
         Uri requestUri = Uri.parse(requestString);
         String parameter = requestUri.getQueryParameter(key);
@@ -1,6 +1,6 @@
 package com.mopub.nativeads;
 
-import android.os.Handler;
+import android.os.SystemClock;
 import android.view.View;
 
 import com.mopub.common.test.support.SdkTestRunner;
@@ -18,8 +18,7 @@ import java.util.HashMap;
 import static com.mopub.nativeads.MoPubNative.MoPubNativeListener;
 import static com.mopub.nativeads.VisibilityTracker.VisibilityChecker;
 import static org.fest.assertions.api.Assertions.assertThat;
-import static org.mockito.Matchers.any;
-import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.anyLong;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -36,7 +35,6 @@ public class ImpressionTrackerTest {
     @Mock private NativeResponse nativeResponse2;
     @Mock private MoPubNativeListener moPubNativeListener;
     @Mock private VisibilityTracker visibilityTracker;
-    @Mock private Handler handler;
     @Mock private View view;
     @Mock private View view2;
 
@@ -49,7 +47,7 @@ public class ImpressionTrackerTest {
         trackedViews = new HashMap<View, NativeResponse>(10);
         final VisibilityChecker visibilityChecker = new VisibilityChecker();
         subject = new ImpressionTracker(trackedViews, pollingViews, visibilityChecker,
-                visibilityTracker, handler);
+                visibilityTracker);
 
         timeStampWrapper = new TimestampWrapper<NativeResponse>(nativeResponse);
 
@@ -166,7 +164,7 @@ public class ImpressionTrackerTest {
     }
 
     @Test
-    public void clear_shouldClearViewTrackedViews_shouldClearPollingViews_shouldClearVisibilityTracker_shouldClearPollHandler() {
+    public void clear_shouldClearViewTrackedViews_shouldClearPollingViews_shouldClearVisibilityTracker() {
         trackedViews.put(view, nativeResponse);
         trackedViews.put(view2, nativeResponse);
         pollingViews.put(view, timeStampWrapper);
@@ -179,7 +177,6 @@ public class ImpressionTrackerTest {
         assertThat(trackedViews).isEmpty();
         assertThat(pollingViews).isEmpty();
         verify(visibilityTracker).clear();
-        verify(handler).removeMessages(0);
     }
     
     @Test
@@ -197,29 +194,40 @@ public class ImpressionTrackerTest {
         assertThat(trackedViews).isEmpty();
         assertThat(pollingViews).isEmpty();
         verify(visibilityTracker).clear();
-        verify(handler).removeMessages(0);
 
         verify(visibilityTracker).destroy();
         assertThat(subject.getVisibilityTrackerListener()).isNull();
     }
 
     @Test
-    public void scheduleNextPoll_shouldPostDelayedThePollingRunnable() {
-        when(handler.hasMessages(0)).thenReturn(false);
+    public void scheduleNextPoll_withPollingViews_shouldScheduleVisibilityCheck() {
+        pollingViews.put(view, timeStampWrapper);
 
         subject.scheduleNextPoll();
 
-        verify(handler).postDelayed(any(ImpressionTracker.PollingRunnable.class), eq((long) 250));
+        verify(visibilityTracker).scheduleVisibilityCheck(anyLong());
     }
 
     @Test
-    public void scheduleNextPoll_withMessages_shouldNotPostDelayedThePollingRunnable() {
-        when(handler.hasMessages(0)).thenReturn(true);
+    public void scheduleNextPoll_shouldScheduleVisibilityCheckAtEarliestImpressionDeadline() {
+        final long now = SystemClock.uptimeMillis();
+        timeStampWrapper.mCreatedTimestamp = now;
+        final TimestampWrapper<NativeResponse> earlierWrapper =
+                new TimestampWrapper<NativeResponse>(nativeResponse2);
+        earlierWrapper.mCreatedTimestamp = now - 400;
+        pollingViews.put(view, timeStampWrapper);
+        pollingViews.put(view2, earlierWrapper);
+
+        subject.scheduleNextPoll();
 
+        verify(visibilityTracker).scheduleVisibilityCheck(600);
+    }
+
+    @Test
+    public void scheduleNextPoll_withoutPollingViews_shouldNotScheduleVisibilityCheck() {
         subject.scheduleNextPoll();
 
-        verify(handler, never())
-                .postDelayed(any(ImpressionTracker.PollingRunnable.class), eq((long) 250));
+        verify(visibilityTracker, never()).scheduleVisibilityCheck(anyLong());
     }
 
     @Test
@@ -232,7 +240,7 @@ public class ImpressionTrackerTest {
                 .onVisibilityChanged(Lists.newArrayList(view), Lists.<View>newArrayList());
 
         assertThat(pollingViews.keySet()).containsOnly(view);
-        verify(handler).postDelayed(any(ImpressionTracker.PollingRunnable.class), eq((long) 250));
+        verify(visibilityTracker).scheduleVisibilityCheck(anyLong());
     }
 
     @Test
@@ -253,53 +261,57 @@ public class ImpressionTrackerTest {
     }
 
     @Test
-    public void pollingRunnableRun_whenLessThanOneSecondHasElapsed_shouldNotTrackImpression_shouldScheduleNextPoll() {
+    public void visibilityTrackerListener_onVisibilityChanged_whenLessThanOneSecondHasElapsed_shouldNotTrackImpression_shouldScheduleNextPoll() {
+        subject.addView(view, nativeResponse);
         // Force the last viewed timestamp to be a known value
         timeStampWrapper.mCreatedTimestamp = 5555;
         pollingViews.put(view, timeStampWrapper);
 
         // We progress 999 milliseconds
         Robolectric.getUiThreadScheduler().advanceBy(5555 + 999);
-        subject.new PollingRunnable().run();
+        subject.getVisibilityTrackerListener()
+                .onVisibilityChanged(Lists.newArrayList(view), Lists.<View>newArrayList());
 
         verify(nativeResponse, never()).recordImpression(view);
 
         assertThat(pollingViews.keySet()).containsOnly(view);
-        verify(handler).postDelayed(any(ImpressionTracker.PollingRunnable.class), eq((long) 250));
+        verify(visibilityTracker).scheduleVisibilityCheck(anyLong());
     }
 
     @Test
-    public void pollingRunnableRun_whenMoreThanOneSecondHasElapsed_shouldTrackImpression_shouldNotScheduleNextPoll() {
+    public void visibilityTrackerListener_onVisibilityChanged_whenMoreThanOneSecondHasElapsed_shouldTrackImpression_shouldNotScheduleNextPoll() {
+        subject.addView(view, nativeResponse);
         // Force the last viewed timestamp to be a known value
         timeStampWrapper.mCreatedTimestamp = 5555;
         pollingViews.put(view, timeStampWrapper);
 
         // We progress 1000 milliseconds
         Robolectric.getUiThreadScheduler().advanceBy(5555 + 1000);
-        subject.new PollingRunnable().run();
+        subject.getVisibilityTrackerListener()
+                .onVisibilityChanged(Lists.newArrayList(view), Lists.<View>newArrayList());
 
         verify(nativeResponse).recordImpression(view);
 
         assertThat(pollingViews).isEmpty();
-        verify(handler, never())
-                .postDelayed(any(ImpressionTracker.PollingRunnable.class), eq((long) 250));
+        assertThat(trackedViews).isEmpty();
+        verify(visibilityTracker, never()).scheduleVisibilityCheck(anyLong());
     }
 
     @Test(expected = NullPointerException.class)
-    public void pollingRunnableRun_whenWrapperIsNull_shouldThrowNPE() {
+    public void recordElapsedImpressions_whenWrapperIsNull_shouldThrowNPE() {
         pollingViews.put(view, null);
-        subject.new PollingRunnable().run();
+        subject.recordElapsedImpressions();
 
         verify(nativeResponse, never()).recordImpression(view);
     }
 
     @Test(expected = NullPointerException.class)
-    public void pollingRunnableRun_whenNativeResponseIsNull_shouldThrowNPE() {
+    public void recordElapsedImpressions_whenNativeResponseIsNull_shouldThrowNPE() {
         // This doesn't normally happen; perhaps we're being overly defensive
         pollingViews.put(view, new TimestampWrapper<NativeResponse>(null));
 
-        subject.new PollingRunnable().run();
+        subject.recordElapsedImpressions();
 
         verify(nativeResponse, never()).recordImpression(view);
     }
-}
\ No newline at end of file
+}
@@ -125,6 +125,31 @@ public class MoPubRecyclerAdapterTest {
             }
         });
 
+        when(mockStreamAdPlacer.nextAdPosition(anyInt())).thenAnswer(new Answer<Integer>() {
+            @Override
+            public Integer answer(final InvocationOnMock invocation) throws Throwable {
+                final int position = (Integer) invocation.getArguments()[0];
+                if (position < AD_POSITION_1) {
+                    return AD_POSITION_1;
+                } else if (position < AD_POSITION_7) {
+                    return AD_POSITION_7;
+                }
+                return PlacementData.NOT_FOUND;
+            }
+        });
+        when(mockStreamAdPlacer.previousAdPosition(anyInt())).thenAnswer(new Answer<Integer>() {
+            @Override
+            public Integer answer(final InvocationOnMock invocation) throws Throwable {
+                final int position = (Integer) invocation.getArguments()[0];
+                if (position > AD_POSITION_7) {
+                    return AD_POSITION_7;
+                } else if (position > AD_POSITION_1) {
+                    return AD_POSITION_1;
+                }
+                return PlacementData.NOT_FOUND;
+            }
+        });
+
         when(mockStreamAdPlacer.getAdjustedCount(anyInt())).thenAnswer(new Answer<Integer>() {
             @Override
             public Integer answer(final InvocationOnMock invocation) throws Throwable {
@@ -448,7 +473,7 @@ public class MoPubRecyclerAdapterTest {
     }
 
     @Test
-    public void onItemRangeInsertedAtEnd_withInsertAtEndStrategy_shouldNotifyDataChanged() {
+    public void onItemRangeInsertedAtEnd_withInsertAtEndStrategy_shouldNotifyItemRangeInserted() {
         subject.registerAdapterDataObserver(mockObserver);
         subject.setContentChangeStrategy(INSERT_AT_END);
 
@@ -456,11 +481,10 @@ public class MoPubRecyclerAdapterTest {
         originalAdapter.setItemCount(originalItemCount + 3);
         originalAdapter.notifyItemRangeInserted(originalItemCount, 3);
 
-        verify(mockObserver).onChanged();
+        verify(mockObserver).onItemRangeInserted(originalItemCount + 2, 3);
         verifyNoMoreInteractions(mockObserver);
-        verify(mockStreamAdPlacer).getAdjustedPosition(originalItemCount);
         verify(mockStreamAdPlacer).setItemCount(originalItemCount + 3);
-        verifyNoMoreInteractions(mockStreamAdPlacer);
+        verify(mockStreamAdPlacer, never()).insertItem(anyInt());
     }
 
     @Test
@@ -481,7 +505,7 @@ public class MoPubRecyclerAdapterTest {
     }
 
     @Test
-    public void onItemRangeInsertedAtEnd_withKeepAdsPlacedStrategy_shouldNotifyDataChanged() {
+    public void onItemRangeInsertedAtEnd_withKeepAdsPlacedStrategy_shouldNotifyItemRangeInserted() {
         subject.registerAdapterDataObserver(mockObserver);
         subject.setContentChangeStrategy(KEEP_ADS_FIXED);
 
@@ -489,11 +513,10 @@ public class MoPubRecyclerAdapterTest {
         originalAdapter.setItemCount(originalItemCount + 3);
         originalAdapter.notifyItemRangeInserted(originalItemCount, 3);
 
-        verify(mockObserver).onChanged();
+        verify(mockObserver).onItemRangeInserted(originalItemCount + 2, 3);
         verifyNoMoreInteractions(mockObserver);
-        verify(mockStreamAdPlacer).getAdjustedPosition(originalItemCount);
         verify(mockStreamAdPlacer).setItemCount(originalItemCount + 3);
-        verifyNoMoreInteractions(mockStreamAdPlacer);
+        verify(mockStreamAdPlacer, never()).insertItem(anyInt());
     }
 
     @Test
@@ -531,7 +554,7 @@ public class MoPubRecyclerAdapterTest {
     }
 
     @Test
-    public void onItemRangeInsertedInMiddle_withKeepAdsStrategy_shouldNotifyDataChanged() {
+    public void onItemRangeInsertedInMiddle_withKeepAdsStrategy_shouldNotifyItemRangeInserted() {
         subject.registerAdapterDataObserver(mockObserver);
         subject.setContentChangeStrategy(KEEP_ADS_FIXED);
 
@@ -539,15 +562,30 @@ public class MoPubRecyclerAdapterTest {
         originalAdapter.setItemCount(originalItemCount + 3);
         originalAdapter.notifyItemRangeInserted(originalItemCount - 7, 3);
 
-        verify(mockObserver).onChanged();
+        verify(mockObserver).onItemRangeInserted(originalItemCount - 5, 3);
         verifyNoMoreInteractions(mockObserver);
-        verify(mockStreamAdPlacer).getAdjustedPosition(originalItemCount - 7);
         verify(mockStreamAdPlacer).setItemCount(originalItemCount + 3);
-        verifyNoMoreInteractions(mockStreamAdPlacer);
+        verify(mockStreamAdPlacer, never()).insertItem(anyInt());
     }
 
     @Test
-    public void onItemRangeRemovedFromEnd_withInsertAtEndStrategy_shouldNotifyDataChanged() {
+    public void onItemRangeInsertedBeforeAd_withKeepAdsStrategy_shouldMoveAdBackIntoPlace() {
+        subject.registerAdapterDataObserver(mockObserver);
+        subject.setContentChangeStrategy(KEEP_ADS_FIXED);
+
+        final int originalItemCount = originalAdapter.getItemCount();
+        originalAdapter.setItemCount(originalItemCount + 3);
+        originalAdapter.notifyItemRangeInserted(3, 3);
+
+        // Content at 4 onwards moves down, the ad at 7 stays.
+        verify(mockObserver).onItemRangeInserted(4, 3);
+        verify(mockObserver).onItemRangeMoved(AD_POSITION_7 + 3, AD_POSITION_7, 1);
+        verifyNoMoreInteractions(mockObserver);
+        verify(mockStreamAdPlacer, never()).insertItem(anyInt());
+    }
+
+    @Test
+    public void onItemRangeRemovedFromEnd_withInsertAtEndStrategy_shouldNotifyItemRangeRemoved() {
         subject.registerAdapterDataObserver(mockObserver);
         subject.setContentChangeStrategy(INSERT_AT_END);
 
@@ -555,11 +593,10 @@ public class MoPubRecyclerAdapterTest {
         originalAdapter.setItemCount(originalItemCount - 3);
         originalAdapter.notifyItemRangeRemoved(originalItemCount - 4, 3);
 
-        verify(mockObserver).onChanged();
+        verify(mockObserver).onItemRangeRemoved(originalItemCount - 2, 3);
         verifyNoMoreInteractions(mockObserver);
-        verify(mockStreamAdPlacer).getAdjustedPosition(originalItemCount - 4);
         verify(mockStreamAdPlacer).setItemCount(originalItemCount - 3);
-        verifyNoMoreInteractions(mockStreamAdPlacer);
+        verify(mockStreamAdPlacer, never()).removeItem(anyInt());
     }
 
     @Test
@@ -598,7 +635,7 @@ public class MoPubRecyclerAdapterTest {
     }
 
     @Test
-    public void onItemRangeRemovedFromEnd_withKeepAdsStrategy_shouldNotifyDataChanged() {
+    public void onItemRangeRemovedFromEnd_withKeepAdsStrategy_shouldNotifyItemRangeRemoved() {
         subject.registerAdapterDataObserver(mockObserver);
         subject.setContentChangeStrategy(KEEP_ADS_FIXED);
 
@@ -606,12 +643,28 @@ public class MoPubRecyclerAdapterTest {
         originalAdapter.setItemCount(originalItemCount - 3);
         originalAdapter.notifyItemRangeRemoved(originalItemCount - 4, 3);
 
-        verify(mockObserver).onChanged();
+        verify(mockObserver).onItemRangeRemoved(originalItemCount - 2, 3);
         verifyNoMoreInteractions(mockObserver);
 
         verify(mockStreamAdPlacer).setItemCount(originalItemCount - 3);
     }
 
+    @Test
+    public void onItemRangeRemovedFromEnd_withKeepAdsStrategyAndAdLeftLast_shouldHideAd() {
+        subject.registerAdapterDataObserver(mockObserver);
+        subject.setContentChangeStrategy(KEEP_ADS_FIXED);
+        // Content 0 .. 8, with the ad at 7 in front of item 6
+        final int originalItemCount = 9;
+        originalAdapter.setItemCount(originalItemCount - 3);
+        originalAdapter.notifyItemRangeRemoved(originalItemCount - 3, 3);
+
+        // The ad at 7 has no content after it, so it goes along with the last 3 items.
+        verify(mockObserver).onItemRangeRemoved(AD_POSITION_7, 1);
+        verify(mockObserver).onItemRangeRemoved(AD_POSITION_7, 3);
+        verifyNoMoreInteractions(mockObserver);
+        verify(mockStreamAdPlacer, never()).removeItem(anyInt());
+    }
+
     @Test
     public void onItemRangeRemovedFromMiddle_withInsertAtEndStrategy_shouldNotifyItemRangeRemoved() {
         subject.registerAdapterDataObserver(mockObserver);
@@ -645,7 +698,7 @@ public class MoPubRecyclerAdapterTest {
     }
 
     @Test
-    public void onItemRangeRemovedFromMiddle_withKeepAdsStrategy_shouldNotifyChanged() {
+    public void onItemRangeRemovedFromMiddle_withKeepAdsStrategy_shouldNotifyItemRangeRemoved() {
         subject.registerAdapterDataObserver(mockObserver);
         subject.setContentChangeStrategy(KEEP_ADS_FIXED);
 
@@ -653,11 +706,50 @@ public class MoPubRecyclerAdapterTest {
         originalAdapter.setItemCount(originalItemCount - 3);
         originalAdapter.notifyItemRangeRemoved(originalItemCount - 8, 3);
 
-        verify(mockObserver).onChanged();
+        verify(mockObserver).onItemRangeRemoved(originalItemCount - 6, 3);
         verifyNoMoreInteractions(mockObserver);
-        verify(mockStreamAdPlacer).getAdjustedPosition(originalItemCount - 8);
         verify(mockStreamAdPlacer).setItemCount(originalItemCount - 3);
-        verifyNoMoreInteractions(mockStreamAdPlacer);
+        verify(mockStreamAdPlacer, never()).removeItem(anyInt());
+    }
+
+    @Test
+    public void onItemRangeRemovedBeforeAd_withKeepAdsStrategy_shouldMoveAdIntoPlace() {
+        subject.registerAdapterDataObserver(mockObserver);
+        subject.setContentChangeStrategy(KEEP_ADS_FIXED);
+
+        final int originalItemCount = originalAdapter.getItemCount();
+        originalAdapter.setItemCount(originalItemCount - 3);
+        originalAdapter.notifyItemRangeRemoved(3, 3);
+
+        // The ad at 7 moves past the removed items first, so that they can go as one range.
+        verify(mockObserver).onItemRangeMoved(AD_POSITION_7, AD_POSITION_7 + 3, 1);
+        verify(mockObserver).onItemRangeRemoved(4, 3);
+        verifyNoMoreInteractions(mockObserver);
+    }
+
+    @Test
+    public void onItemRangeMoved_withMoveAdsStrategy_shouldMoveItemInPlacer() {
+        subject.registerAdapterDataObserver(mockObserver);
+        subject.setContentChangeStrategy(MOVE_ALL_ADS_WITH_CONTENT);
+
+        originalAdapter.notifyItemMoved(2, 10);
+
+        verify(mockStreamAdPlacer).moveItem(2, 10);
+        verify(mockObserver).onItemRangeMoved(3, 12, 1);
+        verifyNoMoreInteractions(mockObserver);
+    }
+
+    @Test
+    public void onItemRangeMoved_withKeepAdsStrategy_shouldRemoveAndInsertAroundAds() {
+        subject.registerAdapterDataObserver(mockObserver);
+        subject.setContentChangeStrategy(KEEP_ADS_FIXED);
+
+        originalAdapter.notifyItemMoved(10, 12);
+
+        verify(mockObserver).onItemRangeRemoved(12, 1);
+        verify(mockObserver).onItemRangeInserted(14, 1);
+        verifyNoMoreInteractions(mockObserver);
+        verify(mockStreamAdPlacer, never()).moveItem(anyInt(), anyInt());
     }
 
     private class TestAdapter extends RecyclerView.Adapter<TestHolder> {
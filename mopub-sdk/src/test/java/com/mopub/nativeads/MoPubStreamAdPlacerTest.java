@@ -16,6 +16,7 @@ import org.mockito.Answers;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.robolectric.Robolectric;
+import org.robolectric.shadows.ShadowSystemClock;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -257,6 +258,30 @@ public class MoPubStreamAdPlacerTest {
         assertThat(subject.isAd(54)).isTrue();
     }
 
+    @Test
+    public void placeAdsInRange_whenScrollingDown_shouldPredictDemandForUpcomingPositions() {
+        subject.registerAdRenderer(mockAdRenderer);
+        subject.loadAds("test-ad-unit-id");
+        subject.handlePositioningLoad(MoPubNativeAdPositioning.clientPositioning()
+                .enableRepeatingPositions(10));
+        subject.handleAdsAvailable();
+
+        Robolectric.getUiThreadScheduler().pause();
+        subject.setItemCount(100);
+        ShadowSystemClock.sleep(5000);
+        subject.placeAdsInRange(0, 10);
+        Robolectric.getUiThreadScheduler().advanceToLastPostedRunnable();
+
+        // Not scrolling, only the ad positions within the range buffer are needed
+        verify(mockAdSource).setPredictedDemand(2);
+
+        ShadowSystemClock.sleep(100);
+        subject.placeAdsInRange(20, 30);
+        Robolectric.getUiThreadScheduler().advanceToLastPostedRunnable();
+
+        verify(mockAdSource).setPredictedDemand(NativeAdSource.MAX_CACHE_LIMIT);
+    }
+
     @Test
     public void placeAdsInRange_shouldCallListener() {
         when(mockAdSource.dequeueAd()).thenReturn(stubNativeResponse);
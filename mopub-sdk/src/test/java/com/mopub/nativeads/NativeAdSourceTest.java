@@ -8,6 +8,7 @@ import com.mopub.common.test.support.SdkTestRunner;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.robolectric.shadows.ShadowSystemClock;
 
@@ -20,6 +21,7 @@ import static org.mockito.Matchers.anyLong;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
 @RunWith(SdkTestRunner.class)
@@ -29,6 +31,7 @@ public class NativeAdSourceTest {
     private RequestParameters requestParameters;
     private int defaultRetryTime;
     private int maxRetryTime;
+    private int expirationTime;
 
     @Mock private AdSourceListener mockAdSourceListener;
     @Mock private MoPubNative mockMoPubNative;
@@ -45,6 +48,7 @@ public class NativeAdSourceTest {
 
         defaultRetryTime = 1000;
         maxRetryTime = 5*60*1000;
+        expirationTime = 15*60*1000;
 
         // XXX We need this to ensure that our SystemClock starts
         ShadowSystemClock.uptimeMillis();
@@ -52,7 +56,7 @@ public class NativeAdSourceTest {
 
     @Test
     public void constructor_shouldInitializeCorrectly() {
-        assertThat(subject.mRequestInFlight).isFalse();
+        assertThat(subject.mRequestsInFlight).isEqualTo(0);
         assertThat(subject.mSequenceNumber).isEqualTo(0);
         assertThat(subject.mRetryTimeMilliseconds).isEqualTo(defaultRetryTime);
     }
@@ -60,7 +64,7 @@ public class NativeAdSourceTest {
     @Test
     public void loadAds_shouldReplenishCache() {
         subject.loadAds(requestParameters, mockMoPubNative);
-        assertThat(subject.mRequestInFlight).isTrue();
+        assertThat(subject.mRequestsInFlight).isEqualTo(1);
         verify(mockMoPubNative).makeRequest(requestParameters, 0);
     }
 
@@ -70,7 +74,7 @@ public class NativeAdSourceTest {
         TimestampWrapper<NativeResponse> timestampWrapper =
                 new TimestampWrapper<NativeResponse>(mock(NativeResponse.class));
         nativeAdCache.add(timestampWrapper);
-        subject.mRequestInFlight = true;
+        subject.mRequestsInFlight = 1;
         subject.mSequenceNumber = 5;
         subject.mRetryTimeMilliseconds = maxRetryTime;
 
@@ -84,7 +88,7 @@ public class NativeAdSourceTest {
         assertThat(subject.mRetryTimeMilliseconds).isEqualTo(defaultRetryTime);
 
         // new request has been kicked off
-        assertThat(subject.mRequestInFlight).isTrue();
+        assertThat(subject.mRequestsInFlight).isEqualTo(1);
     }
 
     @Test
@@ -101,7 +105,7 @@ public class NativeAdSourceTest {
         subject.setMoPubNative(mockMoPubNative);
         TimestampWrapper<NativeResponse> timestampWrapper = new TimestampWrapper<NativeResponse>(mock(NativeResponse.class));
         nativeAdCache.add(timestampWrapper);
-        subject.mRequestInFlight = true;
+        subject.mRequestsInFlight = 1;
         subject.mSequenceNumber = 5;
         subject.mRetryTimeMilliseconds = maxRetryTime;
 
@@ -111,7 +115,7 @@ public class NativeAdSourceTest {
         assertThat(nativeAdCache).isEmpty();
         verify(mockMoPubNative).destroy();
         verify(mockReplenishCacheHandler).removeMessages(0);
-        assertThat(subject.mRequestInFlight).isFalse();
+        assertThat(subject.mRequestsInFlight).isEqualTo(0);
         assertThat(subject.mSequenceNumber).isEqualTo(0);
         assertThat(subject.mRetryTimeMilliseconds).isEqualTo(defaultRetryTime);
     }
@@ -156,7 +160,7 @@ public class NativeAdSourceTest {
 
         nativeAdCache.add(new TimestampWrapper<NativeResponse>(mockNativeResponse));
 
-        subject.mRequestInFlight = true;
+        subject.mRequestsInFlight = 1;
         assertThat(subject.dequeueAd()).isEqualTo(mockNativeResponse);
 
         assertThat(nativeAdCache).isEmpty();
@@ -196,18 +200,18 @@ public class NativeAdSourceTest {
         subject.replenishCache();
 
         verify(mockMoPubNative).makeRequest(any(RequestParameters.class), eq(0));
-        assertThat(subject.mRequestInFlight).isTrue();
+        assertThat(subject.mRequestsInFlight).isEqualTo(1);
     }
 
     @Test
     public void replenishCache_withRequestInFlight_shouldNotLoadNativeAd() {
-        subject.mRequestInFlight = true;
+        subject.mRequestsInFlight = 1;
         subject.setMoPubNative(mockMoPubNative);
 
         subject.replenishCache();
 
         verify(mockMoPubNative, never()).makeRequest(requestParameters, 0);
-        assertThat(subject.mRequestInFlight).isTrue();
+        assertThat(subject.mRequestsInFlight).isEqualTo(1);
     }
 
     @Test
@@ -222,7 +226,7 @@ public class NativeAdSourceTest {
         subject.replenishCache();
 
         verify(mockMoPubNative, never()).makeRequest(any(RequestParameters.class), any(Integer.class));
-        assertThat(subject.mRequestInFlight).isFalse();
+        assertThat(subject.mRequestsInFlight).isEqualTo(0);
     }
 
     @Test
@@ -273,7 +277,7 @@ public class NativeAdSourceTest {
     public void moPubNativeNetworkListener_onNativeLoad_withFullCache_shouldResetRequestInFlight() {
         subject.setMoPubNative(mockMoPubNative);
 
-        subject.mRequestInFlight = true;
+        subject.mRequestsInFlight = 1;
 
         // fill cache
         nativeAdCache.add(mock(TimestampWrapper.class));
@@ -282,30 +286,31 @@ public class NativeAdSourceTest {
 
         subject.getMoPubNativeNetworkListener().onNativeLoad(mockNativeResponse);
 
-        assertThat(subject.mRequestInFlight).isEqualTo(false);
+        assertThat(subject.mRequestsInFlight).isEqualTo(0);
     }
 
     @Test
     public void moPubNativeNetworkListener_onNativeLoad_withNonFullCache_shouldReplenishCache() {
         subject.setMoPubNative(mockMoPubNative);
 
-        subject.mRequestInFlight = true;
+        subject.replenishCache();
+        assertThat(subject.mRequestsInFlight).isEqualTo(1);
 
         subject.getMoPubNativeNetworkListener().onNativeLoad(mockNativeResponse);
 
-        assertThat(subject.mRequestInFlight).isEqualTo(true);
+        assertThat(subject.mRequestsInFlight).isEqualTo(1);
         verify(mockMoPubNative).makeRequest(any(RequestParameters.class), eq(1));
     }
 
     @Test
     public void
     moPubNativeNetworkListener_onNativeFail_shouldResetInFlight_shouldUpdateRetryTime_shouldPostDelayedRunnable() {
-        subject.mRequestInFlight = true;
+        subject.mRequestsInFlight = 1;
         subject.mRetryTimeMilliseconds = defaultRetryTime;
 
         subject.getMoPubNativeNetworkListener().onNativeFail(NativeErrorCode.UNSPECIFIED);
 
-        assertThat(subject.mRequestInFlight).isEqualTo(false);
+        assertThat(subject.mRequestsInFlight).isEqualTo(0);
         assertThat(subject.mRetryInFlight).isEqualTo(true);
         assertThat(subject.mRetryTimeMilliseconds).isGreaterThan(defaultRetryTime);
         verify(mockReplenishCacheHandler).postDelayed(any(Runnable.class), eq((long)subject.mRetryTimeMilliseconds));
@@ -314,14 +319,200 @@ public class NativeAdSourceTest {
     @Test
     public void
     moPubNativeNetworkListener_onNativeFail_maxRetryTime_shouldResetInflight_shouldResetRetryTime_shouldNotPostDelayedRunnable() {
-        subject.mRequestInFlight = true;
+        subject.mRequestsInFlight = 1;
         subject.mRetryTimeMilliseconds = maxRetryTime;
 
         subject.getMoPubNativeNetworkListener().onNativeFail(NativeErrorCode.UNSPECIFIED);
 
-        assertThat(subject.mRequestInFlight).isEqualTo(false);
+        assertThat(subject.mRequestsInFlight).isEqualTo(0);
         assertThat(subject.mRetryInFlight).isEqualTo(false);
         assertThat(subject.mRetryTimeMilliseconds).isEqualTo(defaultRetryTime);
         verify(mockReplenishCacheHandler, never()).postDelayed(any(Runnable.class), anyLong());
     }
+
+    @Test
+    public void replenishCache_withPredictedDemand_shouldRequestConcurrentlyWithConsecutiveSequenceNumbers() {
+        subject.setMoPubNative(mockMoPubNative);
+        subject.setPredictedDemand(5);
+
+        subject.replenishCache();
+
+        verify(mockMoPubNative).makeRequest(any(RequestParameters.class), eq(0));
+        verify(mockMoPubNative).makeRequest(any(RequestParameters.class), eq(1));
+        verify(mockMoPubNative).makeRequest(any(RequestParameters.class), eq(2));
+        assertThat(subject.mRequestsInFlight).isEqualTo(3);
+        assertThat(subject.getStats().getAdsRequested()).isEqualTo(3);
+    }
+
+    @Test
+    public void replenishCache_afterFailureWithinConcurrentRequests_shouldNotReuseSequenceNumber() {
+        subject.setMoPubNative(mockMoPubNative);
+        subject.setPredictedDemand(5);
+        subject.replenishCache();
+        verify(mockMoPubNative, times(3)).makeRequest(any(RequestParameters.class), any(Integer.class));
+
+        // Request 0 fails while 1 and 2 are still in flight, then 1 loads
+        subject.getMoPubNativeNetworkListener().onNativeFail(NativeErrorCode.UNSPECIFIED);
+        subject.getMoPubNativeNetworkListener().onNativeLoad(mockNativeResponse);
+        ArgumentCaptor<Runnable> retryCaptor = ArgumentCaptor.forClass(Runnable.class);
+        // The retry is posted first, then the expiration of the loaded ad
+        verify(mockReplenishCacheHandler, times(2)).postDelayed(retryCaptor.capture(), anyLong());
+        retryCaptor.getAllValues().get(0).run();
+
+        verify(mockMoPubNative, times(1)).makeRequest(any(RequestParameters.class), eq(2));
+        verify(mockMoPubNative).makeRequest(any(RequestParameters.class), eq(3));
+    }
+
+    @Test
+    public void clear_shouldResetNextSequenceNumber() {
+        subject.setMoPubNative(mockMoPubNative);
+        subject.replenishCache();
+        assertThat(subject.mNextSequenceNumber).isEqualTo(1);
+
+        subject.clear();
+
+        assertThat(subject.mNextSequenceNumber).isEqualTo(0);
+    }
+
+    @Test
+    public void replenishCache_withPredictedDemand_whileBackingOff_shouldRequestOneAtATime() {
+        subject.setMoPubNative(mockMoPubNative);
+        subject.setPredictedDemand(5);
+        subject.updateRetryTime();
+
+        subject.replenishCache();
+
+        verify(mockMoPubNative, times(1)).makeRequest(any(RequestParameters.class), any(Integer.class));
+        assertThat(subject.mRequestsInFlight).isEqualTo(1);
+    }
+
+    @Test
+    public void replenishCache_withRetryInFlight_shouldNotLoadNativeAd() {
+        subject.setMoPubNative(mockMoPubNative);
+        subject.mRetryInFlight = true;
+
+        subject.replenishCache();
+
+        verify(mockMoPubNative, never()).makeRequest(any(RequestParameters.class), any(Integer.class));
+    }
+
+    @Test
+    public void getTargetCacheSize_shouldBeBoundedByCacheLimits() {
+        assertThat(subject.getTargetCacheSize()).isEqualTo(3);
+        assertThat(subject.getMaxConcurrentRequests()).isEqualTo(1);
+
+        subject.setPredictedDemand(100);
+
+        assertThat(subject.getTargetCacheSize()).isEqualTo(NativeAdSource.MAX_CACHE_LIMIT);
+        assertThat(subject.getMaxConcurrentRequests()).isEqualTo(3);
+    }
+
+    @Test
+    public void getTargetCacheSize_whenAdsAreConsumedFasterThanTheyLoad_shouldGrow() {
+        subject.setMoPubNative(mockMoPubNative);
+
+        // One request that takes 2 seconds to load
+        subject.replenishCache();
+        ShadowSystemClock.sleep(2000);
+        subject.getMoPubNativeNetworkListener().onNativeLoad(mockNativeResponse);
+        nativeAdCache.add(new TimestampWrapper<NativeResponse>(mockNativeResponse));
+
+        // Ads dequeued every half a second
+        subject.dequeueAd();
+        ShadowSystemClock.sleep(500);
+        subject.dequeueAd();
+
+        assertThat(subject.getTargetCacheSize()).isEqualTo(5);
+
+        // Consumption stops counting once the user stops looking at ads
+        ShadowSystemClock.sleep(60 * 1000);
+        assertThat(subject.getTargetCacheSize()).isEqualTo(3);
+    }
+
+    @Test
+    public void setPredictedDemand_aboveTargetCacheSize_shouldPostReplenishCache() {
+        subject.setMoPubNative(mockMoPubNative);
+
+        subject.setPredictedDemand(2);
+        verify(mockReplenishCacheHandler).post(any(Runnable.class));
+
+        subject.setPredictedDemand(2);
+        subject.setPredictedDemand(1);
+        verify(mockReplenishCacheHandler, times(1)).post(any(Runnable.class));
+    }
+
+    @Test
+    public void setPredictedDemand_withRetryInFlight_shouldNotPostReplenishCache() {
+        subject.setMoPubNative(mockMoPubNative);
+        subject.mRetryInFlight = true;
+
+        subject.setPredictedDemand(6);
+
+        verify(mockReplenishCacheHandler, never()).post(any(Runnable.class));
+    }
+
+    @Test
+    public void moPubNativeNetworkListener_onNativeFail_withRetryInFlight_shouldNotPostAnotherRetry() {
+        subject.mRequestsInFlight = 2;
+
+        subject.getMoPubNativeNetworkListener().onNativeFail(NativeErrorCode.UNSPECIFIED);
+        subject.getMoPubNativeNetworkListener().onNativeFail(NativeErrorCode.UNSPECIFIED);
+
+        assertThat(subject.mRequestsInFlight).isEqualTo(0);
+        verify(mockReplenishCacheHandler, times(1)).postDelayed(any(Runnable.class), anyLong());
+        assertThat(subject.getStats().getAdsFailed()).isEqualTo(2);
+    }
+
+    @Test
+    public void moPubNativeNetworkListener_onNativeLoad_shouldScheduleExpiration_shouldDestroyAdWhenItExpires() {
+        subject.setMoPubNative(mockMoPubNative);
+        subject.getMoPubNativeNetworkListener().onNativeLoad(mockNativeResponse);
+
+        final ArgumentCaptor<Runnable> runnableCaptor = ArgumentCaptor.forClass(Runnable.class);
+        verify(mockReplenishCacheHandler).postDelayed(runnableCaptor.capture(), eq((long) expirationTime));
+
+        ShadowSystemClock.sleep(expirationTime);
+        runnableCaptor.getValue().run();
+
+        assertThat(nativeAdCache).isEmpty();
+        verify(mockNativeResponse).destroy();
+        assertThat(subject.getStats().getAdsExpired()).isEqualTo(1);
+        assertThat(subject.getStats().getWasteRate()).isEqualTo(1.0);
+    }
+
+    @Test
+    public void moPubNativeNetworkListener_onNativeLoad_withExpirationScheduled_shouldNotScheduleAgain() {
+        subject.setMoPubNative(mockMoPubNative);
+
+        subject.getMoPubNativeNetworkListener().onNativeLoad(mockNativeResponse);
+        subject.getMoPubNativeNetworkListener().onNativeLoad(mockNativeResponse);
+
+        verify(mockReplenishCacheHandler, times(1)).postDelayed(any(Runnable.class), anyLong());
+    }
+
+    @Test
+    public void clear_shouldCountDiscardedAds_shouldResetRetryInFlight() {
+        nativeAdCache.add(new TimestampWrapper<NativeResponse>(mockNativeResponse));
+        nativeAdCache.add(new TimestampWrapper<NativeResponse>(mockNativeResponse));
+        subject.mRetryInFlight = true;
+
+        subject.clear();
+
+        assertThat(subject.getStats().getAdsDiscarded()).isEqualTo(2);
+        assertThat(subject.mRetryInFlight).isFalse();
+    }
+
+    @Test
+    public void getStats_shouldReportSlotFillRate() {
+        nativeAdCache.add(new TimestampWrapper<NativeResponse>(mockNativeResponse));
+
+        subject.dequeueAd();
+        subject.dequeueAd();
+
+        final NativeAdSource.Stats stats = subject.getStats();
+        assertThat(stats.getAdsServed()).isEqualTo(1);
+        assertThat(stats.getDequeueMisses()).isEqualTo(1);
+        assertThat(stats.getSlotFillRate()).isEqualTo(0.5);
+        assertThat(stats.getTargetCacheSize()).isEqualTo(3);
+    }
 }
@@ -3,6 +3,7 @@
 package com.mopub.nativeads;
 
 import com.mopub.common.test.support.SdkTestRunner;
+import com.mopub.nativeads.MoPubNativeAdPositioning.MoPubClientPositioning;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -808,6 +809,117 @@ public class PlacementDataTest {
         checkPlacedPositions(20, adsAt15repeating);
     }
 
+    @Test
+    public void repeating_shouldOnlyCreateSlotsUpToQueriedPosition() {
+        assertThat(adsRepeating.getSlotCount()).isEqualTo(0);
+
+        assertThat(adsRepeating.nextInsertionPosition(0)).isEqualTo(2);
+        assertThat(adsRepeating.getSlotCount()).isEqualTo(0);
+
+        assertThat(adsRepeating.shouldPlaceAd(10)).isTrue();
+        assertThat(adsRepeating.getSlotCount()).isEqualTo(5);
+    }
+
+    @Test
+    public void repeating_placeMoreThanInitialCapacity_shouldPlaceAll() {
+        final int count = PlacementData.INITIAL_CAPACITY * 10;
+        int position = -1;
+        for (int i = 0; i < count; i++) {
+            position = adsRepeating.nextInsertionPosition(position);
+            adsRepeating.placeAd(position, mockNativeAdData);
+        }
+
+        assertThat(position).isEqualTo(2 + 3 * (count - 1));
+        assertThat(adsRepeating.getPlacedAdPositions()).hasSize(count);
+        assertThat(adsRepeating.isPlacedAd(position)).isTrue();
+        assertThat(adsRepeating.getPlacedAd(position)).isEqualTo(mockNativeAdData);
+        assertThat(adsRepeating.getOriginalPosition(position)).isEqualTo(NOT_FOUND);
+        assertThat(adsRepeating.getOriginalPosition(position + 1)).isEqualTo(2 * count);
+        assertThat(adsRepeating.getAdjustedPosition(2 * count)).isEqualTo(position + 1);
+        assertThat(adsRepeating.nextInsertionPosition(position)).isEqualTo(position + 3);
+        assertThat(adsRepeating.previousInsertionPosition(position)).isEqualTo(NOT_FOUND);
+    }
+
+    @Test
+    public void fixedPositions_moreThanInitialCapacity_shouldAllBeDesired() {
+        final MoPubClientPositioning positioning = MoPubNativeAdPositioning.clientPositioning();
+        final int count = PlacementData.INITIAL_CAPACITY * 4;
+        for (int i = 0; i < count; i++) {
+            positioning.addFixedPosition(2 * i + 1);
+        }
+        final PlacementData placementData = PlacementData.fromAdPositioning(positioning);
+
+        assertThat(placementData.getSlotCount()).isEqualTo(count);
+        assertThat(placementData.previousInsertionPosition(count + 1)).isEqualTo(count);
+        assertThat(placementData.nextInsertionPosition(count)).isEqualTo(NOT_FOUND);
+    }
+
+    @Test
+    public void insertAndRemoveItems_withManyPlacedAds_shouldShiftAllAds() {
+        final int count = PlacementData.INITIAL_CAPACITY * 4;
+        int position = -1;
+        for (int i = 0; i < count; i++) {
+            position = adsRepeating.nextInsertionPosition(position);
+            adsRepeating.placeAd(position, mockNativeAdData);
+        }
+
+        adsRepeating.insertItem(0);
+        adsRepeating.insertItem(0);
+        assertThat(adsRepeating.isPlacedAd(position + 2)).isTrue();
+        assertThat(adsRepeating.getPlacedAdPositions()[0]).isEqualTo(4);
+        assertThat(adsRepeating.nextInsertionPosition(position + 2)).isEqualTo(position + 5);
+
+        adsRepeating.removeItem(0);
+        adsRepeating.removeItem(0);
+        assertThat(adsRepeating.isPlacedAd(position)).isTrue();
+        assertThat(adsRepeating.getPlacedAdPositions()[0]).isEqualTo(2);
+        assertThat(adsRepeating.nextInsertionPosition(position)).isEqualTo(position + 3);
+
+        assertThat(adsRepeating.clearAdsInRange(0, position + 1)).isEqualTo(count);
+        assertThat(adsRepeating.getPlacedAdPositions()).isEmpty();
+        assertThat(adsRepeating.nextInsertionPosition(0)).isEqualTo(2);
+    }
+
+    @Test
+    public void nextAndPreviousPlacedAdPosition_shouldSkipDesiredPositions() {
+        adsAt15repeating.placeAd(1, mockNativeAdData);
+        adsAt15repeating.placeAd(8, mockNativeAdData2);
+
+        assertThat(adsAt15repeating.nextPlacedAdPosition(-1)).isEqualTo(1);
+        assertThat(adsAt15repeating.nextPlacedAdPosition(1)).isEqualTo(8);
+        assertThat(adsAt15repeating.nextPlacedAdPosition(8)).isEqualTo(NOT_FOUND);
+
+        assertThat(adsAt15repeating.previousPlacedAdPosition(20)).isEqualTo(8);
+        assertThat(adsAt15repeating.previousPlacedAdPosition(8)).isEqualTo(1);
+        assertThat(adsAt15repeating.previousPlacedAdPosition(1)).isEqualTo(NOT_FOUND);
+    }
+
+    @Test
+    public void translations_shouldNotBeStaleAfterChanges() {
+        adsRepeating.placeAd(2, mockNativeAdData);
+        assertThat(adsRepeating.getOriginalPosition(3)).isEqualTo(2);
+        assertThat(adsRepeating.getPlacedAd(2)).isEqualTo(mockNativeAdData);
+
+        adsRepeating.insertItem(0);
+        assertThat(adsRepeating.getOriginalPosition(3)).isEqualTo(NOT_FOUND);
+        assertThat(adsRepeating.getPlacedAd(2)).isNull();
+        assertThat(adsRepeating.getPlacedAd(3)).isEqualTo(mockNativeAdData);
+
+        adsRepeating.removeItem(0);
+        assertThat(adsRepeating.getOriginalPosition(3)).isEqualTo(2);
+        assertThat(adsRepeating.isPlacedAd(2)).isTrue();
+
+        adsRepeating.clearAdsInRange(0, 3);
+        assertThat(adsRepeating.getOriginalPosition(3)).isEqualTo(3);
+        assertThat(adsRepeating.isPlacedAd(2)).isFalse();
+
+        // Same cache entry as position 2
+        adsRepeating.placeAd(2 + PlacementData.TRANSLATION_CACHE_SIZE, mockNativeAdData2);
+        assertThat(adsRepeating.getPlacedAd(2)).isNull();
+        assertThat(adsRepeating.getPlacedAd(2 + PlacementData.TRANSLATION_CACHE_SIZE))
+                .isEqualTo(mockNativeAdData2);
+    }
+
     void checkInsertionPositions(int maxValue, PlacementData placementData, Integer... positions) {
         List<Integer> expected = Arrays.asList(positions);
         List<Integer> actual = new ArrayList<Integer>();
@@ -28,6 +28,7 @@ import org.mockito.Mock;
 import org.robolectric.Robolectric;
 import org.robolectric.annotation.Config;
 import org.robolectric.shadows.ShadowLog;
+import org.robolectric.shadows.ShadowSystemClock;
 
 import java.util.List;
 import java.util.logging.Level;
@@ -36,6 +37,7 @@ import static org.fest.assertions.api.Assertions.assertThat;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.reset;
 import static org.mockito.Mockito.spy;
@@ -46,6 +48,7 @@ import static org.mockito.Mockito.when;
 @RunWith(SdkTestRunner.class)
 public class ServerPositioningSourceTest {
     @Mock PositioningListener mockPositioningListener;
+    @Mock PositioningListener mockPositioningListener2;
     @Captor ArgumentCaptor<PositioningRequest> positionRequestCaptor;
     @Mock DownloadResponse mockValidResponse;
     @Mock DownloadResponse mockNotFoundResponse;
@@ -211,4 +214,132 @@ public class ServerPositioningSourceTest {
         // All log messages end with a newline character.
         assertThat(latestLogMessage.msg.trim()).isEqualTo(MoPubErrorCode.NO_CONNECTION.toString());
     }
+
+    @Test
+    public void loadPositions_withCachedPositioning_shouldNotAddToRequestQueue_shouldCallOnLoadListener() {
+        subject.loadPositions("test_ad_unit", mockPositioningListener);
+        verify(mockRequestQueue).add(positionRequestCaptor.capture());
+        positionRequestCaptor.getValue().deliverResponse(
+                new MoPubClientPositioning().enableRepeatingPositions(3));
+        reset(mockRequestQueue);
+
+        new ServerPositioningSource(spyActivity).loadPositions("test_ad_unit",
+                mockPositioningListener2);
+        Robolectric.runUiThreadTasks();
+
+        verify(mockRequestQueue, never()).add(any(Request.class));
+        verify(mockPositioningListener2).onLoad(positioningCaptor.capture());
+        assertThat(positioningCaptor.getValue().getRepeatingInterval()).isEqualTo(3);
+    }
+
+    @Test
+    public void loadPositions_withCachedPositioningForOtherAdUnit_shouldAddToRequestQueue() {
+        subject.loadPositions("test_ad_unit", mockPositioningListener);
+        verify(mockRequestQueue).add(positionRequestCaptor.capture());
+        positionRequestCaptor.getValue().deliverResponse(new MoPubClientPositioning());
+        reset(mockRequestQueue);
+
+        new ServerPositioningSource(spyActivity).loadPositions("other_ad_unit",
+                mockPositioningListener2);
+        Robolectric.runUiThreadTasks();
+
+        verify(mockRequestQueue).add(any(Request.class));
+        verify(mockPositioningListener2, never()).onLoad(any(MoPubClientPositioning.class));
+    }
+
+    @Test
+    public void loadPositions_withStaleCachedPositioning_shouldCallOnLoadListener_shouldRefreshCache() {
+        subject.loadPositions("test_ad_unit", mockPositioningListener);
+        verify(mockRequestQueue).add(positionRequestCaptor.capture());
+        positionRequestCaptor.getValue().deliverResponse(
+                new MoPubClientPositioning().enableRepeatingPositions(3));
+        reset(mockRequestQueue);
+        ShadowSystemClock.sleep(PositioningCache.TIME_TO_LIVE_MS);
+
+        final ServerPositioningSource secondSource = new ServerPositioningSource(spyActivity);
+        secondSource.loadPositions("test_ad_unit", mockPositioningListener2);
+        Robolectric.runUiThreadTasks();
+
+        verify(mockPositioningListener2).onLoad(positioningCaptor.capture());
+        assertThat(positioningCaptor.getValue().getRepeatingInterval()).isEqualTo(3);
+        verify(mockRequestQueue).add(positionRequestCaptor.capture());
+        positionRequestCaptor.getValue().deliverResponse(
+                new MoPubClientPositioning().enableRepeatingPositions(5));
+        // The refresh goes to the cache only.
+        verify(mockPositioningListener2).onLoad(any(MoPubClientPositioning.class));
+        reset(mockRequestQueue);
+
+        final PositioningListener thirdListener = mock(PositioningListener.class);
+        new ServerPositioningSource(spyActivity).loadPositions("test_ad_unit", thirdListener);
+        Robolectric.runUiThreadTasks();
+
+        verify(mockRequestQueue, never()).add(any(Request.class));
+        verify(thirdListener).onLoad(positioningCaptor.capture());
+        assertThat(positioningCaptor.getValue().getRepeatingInterval()).isEqualTo(5);
+    }
+
+    @Test
+    public void loadPositions_withExpiredCachedPositioning_shouldNotCallOnLoadListener_shouldAddToRequestQueue() {
+        subject.loadPositions("test_ad_unit", mockPositioningListener);
+        verify(mockRequestQueue).add(positionRequestCaptor.capture());
+        positionRequestCaptor.getValue().deliverResponse(new MoPubClientPositioning());
+        reset(mockRequestQueue);
+        ShadowSystemClock.sleep(PositioningCache.MAX_STALE_MS);
+
+        new ServerPositioningSource(spyActivity).loadPositions("test_ad_unit",
+                mockPositioningListener2);
+        Robolectric.runUiThreadTasks();
+
+        verify(mockRequestQueue).add(any(Request.class));
+        verify(mockPositioningListener2, never()).onLoad(any(MoPubClientPositioning.class));
+    }
+
+    @Test
+    public void loadPositions_fromTwoSources_shouldShareRequest_shouldCallBothOnLoadListeners() {
+        subject.loadPositions("test_ad_unit", mockPositioningListener);
+        new ServerPositioningSource(spyActivity).loadPositions("test_ad_unit",
+                mockPositioningListener2);
+
+        verify(mockRequestQueue).add(positionRequestCaptor.capture());
+        final MoPubClientPositioning response = new MoPubClientPositioning().enableRepeatingPositions(3);
+        positionRequestCaptor.getValue().deliverResponse(response);
+
+        verify(mockPositioningListener).onLoad(eq(response));
+        verify(mockPositioningListener2).onLoad(positioningCaptor.capture());
+        assertThat(positioningCaptor.getValue().getRepeatingInterval()).isEqualTo(3);
+    }
+
+    @Test
+    public void loadPositions_fromTwoSources_thenFailAfterMaxRetryTime_shouldCallBothFailureHandlers() {
+        subject.setMaximumRetryTimeMilliseconds(999);
+        subject.loadPositions("test_ad_unit", mockPositioningListener);
+        new ServerPositioningSource(spyActivity).loadPositions("test_ad_unit",
+                mockPositioningListener2);
+
+        verify(mockRequestQueue).add(positionRequestCaptor.capture());
+        positionRequestCaptor.getValue().deliverError(new VolleyError("test error"));
+
+        verify(mockPositioningListener).onFailed();
+        verify(mockPositioningListener2).onFailed();
+    }
+
+    @Test
+    public void loadPositions_whenSharedRequestIsCanceled_shouldAddRequestForWaitingSource() {
+        final ServerPositioningSource secondSource = new ServerPositioningSource(spyActivity);
+        subject.loadPositions("test_ad_unit", mockPositioningListener);
+        secondSource.loadPositions("test_ad_unit", mockPositioningListener2);
+        verify(mockRequestQueue).add(any(Request.class));
+        reset(mockRequestQueue);
+
+        // Switching ad units cancels the shared request, so the second source loads on its own.
+        subject.loadPositions("other_ad_unit", mockPositioningListener);
+        verify(mockRequestQueue, times(2)).add(positionRequestCaptor.capture());
+
+        final List<PositioningRequest> requests = positionRequestCaptor.getAllValues();
+        final MoPubClientPositioning response = new MoPubClientPositioning();
+        requests.get(requests.size() - 2).deliverResponse(response);
+
+        verify(mockPositioningListener2).onLoad(eq(response));
+        verify(mockPositioningListener, never()).onLoad(any(MoPubClientPositioning.class));
+    }
 }
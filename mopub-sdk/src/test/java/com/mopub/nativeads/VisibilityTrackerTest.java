@@ -28,14 +28,19 @@ import java.util.List;
 import java.util.Map;
 import java.util.WeakHashMap;
 
+import static android.view.ViewTreeObserver.OnGlobalLayoutListener;
 import static android.view.ViewTreeObserver.OnPreDrawListener;
+import static android.view.ViewTreeObserver.OnScrollChangedListener;
 import static com.mopub.nativeads.VisibilityTracker.VisibilityChecker;
 import static com.mopub.nativeads.VisibilityTracker.VisibilityTrackerListener;
 import static org.fest.assertions.api.Assertions.assertThat;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -93,6 +98,8 @@ public class VisibilityTrackerTest {
         assertThat(subject.mRootView.get()).isEqualTo(decorView);
         assertThat(subject.mOnPreDrawListener).isNotNull();
         verify(viewTreeObserver).addOnPreDrawListener(subject.mOnPreDrawListener);
+        verify(viewTreeObserver).addOnScrollChangedListener(subject.mOnScrollChangedListener);
+        verify(viewTreeObserver).addOnGlobalLayoutListener(subject.mOnGlobalLayoutListener);
     }
 
     @Test
@@ -139,6 +146,33 @@ public class VisibilityTrackerTest {
         assertThat(trackedViews).isEmpty();
     }
 
+    @Test
+    public void scheduleVisibilityCheck_withLaterCheckScheduled_shouldMoveCheckUp() throws Exception {
+        subject.scheduleVisibilityCheck(1000);
+        verify(visibilityHandler).postDelayed(any(Runnable.class), eq(1000L));
+
+        subject.scheduleVisibilityCheck();
+
+        verify(visibilityHandler).removeCallbacks(any(Runnable.class));
+        verify(visibilityHandler).postDelayed(any(Runnable.class), eq(100L));
+    }
+
+    @Test
+    public void scheduleVisibilityCheck_withEarlierCheckScheduled_shouldKeepEarlierCheck() throws Exception {
+        subject.scheduleVisibilityCheck();
+        subject.scheduleVisibilityCheck(1000);
+
+        verify(visibilityHandler, times(1)).postDelayed(any(Runnable.class), anyLong());
+        verify(visibilityHandler, never()).removeCallbacks(any(Runnable.class));
+    }
+
+    @Test
+    public void scheduleVisibilityCheck_withDelayBelowThrottle_shouldUseThrottleInterval() throws Exception {
+        subject.scheduleVisibilityCheck(-500);
+
+        verify(visibilityHandler).postDelayed(any(Runnable.class), eq(100L));
+    }
+
     @Test
     public void clear_shouldRemoveAllViewsFromTrackedViews_shouldRemoveMessagesFromVisibilityHandler_shouldResetIsVisibilityScheduled() throws Exception {
         subject.addView(view, MIN_PERCENTAGE_VIEWED);
@@ -174,6 +208,8 @@ public class VisibilityTrackerTest {
         assertThat(trackedViews).isEmpty();
         verify(visibilityHandler).removeMessages(0);
         verify(viewTreeObserver).removeOnPreDrawListener(any(OnPreDrawListener.class));
+        verify(viewTreeObserver).removeOnScrollChangedListener(any(OnScrollChangedListener.class));
+        verify(viewTreeObserver).removeGlobalOnLayoutListener(any(OnGlobalLayoutListener.class));
         assertThat(subject.mOnPreDrawListener).isNull();
     }
 
@@ -202,6 +238,74 @@ public class VisibilityTrackerTest {
         assertThat(invisibleCaptor.getValue().size()).isEqualTo(1);
     }
 
+    @Test
+    public void visibilityRunnable_run_whenNothingMoved_shouldReuseLastResult() throws Exception {
+        final VisibilityChecker mockVisibilityChecker = mock(VisibilityChecker.class);
+        when(mockVisibilityChecker.isVisible(view, MIN_PERCENTAGE_VIEWED)).thenReturn(true);
+        subject = new VisibilityTracker(activity, trackedViews, mockVisibilityChecker,
+                visibilityHandler);
+        subject.setVisibilityTrackerListener(visibilityTrackerListener);
+        subject.addView(view, MIN_PERCENTAGE_VIEWED);
+
+        final VisibilityTracker.VisibilityRunnable visibilityRunnable =
+                subject.new VisibilityRunnable();
+        visibilityRunnable.run();
+        visibilityRunnable.run();
+
+        verify(mockVisibilityChecker).isVisible(view, MIN_PERCENTAGE_VIEWED);
+        verify(visibilityTrackerListener, times(2)).onVisibilityChanged(
+                any(List.class), any(List.class));
+    }
+
+    @Test
+    public void visibilityRunnable_run_whenWindowScrolled_shouldMeasureAgain() throws Exception {
+        final VisibilityChecker mockVisibilityChecker = mock(VisibilityChecker.class);
+        subject = new VisibilityTracker(activity, trackedViews, mockVisibilityChecker,
+                visibilityHandler);
+        subject.addView(view, MIN_PERCENTAGE_VIEWED);
+
+        final VisibilityTracker.VisibilityRunnable visibilityRunnable =
+                subject.new VisibilityRunnable();
+        visibilityRunnable.run();
+        subject.mOnScrollChangedListener.onScrollChanged();
+        visibilityRunnable.run();
+
+        verify(mockVisibilityChecker, times(2)).isVisible(view, MIN_PERCENTAGE_VIEWED);
+    }
+
+    @Test
+    public void visibilityRunnable_run_afterMaxMeasureInterval_shouldMeasureAgain() throws Exception {
+        final VisibilityChecker mockVisibilityChecker = mock(VisibilityChecker.class);
+        subject = new VisibilityTracker(activity, trackedViews, mockVisibilityChecker,
+                visibilityHandler);
+        subject.addView(view, MIN_PERCENTAGE_VIEWED);
+
+        final VisibilityTracker.VisibilityRunnable visibilityRunnable =
+                subject.new VisibilityRunnable();
+        visibilityRunnable.run();
+        Robolectric.getUiThreadScheduler().advanceBy(
+                VisibilityTracker.MAX_MEASURE_INTERVAL_MILLIS);
+        visibilityRunnable.run();
+
+        verify(mockVisibilityChecker, times(2)).isVisible(view, MIN_PERCENTAGE_VIEWED);
+    }
+
+    @Test
+    public void visibilityRunnable_run_whenViewBecameInvisible_shouldMeasureAgain() throws Exception {
+        final VisibilityChecker mockVisibilityChecker = mock(VisibilityChecker.class);
+        subject = new VisibilityTracker(activity, trackedViews, mockVisibilityChecker,
+                visibilityHandler);
+        subject.addView(view, MIN_PERCENTAGE_VIEWED);
+
+        final VisibilityTracker.VisibilityRunnable visibilityRunnable =
+                subject.new VisibilityRunnable();
+        visibilityRunnable.run();
+        when(view.getVisibility()).thenReturn(View.INVISIBLE);
+        visibilityRunnable.run();
+
+        verify(mockVisibilityChecker, times(2)).isVisible(view, MIN_PERCENTAGE_VIEWED);
+    }
+
     // VisibilityChecker tests
 
     @Test
@@ -0,0 +1,77 @@
+package com.mopub.network;
+
+import android.graphics.Bitmap;
+
+import com.mopub.common.test.support.SdkTestRunner;
+import com.mopub.volley.Cache;
+import com.mopub.volley.Network;
+import com.mopub.volley.Request;
+import com.mopub.volley.Response;
+import com.mopub.volley.VolleyError;
+import com.mopub.volley.toolbox.ImageRequest;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+@RunWith(SdkTestRunner.class)
+public class ImageRequestQueueTest {
+    private static final String URL = "http://example.com/icon.png";
+
+    @Mock private Response.Listener<Bitmap> mockListener;
+    @Mock private Response.ErrorListener mockErrorListener;
+
+    private ImageRequestQueue subject;
+    private ImageRequest imageRequest;
+
+    @Before
+    public void setUp() {
+        subject = new ImageRequestQueue(mock(Cache.class), mock(Network.class), 2, 480, 800);
+        imageRequest = new ImageRequest(URL, mockListener, 0, 0, Bitmap.Config.RGB_565,
+                mockErrorListener);
+    }
+
+    @Test
+    public void createImageRequest_shouldRequestSameUrlAtLowPriority() {
+        final MoPubImageRequest request = subject.createImageRequest(imageRequest);
+
+        assertThat(request.getUrl()).isEqualTo(URL);
+        assertThat(request.getPriority()).isEqualTo(Request.Priority.LOW);
+    }
+
+    @Test
+    public void createImageRequest_onResponse_shouldDeliverBitmapToImageRequest() {
+        final Bitmap bitmap = Bitmap.createBitmap(1, 1, Bitmap.Config.RGB_565);
+
+        subject.createImageRequest(imageRequest).deliverResponse(bitmap);
+
+        verify(mockListener).onResponse(bitmap);
+    }
+
+    @Test
+    public void createImageRequest_onError_shouldDeliverErrorToImageRequest() {
+        final VolleyError volleyError = new VolleyError();
+
+        subject.createImageRequest(imageRequest).deliverError(volleyError);
+
+        verify(mockErrorListener).onErrorResponse(volleyError);
+    }
+
+    @Test
+    public void createImageRequest_whenImageRequestIsCanceled_shouldBeCanceled_shouldNotDeliver() {
+        final MoPubImageRequest request = subject.createImageRequest(imageRequest);
+
+        imageRequest.cancel();
+        request.deliverResponse(Bitmap.createBitmap(1, 1, Bitmap.Config.RGB_565));
+
+        assertThat(request.isCanceled()).isTrue();
+        verify(mockListener, never()).onResponse(any(Bitmap.class));
+    }
+}
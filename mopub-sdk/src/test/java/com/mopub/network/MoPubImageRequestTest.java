@@ -0,0 +1,116 @@
+package com.mopub.network;
+
+import android.app.Activity;
+import android.graphics.Bitmap;
+
+import com.mopub.common.test.support.SdkTestRunner;
+import com.mopub.volley.Request;
+import com.mopub.volley.RequestQueue;
+import com.mopub.volley.toolbox.ImageLoader;
+import com.mopub.volley.toolbox.ImageRequest;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.robolectric.Robolectric;
+import org.robolectric.shadows.ShadowBitmapFactory;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@RunWith(SdkTestRunner.class)
+public class MoPubImageRequestTest {
+    private static final String IMAGE_NAME = "image";
+    // ShadowBitmapFactory looks up the size hints for byte arrays by their contents
+    private static final byte[] IMAGE_DATA = ("file:" + IMAGE_NAME).getBytes();
+
+    private ImageDecodeStats decodeStats;
+
+    @Mock private RequestQueue mockRequestQueue;
+    @Mock private ImageLoader.ImageCache mockImageCache;
+
+    @Before
+    public void setUp() {
+        decodeStats = new ImageDecodeStats();
+    }
+
+    @After
+    public void tearDown() {
+        ShadowBitmapFactory.reset();
+    }
+
+    @Test
+    public void findBestSampleSize_shouldReturnLargestPowerOfTwoNotSmallerThanDesiredSize() {
+        assertThat(MoPubImageRequest.findBestSampleSize(100, 100, 100, 100)).isEqualTo(1);
+        assertThat(MoPubImageRequest.findBestSampleSize(1000, 500, 300, 150)).isEqualTo(2);
+        assertThat(MoPubImageRequest.findBestSampleSize(4000, 2000, 500, 250)).isEqualTo(8);
+        assertThat(MoPubImageRequest.findBestSampleSize(4000, 2000, 1000, 1000)).isEqualTo(2);
+    }
+
+    @Test
+    public void decode_withLargeImage_shouldScaleDownToFitBounds_shouldKeepAspectRatio() {
+        ShadowBitmapFactory.provideWidthAndHeightHints(IMAGE_NAME, 2000, 1000);
+
+        final Bitmap bitmap = MoPubImageRequest.decode(IMAGE_DATA, 480, 800,
+                Bitmap.Config.RGB_565, null, decodeStats);
+
+        assertThat(bitmap.getWidth()).isEqualTo(480);
+        assertThat(bitmap.getHeight()).isEqualTo(240);
+        assertThat(decodeStats.getDecodeCount()).isEqualTo(1);
+        assertThat(decodeStats.getDecodedBytes())
+                .isEqualTo((long) bitmap.getRowBytes() * bitmap.getHeight());
+    }
+
+    @Test
+    public void decode_withTallImage_shouldBoundHeight() {
+        ShadowBitmapFactory.provideWidthAndHeightHints(IMAGE_NAME, 400, 8000);
+
+        final Bitmap bitmap = MoPubImageRequest.decode(IMAGE_DATA, 480, 800,
+                Bitmap.Config.RGB_565, null, decodeStats);
+
+        assertThat(bitmap.getWidth()).isEqualTo(40);
+        assertThat(bitmap.getHeight()).isEqualTo(800);
+    }
+
+    @Test
+    public void decode_withSmallImage_shouldNotScaleUp() {
+        ShadowBitmapFactory.provideWidthAndHeightHints(IMAGE_NAME, 50, 60);
+
+        final Bitmap bitmap = MoPubImageRequest.decode(IMAGE_DATA, 480, 0,
+                Bitmap.Config.RGB_565, null, decodeStats);
+
+        assertThat(bitmap.getWidth()).isEqualTo(50);
+        assertThat(bitmap.getHeight()).isEqualTo(60);
+    }
+
+    @Test
+    public void maxWidthImageLoader_withSameUrlRequestedTwice_shouldMakeOneRequest() {
+        final MaxWidthImageLoader subject = new MaxWidthImageLoader(mockRequestQueue,
+                Robolectric.buildActivity(Activity.class).create().get(), mockImageCache);
+
+        subject.get("http://example.com/icon.png", mock(ImageLoader.ImageListener.class));
+        subject.get("http://example.com/icon.png", mock(ImageLoader.ImageListener.class));
+
+        final ArgumentCaptor<Request> requestCaptor = ArgumentCaptor.forClass(Request.class);
+        verify(mockRequestQueue, times(1)).add(requestCaptor.capture());
+        // The image request queue runs it as a MoPubImageRequest
+        assertThat(requestCaptor.getValue()).isInstanceOf(ImageRequest.class);
+    }
+
+    @Test
+    public void maxWidthImageLoader_withDifferentUrls_shouldMakeOneRequestEach() {
+        final MaxWidthImageLoader subject = new MaxWidthImageLoader(mockRequestQueue,
+                Robolectric.buildActivity(Activity.class).create().get(), mockImageCache);
+
+        subject.get("http://example.com/icon.png", mock(ImageLoader.ImageListener.class));
+        subject.get("http://example.com/main.png", mock(ImageLoader.ImageListener.class));
+
+        verify(mockRequestQueue, times(2)).add(any(Request.class));
+    }
+}
@@ -158,6 +158,17 @@ public class MoPubRequestQueueTest {
         assertThat(subject.getDelayedRequests().get(mockScribeRequest2)).isEqualTo(mockDelayedRequestHelper2);
     }
 
+    @Test
+    public void cancelAll_withTrackingDispatcher_shouldForwardFilterToTrackingDispatcher() throws Exception {
+        final TrackingDispatcher trackingDispatcher = mock(TrackingDispatcher.class);
+        subject = new MoPubRequestQueue(mock(Cache.class), mock(Network.class), trackingDispatcher);
+        final RequestQueue.RequestFilter filter = mock(RequestQueue.RequestFilter.class);
+
+        subject.cancelAll(filter);
+
+        verify(trackingDispatcher).cancelAll(filter);
+    }
+
     @Test
     public void cancel_shouldCancelMatchingRequest() throws Exception {
         ScribeRequest mockScribeRequest2 = mock(ScribeRequest.class);
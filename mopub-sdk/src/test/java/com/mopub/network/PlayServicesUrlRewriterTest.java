@@ -65,4 +65,46 @@ public class PlayServicesUrlRewriterTest {
     public void rewriteUrl_noTemplates_shouldReturnIdentical() throws Exception {
         assertThat(subject.rewriteUrl("http://ads.mopub.com/m/ad")).isEqualTo("http://ads.mopub.com/m/ad");
     }
+
+    @Test
+    public void rewriteUrl_withCachedAdvertisingInfo_shouldMatchUncachedRewrite() throws Exception {
+        GpsHelperTest.TestAdInfo adInfo = new GpsHelperTest.TestAdInfo();
+        when(methodBuilder.setStatic(any(Class.class))).thenReturn(methodBuilder);
+        when(methodBuilder.addParam(any(Class.class), any())).thenReturn(methodBuilder);
+        when(methodBuilder.execute()).thenReturn(
+                GpsHelper.GOOGLE_PLAY_SUCCESS_CODE,
+                adInfo,
+                adInfo.ADVERTISING_ID,
+                adInfo.LIMIT_AD_TRACKING_ENABLED
+        );
+        final String url = "http://ads.mopub.com/m/ad?udid=mp_tmpl_advertising_id&dnt=mp_tmpl_do_not_track";
+
+        final String uncached = subject.rewriteUrl(url);
+        // Anything reaching Play Services now would fail the lookup.
+        reset(methodBuilder);
+        final String cached = subject.rewriteUrl(url);
+
+        assertThat(cached).isEqualTo(uncached);
+        assertThat(cached).isEqualToIgnoringCase(
+                "http://ads.mopub.com/m/ad?udid=ifa%3A38400000-8cf0-11bd-b23e-10b96e40000d&dnt=1");
+    }
+
+    @Test
+    public void replaceTemplates_shouldMatchSequentialReplace() throws Exception {
+        final String[] urls = new String[] {
+                "mp_tmpl_do_not_track",
+                "http://ads.mopub.com/m/ad?dnt=mp_tmpl_do_not_track&udid=mp_tmpl_advertising_id",
+                "http://ads.mopub.com/m/ad?udid=mp_tmpl_advertising_id&again=mp_tmpl_advertising_id",
+                "mp_tmpl_advertising_idmp_tmpl_do_not_trackmp_tmpl_advertising_id&tail",
+        };
+
+        for (final String url : urls) {
+            final String expected = url.replace(PlayServicesUrlRewriter.UDID_TEMPLATE, "sha%3Aid")
+                    .replace(PlayServicesUrlRewriter.DO_NOT_TRACK_TEMPLATE, "0");
+            assertThat(PlayServicesUrlRewriter.replaceTemplates(url,
+                    url.indexOf(PlayServicesUrlRewriter.UDID_TEMPLATE),
+                    url.indexOf(PlayServicesUrlRewriter.DO_NOT_TRACK_TEMPLATE),
+                    "sha%3Aid", "0")).isEqualTo(expected);
+        }
+    }
 }
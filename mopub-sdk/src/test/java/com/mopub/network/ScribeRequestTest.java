@@ -3,6 +3,7 @@ package com.mopub.network;
 import android.app.Activity;
 
 import com.mopub.common.event.BaseEvent;
+import com.mopub.common.event.CompactEventSerializer;
 import com.mopub.common.event.EventSerializer;
 import com.mopub.common.test.support.SdkTestRunner;
 import com.mopub.volley.DefaultRetryPolicy;
@@ -17,12 +18,14 @@ import org.mockito.Mock;
 import org.robolectric.Robolectric;
 
 import java.nio.charset.Charset;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import static org.fest.assertions.api.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -65,6 +68,35 @@ public class ScribeRequestTest {
         assertThat(params.get("log")).isEqualTo("jsonArrayToString");
     }
     
+    @Test
+    public void getParams_withSerializedEvents_shouldJoinEventsAsJsonArray() throws Exception {
+        subject = new ScribeRequest("url", Arrays.asList("{\"a\":1}", "{\"b\":2}"),
+                mockListener);
+
+        Map<String, String> params = subject.getParams();
+
+        assertThat(params.keySet().size()).isEqualTo(1);
+        assertThat(params.get("log")).isEqualTo("[{\"a\":1},{\"b\":2}]");
+        assertThat(new JSONArray(params.get("log")).length()).isEqualTo(2);
+    }
+
+    @Test
+    public void getBody_withCompactEventSerializer_shouldReturnCompactBody() throws Exception {
+        CompactEventSerializer mockCompactEventSerializer = mock(CompactEventSerializer.class);
+        byte[] body = new byte[] {1, 2, 3};
+        when(mockCompactEventSerializer.serialize(mockEvents)).thenReturn(body);
+        subject = new ScribeRequest("url", mockEvents, mockCompactEventSerializer, mockListener);
+
+        assertThat(subject.getBody()).isEqualTo(body);
+        assertThat(subject.getBodyContentType()).isEqualTo(CompactEventSerializer.CONTENT_TYPE);
+        verify(mockEventSerializer, never()).serializeAsJson(mockEvents);
+    }
+
+    @Test
+    public void getBodyContentType_withoutCompactEventSerializer_shouldBeFormEncoded() throws Exception {
+        assertThat(subject.getBodyContentType()).startsWith("application/x-www-form-urlencoded");
+    }
+
     @Test
     public void parseNetworkResponse_shouldReturnSuccessResponse() throws Exception {
         NetworkResponse networkResponse = new NetworkResponse(200, "abc".getBytes(Charset.defaultCharset()), new HashMap<String, String>(), false);
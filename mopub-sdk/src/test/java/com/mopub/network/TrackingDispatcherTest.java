@@ -0,0 +1,407 @@
+package com.mopub.network;
+
+import android.support.annotation.NonNull;
+
+import com.mopub.common.ClientMetadata;
+import com.mopub.common.test.support.SdkTestRunner;
+import com.mopub.volley.Request;
+import com.mopub.volley.RequestQueue;
+import com.mopub.volley.VolleyError;
+import com.mopub.volley.toolbox.HurlStack;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@RunWith(SdkTestRunner.class)
+public class TrackingDispatcherTest {
+
+    private static final int PING_COUNT = 20;
+
+    private LocalHttpServer server;
+    private TrackingDispatcher subject;
+    private List<String> successes;
+    private List<VolleyError> errors;
+    private CountDownLatch latch;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new LocalHttpServer();
+        successes = new CopyOnWriteArrayList<String>();
+        errors = new CopyOnWriteArrayList<VolleyError>();
+        subject = new TrackingDispatcher("test-user-agent", null, null, null, null, new Executor() {
+            @Override
+            public void execute(@NonNull final Runnable runnable) {
+                runnable.run();
+            }
+        }, 10);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.close();
+    }
+
+    @Test
+    public void dispatch_withManyPingsToOneHost_shouldReuseConnectionsAndLimitConcurrency() throws Exception {
+        latch = new CountDownLatch(PING_COUNT);
+        final long[] startNanos = new long[PING_COUNT];
+        final long[] latencyNanos = new long[PING_COUNT];
+
+        for (int i = 0; i < PING_COUNT; i++) {
+            final int ping = i;
+            startNanos[ping] = System.nanoTime();
+            subject.dispatch(new TrackingRequest(server.url("/imp?ping=" + ping),
+                    new TrackingRequest.Listener() {
+                        @Override
+                        public void onResponse(@NonNull final String url) {
+                            latencyNanos[ping] = System.nanoTime() - startNanos[ping];
+                            successes.add(url);
+                            latch.countDown();
+                        }
+
+                        @Override
+                        public void onErrorResponse(final VolleyError volleyError) {
+                            errors.add(volleyError);
+                            latch.countDown();
+                        }
+                    }));
+        }
+
+        assertThat(latch.await(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(successes).hasSize(PING_COUNT);
+        assertThat(errors).isEmpty();
+        assertThat(server.mRequestCount.get()).isEqualTo(PING_COUNT);
+        assertThat(server.mMaxInFlight.get()).isLessThanOrEqualTo(
+                TrackingDispatcher.MAX_CONNECTIONS_PER_HOST);
+        // Keep-alive means far fewer sockets than pings.
+        assertThat(server.mConnectionCount.get()).isLessThan(PING_COUNT);
+        assertThat(server.mUserAgent).isEqualTo("test-user-agent");
+        for (final long latency : latencyNanos) {
+            assertThat(TimeUnit.NANOSECONDS.toMillis(latency)).isLessThan(5000);
+        }
+    }
+
+    @Test
+    public void dispatch_withServerError_shouldRetryAndDeliverSuccess() throws Exception {
+        server.mStatusCodes.add(503);
+
+        dispatchAndAwait(server.url("/imp"));
+
+        assertThat(server.mRequestCount.get()).isEqualTo(2);
+        assertThat(successes).hasSize(1);
+        assertThat(errors).isEmpty();
+    }
+
+    @Test
+    public void dispatch_withRepeatedServerErrors_shouldGiveUpAfterMaxRetries() throws Exception {
+        for (int i = 0; i <= TrackingDispatcher.MAX_RETRIES; i++) {
+            server.mStatusCodes.add(503);
+        }
+
+        dispatchAndAwait(server.url("/imp"));
+
+        assertThat(server.mRequestCount.get()).isEqualTo(TrackingDispatcher.MAX_RETRIES + 1);
+        assertThat(successes).isEmpty();
+        assertThat(errors).hasSize(1);
+    }
+
+    @Test
+    public void dispatch_withClientError_shouldNotRetry() throws Exception {
+        server.mStatusCodes.add(404);
+
+        dispatchAndAwait(server.url("/imp"));
+
+        assertThat(server.mRequestCount.get()).isEqualTo(1);
+        assertThat(errors).hasSize(1);
+    }
+
+    @Test
+    public void dispatch_shouldRewriteUrlBeforeSending() throws Exception {
+        subject = new TrackingDispatcher("test-user-agent", new HurlStack.UrlRewriter() {
+            @Override
+            public String rewriteUrl(final String originalUrl) {
+                return originalUrl.replace(PlayServicesUrlRewriter.UDID_TEMPLATE, "ifa%3Aid");
+            }
+        }, null, null, null, new Executor() {
+            @Override
+            public void execute(@NonNull final Runnable runnable) {
+                runnable.run();
+            }
+        }, 10);
+
+        dispatchAndAwait(server.url("/imp?udid=" + PlayServicesUrlRewriter.UDID_TEMPLATE));
+
+        assertThat(server.mLastPath).isEqualTo("/imp?udid=ifa%3Aid");
+        // Listeners still see the url they asked for.
+        assertThat(successes).containsOnly(
+                server.url("/imp?udid=" + PlayServicesUrlRewriter.UDID_TEMPLATE));
+    }
+
+    @Test
+    public void dispatch_withDurableRequest_whenUndelivered_shouldKeepInOutboxUntilFlushed() throws Exception {
+        final TrackingOutbox outbox = new TrackingOutbox(Robolectric.application,
+                TrackingOutbox.DEFAULT_TTL_MILLIS);
+        subject = new TrackingDispatcher("test-user-agent", null, null, outbox, null, new Executor() {
+            @Override
+            public void execute(@NonNull final Runnable runnable) {
+                runnable.run();
+            }
+        }, 10);
+        for (int i = 0; i <= TrackingDispatcher.MAX_RETRIES; i++) {
+            server.mStatusCodes.add(503);
+        }
+        final String url = server.url("/imp?durable=1");
+
+        latch = new CountDownLatch(1);
+        subject.dispatch(new TrackingRequest(url, new TrackingRequest.Listener() {
+            @Override
+            public void onResponse(@NonNull final String url) {
+                successes.add(url);
+                latch.countDown();
+            }
+
+            @Override
+            public void onErrorResponse(final VolleyError volleyError) {
+                errors.add(volleyError);
+                latch.countDown();
+            }
+        }, true));
+        assertThat(latch.await(10, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(errors).hasSize(1);
+        assertThat(outbox.getEntry(url).mRetryCount).isEqualTo(1);
+        assertThat(outbox.getEntry(url).mIsInFlight).isFalse();
+
+        subject.flush();
+        awaitEmpty(outbox);
+
+        assertThat(server.mRequestCount.get()).isEqualTo(TrackingDispatcher.MAX_RETRIES + 2);
+        // Flushing again must not resend a delivered url.
+        subject.flush();
+        Thread.sleep(100);
+        assertThat(server.mRequestCount.get()).isEqualTo(TrackingDispatcher.MAX_RETRIES + 2);
+    }
+
+    @Test
+    public void flush_whenNetworkUnavailable_shouldNotSendOutbox() throws Exception {
+        final TrackingOutbox outbox = new TrackingOutbox(Robolectric.application,
+                TrackingOutbox.DEFAULT_TTL_MILLIS);
+        final String url = server.url("/imp?durable=1");
+        outbox.record(url);
+        outbox.onFailure(url);
+        final ClientMetadata clientMetadata = mock(ClientMetadata.class);
+        when(clientMetadata.isNetworkAvailable()).thenReturn(false);
+        subject = new TrackingDispatcher("test-user-agent", null, null, outbox, clientMetadata,
+                new Executor() {
+                    @Override
+                    public void execute(@NonNull final Runnable runnable) {
+                        runnable.run();
+                    }
+                }, 10);
+
+        subject.flush();
+        Thread.sleep(100);
+        assertThat(server.mRequestCount.get()).isZero();
+
+        when(clientMetadata.isNetworkAvailable()).thenReturn(true);
+        subject.flush();
+        awaitEmpty(outbox);
+        assertThat(server.mRequestCount.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void cancelAll_shouldNotSendMatchingRequestsThatAreStillPending() throws Exception {
+        latch = new CountDownLatch(TrackingDispatcher.MAX_CONNECTIONS_PER_HOST);
+        final TrackingRequest.Listener listener = new TrackingRequest.Listener() {
+            @Override
+            public void onResponse(@NonNull final String url) {
+                successes.add(url);
+                latch.countDown();
+            }
+
+            @Override
+            public void onErrorResponse(final VolleyError volleyError) {
+                errors.add(volleyError);
+                latch.countDown();
+            }
+        };
+        // The first pings take every connection to the host, so the last one has to wait.
+        for (int i = 0; i < TrackingDispatcher.MAX_CONNECTIONS_PER_HOST; i++) {
+            subject.dispatch(new TrackingRequest(server.url("/imp?ping=" + i), listener));
+        }
+        final TrackingRequest pendingRequest = new TrackingRequest(server.url("/imp?pending"),
+                listener);
+        pendingRequest.setTag("tag");
+        subject.dispatch(pendingRequest);
+
+        subject.cancelAll(new RequestQueue.RequestFilter() {
+            @Override
+            public boolean apply(final Request<?> request) {
+                return "tag".equals(request.getTag());
+            }
+        });
+
+        assertThat(latch.await(10, TimeUnit.SECONDS)).isTrue();
+        Thread.sleep(100);
+        assertThat(pendingRequest.isCanceled()).isTrue();
+        assertThat(server.mRequestCount.get()).isEqualTo(TrackingDispatcher.MAX_CONNECTIONS_PER_HOST);
+        assertThat(successes).hasSize(TrackingDispatcher.MAX_CONNECTIONS_PER_HOST);
+        assertThat(errors).isEmpty();
+    }
+
+    @Test
+    public void getRetryDelayMillis_shouldStayInUpperHalfOfBackoffWindow() throws Exception {
+        final Random random = new Random(42);
+        for (int retryCount = 0; retryCount < 4; retryCount++) {
+            final long window = 1000L << retryCount;
+            for (int i = 0; i < 100; i++) {
+                final long delay = TrackingDispatcher.getRetryDelayMillis(retryCount, 1000, random);
+                assertThat(delay).isGreaterThanOrEqualTo(window / 2);
+                assertThat(delay).isLessThanOrEqualTo(window);
+            }
+        }
+    }
+
+    private static void awaitEmpty(@NonNull final TrackingOutbox outbox) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + 10000;
+        while (!outbox.isEmpty()) {
+            assertThat(System.currentTimeMillis()).isLessThan(deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    private void dispatchAndAwait(@NonNull final String url) throws InterruptedException {
+        latch = new CountDownLatch(1);
+        subject.dispatch(new TrackingRequest(url, new TrackingRequest.Listener() {
+            @Override
+            public void onResponse(@NonNull final String url) {
+                successes.add(url);
+                latch.countDown();
+            }
+
+            @Override
+            public void onErrorResponse(final VolleyError volleyError) {
+                errors.add(volleyError);
+                latch.countDown();
+            }
+        }));
+        assertThat(latch.await(10, TimeUnit.SECONDS)).isTrue();
+    }
+
+    /**
+     * Minimal HTTP/1.1 server that keeps connections alive and counts sockets, requests and the
+     * peak number of requests in flight.
+     */
+    private static class LocalHttpServer {
+        final ServerSocket mServerSocket;
+        final AtomicInteger mConnectionCount = new AtomicInteger();
+        final AtomicInteger mRequestCount = new AtomicInteger();
+        final AtomicInteger mInFlight = new AtomicInteger();
+        final AtomicInteger mMaxInFlight = new AtomicInteger();
+        final Queue<Integer> mStatusCodes = new ConcurrentLinkedQueue<Integer>();
+        volatile String mUserAgent;
+        volatile String mLastPath;
+
+        LocalHttpServer() throws IOException {
+            mServerSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+            final Thread acceptThread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    while (!mServerSocket.isClosed()) {
+                        try {
+                            final Socket socket = mServerSocket.accept();
+                            mConnectionCount.incrementAndGet();
+                            new Thread(new Runnable() {
+                                @Override
+                                public void run() {
+                                    serve(socket);
+                                }
+                            }).start();
+                        } catch (IOException e) {
+                            return;
+                        }
+                    }
+                }
+            });
+            acceptThread.setDaemon(true);
+            acceptThread.start();
+        }
+
+        String url(@NonNull final String path) {
+            return "http://127.0.0.1:" + mServerSocket.getLocalPort() + path;
+        }
+
+        void close() throws IOException {
+            mServerSocket.close();
+        }
+
+        private void serve(@NonNull final Socket socket) {
+            try {
+                final BufferedReader reader =
+                        new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8"));
+                final OutputStream outputStream = socket.getOutputStream();
+                String requestLine;
+                while ((requestLine = reader.readLine()) != null && !requestLine.isEmpty()) {
+                    final int inFlight = mInFlight.incrementAndGet();
+                    updateMaxInFlight(inFlight);
+
+                    mLastPath = requestLine.split(" ")[1];
+                    String header;
+                    while ((header = reader.readLine()) != null && !header.isEmpty()) {
+                        if (header.toLowerCase().startsWith("user-agent:")) {
+                            mUserAgent = header.substring("user-agent:".length()).trim();
+                        }
+                    }
+
+                    // Hold the request briefly so concurrent pings overlap.
+                    Thread.sleep(20);
+                    mRequestCount.incrementAndGet();
+                    final Integer statusCode = mStatusCodes.poll();
+                    final String response = "HTTP/1.1 " + (statusCode == null ? 200 : statusCode)
+                            + " Status\r\nContent-Length: 0\r\nConnection: keep-alive\r\n\r\n";
+                    mInFlight.decrementAndGet();
+                    outputStream.write(response.getBytes("UTF-8"));
+                    outputStream.flush();
+                }
+            } catch (Exception e) {
+                // The client went away.
+            } finally {
+                try {
+                    socket.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+
+        private void updateMaxInFlight(final int inFlight) {
+            int max;
+            do {
+                max = mMaxInFlight.get();
+            } while (inFlight > max && !mMaxInFlight.compareAndSet(max, inFlight));
+        }
+    }
+}
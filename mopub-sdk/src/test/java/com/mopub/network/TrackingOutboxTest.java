@@ -0,0 +1,134 @@
+package com.mopub.network;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import com.mopub.common.test.support.SdkTestRunner;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+
+import java.util.List;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+@RunWith(SdkTestRunner.class)
+public class TrackingOutboxTest {
+
+    private static final long TTL_MILLIS = 60 * 1000;
+
+    private Context context;
+    private TrackingOutbox subject;
+
+    @Before
+    public void setUp() throws Exception {
+        context = Robolectric.application;
+        subject = new TrackingOutbox(context, TTL_MILLIS);
+    }
+
+    @Test
+    public void record_shouldPersistUrl() throws Exception {
+        assertThat(subject.record("http://tracking/imp")).isTrue();
+
+        final TrackingOutbox reloaded = new TrackingOutbox(context, TTL_MILLIS);
+        assertThat(reloaded.getEntry("http://tracking/imp")).isNotNull();
+        assertThat(reloaded.getEntry("http://tracking/imp").mRetryCount).isZero();
+        // Nothing is in flight after a restart.
+        assertThat(reloaded.getEntry("http://tracking/imp").mIsInFlight).isFalse();
+    }
+
+    @Test
+    public void record_whenAlreadyInFlight_shouldReturnFalse() throws Exception {
+        assertThat(subject.record("http://tracking/imp")).isTrue();
+
+        assertThat(subject.record("http://tracking/imp")).isFalse();
+    }
+
+    @Test
+    public void record_whenPendingAfterFailure_shouldAllowResend() throws Exception {
+        subject.record("http://tracking/imp");
+        subject.onFailure("http://tracking/imp");
+
+        assertThat(subject.record("http://tracking/imp")).isTrue();
+        assertThat(subject.getEntry("http://tracking/imp").mRetryCount).isEqualTo(1);
+    }
+
+    @Test
+    public void remove_shouldPreventUrlFromBeingFlushedAgain() throws Exception {
+        subject.record("http://tracking/imp");
+        subject.remove("http://tracking/imp");
+
+        assertThat(subject.takeBatch()).isEmpty();
+        assertThat(new TrackingOutbox(context, TTL_MILLIS).isEmpty()).isTrue();
+    }
+
+    @Test
+    public void onFailure_shouldPersistRetryCount() throws Exception {
+        subject.record("http://tracking/imp");
+        subject.onFailure("http://tracking/imp");
+        subject.record("http://tracking/imp");
+        subject.onFailure("http://tracking/imp");
+
+        final TrackingOutbox reloaded = new TrackingOutbox(context, TTL_MILLIS);
+        assertThat(reloaded.getEntry("http://tracking/imp").mRetryCount).isEqualTo(2);
+    }
+
+    @Test
+    public void onFailure_whenOutOfRetries_shouldDropUrl() throws Exception {
+        for (int i = 0; i <= TrackingOutbox.MAX_RETRIES; i++) {
+            subject.record("http://tracking/imp");
+            subject.onFailure("http://tracking/imp");
+        }
+
+        assertThat(subject.getEntry("http://tracking/imp")).isNull();
+        assertThat(subject.isEmpty()).isTrue();
+    }
+
+    @Test
+    public void takeBatch_shouldDropExpiredUrls() throws Exception {
+        final SharedPreferences preferences =
+                context.getSharedPreferences(TrackingOutbox.PREFERENCE_NAME, Context.MODE_PRIVATE);
+        preferences.edit()
+                .putString("http://tracking/old", (System.currentTimeMillis() - TTL_MILLIS) + ":0")
+                .putString("http://tracking/new", System.currentTimeMillis() + ":0")
+                .commit();
+        subject = new TrackingOutbox(context, TTL_MILLIS);
+
+        assertThat(subject.takeBatch()).containsOnly("http://tracking/new");
+        assertThat(preferences.contains("http://tracking/old")).isFalse();
+    }
+
+    @Test
+    public void takeBatch_shouldLimitInFlightUrlsAndSkipThem() throws Exception {
+        final SharedPreferences.Editor editor =
+                context.getSharedPreferences(TrackingOutbox.PREFERENCE_NAME, Context.MODE_PRIVATE)
+                        .edit();
+        final long now = System.currentTimeMillis();
+        for (int i = 0; i < TrackingOutbox.BATCH_SIZE + 5; i++) {
+            editor.putString("http://tracking/" + i, (now - 1000 + i) + ":0");
+        }
+        editor.commit();
+        subject = new TrackingOutbox(context, TTL_MILLIS);
+
+        final List<String> firstBatch = subject.takeBatch();
+        assertThat(firstBatch).hasSize(TrackingOutbox.BATCH_SIZE);
+        // Oldest first.
+        assertThat(firstBatch.get(0)).isEqualTo("http://tracking/0");
+        assertThat(subject.takeBatch()).isEmpty();
+
+        subject.remove(firstBatch.get(0));
+        assertThat(subject.takeBatch()).containsOnly("http://tracking/" + TrackingOutbox.BATCH_SIZE);
+    }
+
+    @Test
+    public void loading_shouldDiscardMalformedEntries() throws Exception {
+        final SharedPreferences preferences =
+                context.getSharedPreferences(TrackingOutbox.PREFERENCE_NAME, Context.MODE_PRIVATE);
+        preferences.edit().putString("http://tracking/bad", "garbage").commit();
+
+        assertThat(subject.isEmpty()).isTrue();
+        assertThat(preferences.contains("http://tracking/bad")).isFalse();
+    }
+}